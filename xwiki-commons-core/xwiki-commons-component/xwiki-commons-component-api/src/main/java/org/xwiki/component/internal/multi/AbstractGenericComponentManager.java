@@ -20,6 +20,7 @@
 package org.xwiki.component.internal.multi;
 
 import java.lang.reflect.Type;
+import java.util.List;
 
 import javax.inject.Inject;
 
@@ -95,6 +96,18 @@ public <T> void registerComponent(ComponentDescriptor<T> componentDescriptor) th
         registerComponent(componentDescriptor, null);
     }
 
+    @Override
+    public void registerComponents(List<ComponentDescriptor< ? >> componentDescriptors)
+        throws ComponentRepositoryException
+    {
+        synchronized (this) {
+            // Make sure the ComponentManager associated to the current key exists
+            this.componentManagerManager.getComponentManager(getKey(), true);
+
+            super.registerComponents(componentDescriptors);
+        }
+    }
+
     @Override
     public void unregisterComponent(Type role, String roleHint)
     {
@@ -25,6 +25,7 @@
 
 import org.xwiki.component.descriptor.ComponentDescriptor;
 import org.xwiki.component.manager.ComponentEventManager;
+import org.xwiki.component.manager.ComponentKey;
 import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
@@ -83,6 +84,18 @@ public <T> T getInstance(Type roleType, String roleHint) throws ComponentLookupE
         return getComponentManager().getInstance(roleType, roleHint);
     }
 
+    @Override
+    public <T> T getInstance(ComponentKey<T> key) throws ComponentLookupException
+    {
+        return getComponentManager().getInstance(key);
+    }
+
+    @Override
+    public <T> T tryGetInstance(ComponentKey<T> key) throws ComponentLookupException
+    {
+        return getComponentManager().tryGetInstance(key);
+    }
+
     @Override
     public <T> List<T> getInstanceList(Type role) throws ComponentLookupException
     {
@@ -132,6 +145,19 @@ public void unregisterComponent(ComponentDescriptor< ? > classComponentDescripto
         getComponentManager().unregisterComponent(classComponentDescriptor);
     }
 
+    @Override
+    public void registerComponents(List<ComponentDescriptor< ? >> componentDescriptors)
+        throws ComponentRepositoryException
+    {
+        getComponentManager().registerComponents(componentDescriptors);
+    }
+
+    @Override
+    public void unregisterComponents(List<ComponentDescriptor< ? >> componentDescriptors)
+    {
+        getComponentManager().unregisterComponents(componentDescriptors);
+    }
+
     @Override
     public void release(Object component) throws ComponentLifecycleException
     {
@@ -19,6 +19,8 @@
  */
 package org.xwiki.component.manager;
 
+import java.util.List;
+
 import org.xwiki.component.descriptor.ComponentDescriptor;
 
 /**
@@ -69,4 +71,24 @@
      * @since 3.3
      */
     void notifyComponentUnregistered(ComponentDescriptor< ? > descriptor, ComponentManager componentManager);
+
+    /**
+     * Notify all listeners that several components have been registered at once. Implementations are expected to send
+     * the events together so that listeners can process them as a batch.
+     * 
+     * @param descriptors the descriptors of the registered components, in registration order
+     * @param componentManager the ComponentManager where the components have been registered
+     * @since 4.3M2
+     */
+    void notifyComponentsRegistered(List<ComponentDescriptor< ? >> descriptors, ComponentManager componentManager);
+
+    /**
+     * Notify all listeners that several components have been unregistered at once. Implementations are expected to
+     * send the events together so that listeners can process them as a batch.
+     * 
+     * @param descriptors the descriptors of the unregistered components, in unregistration order
+     * @param componentManager the ComponentManager from where the components have been unregistered
+     * @since 4.3M2
+     */
+    void notifyComponentsUnregistered(List<ComponentDescriptor< ? >> descriptors, ComponentManager componentManager);
 }
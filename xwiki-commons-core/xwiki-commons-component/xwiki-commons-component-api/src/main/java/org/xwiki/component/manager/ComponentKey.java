@@ -0,0 +1,174 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.manager;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The unique identifier of a component (pair role type/hint).
+ * <p>
+ * The keys returned by {@link #get(Type, String)} are canonical: the same instance is returned for the same role type
+ * and hint as long as it's referenced somewhere. Code looking up the same component very often is encouraged to keep
+ * the key and use {@link ComponentManager#getInstance(ComponentKey)} which does not have to allocate or hash anything.
+ * Code looking up a component whose hint is only known at runtime should use {@link #create(Type, String)} instead so
+ * that it does not contend on the table of canonical keys.
+ * 
+ * @param <T> the role type
+ * @version $Id$
+ * @since 4.3M2
+ */
+public class ComponentKey<T>
+{
+    /**
+     * The hint used when none is provided.
+     */
+    public static final String DEFAULT_HINT = "default";
+
+    /**
+     * The canonical keys.
+     */
+    private static final Map<ComponentKey< ? >, WeakReference<ComponentKey< ? >>> KEYS =
+        new WeakHashMap<ComponentKey< ? >, WeakReference<ComponentKey< ? >>>();
+
+    /**
+     * @see #getRoleType()
+     */
+    private final Type roleType;
+
+    /**
+     * @see #getHint()
+     */
+    private final String hint;
+
+    /**
+     * The hash code of the key, computed only once since it can be costly for parameterized types.
+     */
+    private final int hash;
+
+    /**
+     * @param roleType the component role type
+     * @param hint the component hint, "default" if null
+     */
+    protected ComponentKey(Type roleType, String hint)
+    {
+        this.roleType = roleType;
+        this.hint = hint != null ? hint : DEFAULT_HINT;
+
+        int h = 8;
+        h = 31 * h + (roleType == null ? 0 : roleType.hashCode());
+        h = 31 * h + this.hint.hashCode();
+        this.hash = h;
+    }
+
+    /**
+     * @param <T> the role type
+     * @param roleType the component role type
+     * @return the canonical key of the component with the passed role type and the default hint
+     */
+    public static <T> ComponentKey<T> get(Type roleType)
+    {
+        return get(roleType, null);
+    }
+
+    /**
+     * @param <T> the role type
+     * @param roleType the component role type
+     * @param hint the component hint, "default" if null
+     * @return the canonical key of the component with the passed role type and hint
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ComponentKey<T> get(Type roleType, String hint)
+    {
+        ComponentKey<T> key = new ComponentKey<T>(roleType, hint);
+
+        synchronized (KEYS) {
+            WeakReference<ComponentKey< ? >> reference = KEYS.get(key);
+            ComponentKey<T> canonicalKey = reference != null ? (ComponentKey<T>) reference.get() : null;
+            if (canonicalKey == null) {
+                KEYS.put(key, new WeakReference<ComponentKey< ? >>(key));
+                canonicalKey = key;
+            }
+
+            return canonicalKey;
+        }
+    }
+
+    /**
+     * Create a key which is not made canonical. It is equal to the canonical key of the same component and can be used
+     * for a lookup but it should not be kept.
+     * 
+     * @param <T> the role type
+     * @param roleType the component role type
+     * @param hint the component hint, "default" if null
+     * @return a new key of the component with the passed role type and hint
+     */
+    public static <T> ComponentKey<T> create(Type roleType, String hint)
+    {
+        return new ComponentKey<T>(roleType, hint);
+    }
+
+    /**
+     * @return the component role type
+     */
+    public Type getRoleType()
+    {
+        return this.roleType;
+    }
+
+    /**
+     * @return the component hint
+     */
+    public String getHint()
+    {
+        return this.hint;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj) {
+            return true;
+        }
+
+        if (!(obj instanceof ComponentKey)) {
+            return false;
+        }
+
+        ComponentKey< ? > key = (ComponentKey< ? >) obj;
+
+        return this.hash == key.hash && this.hint.equals(key.hint)
+            && (this.roleType == null ? key.roleType == null : this.roleType.equals(key.roleType));
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return this.hash;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "role = [" + getRoleType() + "] hint = [" + getHint() + "]";
+    }
+}
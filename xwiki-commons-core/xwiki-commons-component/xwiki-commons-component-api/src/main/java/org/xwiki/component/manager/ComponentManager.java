@@ -76,6 +76,35 @@
      */
     <T> T getInstance(Type roleType, String roleHint) throws ComponentLookupException;
 
+    /**
+     * Find a component instance identified by the passed key. If the component has a singleton lifecycle then this
+     * method always return the same instance.
+     * <p>
+     * This is the fastest way to lookup a component when the key has been computed once with
+     * {@link ComponentKey#get(Type, String)} and is reused for each lookup.
+     * 
+     * @param <T> the component role type
+     * @param key the role type and hint of the component
+     * @return the component instance
+     * @throws ComponentLookupException in case the component cannot be found
+     * @since 4.3M2
+     */
+    <T> T getInstance(ComponentKey<T> key) throws ComponentLookupException;
+
+    /**
+     * Find a component instance identified by the passed key, or {@code null} if no such component is registered.
+     * <p>
+     * This is the method to use when the component is optional: unlike {@link #getInstance(ComponentKey)} a missing
+     * component is not reported with an exception, which is costly to create.
+     * 
+     * @param <T> the component role type
+     * @param key the role type and hint of the component
+     * @return the component instance or {@code null} if no component is registered with the passed role type and hint
+     * @throws ComponentLookupException in case the component exists but could not be created
+     * @since 4.3M2
+     */
+    <T> T tryGetInstance(ComponentKey<T> key) throws ComponentLookupException;
+
     /**
      * Release the provided singleton instance but don't unregister the component descriptor. This means that next time
      * the component is looked up a new instance will be created.
@@ -154,6 +183,32 @@ <T> void registerComponent(ComponentDescriptor<T> componentDescriptor, T compone
      */
     void unregisterComponent(ComponentDescriptor< ? > componentDescriptor);
 
+    /**
+     * Add several components in the component repository at once.
+     * <p>
+     * The result is the same as calling {@link #registerComponent(ComponentDescriptor)} for each descriptor but the
+     * repository is modified in one go and the registration events are sent together (see
+     * {@link ComponentEventManager#notifyComponentsRegistered(List, ComponentManager)}) so that listeners can process
+     * them as a batch.
+     * 
+     * @param componentDescriptors the descriptors of the components to register
+     * @throws ComponentRepositoryException error when registering component descriptors
+     * @since 4.3M2
+     */
+    void registerComponents(List<ComponentDescriptor< ? >> componentDescriptors) throws ComponentRepositoryException;
+
+    /**
+     * Remove several components from the component repository at once.
+     * <p>
+     * The result is the same as calling {@link #unregisterComponent(ComponentDescriptor)} for each descriptor but the
+     * repository is modified in one go and the unregistration events are sent together (see
+     * {@link ComponentEventManager#notifyComponentsUnregistered(List, ComponentManager)}).
+     * 
+     * @param componentDescriptors the descriptors of the components to unregister
+     * @since 4.3M2
+     */
+    void unregisterComponents(List<ComponentDescriptor< ? >> componentDescriptors);
+
     /**
      * @param <T> the component role type
      * @param role the role identifying the component
@@ -20,6 +20,7 @@
 package org.xwiki.component.annotation;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -31,10 +32,18 @@
 import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Provider;
 
@@ -42,6 +51,7 @@
 import org.slf4j.LoggerFactory;
 import org.xwiki.component.descriptor.ComponentDescriptor;
 import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.internal.ComponentDescriptorIndex;
 import org.xwiki.component.internal.RoleHint;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.component.util.DefaultParameterizedType;
@@ -70,6 +80,21 @@
     @Deprecated
     public static final String COMPONENT_OVERRIDE_LIST = "META-INF/component-overrides.txt";
 
+    /**
+     * Name of the system property indicating the file where to store the index of the component descriptors found in
+     * jar files. The index is used to avoid introspecting component annotations at startup.
+     * 
+     * @since 4.3M2
+     */
+    public static final String DESCRIPTOR_INDEX_PROPERTY = "xwiki.component.index";
+
+    /**
+     * Name of the system property indicating if component classes should be loaded and introspected in parallel.
+     * 
+     * @since 4.3M2
+     */
+    public static final String PARALLEL_LOADING_PROPERTY = "xwiki.component.parallelLoading";
+
     /**
      * The encoding used to parse component list files.
      */
@@ -85,6 +110,73 @@
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(ComponentAnnotationLoader.class);
 
+    /**
+     * @see #setDescriptorIndexFile(File)
+     */
+    private File descriptorIndexFile;
+
+    /**
+     * @see #setParallelLoading(boolean)
+     */
+    private boolean parallelLoading = Boolean.getBoolean(PARALLEL_LOADING_PROPERTY);
+
+    /**
+     * Default constructor.
+     */
+    public ComponentAnnotationLoader()
+    {
+        String descriptorIndexPath = System.getProperty(DESCRIPTOR_INDEX_PROPERTY);
+        if (descriptorIndexPath != null && descriptorIndexPath.length() > 0) {
+            this.descriptorIndexFile = new File(descriptorIndexPath);
+        }
+    }
+
+    /**
+     * @return the file where the index of component descriptors is stored, null if no index is used
+     * @since 4.3M2
+     */
+    public File getDescriptorIndexFile()
+    {
+        return this.descriptorIndexFile;
+    }
+
+    /**
+     * Set the file where to store the index of the component descriptors found in jar files. When set,
+     * {@link #initialize(ComponentManager, ClassLoader)} reuses the descriptors of the jars which did not change since
+     * the index was written instead of introspecting the component annotations. Default value comes from the
+     * {@value #DESCRIPTOR_INDEX_PROPERTY} system property.
+     * 
+     * @param descriptorIndexFile the file where the index of component descriptors is stored, null to disable the
+     *            index
+     * @since 4.3M2
+     */
+    public void setDescriptorIndexFile(File descriptorIndexFile)
+    {
+        this.descriptorIndexFile = descriptorIndexFile;
+    }
+
+    /**
+     * @return true if component classes are loaded and introspected in parallel
+     * @since 4.3M2
+     */
+    public boolean isParallelLoading()
+    {
+        return this.parallelLoading;
+    }
+
+    /**
+     * Indicate if component classes should be loaded and introspected in parallel when registering components. The
+     * descriptors are still merged and registered in declaration order so the result is the same as the sequential
+     * mode. Default value comes from the {@value #PARALLEL_LOADING_PROPERTY} system property.
+     * 
+     * @param parallelLoading true if component classes should be loaded and introspected in parallel
+     * @since 4.3M2
+     */
+    public void setParallelLoading(boolean parallelLoading)
+    {
+        this.parallelLoading = parallelLoading;
+    }
+
     /**
      * Loads all components defined using annotations.
      * 
@@ -94,15 +186,22 @@
      */
     public void initialize(ComponentManager manager, ClassLoader classLoader)
     {
+        ComponentDescriptorIndex index = null;
+        if (this.descriptorIndexFile != null) {
+            index = new ComponentDescriptorIndex(this.descriptorIndexFile);
+            index.load(classLoader);
+        }
+
         try {
             // Find all declared components by retrieving the list defined in COMPONENT_LIST.
-            List<ComponentDeclaration> componentDeclarations = getDeclaredComponents(classLoader, COMPONENT_LIST);
+            List<ComponentDeclaration> componentDeclarations =
+                getDeclaredComponents(classLoader, COMPONENT_LIST, index);
 
             // Find all the Component overrides and adds them to the bottom of the list as component declarations with
             // the highest priority of 0. This is purely for backward compatibility since the override files is now
             // deprecated.
             List<ComponentDeclaration> componentOverrideDeclarations =
-                getDeclaredComponents(classLoader, COMPONENT_OVERRIDE_LIST);
+                getDeclaredComponents(classLoader, COMPONENT_OVERRIDE_LIST, null);
             for (ComponentDeclaration componentOverrideDeclaration : componentOverrideDeclarations) {
                 // Since the old way to declare an override was to define it in both a component.txt and a
                 // component-overrides.txt file we first need to remove the override component declaration stored in
@@ -113,12 +212,23 @@ public void initialize(ComponentManager manager, ClassLoader classLoader)
                     .getImplementationClassName(), 0));
             }
 
-            initialize(manager, classLoader, componentDeclarations);
+            if (index != null) {
+                register(manager, classLoader, componentDeclarations, index);
+            } else {
+                initialize(manager, classLoader, componentDeclarations);
+            }
         } catch (Exception e) {
             // Make sure we make the calling code fail in order to fail fast and prevent the application to start
             // if something is amiss.
             throw new RuntimeException("Failed to get the list of components to load", e);
         }
+
+        if (index != null) {
+            index.save();
+
+            getLogger().info("Loaded [{}] components from descriptor index [{}], saving about [{}] ms of introspection",
+                new Object[] {index.getIndexedCount(), index.getFile(), index.getSavedTime()});
+        }
     }
 
     /**
@@ -143,36 +253,55 @@ public void initialize(ComponentManager manager, ClassLoader classLoader,
      */
     public void register(ComponentManager manager, ClassLoader classLoader,
         List<ComponentDeclaration> componentDeclarations)
+    {
+        register(manager, classLoader, componentDeclarations, null);
+    }
+
+    /**
+     * @param manager the component manager to use to dynamically register components
+     * @param classLoader the classloader to use to look for the Component list declaration file (
+     *            {@code META-INF/components.txt})
+     * @param componentDeclarations the declarations of components to register
+     * @param index the index where to look for already known component descriptors, null if none
+     */
+    private void register(ComponentManager manager, ClassLoader classLoader,
+        List<ComponentDeclaration> componentDeclarations, ComponentDescriptorIndex index)
     {
         try {
             // 2) For each component class name found, load its class and use introspection to find the necessary
             // annotations required to create a Component Descriptor.
+            // Note: we keep the declaration order so that components are always registered in the same order.
             Map<RoleHint< ? >, ComponentDescriptor< ? >> descriptorMap =
-                new HashMap<RoleHint< ? >, ComponentDescriptor< ? >>();
+                new LinkedHashMap<RoleHint< ? >, ComponentDescriptor< ? >>();
             Map<RoleHint< ? >, Integer> priorityMap = new HashMap<RoleHint< ? >, Integer>();
 
-            for (ComponentDeclaration componentDeclaration : componentDeclarations) {
-                Class< ? > componentClass = classLoader.loadClass(componentDeclaration.getImplementationClassName());
+            List<List<ComponentDescriptor>> declarationsDescriptors;
+            if (this.parallelLoading && componentDeclarations.size() > 1) {
+                declarationsDescriptors = getComponentsDescriptorsInParallel(classLoader, componentDeclarations, index);
+            } else {
+                declarationsDescriptors = new ArrayList<List<ComponentDescriptor>>(componentDeclarations.size());
+                for (ComponentDeclaration componentDeclaration : componentDeclarations) {
+                    declarationsDescriptors.add(getComponentsDescriptors(classLoader, componentDeclaration, index));
+                }
+            }
+
+            for (int i = 0; i < componentDeclarations.size(); ++i) {
+                ComponentDeclaration componentDeclaration = componentDeclarations.get(i);
 
                 // Look for ComponentRole annotations and register one component per ComponentRole found
-                for (Type componentRoleType : findComponentRoleTypes(componentClass)) {
-                    for (ComponentDescriptor< ? > componentDescriptor : this.factory.createComponentDescriptors(
-                        componentClass, componentRoleType)) {
-                        // If there's already a existing role/hint in the list of descriptors then decide which one
-                        // to keep by looking at their priorities. Highest priority wins (i.e. lowest integer value).
-                        RoleHint< ? > roleHint =
-                            new RoleHint(componentDescriptor.getRoleType(), componentDescriptor.getRoleHint());
-
-                        addComponent(descriptorMap, priorityMap, roleHint, componentDescriptor, componentDeclaration,
-                            true);
-                    }
+                for (ComponentDescriptor< ? > componentDescriptor : declarationsDescriptors.get(i)) {
+                    // If there's already a existing role/hint in the list of descriptors then decide which one
+                    // to keep by looking at their priorities. Highest priority wins (i.e. lowest integer value).
+                    RoleHint< ? > roleHint =
+                        new RoleHint(componentDescriptor.getRoleType(), componentDescriptor.getRoleHint());
+
+                    addComponent(descriptorMap, priorityMap, roleHint, componentDescriptor, componentDeclaration,
+                        true);
                 }
             }
 
-            // 3) Activate all component descriptors
-            for (ComponentDescriptor< ? > descriptor : descriptorMap.values()) {
-                manager.registerComponent(descriptor);
-            }
+            // 3) Activate all component descriptors at once
+            manager.registerComponents(new ArrayList<ComponentDescriptor< ? >>(descriptorMap.values()));
         } catch (Exception e) {
             // Make sure we make the calling code fail in order to fail fast and prevent the application to start
             // if something is amiss.
@@ -224,11 +353,13 @@ private void addComponent(Map<RoleHint< ? >, ComponentDescriptor< ? >> descripto
     public void unregister(ComponentManager manager, ClassLoader classLoader,
         List<ComponentDeclaration> componentDeclarations)
     {
+        List<ComponentDescriptor< ? >> descriptors = new ArrayList<ComponentDescriptor< ? >>();
+
         for (ComponentDeclaration componentDeclaration : componentDeclarations) {
             try {
                 for (ComponentDescriptor< ? > componentDescriptor : getComponentsDescriptors(classLoader
                     .loadClass(componentDeclaration.getImplementationClassName()))) {
-                    manager.unregisterComponent(componentDescriptor);
+                    descriptors.add(componentDescriptor);
 
                     if (componentDescriptor.getRoleType() instanceof ParameterizedType) {
                         Class roleClass = ReflectionUtils.getTypeClass(componentDescriptor.getRoleType());
@@ -237,7 +368,7 @@ public void unregister(ComponentManager manager, ClassLoader classLoader,
                             new DefaultComponentDescriptor(componentDescriptor);
                         classComponentDescriptor.setRoleType(roleClass);
 
-                        manager.unregisterComponent(classComponentDescriptor);
+                        descriptors.add(classComponentDescriptor);
                     }
 
                 }
@@ -246,6 +377,9 @@ public void unregister(ComponentManager manager, ClassLoader classLoader,
                     componentDeclaration.getImplementationClassName());
             }
         }
+
+        // Deactivate all component descriptors at once
+        manager.unregisterComponents(descriptors);
     }
 
     public List<ComponentDescriptor> getComponentsDescriptors(Class< ? > componentClass)
@@ -260,6 +394,101 @@ public List<ComponentDescriptor> getComponentsDescriptors(Class< ? > componentCl
         return descriptors;
     }
 
+    /**
+     * Load and introspect the declared component classes using as many threads as available processors.
+     * 
+     * @param classLoader the classloader to use to load the component classes
+     * @param componentDeclarations the declarations of components to load
+     * @param index the index where to look for already known component descriptors, null if none
+     * @return the component descriptors of each declaration, in the same order as the declarations
+     * @throws Exception when failing to load a component class
+     */
+    private List<List<ComponentDescriptor>> getComponentsDescriptorsInParallel(final ClassLoader classLoader,
+        List<ComponentDeclaration> componentDeclarations, final ComponentDescriptorIndex index) throws Exception
+    {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor =
+            Executors.newFixedThreadPool(
+                Math.min(Runtime.getRuntime().availableProcessors(), componentDeclarations.size()),
+                new ThreadFactory()
+                {
+                    @Override
+                    public Thread newThread(Runnable runnable)
+                    {
+                        Thread thread = new Thread(runnable, "Component loader " + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+
+                        return thread;
+                    }
+                });
+
+        try {
+            List<Future<List<ComponentDescriptor>>> futures =
+                new ArrayList<Future<List<ComponentDescriptor>>>(componentDeclarations.size());
+            for (final ComponentDeclaration componentDeclaration : componentDeclarations) {
+                futures.add(executor.submit(new Callable<List<ComponentDescriptor>>()
+                {
+                    @Override
+                    public List<ComponentDescriptor> call() throws Exception
+                    {
+                        return getComponentsDescriptors(classLoader, componentDeclaration, index);
+                    }
+                }));
+            }
+
+            List<List<ComponentDescriptor>> declarationsDescriptors =
+                new ArrayList<List<ComponentDescriptor>>(componentDeclarations.size());
+            for (Future<List<ComponentDescriptor>> future : futures) {
+                try {
+                    declarationsDescriptors.add(future.get());
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+
+            return declarationsDescriptors;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param classLoader the classloader to use to load the component class
+     * @param componentDeclaration the declaration of the component
+     * @param index the index where to look for already known component descriptors, null if none
+     * @return the component descriptors of the declared implementation
+     * @throws ClassNotFoundException when failing to load the component class
+     */
+    private List<ComponentDescriptor> getComponentsDescriptors(ClassLoader classLoader,
+        ComponentDeclaration componentDeclaration, ComponentDescriptorIndex index) throws ClassNotFoundException
+    {
+        Class< ? > componentClass = classLoader.loadClass(componentDeclaration.getImplementationClassName());
+
+        return getComponentsDescriptors(componentClass, index);
+    }
+
+    /**
+     * @param componentClass the component implementation class
+     * @param index the index where to look for already known component descriptors, null if none
+     * @return the component descriptors of the passed implementation
+     */
+    private List<ComponentDescriptor> getComponentsDescriptors(Class< ? > componentClass,
+        ComponentDescriptorIndex index)
+    {
+        if (index == null) {
+            return getComponentsDescriptors(componentClass);
+        }
+
+        List<ComponentDescriptor> descriptors = index.getDescriptors(componentClass);
+        if (descriptors == null) {
+            long start = System.nanoTime();
+            descriptors = getComponentsDescriptors(componentClass);
+            index.putDescriptors(componentClass, descriptors, System.nanoTime() - start);
+        }
+
+        return descriptors;
+    }
+
     public Set<Type> findComponentRoleTypes(Class< ? > componentClass)
     {
         return findComponentRoleTypes(componentClass, null);
@@ -393,12 +622,13 @@ public Set<Type> findComponentRoleTypes(Class< ? > componentClass, Type[] parame
      * 
      * @param classLoader the classloader to use to find the resources
      * @param location the name of the resources to look for
+     * @param index the index in which to associate the found declarations to their jar, null if none
      * @return the list of component implementation class names
      * @throws IOException in case of an error loading the component list resource
      * @since 3.3M1
      */
-    private List<ComponentDeclaration> getDeclaredComponents(ClassLoader classLoader, String location)
-        throws IOException
+    private List<ComponentDeclaration> getDeclaredComponents(ClassLoader classLoader, String location,
+        ComponentDescriptorIndex index) throws IOException
     {
         List<ComponentDeclaration> annotatedClassNames = new ArrayList<ComponentDeclaration>();
         Enumeration<URL> urls = classLoader.getResources(location);
@@ -408,7 +638,11 @@ private List<ComponentDeclaration> getDeclaredComponents(ClassLoader classLoader
             InputStream componentListStream = url.openStream();
 
             try {
-                annotatedClassNames.addAll(getDeclaredComponents(componentListStream));
+                List<ComponentDeclaration> declarations = getDeclaredComponents(componentListStream);
+                if (index != null) {
+                    index.addDeclarations(url, declarations);
+                }
+                annotatedClassNames.addAll(declarations);
             } finally {
                 componentListStream.close();
             }
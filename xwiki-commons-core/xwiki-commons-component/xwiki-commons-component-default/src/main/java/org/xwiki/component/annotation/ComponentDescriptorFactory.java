@@ -47,9 +47,21 @@
      * Load all Component Descriptor Factories implementations using the JDK's Service Loader facility. Note that we
      * cannot use Components to do this since it would be a chicken and egg issue since this factory class is used to
      * initialize Components...
+     * <p>
+     * The factories are loaded once since iterating a {@link ServiceLoader} is not thread safe and descriptors can be
+     * created from several threads.
      */
-    private ServiceLoader<ComponentDependencyFactory> componentDependencyFactories = ServiceLoader
-        .load(ComponentDependencyFactory.class);
+    private List<ComponentDependencyFactory> componentDependencyFactories = new ArrayList<ComponentDependencyFactory>();
+
+    /**
+     * Default constructor.
+     */
+    public ComponentDescriptorFactory()
+    {
+        for (ComponentDependencyFactory dependencyFactory : ServiceLoader.load(ComponentDependencyFactory.class)) {
+            this.componentDependencyFactories.add(dependencyFactory);
+        }
+    }
 
     /**
      * Create component descriptors for the passed component implementation class and component role class. There can be
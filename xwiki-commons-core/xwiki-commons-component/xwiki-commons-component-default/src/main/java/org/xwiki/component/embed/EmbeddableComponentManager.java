@@ -23,30 +23,31 @@
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
 import java.util.concurrent.ConcurrentHashMap;
-
-import javax.inject.Provider;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.lang3.ObjectUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.component.annotation.ComponentAnnotationLoader;
-import org.xwiki.component.descriptor.ComponentDependency;
+import org.xwiki.component.annotation.DisableWarmUp;
 import org.xwiki.component.descriptor.ComponentDescriptor;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
 import org.xwiki.component.descriptor.DefaultComponentDescriptor;
 import org.xwiki.component.internal.RoleHint;
 import org.xwiki.component.manager.ComponentEventManager;
+import org.xwiki.component.manager.ComponentKey;
 import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.component.manager.ComponentManagerInitializer;
 import org.xwiki.component.manager.ComponentRepositoryException;
 import org.xwiki.component.phase.Disposable;
-import org.xwiki.component.util.ReflectionUtils;
 
 /**
  * Simple implementation of {@link ComponentManager} to be used when using some XWiki modules standalone.
@@ -56,6 +57,11 @@
  */
 public class EmbeddableComponentManager implements ComponentManager
 {
+    /**
+     * The maximum number of entries in {@link #missingComponents}.
+     */
+    private static final int MISSING_COMPONENTS_MAX = 1000;
+
     private ComponentEventManager eventManager;
 
     /**
@@ -78,6 +84,17 @@ public class EmbeddableComponentManager implements ComponentManager
          */
         public volatile R instance;
 
+        /**
+         * The dependencies to inject in the instances of the component. Lazily computed when the first instance is
+         * created.
+         */
+        public volatile InjectionPlan injectionPlan;
+
+        /**
+         * Held while the singleton instance is created or released.
+         */
+        public final ReentrantLock lock = new ReentrantLock();
+
         public ComponentEntry(ComponentDescriptor<R> descriptor, R instance)
         {
             this.descriptor = descriptor;
@@ -85,21 +102,103 @@ public ComponentEntry(ComponentDescriptor<R> descriptor, R instance)
         }
     }
 
+    /**
+     * A singleton instance resolved by {@link #getInstance(ComponentKey)}, locally or in the parents.
+     */
+    private static class ResolvedInstance
+    {
+        /**
+         * The singleton instance.
+         */
+        public final Object instance;
+
+        /**
+         * The value of {@link #getGeneration()} when the instance was resolved.
+         */
+        public final long generation;
+
+        public ResolvedInstance(Object instance, long generation)
+        {
+            this.instance = instance;
+            this.generation = generation;
+        }
+    }
+
     private Map<RoleHint< ? >, ComponentEntry< ? >> componentEntries =
         new ConcurrentHashMap<RoleHint< ? >, ComponentEntry< ? >>();
 
+    /**
+     * The singleton instances already resolved by {@link #getInstance(ComponentKey)}, including the ones coming from the
+     * parents. An entry is only valid as long as its generation is the current {@link #getGeneration()}.
+     */
+    private Map<ComponentKey< ? >, ResolvedInstance> resolvedInstances =
+        new ConcurrentHashMap<ComponentKey< ? >, ResolvedInstance>();
+
+    /**
+     * The registered components indexed by role type and hint.
+     */
+    private Map<Type, Map<String, ComponentEntry< ? >>> componentEntriesByRole =
+        new ConcurrentHashMap<Type, Map<String, ComponentEntry< ? >>>();
+
+    /**
+     * The immutable results of {@link #getSharedInstanceMap(Type)} (when only made of singletons),
+     * {@link #getSharedInstanceList(Type)} and {@link #getSharedComponentDescriptorList(Type)} indexed by role type.
+     * Like {@link #resolvedInstances}, an entry is only valid as long as its generation is the current
+     * {@link #getGeneration()}.
+     */
+    private Map<Type, ResolvedInstance> resolvedInstanceMaps = new ConcurrentHashMap<Type, ResolvedInstance>();
+
+    /**
+     * @see #resolvedInstanceMaps
+     */
+    private Map<Type, ResolvedInstance> resolvedInstanceLists = new ConcurrentHashMap<Type, ResolvedInstance>();
+
+    /**
+     * @see #resolvedInstanceMaps
+     */
+    private Map<Type, ResolvedInstance> resolvedDescriptorLists = new ConcurrentHashMap<Type, ResolvedInstance>();
+
+    /**
+     * The components which have been looked up in vain in this component manager and its parents, associated to the
+     * value of {@link #getGeneration()} at the time of the lookup. Only filled when {@link #isParentTracked()} since
+     * otherwise there's no way to know when a missing component is registered in a parent.
+     */
+    private Map<ComponentKey< ? >, Long> missingComponents = new ConcurrentHashMap<ComponentKey< ? >, Long>();
+
+    /**
+     * Incremented each time a component is registered or unregistered or the parent changes.
+     */
+    private AtomicLong generation = new AtomicLong();
+
+    /**
+     * Held while the registered components are modified so that the components registered or unregistered together by
+     * {@link #registerComponents(List)} and {@link #unregisterComponents(List)} are seen as a whole.
+     */
+    private final Object registryLock = new Object();
+
     private Logger logger = LoggerFactory.getLogger(EmbeddableComponentManager.class);
 
     /**
-     * Finds all lifecycle handlers to use when instantiating a Component.
+     * The lifecycle handlers to use when instantiating a Component. Loaded once since a {@link ServiceLoader} can't be
+     * iterated by several threads at the same time.
      */
-    private ServiceLoader<LifecycleHandler> lifecycleHandlers = ServiceLoader.load(LifecycleHandler.class);
+    private final List<LifecycleHandler> lifecycleHandlers = loadLifecycleHandlers();
 
     public EmbeddableComponentManager()
     {
         registerThis();
     }
 
+    private static List<LifecycleHandler> loadLifecycleHandlers()
+    {
+        List<LifecycleHandler> handlers = new ArrayList<LifecycleHandler>();
+        for (LifecycleHandler lifecycleHandler : ServiceLoader.load(LifecycleHandler.class)) {
+            handlers.add(lifecycleHandler);
+        }
+
+        return handlers;
+    }
+
     /**
      * Allow to lookup the this as default {@link ComponentManager} implementation.
      */
@@ -142,11 +241,27 @@ public boolean hasComponent(Type role)
     @Override
     public boolean hasComponent(Type role, String hint)
     {
-        if (this.componentEntries.containsKey(new RoleHint<Object>(role, hint))) {
+        RoleHint<Object> key = new RoleHint<Object>(role, hint);
+
+        if (this.componentEntries.containsKey(key)) {
             return true;
         }
 
-        return getParent() != null ? getParent().hasComponent(role, hint) : false;
+        if (getParent() == null) {
+            return false;
+        }
+
+        long currentGeneration = getGeneration();
+        if (isMissing(key, currentGeneration)) {
+            return false;
+        }
+
+        boolean found = getParent().hasComponent(role, hint);
+        if (!found) {
+            setMissing(key, currentGeneration);
+        }
+
+        return found;
     }
 
     @Override
@@ -161,31 +276,223 @@ public <T> T getInstance(Type roleType, String roleHint) throws ComponentLookupE
         return getComponentInstance(new RoleHint<T>(roleType, roleHint));
     }
 
+    @Override
+    public <T> T getInstance(ComponentKey<T> key) throws ComponentLookupException
+    {
+        return getInstance(key, true);
+    }
+
+    @Override
+    public <T> T tryGetInstance(ComponentKey<T> key) throws ComponentLookupException
+    {
+        return getInstance(key, false);
+    }
+
+    /**
+     * @param key the role type and hint of the component
+     * @param required true if an exception should be thrown when the component does not exist
+     * @return the component instance or null if it does not exist and is not required
+     * @throws ComponentLookupException when the component exists but could not be created or when it does not exist
+     *             and is required
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T getInstance(ComponentKey<T> key, boolean required) throws ComponentLookupException
+    {
+        long currentGeneration = getGeneration();
+
+        ResolvedInstance resolvedInstance = this.resolvedInstances.get(key);
+        if (resolvedInstance != null && resolvedInstance.generation == currentGeneration) {
+            return (T) resolvedInstance.instance;
+        }
+
+        T instance;
+        ComponentDescriptor<T> descriptor;
+
+        ComponentEntry<T> componentEntry = (ComponentEntry<T>) this.componentEntries.get(key);
+        if (componentEntry != null) {
+            instance = getComponentInstance(componentEntry, key);
+            descriptor = componentEntry.descriptor;
+        } else if (getParent() != null) {
+            if (isParentTracked()) {
+                instance = isMissing(key, currentGeneration) ? null : getParent().tryGetInstance(key);
+                if (instance == null) {
+                    setMissing(key, currentGeneration);
+                }
+            } else {
+                instance = required ? getParent().getInstance(key) : getParent().tryGetInstance(key);
+            }
+            if (instance == null) {
+                if (required) {
+                    throw new ComponentLookupException("Can't find descriptor for the component [" + key + "]");
+                }
+
+                return null;
+            }
+            // Parents which are not EmbeddableComponentManager don't tell when their components change
+            descriptor = isParentTracked() ? getParent().<T>getComponentDescriptor(key.getRoleType(), key.getHint())
+                : null;
+        } else if (required) {
+            throw new ComponentLookupException("Can't find descriptor for the component [" + key + "]");
+        } else {
+            return null;
+        }
+
+        if (descriptor != null && descriptor.getInstantiationStrategy() == ComponentInstantiationStrategy.SINGLETON) {
+            this.resolvedInstances.put(key, new ResolvedInstance(instance, currentGeneration));
+        }
+
+        return instance;
+    }
+
+    /**
+     * @return a value which changes each time a component is registered or unregistered in this component manager or
+     *         in one of its {@link EmbeddableComponentManager} parents
+     */
+    private long getGeneration()
+    {
+        long currentGeneration = this.generation.get();
+
+        if (getParent() instanceof EmbeddableComponentManager) {
+            currentGeneration += ((EmbeddableComponentManager) getParent()).getGeneration();
+        }
+
+        return currentGeneration;
+    }
+
+    /**
+     * @return true if all the parents are {@link EmbeddableComponentManager}s, i.e. their changes are reflected in
+     *         {@link #getGeneration()}
+     */
+    private boolean isParentTracked()
+    {
+        ComponentManager currentParent = getParent();
+
+        return currentParent == null || currentParent instanceof EmbeddableComponentManager
+            && ((EmbeddableComponentManager) currentParent).isParentTracked();
+    }
+
+    /**
+     * @param key the role type and hint of the component
+     * @param currentGeneration the current value of {@link #getGeneration()}
+     * @return true if the component has already been looked up in vain and nothing changed since then
+     */
+    private boolean isMissing(ComponentKey< ? > key, long currentGeneration)
+    {
+        Long missingGeneration = this.missingComponents.get(key);
+
+        return missingGeneration != null && missingGeneration == currentGeneration;
+    }
+
+    /**
+     * @param key the role type and hint of the component which could not be found
+     * @param lookupGeneration the value of {@link #getGeneration()} before the lookup
+     */
+    private void setMissing(ComponentKey< ? > key, long lookupGeneration)
+    {
+        if (isParentTracked()) {
+            // Keep the cache bounded, the misses which matter will quickly come back
+            if (this.missingComponents.size() >= MISSING_COMPONENTS_MAX) {
+                this.missingComponents.clear();
+            }
+
+            this.missingComponents.put(key, lookupGeneration);
+        }
+    }
+
+    /**
+     * Invalidate the resolved singleton instances and the missing components.
+     */
+    private void incrementGeneration()
+    {
+        this.generation.incrementAndGet();
+        this.missingComponents.clear();
+        this.resolvedInstances.clear();
+        this.resolvedInstanceMaps.clear();
+        this.resolvedInstanceLists.clear();
+        this.resolvedDescriptorLists.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned list is a copy which can be modified.
+     */
     @Override
     public <T> List<T> getInstanceList(Type role) throws ComponentLookupException
     {
+        return new ArrayList<T>(this.<T>getSharedInstanceList(role));
+    }
+
+    /**
+     * @param <T> the type of the components role
+     * @param role the type of the components role
+     * @return the immutable list of components, shared between the callers until the components change
+     * @throws ComponentLookupException if any error happen during component search
+     * @see #getInstanceList(Type)
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> getSharedInstanceList(Type role) throws ComponentLookupException
+    {
+        long currentGeneration = getGeneration();
+
+        ResolvedInstance resolvedList = this.resolvedInstanceLists.get(role);
+        if (resolvedList != null && resolvedList.generation == currentGeneration) {
+            return (List<T>) resolvedList.instance;
+        }
+
         // Reuse getInstanceMap to make sure to not return components from parent Component Manager overridden by this
         // Component Manager
-        Map<String, T> objects = getInstanceMap(role);
+        Map<String, T> objects = getSharedInstanceMap(role);
+
+        List<T> list =
+            objects.isEmpty() ? Collections.<T>emptyList() : Collections.unmodifiableList(new ArrayList<T>(objects
+                .values()));
 
-        return objects.isEmpty() ? Collections.<T> emptyList() : new ArrayList<T>(objects.values());
+        // The map is only cached when it contains only singletons
+        ResolvedInstance resolvedMap = this.resolvedInstanceMaps.get(role);
+        if (resolvedMap != null && resolvedMap.generation == currentGeneration) {
+            this.resolvedInstanceLists.put(role, new ResolvedInstance(list, currentGeneration));
+        }
+
+        return list;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned map is a copy which can be modified.
+     */
     @Override
-    @SuppressWarnings("unchecked")
     public <T> Map<String, T> getInstanceMap(Type role) throws ComponentLookupException
     {
-        Map<String, T> objects = new HashMap<String, T>();
+        return new HashMap<String, T>(this.<T>getSharedInstanceMap(role));
+    }
 
-        for (Map.Entry<RoleHint< ? >, ComponentEntry< ? >> entry : this.componentEntries.entrySet()) {
-            RoleHint< ? > roleHint = entry.getKey();
+    /**
+     * @param <T> the type of the components role
+     * @param role the type of the components role
+     * @return the immutable map of components, shared between the callers until the components change
+     * @throws ComponentLookupException if any error happen during component search
+     * @see #getInstanceMap(Type)
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Map<String, T> getSharedInstanceMap(Type role) throws ComponentLookupException
+    {
+        long currentGeneration = getGeneration();
 
-            if (role.equals(roleHint.getRoleType())) {
-                try {
-                    objects.put(roleHint.getHint(), getComponentInstance((ComponentEntry<T>) entry.getValue()));
-                } catch (Exception e) {
-                    throw new ComponentLookupException("Failed to lookup component [" + roleHint + "]", e);
-                }
+        ResolvedInstance resolvedMap = this.resolvedInstanceMaps.get(role);
+        if (resolvedMap != null && resolvedMap.generation == currentGeneration) {
+            return (Map<String, T>) resolvedMap.instance;
+        }
+
+        Map<String, T> objects = new HashMap<String, T>();
+
+        Map<String, ComponentEntry< ? >> entries = this.componentEntriesByRole.get(role);
+        if (entries != null) {
+            for (ComponentEntry< ? > entry : entries.values()) {
+                ComponentDescriptor< ? > descriptor = entry.descriptor;
+                objects.put(descriptor.getRoleHint(), getComponentInstance((ComponentEntry<T>) entry,
+                    new RoleHint<T>(role, descriptor.getRoleHint())));
             }
         }
 
@@ -199,9 +506,35 @@ public <T> Map<String, T> getInstanceMap(Type role) throws ComponentLookupExcept
             }
         }
 
+        objects = Collections.unmodifiableMap(objects);
+
+        // Components which are not singletons must be created again at each call
+        if (isSingletons(role)) {
+            this.resolvedInstanceMaps.put(role, new ResolvedInstance(objects, currentGeneration));
+        }
+
         return objects;
     }
 
+    /**
+     * @param role the role type
+     * @return true if all the components implementing the passed role are singletons and their changes are tracked
+     */
+    private boolean isSingletons(Type role)
+    {
+        if (!isParentTracked()) {
+            return false;
+        }
+
+        for (ComponentDescriptor< ? > descriptor : getSharedComponentDescriptorList(role)) {
+            if (descriptor.getInstantiationStrategy() != ComponentInstantiationStrategy.SINGLETON) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public <T> ComponentDescriptor<T> getComponentDescriptor(Type role, String hint)
@@ -220,15 +553,39 @@ public <T> ComponentDescriptor<T> getComponentDescriptor(Type role, String hint)
         return result;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned list is a copy which can be modified.
+     */
     @Override
-    @SuppressWarnings("unchecked")
     public <T> List<ComponentDescriptor<T>> getComponentDescriptorList(Type role)
     {
+        return new ArrayList<ComponentDescriptor<T>>(this.<T>getSharedComponentDescriptorList(role));
+    }
+
+    /**
+     * @param <T> the role class for which to return all component implementations
+     * @param role the role class for which to return all component implementations
+     * @return the immutable list of component descriptors, shared between the callers until the components change
+     * @see #getComponentDescriptorList(Type)
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<ComponentDescriptor<T>> getSharedComponentDescriptorList(Type role)
+    {
+        long currentGeneration = getGeneration();
+
+        ResolvedInstance resolvedList = this.resolvedDescriptorLists.get(role);
+        if (resolvedList != null && resolvedList.generation == currentGeneration) {
+            return (List<ComponentDescriptor<T>>) resolvedList.instance;
+        }
+
         Map<String, ComponentDescriptor<T>> descriptors = new HashMap<String, ComponentDescriptor<T>>();
 
-        for (Map.Entry<RoleHint< ? >, ComponentEntry< ? >> entry : this.componentEntries.entrySet()) {
-            if (entry.getKey().getRoleType().equals(role)) {
-                descriptors.put(entry.getKey().getHint(), (ComponentDescriptor<T>) entry.getValue().descriptor);
+        Map<String, ComponentEntry< ? >> entries = this.componentEntriesByRole.get(role);
+        if (entries != null) {
+            for (ComponentEntry< ? > entry : entries.values()) {
+                descriptors.put(entry.descriptor.getRoleHint(), (ComponentDescriptor<T>) entry.descriptor);
             }
         }
 
@@ -243,7 +600,14 @@ public <T> List<ComponentDescriptor<T>> getComponentDescriptorList(Type role)
             }
         }
 
-        return new ArrayList<ComponentDescriptor<T>>(descriptors.values());
+        List<ComponentDescriptor<T>> list =
+            Collections.unmodifiableList(new ArrayList<ComponentDescriptor<T>>(descriptors.values()));
+
+        if (isParentTracked()) {
+            this.resolvedDescriptorLists.put(role, new ResolvedInstance(list, currentGeneration));
+        }
+
+        return list;
     }
 
     @Override
@@ -268,14 +632,67 @@ public ComponentManager getParent()
     public void setParent(ComponentManager parentComponentManager)
     {
         this.parent = parentComponentManager;
+
+        incrementGeneration();
+    }
+
+    /**
+     * Create the singleton components which are not instantiated yet instead of waiting for them to be needed, so that
+     * the first requests don't have to pay for their initialization. Components which don't depend on each other are
+     * created in parallel and a component is only created once all the dependencies declared in its descriptor have
+     * been created. A warm up thread never waits for a component being created by another thread: the component it was
+     * creating is then created again later by the calling thread. Components annotated with {@link DisableWarmUp} and components registered in the parents are skipped.
+     * 
+     * @param threads the maximum number of components to create at the same time
+     * @return the time in milliseconds it took to create each component
+     * @since 4.3M2
+     */
+    public Map<ComponentKey< ? >, Long> warmUp(int threads)
+    {
+        List<ComponentDescriptor< ? >> descriptors = new ArrayList<ComponentDescriptor< ? >>();
+        for (ComponentEntry< ? > componentEntry : this.componentEntries.values()) {
+            ComponentDescriptor< ? > descriptor = componentEntry.descriptor;
+            if (componentEntry.instance == null
+                && descriptor.getInstantiationStrategy() == ComponentInstantiationStrategy.SINGLETON
+                && descriptor.getImplementation().getAnnotation(DisableWarmUp.class) == null) {
+                descriptors.add(descriptor);
+            }
+        }
+
+        long start = System.currentTimeMillis();
+
+        Map<ComponentKey< ? >, Long> times;
+        try {
+            times = new SingletonWarmUp(this, descriptors, this.logger).run(threads);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            this.logger.warn("Components warm up has been interrupted");
+
+            return Collections.emptyMap();
+        }
+
+        this.logger.info("Warmed up [{}] singleton components in [{}] ms", times.size(), System.currentTimeMillis()
+            - start);
+
+        return times;
     }
 
-    private <T> T createInstance(ComponentDescriptor<T> descriptor) throws Exception
+    private <T> T createInstance(ComponentEntry<T> componentEntry) throws Exception
     {
+        ComponentDescriptor<T> descriptor = componentEntry.descriptor;
+
+        // The fields and kinds of the dependencies are only resolved once per component
+        InjectionPlan injectionPlan = componentEntry.injectionPlan;
+        if (injectionPlan == null) {
+            injectionPlan = new InjectionPlan(descriptor);
+            componentEntry.injectionPlan = injectionPlan;
+        }
+
         T instance = descriptor.getImplementation().newInstance();
 
         // Set each dependency
-        for (ComponentDependency< ? > dependency : descriptor.getComponentDependencies()) {
+        for (InjectionPlan.Injection injection : injectionPlan.getInjections()) {
 
             // TODO: Handle dependency cycles
 
@@ -291,30 +708,33 @@ private <T> T createInstance(ComponentDescriptor<T> descriptor) throws Exception
             // Step 3: No producer found, handle scalar and collection types by looking up standard component
             // implementations.
 
-            Class< ? > dependencyRoleClass = ReflectionUtils.getTypeClass(dependency.getRoleType());
-
-            if (dependencyRoleClass.isAssignableFrom(Logger.class)) {
-                fieldValue = createLogger(instance.getClass());
-            } else if (dependencyRoleClass.isAssignableFrom(List.class)) {
-                fieldValue = getInstanceList(ReflectionUtils.getLastTypeGenericArgument(dependency.getRoleType()));
-            } else if (dependencyRoleClass.isAssignableFrom(Map.class)) {
-                fieldValue = getInstanceMap(ReflectionUtils.getLastTypeGenericArgument(dependency.getRoleType()));
-            } else if (dependencyRoleClass.isAssignableFrom(Provider.class)) {
-                try {
-                    fieldValue = getInstance(dependency.getRoleType(), dependency.getRoleHint());
-                } catch (ComponentLookupException e) {
-                    fieldValue =
-                        new GenericProvider<Object>(this, new RoleHint<Object>(
-                            ReflectionUtils.getLastTypeGenericArgument(dependency.getRoleType()),
-                            dependency.getRoleHint()));
-                }
-            } else {
-                fieldValue = getInstance(dependency.getRoleType(), dependency.getRoleHint());
+            switch (injection.getKind()) {
+                case LOGGER:
+                    fieldValue = createLogger(instance.getClass());
+                    break;
+                case LIST:
+                    // Each instance get its own copy of the list
+                    fieldValue = getInstanceList(injection.getGenericArgument());
+                    break;
+                case MAP:
+                    fieldValue = getInstanceMap(injection.getGenericArgument());
+                    break;
+                case PROVIDER:
+                    fieldValue = tryGetInstance(injection.getKey());
+                    if (fieldValue == null) {
+                        fieldValue =
+                            new GenericProvider<Object>(this, new RoleHint<Object>(injection.getGenericArgument(),
+                                injection.getKey().getHint()));
+                    }
+                    break;
+                default:
+                    fieldValue = getInstance(injection.getKey());
+                    break;
             }
 
             // Set the field by introspection
             if (fieldValue != null) {
-                ReflectionUtils.setFieldValue(instance, dependency.getName(), fieldValue);
+                injection.inject(instance, fieldValue);
             }
         }
 
@@ -342,14 +762,12 @@ protected <T> T getComponentInstance(RoleHint<T> roleHint) throws ComponentLooku
         ComponentEntry<T> componentEntry = (ComponentEntry<T>) this.componentEntries.get(roleHint);
 
         if (componentEntry != null) {
-            try {
-                instance = getComponentInstance(componentEntry);
-            } catch (Throwable e) {
-                throw new ComponentLookupException(String.format("Failed to lookup component [%s] identifier by [%s]",
-                    componentEntry.descriptor.getImplementation().getName(), roleHint.toString()), e);
-            }
+            instance = getComponentInstance(componentEntry, roleHint);
         } else {
-            if (getParent() != null) {
+            if (getParent() != null && isParentTracked()) {
+                // Benefit from the missing components cache
+                instance = getInstance(roleHint);
+            } else if (getParent() != null) {
                 instance = getParent().getInstance(roleHint.getRoleType(), roleHint.getHint());
             } else {
                 throw new ComponentLookupException("Can't find descriptor for the component [" + roleHint + "]");
@@ -359,6 +777,17 @@ protected <T> T getComponentInstance(RoleHint<T> roleHint) throws ComponentLooku
         return instance;
     }
 
+    private <T> T getComponentInstance(ComponentEntry<T> componentEntry, ComponentKey<T> key)
+        throws ComponentLookupException
+    {
+        try {
+            return getComponentInstance(componentEntry);
+        } catch (Throwable e) {
+            throw new ComponentLookupException(String.format("Failed to lookup component [%s] identifier by [%s]",
+                componentEntry.descriptor.getImplementation().getName(), key.toString()), e);
+        }
+    }
+
     private <T> T getComponentInstance(ComponentEntry<T> componentEntry) throws Exception
     {
         T instance;
@@ -369,21 +798,62 @@ private <T> T getComponentInstance(ComponentEntry<T> componentEntry) throws Exce
             if (componentEntry.instance != null) {
                 // If the instance exists return it
                 instance = componentEntry.instance;
+            } else if (WarmUpThread.isWarmUpThread()) {
+                instance = getSingletonWithoutWaiting(componentEntry);
             } else {
-                synchronized (componentEntry) {
-                    // Recheck in case it has been created while we were waiting
-                    if (componentEntry.instance != null) {
-                        instance = componentEntry.instance;
-                    } else {
-                        componentEntry.instance = createInstance(descriptor);
-                        instance = componentEntry.instance;
-                    }
+                componentEntry.lock.lock();
+                try {
+                    instance = getSingleton(componentEntry);
+                } finally {
+                    componentEntry.lock.unlock();
                 }
             }
         } else {
-            instance = createInstance(descriptor);
+            instance = createInstance(componentEntry);
+        }
+
+        return instance;
+    }
+
+    /**
+     * Get the singleton instance from a warm up thread, without waiting for another thread creating it.
+     */
+    private <T> T getSingletonWithoutWaiting(ComponentEntry<T> componentEntry) throws Exception
+    {
+        if (!componentEntry.lock.tryLock()) {
+            WarmUpThread.setConflict();
+
+            throw new ComponentLookupException("Component [" + componentEntry.descriptor.getImplementation().getName()
+                + "] is being created by another thread");
+        }
+
+        try {
+            return getSingleton(componentEntry);
+        } finally {
+            componentEntry.lock.unlock();
+        }
+    }
+
+    /**
+     * Get or create the singleton instance. Must be called while holding the lock of the entry.
+     */
+    private <T> T getSingleton(ComponentEntry<T> componentEntry) throws Exception
+    {
+        // Recheck in case it has been created while we were waiting
+        if (componentEntry.instance != null) {
+            return componentEntry.instance;
+        }
+
+        T instance = createInstance(componentEntry);
+
+        // Don't keep an instance which might have missed a component being created by another warm up thread
+        if (WarmUpThread.hasConflict()) {
+            throw new ComponentLookupException("Component [" + componentEntry.descriptor.getImplementation().getName()
+                + "] depends on a component being created by another thread");
         }
 
+        componentEntry.instance = instance;
+
         return instance;
     }
 
@@ -412,19 +882,94 @@ public <T> void registerComponent(ComponentDescriptor<T> componentDescriptor, T
         addComponent(roleHint, new DefaultComponentDescriptor<T>(componentDescriptor), componentInstance);
     }
 
+    /**
+     * @param role the role type
+     * @return the registered components implementing the passed role indexed by hint
+     */
+    private Map<String, ComponentEntry< ? >> getComponentEntries(Type role)
+    {
+        Map<String, ComponentEntry< ? >> entries = this.componentEntriesByRole.get(role);
+        if (entries == null) {
+            synchronized (this.componentEntriesByRole) {
+                entries = this.componentEntriesByRole.get(role);
+                if (entries == null) {
+                    entries = new ConcurrentHashMap<String, ComponentEntry< ? >>();
+                    this.componentEntriesByRole.put(role, entries);
+                }
+            }
+        }
+
+        return entries;
+    }
+
     private <T> void addComponent(RoleHint<T> roleHint, ComponentDescriptor<T> descriptor, T instance)
+    {
+        synchronized (this.registryLock) {
+            putComponentEntry(roleHint, descriptor, instance);
+
+            incrementGeneration();
+        }
+
+        // Send event about component registration
+        if (this.eventManager != null) {
+            this.eventManager.notifyComponentRegistered(descriptor, this);
+        }
+    }
+
+    private <T> void putComponentEntry(RoleHint<T> roleHint, ComponentDescriptor<T> descriptor, T instance)
     {
         ComponentEntry<T> componentEntry = new ComponentEntry<T>(descriptor, instance);
 
         // Register new component
         this.componentEntries.put(roleHint, componentEntry);
+        getComponentEntries(roleHint.getRoleType()).put(roleHint.getHint(), componentEntry);
+    }
 
-        // Send event about component registration
+    @Override
+    public void registerComponents(List<ComponentDescriptor< ? >> componentDescriptors)
+    {
+        List<ComponentEntry< ? >> removedEntries = new ArrayList<ComponentEntry< ? >>();
+        // Indexed by role and hint so that a component registered twice in the same batch is notified only once
+        Map<RoleHint< ? >, ComponentDescriptor< ? >> addedDescriptors =
+            new LinkedHashMap<RoleHint< ? >, ComponentDescriptor< ? >>();
+
+        synchronized (this.registryLock) {
+            for (ComponentDescriptor< ? > componentDescriptor : componentDescriptors) {
+                RoleHint< ? > roleHint = getRoleHint(componentDescriptor);
+
+                // Remove any existing component associated to the provided roleHint
+                ComponentEntry< ? > removedEntry = removeComponentEntry(roleHint);
+                if (removedEntry != null && !addedDescriptors.containsKey(roleHint)) {
+                    removedEntries.add(removedEntry);
+                }
+
+                addedDescriptors.put(roleHint, putComponentEntry(componentDescriptor));
+            }
+
+            incrementGeneration();
+        }
+
+        List<ComponentDescriptor< ? >> removedDescriptors = releaseComponentEntries(removedEntries);
+
+        // Send events about component unregistration and registration
         if (this.eventManager != null) {
-            this.eventManager.notifyComponentRegistered(descriptor, this);
+            if (!removedDescriptors.isEmpty()) {
+                this.eventManager.notifyComponentsUnregistered(removedDescriptors, this);
+            }
+            this.eventManager.notifyComponentsRegistered(
+                new ArrayList<ComponentDescriptor< ? >>(addedDescriptors.values()), this);
         }
     }
 
+    private <T> ComponentDescriptor<T> putComponentEntry(ComponentDescriptor<T> componentDescriptor)
+    {
+        ComponentDescriptor<T> descriptor = new DefaultComponentDescriptor<T>(componentDescriptor);
+
+        putComponentEntry(getRoleHint(componentDescriptor), descriptor, null);
+
+        return descriptor;
+    }
+
     // Remove
 
     @Override
@@ -474,11 +1019,66 @@ public void release(Object component) throws ComponentLifecycleException
         }
     }
 
+    @Override
+    public void unregisterComponents(List<ComponentDescriptor< ? >> componentDescriptors)
+    {
+        List<ComponentEntry< ? >> removedEntries = new ArrayList<ComponentEntry< ? >>();
+
+        synchronized (this.registryLock) {
+            for (ComponentDescriptor< ? > componentDescriptor : componentDescriptors) {
+                RoleHint< ? > roleHint = getRoleHint(componentDescriptor);
+
+                // Only remove the component if it's the one described by the passed descriptor
+                ComponentEntry< ? > componentEntry = this.componentEntries.get(roleHint);
+                if (componentEntry != null && ObjectUtils.equals(componentEntry.descriptor, componentDescriptor)) {
+                    removedEntries.add(removeComponentEntry(roleHint));
+                }
+            }
+
+            if (!removedEntries.isEmpty()) {
+                incrementGeneration();
+            }
+        }
+
+        List<ComponentDescriptor< ? >> removedDescriptors = releaseComponentEntries(removedEntries);
+
+        // Send event about component unregistration
+        if (this.eventManager != null && !removedDescriptors.isEmpty()) {
+            this.eventManager.notifyComponentsUnregistered(removedDescriptors, this);
+        }
+    }
+
+    /**
+     * Release the passed removed entries.
+     * 
+     * @param removedEntries the entries which have been removed from the registered components
+     * @return the descriptors of the removed entries
+     */
+    private List<ComponentDescriptor< ? >> releaseComponentEntries(List<ComponentEntry< ? >> removedEntries)
+    {
+        List<ComponentDescriptor< ? >> removedDescriptors =
+            new ArrayList<ComponentDescriptor< ? >>(removedEntries.size());
+        for (ComponentEntry< ? > removedEntry : removedEntries) {
+            try {
+                releaseComponentEntry(removedEntry);
+            } catch (Exception e) {
+                logger.warn("Instance released but disposal failed. Some resources may not have been released.", e);
+            }
+
+            if (removedEntry.descriptor != null) {
+                removedDescriptors.add(removedEntry.descriptor);
+            }
+        }
+
+        return removedDescriptors;
+    }
+
     private void releaseInstance(ComponentEntry< ? > componentEntry) throws ComponentLifecycleException
     {
         // Make sure the singleton component instance can't be "lost" (impossible to dispose because returned but not
         // stored).
-        synchronized (componentEntry) {
+        componentEntry.lock.lock();
+        try {
             Object instance = componentEntry.instance;
 
             // Give a chance to the component to clean up
@@ -487,6 +1087,8 @@ private void releaseInstance(ComponentEntry< ? > componentEntry) throws Componen
             }
 
             componentEntry.instance = null;
+        } finally {
+            componentEntry.lock.unlock();
         }
     }
 
@@ -500,7 +1102,14 @@ private void removeComponent(RoleHint< ? > roleHint) throws ComponentLifecycleEx
     {
         // Make sure to remove the entry from the map before destroying it to reduce at the minimum the risk of
         // lookupping something invalid
-        ComponentEntry< ? > componentEntry = this.componentEntries.remove(roleHint);
+        ComponentEntry< ? > componentEntry;
+        synchronized (this.registryLock) {
+            componentEntry = removeComponentEntry(roleHint);
+
+            if (componentEntry != null) {
+                incrementGeneration();
+            }
+        }
 
         if (componentEntry != null) {
             ComponentDescriptor< ? > oldDescriptor = componentEntry.descriptor;
@@ -515,6 +1124,21 @@ private void removeComponent(RoleHint< ? > roleHint) throws ComponentLifecycleEx
         }
     }
 
+    /**
+     * @param roleHint the role type and hint of the component to remove
+     * @return the removed entry or null if no component was registered with the passed role type and hint
+     */
+    private ComponentEntry< ? > removeComponentEntry(RoleHint< ? > roleHint)
+    {
+        ComponentEntry< ? > componentEntry = this.componentEntries.remove(roleHint);
+
+        if (componentEntry != null) {
+            getComponentEntries(roleHint.getRoleType()).remove(roleHint.getHint());
+        }
+
+        return componentEntry;
+    }
+
     /**
      * Note: This method shouldn't exist but register/unregister methods should throw a
      * {@link ComponentLifecycleException} but that would break backward compatibility to add it.
@@ -96,7 +96,8 @@ public T get()
                 // since 4.0M1, retro-compatibility (generic type used to not be taken into account)
                 component = this.componentManager.getInstance(roleClass, this.roleHint.getHint());
             } else {
-                component = this.componentManager.getInstance(this.roleHint.getRoleType(), this.roleHint.getHint());
+                // The role hint is a ComponentKey so the component manager can directly reuse it
+                component = this.componentManager.getInstance(this.roleHint);
             }
         } catch (Exception e) {
             throw new RuntimeException("Failed to get [" + this.roleHint + "]", e);
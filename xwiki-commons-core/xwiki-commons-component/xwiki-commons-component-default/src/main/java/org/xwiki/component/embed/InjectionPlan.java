@@ -0,0 +1,226 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.embed;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Provider;
+
+import org.slf4j.Logger;
+import org.xwiki.component.descriptor.ComponentDependency;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.manager.ComponentKey;
+import org.xwiki.component.util.ReflectionUtils;
+
+/**
+ * The dependencies to inject in the instances of a component. The plan is computed once per component descriptor so
+ * that the fields and the kind of each dependency don't have to be resolved again for each new instance.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+class InjectionPlan
+{
+    /**
+     * The way the value of a dependency is resolved.
+     * 
+     * @version $Id$
+     */
+    enum Kind
+    {
+        /**
+         * A {@link Logger} dedicated to the component.
+         */
+        LOGGER,
+
+        /**
+         * A {@link List} of all the components implementing a role.
+         */
+        LIST,
+
+        /**
+         * A {@link Map} of all the components implementing a role indexed by hint.
+         */
+        MAP,
+
+        /**
+         * A {@link Provider} component or a default provider when none is registered.
+         */
+        PROVIDER,
+
+        /**
+         * A component.
+         */
+        COMPONENT
+    }
+
+    /**
+     * A dependency to inject.
+     * 
+     * @version $Id$
+     */
+    static class Injection
+    {
+        /**
+         * The field to set or null if the component has no field with the dependency name.
+         */
+        private final Field field;
+
+        /**
+         * The way the value of the dependency is resolved.
+         */
+        private final Kind kind;
+
+        /**
+         * The role type and hint of the dependency.
+         */
+        private final ComponentKey<Object> key;
+
+        /**
+         * The role of the components in the {@link List}, {@link Map} or {@link Provider}.
+         */
+        private final Type genericArgument;
+
+        /**
+         * @param implementation the class of the component
+         * @param dependency the dependency to inject
+         */
+        Injection(Class< ? > implementation, ComponentDependency< ? > dependency)
+        {
+            this.field = getField(implementation, dependency.getName());
+            this.key = ComponentKey.get(dependency.getRoleType(), dependency.getRoleHint());
+
+            Class< ? > dependencyRoleClass = ReflectionUtils.getTypeClass(dependency.getRoleType());
+
+            if (dependencyRoleClass.isAssignableFrom(Logger.class)) {
+                this.kind = Kind.LOGGER;
+            } else if (dependencyRoleClass.isAssignableFrom(List.class)) {
+                this.kind = Kind.LIST;
+            } else if (dependencyRoleClass.isAssignableFrom(Map.class)) {
+                this.kind = Kind.MAP;
+            } else if (dependencyRoleClass.isAssignableFrom(Provider.class)) {
+                this.kind = Kind.PROVIDER;
+            } else {
+                this.kind = Kind.COMPONENT;
+            }
+
+            this.genericArgument =
+                this.kind == Kind.LOGGER || this.kind == Kind.COMPONENT ? null : ReflectionUtils
+                    .getLastTypeGenericArgument(dependency.getRoleType());
+        }
+
+        /**
+         * Find the field the same way {@link ReflectionUtils#setFieldValue(Object, String, Object)} does.
+         * 
+         * @param implementation the class of the component
+         * @param fieldName the name of the field
+         * @return the field, made accessible, or null if none could be found
+         */
+        private static Field getField(Class< ? > implementation, String fieldName)
+        {
+            Class< ? > targetClass = implementation;
+            while (targetClass != null) {
+                for (Field declaredField : targetClass.getDeclaredFields()) {
+                    if (declaredField.getName().equalsIgnoreCase(fieldName)) {
+                        declaredField.setAccessible(true);
+
+                        return declaredField;
+                    }
+                }
+                targetClass = targetClass.getSuperclass();
+            }
+
+            return null;
+        }
+
+        /**
+         * @return the way the value of the dependency is resolved
+         */
+        Kind getKind()
+        {
+            return this.kind;
+        }
+
+        /**
+         * @return the role type and hint of the dependency
+         */
+        ComponentKey<Object> getKey()
+        {
+            return this.key;
+        }
+
+        /**
+         * @return the role of the components in the {@link List}, {@link Map} or {@link Provider}
+         */
+        Type getGenericArgument()
+        {
+            return this.genericArgument;
+        }
+
+        /**
+         * @param instance the component instance
+         * @param value the value of the dependency
+         */
+        void inject(Object instance, Object value)
+        {
+            if (this.field != null) {
+                try {
+                    this.field.set(instance, value);
+                } catch (Exception e) {
+                    // This shouldn't happen but if it does then the Component manager will not function properly
+                    // and we need to abort.
+                    throw new RuntimeException("Failed to set field [" + this.field.getName() + "] in instance of ["
+                        + instance.getClass().getName() + "]", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * The dependencies to inject.
+     */
+    private final List<Injection> injections;
+
+    /**
+     * @param descriptor the descriptor of the component
+     */
+    InjectionPlan(ComponentDescriptor< ? > descriptor)
+    {
+        List<Injection> list = new ArrayList<Injection>();
+        for (ComponentDependency< ? > dependency : descriptor.getComponentDependencies()) {
+            list.add(new Injection(descriptor.getImplementation(), dependency));
+        }
+
+        this.injections = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * @return the dependencies to inject
+     */
+    List<Injection> getInjections()
+    {
+        return this.injections;
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.embed;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.manager.ComponentKey;
+import org.xwiki.component.manager.ComponentManager;
+
+/**
+ * Create a set of singleton components in parallel while respecting their declared dependencies: a component is only
+ * created once all the components it depends on have been created. Components which are part of a dependency cycle are
+ * created sequentially at the end.
+ * <p>
+ * Components can also look up other components when initialized, which would deadlock if one of them was being created
+ * by another warm up thread and looking up the first one in turn. So a warm up thread never waits for a component being
+ * created by another thread (see {@link WarmUpThread}): the component it was creating is given back to the calling
+ * thread, which creates it once the warm up threads are done with the components they were creating.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+class SingletonWarmUp
+{
+    /**
+     * The name of the threads used to create the components.
+     */
+    private static final String THREAD_NAME = "Component warm up ";
+
+    /**
+     * A component to create.
+     * 
+     * @version $Id$
+     */
+    private static class Node
+    {
+        /**
+         * The identifier of the component.
+         */
+        private final ComponentKey< ? > key;
+
+        /**
+         * The components which depend on this component.
+         */
+        private final Set<Node> dependents = new LinkedHashSet<Node>();
+
+        /**
+         * The components this component depends on.
+         */
+        private final Set<Node> dependencies = new LinkedHashSet<Node>();
+
+        /**
+         * The number of dependencies not yet created.
+         */
+        private final AtomicInteger pendingDependencies = new AtomicInteger();
+
+        /**
+         * @param key the identifier of the component
+         */
+        Node(ComponentKey< ? > key)
+        {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Indicate to the calling thread that all the components have been created.
+     */
+    private static final Node END = new Node(null);
+
+    /**
+     * The component manager used to create the components.
+     */
+    private final ComponentManager componentManager;
+
+    /**
+     * The logger to log.
+     */
+    private final Logger logger;
+
+    /**
+     * The components to create.
+     */
+    private final Map<ComponentKey< ? >, Node> nodes = new LinkedHashMap<ComponentKey< ? >, Node>();
+
+    /**
+     * The time in milliseconds it took to create each component.
+     */
+    private final Map<ComponentKey< ? >, Long> times =
+        Collections.synchronizedMap(new LinkedHashMap<ComponentKey< ? >, Long>());
+
+    /**
+     * The number of components not yet created.
+     */
+    private final AtomicInteger pendingNodes = new AtomicInteger();
+
+    /**
+     * The threads creating the components.
+     */
+    private ExecutorService executor;
+
+    /**
+     * The components which could not be created by the warm up threads because of a conflict with another thread.
+     */
+    private final BlockingQueue<Node> serialNodes = new LinkedBlockingQueue<Node>();
+
+    /**
+     * @param componentManager the component manager used to create the components
+     * @param descriptors the descriptors of the singleton components to create
+     * @param logger the logger to log
+     */
+    SingletonWarmUp(ComponentManager componentManager, Collection<ComponentDescriptor< ? >> descriptors,
+        Logger logger)
+    {
+        this.componentManager = componentManager;
+        this.logger = logger;
+
+        Map<Type, List<Node>> nodesByRole = new HashMap<Type, List<Node>>();
+        for (ComponentDescriptor< ? > descriptor : descriptors) {
+            Node node = new Node(ComponentKey.get(descriptor.getRoleType(), descriptor.getRoleHint()));
+            this.nodes.put(node.key, node);
+
+            List<Node> roleNodes = nodesByRole.get(descriptor.getRoleType());
+            if (roleNodes == null) {
+                roleNodes = new ArrayList<Node>();
+                nodesByRole.put(descriptor.getRoleType(), roleNodes);
+            }
+            roleNodes.add(node);
+        }
+
+        for (ComponentDescriptor< ? > descriptor : descriptors) {
+            Node node = this.nodes.get(ComponentKey.get(descriptor.getRoleType(), descriptor.getRoleHint()));
+            for (InjectionPlan.Injection injection : new InjectionPlan(descriptor).getInjections()) {
+                addDependencies(node, injection, nodesByRole);
+            }
+        }
+    }
+
+    /**
+     * @param node the component
+     * @param injection a dependency of the component
+     * @param nodesByRole the components to create indexed by role
+     */
+    private void addDependencies(Node node, InjectionPlan.Injection injection, Map<Type, List<Node>> nodesByRole)
+    {
+        switch (injection.getKind()) {
+            case COMPONENT:
+                addDependency(node, this.nodes.get(injection.getKey()));
+                break;
+            case LIST:
+            case MAP:
+                List<Node> roleNodes = nodesByRole.get(injection.getGenericArgument());
+                if (roleNodes != null) {
+                    for (Node dependency : roleNodes) {
+                        addDependency(node, dependency);
+                    }
+                }
+                break;
+            default:
+                // Loggers don't depend on any component and providers are resolved lazily
+                break;
+        }
+    }
+
+    /**
+     * @param node the component
+     * @param dependency the dependency of the component, null if not part of the components to create
+     */
+    private void addDependency(Node node, Node dependency)
+    {
+        if (dependency != null && dependency != node && node.dependencies.add(dependency)) {
+            dependency.dependents.add(node);
+            node.pendingDependencies.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param threads the maximum number of components to create at the same time
+     * @return the time in milliseconds it took to create each component
+     * @throws InterruptedException when interrupted while waiting for the components to be created
+     */
+    Map<ComponentKey< ? >, Long> run(int threads) throws InterruptedException
+    {
+        List<Node> ordered = sort();
+
+        this.pendingNodes.set(ordered.size());
+        final AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, THREAD_NAME + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+
+        try {
+            if (ordered.isEmpty()) {
+                this.serialNodes.add(END);
+            }
+
+            for (Node node : ordered) {
+                if (node.pendingDependencies.get() == 0) {
+                    schedule(node);
+                }
+            }
+
+            for (Node node = this.serialNodes.take(); node != END; node = this.serialNodes.take()) {
+                try {
+                    create(node, false);
+                } finally {
+                    created(node);
+                }
+            }
+        } finally {
+            this.executor.shutdown();
+        }
+
+        // Create what's left (components part of or depending on a dependency cycle)
+        for (Node node : this.nodes.values()) {
+            if (node.pendingDependencies.get() > 0) {
+                create(node, false);
+            }
+        }
+
+        return new LinkedHashMap<ComponentKey< ? >, Long>(this.times);
+    }
+
+    /**
+     * @return the components which are not part of a dependency cycle in topological order
+     */
+    private List<Node> sort()
+    {
+        Map<Node, Integer> pending = new HashMap<Node, Integer>();
+        List<Node> ordered = new ArrayList<Node>(this.nodes.size());
+        for (Node node : this.nodes.values()) {
+            pending.put(node, node.dependencies.size());
+            if (node.dependencies.isEmpty()) {
+                ordered.add(node);
+            }
+        }
+
+        for (int i = 0; i < ordered.size(); ++i) {
+            for (Node dependent : ordered.get(i).dependents) {
+                int count = pending.get(dependent) - 1;
+                pending.put(dependent, count);
+                if (count == 0) {
+                    ordered.add(dependent);
+                }
+            }
+        }
+
+        return ordered;
+    }
+
+    /**
+     * Create the passed component in a separate thread and then schedule its dependents which are ready.
+     * 
+     * @param node the component to create
+     */
+    private void schedule(final Node node)
+    {
+        this.executor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                boolean created = true;
+                try {
+                    created = create(node, true);
+                } finally {
+                    if (created) {
+                        created(node);
+                    } else {
+                        serialNodes.add(node);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Schedule the dependents of the passed component which are ready.
+     * 
+     * @param node the component which has been created
+     */
+    private void created(Node node)
+    {
+        try {
+            for (Node dependent : node.dependents) {
+                if (dependent.pendingDependencies.decrementAndGet() == 0) {
+                    schedule(dependent);
+                }
+            }
+        } finally {
+            if (this.pendingNodes.decrementAndGet() == 0) {
+                this.serialNodes.add(END);
+            }
+        }
+    }
+
+    /**
+     * @param node the component to create
+     * @param warmUpThread true if the component is created by a warm up thread
+     * @return false if the component has to be created again by the calling thread because of a conflict with another
+     *         warm up thread
+     */
+    private boolean create(Node node, boolean warmUpThread)
+    {
+        long start = System.currentTimeMillis();
+
+        boolean conflict = false;
+        if (warmUpThread) {
+            WarmUpThread.start();
+        }
+        try {
+            this.componentManager.getInstance(node.key.getRoleType(), node.key.getHint());
+        } catch (Exception e) {
+            if (!WarmUpThread.hasConflict()) {
+                this.logger.warn("Failed to warm up component [{}]: {}", node.key, e.getMessage());
+            }
+        } finally {
+            if (warmUpThread) {
+                conflict = WarmUpThread.stop();
+            }
+        }
+
+        if (conflict) {
+            this.logger.debug("Component [{}] will be created by the calling thread", node.key);
+
+            return false;
+        }
+
+        long time = System.currentTimeMillis() - start;
+        this.times.put(node.key, time);
+
+        this.logger.debug("Warmed up component [{}] in [{}] ms", node.key, time);
+
+        return true;
+    }
+}
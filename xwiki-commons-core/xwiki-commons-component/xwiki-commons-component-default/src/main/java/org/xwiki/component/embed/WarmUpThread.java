@@ -0,0 +1,91 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.embed;
+
+/**
+ * Keep track of the state of the current warm up thread. A warm up thread never waits for a component being created by
+ * another thread since it could be waiting for the current thread in turn: the lookup fails instead and the conflict is
+ * remembered so that the components being created by the current thread, which might be missing the looked up
+ * component, are not kept and are created again later by the thread which started the warm up.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+final class WarmUpThread
+{
+    /**
+     * Null when the current thread is not a warm up thread, true once a conflict happened.
+     */
+    private static final ThreadLocal<Boolean> CONFLICT = new ThreadLocal<Boolean>();
+
+    /**
+     * Utility class.
+     */
+    private WarmUpThread()
+    {
+    }
+
+    /**
+     * Indicate that the current thread starts creating a component as a warm up thread.
+     */
+    static void start()
+    {
+        CONFLICT.set(Boolean.FALSE);
+    }
+
+    /**
+     * Indicate that the current thread is done creating a component as a warm up thread.
+     * 
+     * @return true if the component could not be created because of a conflict with another thread
+     */
+    static boolean stop()
+    {
+        boolean conflict = hasConflict();
+
+        CONFLICT.remove();
+
+        return conflict;
+    }
+
+    /**
+     * @return true if the current thread is creating a component as a warm up thread
+     */
+    static boolean isWarmUpThread()
+    {
+        return CONFLICT.get() != null;
+    }
+
+    /**
+     * Indicate that the current thread failed to get a component being created by another thread.
+     */
+    static void setConflict()
+    {
+        CONFLICT.set(Boolean.TRUE);
+    }
+
+    /**
+     * @return true if the current thread failed to get a component being created by another thread since it started
+     *         creating the current component
+     */
+    static boolean hasConflict()
+    {
+        return Boolean.TRUE.equals(CONFLICT.get());
+    }
+}
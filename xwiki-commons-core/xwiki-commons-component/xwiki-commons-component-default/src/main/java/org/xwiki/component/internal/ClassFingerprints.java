@@ -0,0 +1,166 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.internal;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URL;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compute the fingerprint of the classes introspected to create the descriptors of a component implementation: the
+ * implementation itself, its super classes and all the interfaces they implement. Each class is located through its
+ * class loader and fingerprinted by the size and last modification date of the jar containing it, or of its class file
+ * when it's loaded from a directory. Classes loaded by the bootstrap class loader are ignored. Can be called from
+ * several threads.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+class ClassFingerprints
+{
+    /**
+     * Separator between the fingerprints of the locations of a class hierarchy.
+     */
+    private static final char SEPARATOR = ';';
+
+    /**
+     * The URL protocol of a class file located in a directory.
+     */
+    private static final String FILE_PROTOCOL = "file";
+
+    /**
+     * The fingerprint of the location of each class, indexed by class.
+     */
+    private final Map<Class< ? >, String> classFingerprints = new ConcurrentHashMap<Class< ? >, String>();
+
+    /**
+     * The fingerprint of the jars already met, indexed by path. Jars are shared by a lot of classes.
+     */
+    private final Map<String, String> jarFingerprints = new ConcurrentHashMap<String, String>();
+
+    /**
+     * @param implementation the component implementation
+     * @return the fingerprint of the classes introspected to create the component descriptors, null if one of them is
+     *         not located in a local jar or class file
+     */
+    String getFingerprint(Class< ? > implementation)
+    {
+        Set<Class< ? >> classes = new LinkedHashSet<Class< ? >>();
+        Class< ? > superClass = implementation;
+        while (superClass != null) {
+            addInterfaces(superClass, classes);
+            superClass = superClass.getSuperclass();
+        }
+
+        // Most of the classes of a hierarchy are usually located in the same jars
+        Set<String> fingerprints = new LinkedHashSet<String>();
+        for (Class< ? > type : classes) {
+            String fingerprint = getClassFingerprint(type);
+            if (fingerprint == null) {
+                return null;
+            }
+            fingerprints.add(fingerprint);
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (String fingerprint : fingerprints) {
+            if (fingerprint.length() > 0) {
+                builder.append(fingerprint).append(SEPARATOR);
+            }
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * @param type the class or interface to add
+     * @param classes the classes where to add the passed type and all the interfaces it extends
+     */
+    private void addInterfaces(Class< ? > type, Set<Class< ? >> classes)
+    {
+        if (classes.add(type)) {
+            for (Class< ? > interfaceClass : type.getInterfaces()) {
+                addInterfaces(interfaceClass, classes);
+            }
+        }
+    }
+
+    /**
+     * @param type the class
+     * @return the fingerprint of the location of the class, empty for a class loaded by the bootstrap class loader and
+     *         null if the class is not located in a local jar or class file
+     */
+    private String getClassFingerprint(Class< ? > type)
+    {
+        String fingerprint = this.classFingerprints.get(type);
+        if (fingerprint == null) {
+            if (type.getClassLoader() == null) {
+                fingerprint = "";
+            } else {
+                URL resource = type.getClassLoader().getResource(type.getName().replace('.', '/') + ".class");
+                fingerprint = resource != null ? getResourceFingerprint(resource) : null;
+            }
+
+            if (fingerprint == null) {
+                return null;
+            }
+
+            this.classFingerprints.put(type, fingerprint);
+        }
+
+        return fingerprint;
+    }
+
+    /**
+     * @param resource the URL of a class file
+     * @return the fingerprint of the jar or class file, null if the resource is not a local file
+     */
+    private String getResourceFingerprint(URL resource)
+    {
+        File jarFile = IndexedJar.getJarFile(resource);
+        if (jarFile != null) {
+            String path = jarFile.getAbsolutePath();
+            String fingerprint = this.jarFingerprints.get(path);
+            if (fingerprint == null) {
+                fingerprint = path + '-' + IndexedJar.getFingerprint(jarFile);
+                this.jarFingerprints.put(path, fingerprint);
+            }
+
+            return fingerprint;
+        }
+
+        if (FILE_PROTOCOL.equals(resource.getProtocol())) {
+            try {
+                File classFile = new File(new URI(resource.toString()));
+                if (classFile.isFile()) {
+                    return classFile.getAbsolutePath() + '-' + IndexedJar.getFingerprint(classFile);
+                }
+            } catch (Exception e) {
+                // Not a valid local file URL
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xwiki.component.descriptor.ComponentDependency;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.descriptor.DefaultComponentDependency;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.util.DefaultParameterizedType;
+
+/**
+ * Encode and decode the component descriptors of a component implementation so that they can be stored in a
+ * {@link ComponentDescriptorIndex} and restored without introspecting the implementation annotations.
+ * <p>
+ * Only plain classes and parameterized types are supported as role types. Descriptors using any other kind of type
+ * (wildcards, type variables, arrays of generic types) or custom descriptor/dependency implementations are not
+ * encodable and are always created through introspection.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+public final class ComponentDescriptorCodec
+{
+    /**
+     * Marker for a null type or string.
+     */
+    private static final byte NULL = 0;
+
+    /**
+     * Marker for a {@link Class}.
+     */
+    private static final byte CLASS = 1;
+
+    /**
+     * Marker for a {@link ParameterizedType}.
+     */
+    private static final byte PARAMETERIZED = 2;
+
+    /**
+     * Marker for a non null string.
+     */
+    private static final byte STRING = 1;
+
+    /**
+     * Utility class.
+     */
+    private ComponentDescriptorCodec()
+    {
+    }
+
+    /**
+     * @param descriptors the descriptors of a component implementation
+     * @return the encoded descriptors or null if they can't be encoded
+     */
+    public static byte[] encode(List<ComponentDescriptor> descriptors)
+    {
+        for (ComponentDescriptor< ? > descriptor : descriptors) {
+            if (!isEncodable(descriptor)) {
+                return null;
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        try {
+            out.writeInt(descriptors.size());
+            for (ComponentDescriptor< ? > descriptor : descriptors) {
+                writeType(out, descriptor.getRoleType());
+                writeString(out, descriptor.getRoleHint());
+                out.writeUTF(descriptor.getInstantiationStrategy().name());
+
+                out.writeInt(descriptor.getComponentDependencies().size());
+                for (ComponentDependency< ? > dependency : descriptor.getComponentDependencies()) {
+                    writeType(out, dependency.getRoleType());
+                    writeString(out, dependency.getRoleHint());
+                    writeString(out, dependency.getName());
+                    writeHints(out, dependency.getHints());
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            // Can't happen when writing in memory
+            return null;
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param implementation the component implementation
+     * @param data the encoded descriptors
+     * @return the decoded descriptors
+     * @throws IOException when the data can't be decoded
+     * @throws ClassNotFoundException when one of the types referenced by the descriptors can't be loaded
+     */
+    @SuppressWarnings("unchecked")
+    public static List<ComponentDescriptor> decode(Class< ? > implementation, byte[] data) throws IOException,
+        ClassNotFoundException
+    {
+        ClassLoader classLoader = implementation.getClassLoader();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+        int size = in.readInt();
+        List<ComponentDescriptor> descriptors = new ArrayList<ComponentDescriptor>(size);
+        for (int i = 0; i < size; ++i) {
+            DefaultComponentDescriptor descriptor = new DefaultComponentDescriptor();
+            descriptor.setRoleType(readType(in, classLoader));
+            descriptor.setRoleHint(readString(in));
+            descriptor.setImplementation(implementation);
+            descriptor.setInstantiationStrategy(ComponentInstantiationStrategy.valueOf(in.readUTF()));
+
+            int dependencies = in.readInt();
+            for (int j = 0; j < dependencies; ++j) {
+                DefaultComponentDependency dependency = new DefaultComponentDependency();
+                dependency.setRoleType(readType(in, classLoader));
+                dependency.setRoleHint(readString(in));
+                dependency.setName(readString(in));
+                dependency.setHints(readHints(in));
+
+                descriptor.addComponentDependency(dependency);
+            }
+
+            descriptors.add(descriptor);
+        }
+
+        return descriptors;
+    }
+
+    /**
+     * @param descriptor the descriptor to check
+     * @return true if the descriptor can be encoded
+     */
+    private static boolean isEncodable(ComponentDescriptor< ? > descriptor)
+    {
+        if (descriptor.getClass() != DefaultComponentDescriptor.class || !isEncodable(descriptor.getRoleType())) {
+            return false;
+        }
+
+        for (ComponentDependency< ? > dependency : descriptor.getComponentDependencies()) {
+            if (dependency.getClass() != DefaultComponentDependency.class
+                || !isEncodable(dependency.getRoleType())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @param type the type to check
+     * @return true if the type can be encoded
+     */
+    private static boolean isEncodable(Type type)
+    {
+        if (type == null || type instanceof Class) {
+            return true;
+        }
+
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType) type;
+            if (!isEncodable(parameterizedType.getOwnerType()) || !isEncodable(parameterizedType.getRawType())) {
+                return false;
+            }
+            for (Type argument : parameterizedType.getActualTypeArguments()) {
+                if (argument == null || !isEncodable(argument)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @param out the stream where to write
+     * @param type the type to write
+     * @throws IOException when failing to write
+     */
+    private static void writeType(DataOutputStream out, Type type) throws IOException
+    {
+        if (type == null) {
+            out.writeByte(NULL);
+        } else if (type instanceof Class) {
+            out.writeByte(CLASS);
+            out.writeUTF(((Class< ? >) type).getName());
+        } else {
+            ParameterizedType parameterizedType = (ParameterizedType) type;
+
+            out.writeByte(PARAMETERIZED);
+            writeType(out, parameterizedType.getOwnerType());
+            writeType(out, parameterizedType.getRawType());
+            out.writeInt(parameterizedType.getActualTypeArguments().length);
+            for (Type argument : parameterizedType.getActualTypeArguments()) {
+                writeType(out, argument);
+            }
+        }
+    }
+
+    /**
+     * @param in the stream to read
+     * @param classLoader the class loader to use to resolve classes
+     * @return the read type
+     * @throws IOException when failing to read
+     * @throws ClassNotFoundException when failing to resolve a class
+     */
+    private static Type readType(DataInputStream in, ClassLoader classLoader) throws IOException,
+        ClassNotFoundException
+    {
+        byte kind = in.readByte();
+
+        if (kind == NULL) {
+            return null;
+        } else if (kind == CLASS) {
+            return Class.forName(in.readUTF(), false, classLoader);
+        } else if (kind == PARAMETERIZED) {
+            Type ownerType = readType(in, classLoader);
+            Class< ? > rawType = (Class< ? >) readType(in, classLoader);
+            Type[] arguments = new Type[in.readInt()];
+            for (int i = 0; i < arguments.length; ++i) {
+                arguments[i] = readType(in, classLoader);
+            }
+
+            return new DefaultParameterizedType(ownerType, rawType, arguments);
+        }
+
+        throw new IOException("Unknown type marker [" + kind + "]");
+    }
+
+    /**
+     * @param out the stream where to write
+     * @param value the string to write, can be null
+     * @throws IOException when failing to write
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else {
+            out.writeByte(STRING);
+            out.writeUTF(value);
+        }
+    }
+
+    /**
+     * @param in the stream to read
+     * @return the read string, can be null
+     * @throws IOException when failing to read
+     */
+    private static String readString(DataInputStream in) throws IOException
+    {
+        return in.readByte() == NULL ? null : in.readUTF();
+    }
+
+    /**
+     * @param out the stream where to write
+     * @param hints the hints to write, can be null
+     * @throws IOException when failing to write
+     */
+    private static void writeHints(DataOutputStream out, String[] hints) throws IOException
+    {
+        if (hints == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(hints.length);
+            for (String hint : hints) {
+                writeString(out, hint);
+            }
+        }
+    }
+
+    /**
+     * @param in the stream to read
+     * @return the read hints, can be null
+     * @throws IOException when failing to read
+     */
+    private static String[] readHints(DataInputStream in) throws IOException
+    {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+
+        String[] hints = new String[size];
+        for (int i = 0; i < size; ++i) {
+            hints[i] = readString(in);
+        }
+
+        return hints;
+    }
+}
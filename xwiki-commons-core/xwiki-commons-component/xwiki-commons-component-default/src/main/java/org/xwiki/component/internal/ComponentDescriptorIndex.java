@@ -0,0 +1,367 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.component.annotation.ComponentDeclaration;
+import org.xwiki.component.annotation.ComponentDependencyFactory;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+
+/**
+ * Persistent index of the component descriptors found in jar files, used to avoid introspecting component
+ * implementation annotations at each startup. {@link #getDescriptors(Class)} and
+ * {@link #putDescriptors(Class, List, long)} can be called from several threads.
+ * <p>
+ * Descriptors are grouped by the jar declaring them in its {@code META-INF/components.txt} and each jar entry is
+ * associated to a fingerprint made of the jar size and last modification date. When a jar changes, its entry is
+ * dropped and its components are introspected again. Since the descriptors also depend on the super classes and
+ * interfaces of the implementation, which can come from other jars, each component is also associated to the
+ * fingerprint of all the jars and class files of its class hierarchy (see {@link ClassFingerprints}) and is introspected
+ * again when it changes. Components declared in directories are never indexed since a class can change without its
+ * component list changing. The whole index is discarded when the list of {@link ComponentDependencyFactory}
+ * implementations available changes.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+public class ComponentDescriptorIndex
+{
+    /**
+     * The version of the index format.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * The extension of the file where the index is written before replacing the index file.
+     */
+    private static final String EXTENSION_TMP = ".tmp";
+
+    /**
+     * The logger to log.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ComponentDescriptorIndex.class);
+
+    /**
+     * The file where the index is stored.
+     */
+    private final File file;
+
+    /**
+     * Identify the set of {@link ComponentDependencyFactory} implementations used to create the indexed descriptors.
+     */
+    private String environment;
+
+    /**
+     * The jars read from the index file, indexed by path.
+     */
+    private Map<String, IndexedJar> storedJars = new HashMap<String, IndexedJar>();
+
+    /**
+     * The up to date jars found in the class loader, indexed by path.
+     */
+    private Map<String, IndexedJar> currentJars = new HashMap<String, IndexedJar>();
+
+    /**
+     * The jar of each declared component implementation class name.
+     */
+    private Map<String, IndexedJar> declarations = new HashMap<String, IndexedJar>();
+
+    /**
+     * The fingerprints of the class hierarchies of the components.
+     */
+    private final ClassFingerprints classFingerprints = new ClassFingerprints();
+
+    /**
+     * True when the index need to be written.
+     */
+    private boolean dirty;
+
+    /**
+     * The number of components for which descriptors have been found in the index.
+     */
+    private int indexedCount;
+
+    /**
+     * The total time in nanoseconds of introspection which has been avoided.
+     */
+    private long savedTime;
+
+    /**
+     * @param file the file where the index is stored
+     */
+    public ComponentDescriptorIndex(File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * @return the file where the index is stored
+     */
+    public File getFile()
+    {
+        return this.file;
+    }
+
+    /**
+     * @return the number of components for which descriptors have been found in the index
+     */
+    public int getIndexedCount()
+    {
+        return this.indexedCount;
+    }
+
+    /**
+     * @return the total time in milliseconds of introspection which has been avoided
+     */
+    public long getSavedTime()
+    {
+        return this.savedTime / 1000000L;
+    }
+
+    /**
+     * Read the index file if it exists and is still valid for the passed class loader.
+     * 
+     * @param classLoader the class loader from which the components are loaded
+     */
+    public void load(ClassLoader classLoader)
+    {
+        this.environment = getEnvironment(classLoader);
+
+        if (!this.file.exists()) {
+            this.dirty = true;
+
+            return;
+        }
+
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)));
+            try {
+                read(in);
+            } finally {
+                in.close();
+            }
+        } catch (Exception e) {
+            // The index is only a cache: drop it whatever the reason it can't be read
+            LOGGER.warn("Failed to read component descriptor index [{}]: {}", this.file, e.getMessage());
+
+            this.storedJars.clear();
+        }
+
+        this.dirty = this.storedJars.isEmpty();
+    }
+
+    /**
+     * @param in the stream to read
+     * @throws IOException when failing to read the index
+     */
+    private void read(DataInputStream in) throws IOException
+    {
+        if (in.readInt() != VERSION || !this.environment.equals(in.readUTF())) {
+            return;
+        }
+
+        int jarCount = in.readInt();
+        for (int i = 0; i < jarCount; ++i) {
+            String path = in.readUTF();
+            this.storedJars.put(path, IndexedJar.read(in, this.file.length()));
+        }
+    }
+
+    /**
+     * Associate the passed component declarations to the jar containing the passed component list.
+     * 
+     * @param componentList the URL of the component list containing the declarations
+     * @param componentDeclarations the declarations found in the component list
+     */
+    public void addDeclarations(URL componentList, List<ComponentDeclaration> componentDeclarations)
+    {
+        File jarFile = IndexedJar.getJarFile(componentList);
+        if (jarFile == null) {
+            return;
+        }
+
+        String path = jarFile.getAbsolutePath();
+        String fingerprint = IndexedJar.getFingerprint(jarFile);
+
+        IndexedJar jar = this.storedJars.get(path);
+        if (jar == null || !jar.getFingerprint().equals(fingerprint)) {
+            jar = new IndexedJar(fingerprint);
+            this.dirty = true;
+        }
+        this.currentJars.put(path, jar);
+
+        for (ComponentDeclaration componentDeclaration : componentDeclarations) {
+            this.declarations.put(componentDeclaration.getImplementationClassName(), jar);
+        }
+    }
+
+    /**
+     * @param implementation the component implementation
+     * @return the indexed descriptors of the passed component implementation or null if it's not indexed
+     */
+    public List<ComponentDescriptor> getDescriptors(Class< ? > implementation)
+    {
+        IndexedJar jar;
+        byte[] data;
+        String classesFingerprint;
+        synchronized (this) {
+            jar = this.declarations.get(implementation.getName());
+            data = jar != null ? jar.getData(implementation.getName()) : null;
+            classesFingerprint = jar != null ? jar.getClassesFingerprint(implementation.getName()) : null;
+        }
+        if (data == null) {
+            return null;
+        }
+
+        // Check and decode outside of the lock since it's where classes are located and resolved
+        List<ComponentDescriptor> descriptors = null;
+        if (classesFingerprint.equals(this.classFingerprints.getFingerprint(implementation))) {
+            try {
+                descriptors = ComponentDescriptorCodec.decode(implementation, data);
+            } catch (Exception e) {
+                LOGGER.debug("Failed to decode indexed descriptors of component [{}]", implementation, e);
+            }
+        }
+
+        synchronized (this) {
+            if (descriptors != null) {
+                ++this.indexedCount;
+                this.savedTime += jar.getIntrospectionTime(implementation.getName());
+            } else {
+                jar.remove(implementation.getName());
+                this.dirty = true;
+            }
+        }
+
+        return descriptors;
+    }
+
+    /**
+     * Add to the index the descriptors of the passed component implementation.
+     * 
+     * @param implementation the component implementation
+     * @param descriptors the descriptors created through introspection
+     * @param introspectionTime the time in nanoseconds it took to create the descriptors
+     */
+    public void putDescriptors(Class< ? > implementation, List<ComponentDescriptor> descriptors,
+        long introspectionTime)
+    {
+        String classesFingerprint = this.classFingerprints.getFingerprint(implementation);
+        byte[] data = classesFingerprint != null ? ComponentDescriptorCodec.encode(descriptors) : null;
+        if (data != null) {
+            synchronized (this) {
+                IndexedJar jar = this.declarations.get(implementation.getName());
+                if (jar != null) {
+                    jar.put(implementation.getName(), classesFingerprint, introspectionTime, data);
+                    this.dirty = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the index file if anything changed since it has been loaded. The index is first written in a temporary file
+     * so that a process killed while writing it does not leave a truncated index behind.
+     */
+    public void save()
+    {
+        if (!this.dirty && this.currentJars.keySet().equals(this.storedJars.keySet())) {
+            return;
+        }
+
+        try {
+            File parent = this.file.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+
+            File tmpFile = new File(this.file.getPath() + EXTENSION_TMP);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            try {
+                write(out);
+            } finally {
+                out.close();
+            }
+
+            // Some platforms can't rename a file to an existing file
+            if (!tmpFile.renameTo(this.file) && !(this.file.delete() && tmpFile.renameTo(this.file))) {
+                tmpFile.delete();
+
+                throw new IOException("Failed to move [" + tmpFile + "] to [" + this.file + "]");
+            }
+
+            this.storedJars = new HashMap<String, IndexedJar>(this.currentJars);
+            this.dirty = false;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write component descriptor index [{}]: {}", this.file, e.getMessage());
+        }
+    }
+
+    /**
+     * @param out the stream where to write
+     * @throws IOException when failing to write the index
+     */
+    private void write(DataOutputStream out) throws IOException
+    {
+        out.writeInt(VERSION);
+        out.writeUTF(this.environment);
+
+        out.writeInt(this.currentJars.size());
+        for (Map.Entry<String, IndexedJar> entry : this.currentJars.entrySet()) {
+            out.writeUTF(entry.getKey());
+            entry.getValue().write(out);
+        }
+    }
+
+    /**
+     * @param classLoader the class loader from which the components are loaded
+     * @return an identifier of the set of {@link ComponentDependencyFactory} implementations available
+     */
+    private String getEnvironment(ClassLoader classLoader)
+    {
+        StringBuilder builder = new StringBuilder();
+
+        try {
+            for (URL url : Collections.list(classLoader.getResources("META-INF/services/"
+                + ComponentDependencyFactory.class.getName()))) {
+                builder.append(url).append('\n');
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Failed to list component dependency factories", e);
+        }
+
+        return builder.toString();
+    }
+}
@@ -25,6 +25,7 @@
 import javax.inject.Singleton;
 
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentKey;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
 
@@ -40,6 +41,12 @@
 @Singleton
 public class ContextComponentManagerProvider implements Provider<ComponentManager>
 {
+    /**
+     * The identifier of the Context Component Manager.
+     */
+    private static final ComponentKey<ComponentManager> CONTEXT_KEY = ComponentKey.get(ComponentManager.class,
+        "context");
+
     /**
      * The root {@link ComponentManager} used to lookup the context {@link ComponentManager} and as a fallback if none
      * is provided.
@@ -56,8 +63,13 @@ public ComponentManager get()
         // specific wiki, etc. If it's not found use the Root Component Manager. This allows the Rendering module
         // to work outside of XWiki when there's no notion of Execution Context and Wiki Model for example.
         try {
-            componentManagerToUse = this.rootComponentManager.getInstance(ComponentManager.class, "context");
+            componentManagerToUse = this.rootComponentManager.tryGetInstance(CONTEXT_KEY);
         } catch (ComponentLookupException e) {
+            // The Context CM exists but failed to be created
+            componentManagerToUse = null;
+        }
+
+        if (componentManagerToUse == null) {
             // This means the Context CM doesn't exist, use the Root CM.
             componentManagerToUse = this.rootComponentManager;
         }
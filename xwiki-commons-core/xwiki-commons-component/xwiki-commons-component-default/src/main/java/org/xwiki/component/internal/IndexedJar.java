@@ -0,0 +1,241 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.internal;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The encoded component descriptors found in a jar, stored in a {@link ComponentDescriptorIndex}.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+class IndexedJar
+{
+    /**
+     * Prefix of the URL of a jar resource.
+     */
+    private static final String JAR_PREFIX = "jar:file:";
+
+    /**
+     * Separator between the jar URL and the resource path in a jar resource URL.
+     */
+    private static final String JAR_SEPARATOR = "!/";
+
+    /**
+     * The descriptors of a component implementation.
+     * 
+     * @version $Id$
+     */
+    private static class IndexedComponent
+    {
+        /**
+         * The fingerprint of the classes introspected to create the descriptors.
+         * 
+         * @see ClassFingerprints
+         */
+        private final String classesFingerprint;
+
+        /**
+         * The time in nanoseconds it took to create the descriptors through introspection.
+         */
+        private final long introspectionTime;
+
+        /**
+         * @see ComponentDescriptorCodec
+         */
+        private final byte[] data;
+
+        /**
+         * @param classesFingerprint the fingerprint of the classes introspected to create the descriptors
+         * @param introspectionTime the time in nanoseconds it took to create the descriptors through introspection
+         * @param data the encoded descriptors
+         */
+        IndexedComponent(String classesFingerprint, long introspectionTime, byte[] data)
+        {
+            this.classesFingerprint = classesFingerprint;
+            this.introspectionTime = introspectionTime;
+            this.data = data;
+        }
+    }
+
+    /**
+     * The fingerprint of the jar, made of its size and last modification date.
+     */
+    private final String fingerprint;
+
+    /**
+     * The encoded descriptors indexed by implementation class name.
+     */
+    private final Map<String, IndexedComponent> components = new HashMap<String, IndexedComponent>();
+
+    /**
+     * @param fingerprint the fingerprint of the jar
+     */
+    IndexedJar(String fingerprint)
+    {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @return the fingerprint of the jar
+     */
+    String getFingerprint()
+    {
+        return this.fingerprint;
+    }
+
+    /**
+     * @param className the component implementation class name
+     * @return the encoded descriptors of the component or null if it's not indexed
+     */
+    byte[] getData(String className)
+    {
+        IndexedComponent component = this.components.get(className);
+
+        return component != null ? component.data : null;
+    }
+
+    /**
+     * @param className the component implementation class name
+     * @return the fingerprint of the classes introspected to create the descriptors of the component or null if it's
+     *         not indexed
+     */
+    String getClassesFingerprint(String className)
+    {
+        IndexedComponent component = this.components.get(className);
+
+        return component != null ? component.classesFingerprint : null;
+    }
+
+    /**
+     * @param className the component implementation class name
+     * @return the time in nanoseconds it took to create the descriptors through introspection
+     */
+    long getIntrospectionTime(String className)
+    {
+        IndexedComponent component = this.components.get(className);
+
+        return component != null ? component.introspectionTime : 0;
+    }
+
+    /**
+     * @param className the component implementation class name
+     * @param classesFingerprint the fingerprint of the classes introspected to create the descriptors
+     * @param introspectionTime the time in nanoseconds it took to create the descriptors through introspection
+     * @param data the encoded descriptors
+     */
+    void put(String className, String classesFingerprint, long introspectionTime, byte[] data)
+    {
+        this.components.put(className, new IndexedComponent(classesFingerprint, introspectionTime, data));
+    }
+
+    /**
+     * @param className the component implementation class name
+     */
+    void remove(String className)
+    {
+        this.components.remove(className);
+    }
+
+    /**
+     * @param in the stream to read
+     * @param maxLength the maximum number of bytes which can be read, used to detect a corrupted length
+     * @return the read jar entry
+     * @throws IOException when failing to read
+     */
+    static IndexedJar read(DataInputStream in, long maxLength) throws IOException
+    {
+        IndexedJar jar = new IndexedJar(in.readUTF());
+
+        int componentCount = in.readInt();
+        for (int i = 0; i < componentCount; ++i) {
+            String className = in.readUTF();
+            String classesFingerprint = in.readUTF();
+            long introspectionTime = in.readLong();
+            int length = in.readInt();
+            if (length < 0 || length > maxLength) {
+                throw new IOException("Invalid descriptors length [" + length + "] for component [" + className + "]");
+            }
+            byte[] data = new byte[length];
+            in.readFully(data);
+
+            jar.put(className, classesFingerprint, introspectionTime, data);
+        }
+
+        return jar;
+    }
+
+    /**
+     * @param out the stream where to write
+     * @throws IOException when failing to write
+     */
+    void write(DataOutputStream out) throws IOException
+    {
+        out.writeUTF(this.fingerprint);
+
+        out.writeInt(this.components.size());
+        for (Map.Entry<String, IndexedComponent> entry : this.components.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeUTF(entry.getValue().classesFingerprint);
+            out.writeLong(entry.getValue().introspectionTime);
+            out.writeInt(entry.getValue().data.length);
+            out.write(entry.getValue().data);
+        }
+    }
+
+    /**
+     * @param resource the URL of a resource
+     * @return the jar file containing the resource or null if it's not located in a local jar file
+     */
+    static File getJarFile(URL resource)
+    {
+        String url = resource.toString();
+
+        int index = url.indexOf(JAR_SEPARATOR);
+        if (url.startsWith(JAR_PREFIX) && index > 0) {
+            try {
+                File jarFile = new File(new URI(url.substring("jar:".length(), index)));
+
+                return jarFile.isFile() ? jarFile : null;
+            } catch (Exception e) {
+                // Not a valid local file URL
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param jarFile the jar file
+     * @return the fingerprint of the jar file, made of its size and last modification date
+     */
+    static String getFingerprint(File jarFile)
+    {
+        return jarFile.length() + "-" + jarFile.lastModified();
+    }
+}
@@ -21,6 +21,7 @@
 
 import java.lang.reflect.Type;
 
+import org.xwiki.component.manager.ComponentKey;
 import org.xwiki.component.util.ReflectionUtils;
 
 /**
@@ -30,18 +31,8 @@
  * @version $Id$
  * @since 2.0M1
  */
-public class RoleHint<T>
+public class RoleHint<T> extends ComponentKey<T>
 {
-    /**
-     * @see #getRoleType()
-     */
-    private Type role;
-
-    /**
-     * @see #getHint()
-     */
-    private String hint;
-
     /**
      * @param role the component role
      * @since 4.0M1
@@ -58,20 +49,7 @@ public RoleHint(Type role)
      */
     public RoleHint(Type role, String hint)
     {
-        this.role = role;
-        this.hint = hint;
-        if (this.hint == null) {
-            this.hint = "default";
-        }
-    }
-
-    /**
-     * @return the component role
-     * @since 4.0M1
-     */
-    public Type getRoleType()
-    {
-        return this.role;
+        super(role, hint);
     }
 
     /**
@@ -81,49 +59,6 @@ public Type getRoleType()
     @SuppressWarnings("unchecked")
     public Class<T> getRoleClass()
     {
-        return ReflectionUtils.getTypeClass(this.role);
-    }
-
-    /**
-     * @return the component hint
-     */
-    public String getHint()
-    {
-        return this.hint;
-    }
-
-    @Override
-    @SuppressWarnings("unchecked")
-    public boolean equals(Object obj)
-    {
-        if (this == obj) {
-            return true;
-        }
-
-        if ((obj == null) || (obj.getClass() != this.getClass())) {
-            return false;
-        }
-
-        RoleHint<T> rolehint = (RoleHint<T>) obj;
-
-        return getRoleType().equals(rolehint.getRoleType())
-            && (getHint() == rolehint.getHint() || (getHint() != null && getHint().equals(rolehint.getHint())));
-    }
-
-    @Override
-    public int hashCode()
-    {
-        int hash = 8;
-
-        hash = 31 * hash + (null == getRoleType() ? 0 : getRoleType().hashCode());
-        hash = 31 * hash + (null == getHint() ? 0 : getHint().hashCode());
-
-        return hash;
-    }
-
-    @Override
-    public String toString()
-    {
-        return "role = [" + getRoleType() + "] hint = [" + getHint() + "]";
+        return ReflectionUtils.getTypeClass(getRoleType());
     }
 }
@@ -19,6 +19,8 @@
  */
 package org.xwiki.component.internal;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Stack;
 
 import org.xwiki.component.descriptor.ComponentDescriptor;
@@ -26,6 +28,7 @@
 import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
 import org.xwiki.component.manager.ComponentEventManager;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.observation.EventEnvelope;
 import org.xwiki.observation.ObservationManager;
 import org.xwiki.observation.event.Event;
 
@@ -82,14 +85,46 @@ public void notifyComponentUnregistered(ComponentDescriptor< ? > descriptor, Com
             descriptor, componentManager);
     }
 
+    @Override
+    public void notifyComponentsRegistered(List<ComponentDescriptor< ? >> descriptors,
+        ComponentManager componentManager)
+    {
+        List<ComponentEventEntry> entries = new ArrayList<ComponentEventEntry>(descriptors.size());
+        for (ComponentDescriptor< ? > descriptor : descriptors) {
+            entries.add(new ComponentEventEntry(new ComponentDescriptorAddedEvent(descriptor.getRole(),
+                descriptor.getRoleHint()), descriptor, componentManager));
+        }
+
+        notifyComponentEvents(entries);
+    }
+
+    @Override
+    public void notifyComponentsUnregistered(List<ComponentDescriptor< ? >> descriptors,
+        ComponentManager componentManager)
+    {
+        List<ComponentEventEntry> entries = new ArrayList<ComponentEventEntry>(descriptors.size());
+        for (ComponentDescriptor< ? > descriptor : descriptors) {
+            entries.add(new ComponentEventEntry(new ComponentDescriptorRemovedEvent(descriptor.getRole(),
+                descriptor.getRoleHint()), descriptor, componentManager));
+        }
+
+        notifyComponentEvents(entries);
+    }
+
     /**
      * Force to send all stored events.
      */
     public synchronized void flushEvents()
     {
+        List<EventEnvelope> envelopes = new ArrayList<EventEnvelope>(this.events.size());
         while (!this.events.isEmpty()) {
             ComponentEventEntry entry = this.events.pop();
-            sendEvent(entry.event, entry.descriptor, entry.componentManager);
+            envelopes.add(new EventEnvelope(entry.event, entry.componentManager, entry.descriptor));
+        }
+
+        // Send all the events at once
+        if (this.observationManager != null && !envelopes.isEmpty()) {
+            this.observationManager.notify(envelopes);
         }
     }
 
@@ -129,6 +164,29 @@ private void notifyComponentEvent(Event event, ComponentDescriptor< ? > descript
         }
     }
 
+    /**
+     * Send or stack the provided events dependening on the configuration. When sent, the events are given to the
+     * observation manager all at once.
+     * 
+     * @param entries the events send by the component manager
+     * @see #shouldStack(boolean)
+     */
+    private void notifyComponentEvents(List<ComponentEventEntry> entries)
+    {
+        if (this.shouldStack) {
+            synchronized (this) {
+                this.events.addAll(entries);
+            }
+        } else if (this.observationManager != null && !entries.isEmpty()) {
+            List<EventEnvelope> envelopes = new ArrayList<EventEnvelope>(entries.size());
+            for (ComponentEventEntry entry : entries) {
+                envelopes.add(new EventEnvelope(entry.event, entry.componentManager, entry.descriptor));
+            }
+
+            this.observationManager.notify(envelopes);
+        }
+    }
+
     /**
      * Send the event.
      * 
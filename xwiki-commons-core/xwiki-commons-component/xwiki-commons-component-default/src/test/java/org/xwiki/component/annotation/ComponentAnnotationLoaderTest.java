@@ -20,13 +20,19 @@
 package org.xwiki.component.annotation;
 
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 
 import javax.inject.Named;
 import javax.inject.Provider;
 
+import org.hamcrest.Matcher;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
+import org.jmock.api.Invocation;
+import org.jmock.lib.action.CustomAction;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -41,6 +47,8 @@
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.component.util.DefaultParameterizedType;
 
+import static org.hamcrest.Matchers.containsInAnyOrder;
+
 /**
  * Unit tests for {@link ComponentAnnotationLoader}.
  * 
@@ -143,6 +151,8 @@ public class ExtendingNonGenericComponent extends AbstractGenericComponent
 
     private ComponentAnnotationLoader loader;
 
+    private Logger logger;
+
     private class TestableComponentAnnotationLoader extends ComponentAnnotationLoader
     {
         private Logger logger;
@@ -164,7 +174,8 @@ public void setupLogger() throws Exception
     {
         // Note: we don't define any expectation on the Logger since we want to be sure that the tests below don't
         // generate any logging at all.
-        this.loader = new TestableComponentAnnotationLoader(this.context.mock(Logger.class));
+        this.logger = this.context.mock(Logger.class);
+        this.loader = new TestableComponentAnnotationLoader(this.logger);
     }
 
     @After
@@ -180,6 +191,91 @@ public void tearDown() throws Exception
     @Test
     @SuppressWarnings({"rawtypes", "unchecked"})
     public void testPriorities() throws Exception
+    {
+        assertPriorities();
+    }
+
+    /**
+     * Verify that loading component classes in parallel registers the same components.
+     */
+    @Test
+    public void testPrioritiesWithParallelLoading() throws Exception
+    {
+        this.loader.setParallelLoading(true);
+
+        assertPriorities();
+    }
+
+    /**
+     * Verify that loading component classes in parallel registers the components in declaration order and applies the
+     * same overrides as the sequential mode.
+     */
+    @Test
+    public void testParallelLoadingKeepsDeclarationOrderAndOverrides() throws Exception
+    {
+        List<ComponentDeclaration> declarations =
+            Arrays.asList(new ComponentDeclaration(RoleImpl.class.getName()), new ComponentDeclaration(
+                SimpleRole.class.getName(), 1000), new ComponentDeclaration(GenericComponent.class.getName()),
+                new ComponentDeclaration(OverrideRole.class.getName(), 500), new ComponentDeclaration(
+                    ExtendingGenericComponent.class.getName()), new ComponentDeclaration(
+                    DeprecatedSimpleRole.class.getName(), 500), new ComponentDeclaration(
+                    DeprecatedOverrideRole.class.getName(), 1000), new ComponentDeclaration(ProviderImpl.class
+                    .getName()), new ComponentDeclaration(NonGenericComponent.class.getName()));
+
+        // ExtendingGenericComponent can't override GenericComponent since they have the same priority
+        this.context.checking(new Expectations()
+        {
+            {
+                exactly(2).of(logger).warn(with(any(String.class)), with(any(Object[].class)));
+                allowing(logger).debug(with(any(String.class)), with(any(Object[].class)));
+            }
+        });
+
+        List<ComponentDescriptor< ? >> sequentialDescriptors = register(declarations);
+        this.loader.setParallelLoading(true);
+        List<ComponentDescriptor< ? >> parallelDescriptors = register(declarations);
+
+        Assert.assertEquals(sequentialDescriptors, parallelDescriptors);
+
+        List<Class< ? >> implementations = new ArrayList<Class< ? >>();
+        for (ComponentDescriptor< ? > descriptor : parallelDescriptors) {
+            implementations.add(descriptor.getImplementation());
+        }
+        Assert.assertEquals(Arrays.<Class< ? >> asList(RoleImpl.class, RoleImpl.class, OverrideRole.class,
+            GenericComponent.class, DeprecatedSimpleRole.class, ProviderImpl.class, NonGenericComponent.class),
+            implementations);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ComponentDescriptor< ? >> register(List<ComponentDeclaration> declarations) throws Exception
+    {
+        final ComponentManager mockManager = this.context.mock(ComponentManager.class, "manager"
+            + (this.loader.isParallelLoading() ? "Parallel" : "Sequential"));
+        final List<ComponentDescriptor< ? >> registered = new ArrayList<ComponentDescriptor< ? >>();
+        this.context.checking(new Expectations()
+        {
+            {
+                oneOf(mockManager).registerComponents(with(any(List.class)));
+                will(new CustomAction("capture the registered descriptors")
+                {
+                    @Override
+                    public Object invoke(Invocation invocation)
+                    {
+                        registered.addAll((List<ComponentDescriptor< ? >>) invocation.getParameter(0));
+
+                        return null;
+                    }
+                });
+            }
+        });
+
+        this.loader.initialize(mockManager, getClass().getClassLoader(), declarations);
+
+        return registered;
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private void assertPriorities() throws Exception
     {
         final ComponentManager mockManager = this.context.mock(ComponentManager.class);
 
@@ -204,21 +300,15 @@ public void testPriorities() throws Exception
         final ComponentDescriptor descriptor10 =
             this.loader.getComponentsDescriptors(ProviderTest.TestComponentWithProviders.class).get(0);
 
-        // This is the test, we verify that registerComponent() is called for each of the descriptor we're expecting
+        // This is the test, we verify that registerComponents() is called with all the descriptors we're expecting
         // to be discovered through annotations by the call to initialize() below.
+        final Matcher<List> descriptors =
+            (Matcher) containsInAnyOrder(descriptor1, descriptor2, descriptor3, descriptor4, descriptor5, descriptor6,
+                descriptor7, descriptor8, descriptor9, descriptor10);
         this.context.checking(new Expectations()
         {
             {
-                oneOf(mockManager).registerComponent(descriptor1);
-                oneOf(mockManager).registerComponent(descriptor2);
-                oneOf(mockManager).registerComponent(descriptor3);
-                oneOf(mockManager).registerComponent(descriptor4);
-                oneOf(mockManager).registerComponent(descriptor5);
-                oneOf(mockManager).registerComponent(descriptor6);
-                oneOf(mockManager).registerComponent(descriptor7);
-                oneOf(mockManager).registerComponent(descriptor8);
-                oneOf(mockManager).registerComponent(descriptor9);
-                oneOf(mockManager).registerComponent(descriptor10);
+                oneOf(mockManager).registerComponents(with(descriptors));
             }
         });
 
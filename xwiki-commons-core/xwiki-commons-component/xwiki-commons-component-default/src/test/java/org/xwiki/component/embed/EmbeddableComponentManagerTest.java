@@ -20,8 +20,15 @@
 package org.xwiki.component.embed;
 
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Provider;
 
 import org.jmock.Expectations;
 import org.jmock.Mockery;
@@ -31,11 +38,14 @@
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.slf4j.Logger;
+import org.xwiki.component.annotation.DisableWarmUp;
 import org.xwiki.component.descriptor.ComponentDescriptor;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
 import org.xwiki.component.descriptor.DefaultComponentDependency;
 import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.util.DefaultParameterizedType;
 import org.xwiki.component.manager.ComponentEventManager;
+import org.xwiki.component.manager.ComponentKey;
 import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
@@ -113,6 +123,113 @@ public Logger getLogger()
         }
     }
 
+    public static class FailingRoleImpl implements Role, Initializable
+    {
+        @Override
+        public void initialize() throws InitializationException
+        {
+            throw new InitializationException("failed");
+        }
+    }
+
+    @DisableWarmUp
+    public static class LazyRoleImpl implements Role
+    {
+    }
+
+    public static class ThreadRoleImpl implements Role
+    {
+        protected Thread thread = Thread.currentThread();
+
+        public Thread getThread()
+        {
+            return this.thread;
+        }
+    }
+
+    public static class InitializableThreadRoleImpl extends ThreadRoleImpl implements Initializable
+    {
+        @Override
+        public void initialize() throws InitializationException
+        {
+            this.thread = Thread.currentThread();
+        }
+    }
+
+    public abstract static class AbstractCrossLookupRoleImpl extends ThreadRoleImpl implements Initializable
+    {
+        private static ComponentManager componentManager;
+
+        private static CountDownLatch initializing;
+
+        private static AtomicInteger initializations;
+
+        protected abstract String getOtherHint();
+
+        @Override
+        public void initialize() throws InitializationException
+        {
+            this.thread = Thread.currentThread();
+
+            // The first instances look up each other once both are being initialized
+            if (initializations.incrementAndGet() <= 2) {
+                initializing.countDown();
+                try {
+                    initializing.await(10, TimeUnit.SECONDS);
+                    componentManager.getInstance(Role.class, getOtherHint());
+                } catch (Exception e) {
+                    throw new InitializationException("Failed to lookup [" + getOtherHint() + "]", e);
+                }
+            }
+        }
+    }
+
+    public static class FirstCrossLookupRoleImpl extends AbstractCrossLookupRoleImpl
+    {
+        @Override
+        protected String getOtherHint()
+        {
+            return "second";
+        }
+    }
+
+    public static class SecondCrossLookupRoleImpl extends AbstractCrossLookupRoleImpl
+    {
+        @Override
+        protected String getOtherHint()
+        {
+            return "first";
+        }
+    }
+
+    public static interface DependingRole
+    {
+    }
+
+    public static class DependingRoleImpl implements DependingRole
+    {
+        private Role role;
+
+        private List<Role> roles;
+
+        private Provider<Role> roleProvider;
+
+        public Role getRole()
+        {
+            return this.role;
+        }
+
+        public List<Role> getRoles()
+        {
+            return this.roles;
+        }
+
+        public Provider<Role> getRoleProvider()
+        {
+            return this.roleProvider;
+        }
+    }
+
     @Test
     public void testLookupThisComponentManager() throws ComponentLookupException
     {
@@ -294,6 +411,55 @@ public void testGetInstanceListAndMapWhenSomeComponentsInParent() throws Excepti
         Assert.assertSame(roleImpl, instances.get("default"));
     }
 
+    @Test
+    public void testGetInstanceListAndMapAreUpdated() throws Exception
+    {
+        EmbeddableComponentManager parent = (EmbeddableComponentManager) createParentComponentManager();
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ecm.setParent(parent);
+
+        List<Role> instanceList = ecm.getInstanceList(Role.class);
+        Assert.assertEquals(1, instanceList.size());
+
+        // Each caller gets its own copy
+        instanceList.clear();
+        ecm.getInstanceMap(Role.class).clear();
+        ecm.getComponentDescriptorList((Type) Role.class).clear();
+        Assert.assertEquals(1, ecm.getInstanceList(Role.class).size());
+        Assert.assertEquals(1, ecm.getInstanceMap(Role.class).size());
+        Assert.assertEquals(1, ecm.getComponentDescriptorList((Type) Role.class).size());
+
+        // Register a component in the parent
+        DefaultComponentDescriptor<Role> cd1 = new DefaultComponentDescriptor<Role>();
+        cd1.setRole(Role.class);
+        cd1.setRoleHint("hint1");
+        cd1.setImplementation(RoleImpl.class);
+        parent.registerComponent(cd1);
+
+        Assert.assertEquals(2, ecm.getInstanceList(Role.class).size());
+        Assert.assertEquals(2, ecm.getInstanceMap(Role.class).size());
+        Assert.assertEquals(2, ecm.getComponentDescriptorList((Type) Role.class).size());
+
+        // Register a component which is not a singleton in the child
+        DefaultComponentDescriptor<Role> cd2 = new DefaultComponentDescriptor<Role>();
+        cd2.setRole(Role.class);
+        cd2.setRoleHint("hint2");
+        cd2.setImplementation(RoleImpl.class);
+        cd2.setInstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP);
+        ecm.registerComponent(cd2);
+
+        Map<String, Role> instances = ecm.getInstanceMap(Role.class);
+        Assert.assertEquals(3, instances.size());
+        Assert.assertNotSame(instances.get("hint2"), ecm.getInstanceMap(Role.class).get("hint2"));
+        Assert.assertSame(instances.get("hint1"), ecm.getInstanceMap(Role.class).get("hint1"));
+
+        ecm.unregisterComponent(Role.class, "hint2");
+        parent.unregisterComponent(Role.class, "hint1");
+
+        Assert.assertEquals(1, ecm.getInstanceList(Role.class).size());
+        Assert.assertEquals(1, ecm.getComponentDescriptorList((Type) Role.class).size());
+    }
+
     @Test
     public void testHasComponent() throws Exception
     {
@@ -338,6 +504,157 @@ public void testLoggingInjection() throws Exception
         Assert.assertNotNull(impl.getLogger());
     }
 
+    @Test
+    public void testInjectionInPerLookupComponent() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<Role>();
+        cd.setRole(Role.class);
+        cd.setImplementation(RoleImpl.class);
+        ecm.registerComponent(cd);
+
+        DefaultComponentDescriptor<DependingRole> d = new DefaultComponentDescriptor<DependingRole>();
+        d.setRole(DependingRole.class);
+        d.setImplementation(DependingRoleImpl.class);
+        d.setInstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP);
+
+        DefaultComponentDependency<Role> roleDependency = new DefaultComponentDependency<Role>();
+        roleDependency.setRoleType(Role.class);
+        roleDependency.setName("role");
+        d.addComponentDependency(roleDependency);
+
+        DefaultComponentDependency<List<Role>> listDependency = new DefaultComponentDependency<List<Role>>();
+        listDependency.setRoleType(new DefaultParameterizedType(null, List.class, Role.class));
+        listDependency.setName("roles");
+        d.addComponentDependency(listDependency);
+
+        DefaultComponentDependency<Provider<Role>> providerDependency =
+            new DefaultComponentDependency<Provider<Role>>();
+        providerDependency.setRoleType(new DefaultParameterizedType(null, Provider.class, Role.class));
+        providerDependency.setName("roleProvider");
+        d.addComponentDependency(providerDependency);
+
+        ecm.registerComponent(d);
+
+        Role role = ecm.getInstance(Role.class);
+
+        // The injection plan is reused for each new instance
+        for (int i = 0; i < 2; ++i) {
+            DependingRoleImpl impl = ecm.getInstance(DependingRole.class);
+            Assert.assertSame(role, impl.getRole());
+            Assert.assertEquals(1, impl.getRoles().size());
+            Assert.assertSame(role, impl.getRoles().get(0));
+            Assert.assertSame(role, impl.getRoleProvider().get());
+        }
+
+        // A registered provider is injected instead of the generic one
+        Provider<Role> provider = new Provider<Role>()
+        {
+            @Override
+            public Role get()
+            {
+                return null;
+            }
+        };
+        DefaultComponentDescriptor<Provider<Role>> providerDescriptor =
+            new DefaultComponentDescriptor<Provider<Role>>();
+        providerDescriptor.setRoleType(new DefaultParameterizedType(null, Provider.class, Role.class));
+        ecm.registerComponent(providerDescriptor, provider);
+
+        Assert.assertSame(provider, ecm.<DependingRoleImpl>getInstance(DependingRole.class).getRoleProvider());
+    }
+
+    @Test
+    public void testWarmUp() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<Role>();
+        cd.setRole(Role.class);
+        cd.setImplementation(RoleImpl.class);
+        ecm.registerComponent(cd);
+
+        DefaultComponentDescriptor<Role> lazyDescriptor = new DefaultComponentDescriptor<Role>();
+        lazyDescriptor.setRole(Role.class);
+        lazyDescriptor.setRoleHint("lazy");
+        lazyDescriptor.setImplementation(LazyRoleImpl.class);
+        ecm.registerComponent(lazyDescriptor);
+
+        DefaultComponentDescriptor<DependingRole> d = new DefaultComponentDescriptor<DependingRole>();
+        d.setRole(DependingRole.class);
+        d.setImplementation(DependingRoleImpl.class);
+        DefaultComponentDependency<List<Role>> listDependency = new DefaultComponentDependency<List<Role>>();
+        listDependency.setRoleType(new DefaultParameterizedType(null, List.class, Role.class));
+        listDependency.setName("roles");
+        d.addComponentDependency(listDependency);
+        ecm.registerComponent(d);
+
+        Map<ComponentKey< ? >, Long> times = ecm.warmUp(2);
+
+        // Components are created after their dependencies, already created and opted out components are skipped
+        List<ComponentKey< ? >> keys = new ArrayList<ComponentKey< ? >>(times.keySet());
+        Assert.assertEquals(2, keys.size());
+        Assert.assertEquals(ComponentKey.get(Role.class), keys.get(0));
+        Assert.assertEquals(ComponentKey.get(DependingRole.class), keys.get(1));
+
+        Assert.assertTrue(ecm.warmUp(2).isEmpty());
+    }
+
+    @Test
+    public void testWarmUpCreatesInitializableComponentsInParallel() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<Role>();
+        cd.setRole(Role.class);
+        cd.setRoleHint("simple");
+        cd.setImplementation(ThreadRoleImpl.class);
+        ecm.registerComponent(cd);
+
+        DefaultComponentDescriptor<Role> initializableDescriptor = new DefaultComponentDescriptor<Role>();
+        initializableDescriptor.setRole(Role.class);
+        initializableDescriptor.setRoleHint("initializable");
+        initializableDescriptor.setImplementation(InitializableThreadRoleImpl.class);
+        ecm.registerComponent(initializableDescriptor);
+
+        Assert.assertEquals(2, ecm.warmUp(2).size());
+
+        Assert.assertNotSame(Thread.currentThread(),
+            ((ThreadRoleImpl) ecm.getInstance(Role.class, "initializable")).getThread());
+        Assert.assertNotSame(Thread.currentThread(),
+            ((ThreadRoleImpl) ecm.getInstance(Role.class, "simple")).getThread());
+    }
+
+    @Test(timeout = 30000)
+    public void testWarmUpDoesNotDeadlockWhenComponentsLookUpEachOther() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        AbstractCrossLookupRoleImpl.componentManager = ecm;
+        AbstractCrossLookupRoleImpl.initializing = new CountDownLatch(2);
+        AbstractCrossLookupRoleImpl.initializations = new AtomicInteger();
+
+        DefaultComponentDescriptor<Role> firstDescriptor = new DefaultComponentDescriptor<Role>();
+        firstDescriptor.setRole(Role.class);
+        firstDescriptor.setRoleHint("first");
+        firstDescriptor.setImplementation(FirstCrossLookupRoleImpl.class);
+        ecm.registerComponent(firstDescriptor);
+
+        DefaultComponentDescriptor<Role> secondDescriptor = new DefaultComponentDescriptor<Role>();
+        secondDescriptor.setRole(Role.class);
+        secondDescriptor.setRoleHint("second");
+        secondDescriptor.setImplementation(SecondCrossLookupRoleImpl.class);
+        ecm.registerComponent(secondDescriptor);
+
+        // Each warm up thread looks up the component being created by the other one
+        Assert.assertEquals(2, ecm.warmUp(2).size());
+
+        // The instances created while the other component was being created by another thread have not been kept
+        Assert.assertTrue(AbstractCrossLookupRoleImpl.initializations.get() > 2);
+        Assert.assertSame(ecm.getInstance(Role.class, "first"), ecm.getInstance(Role.class, "first"));
+        Assert.assertSame(ecm.getInstance(Role.class, "second"), ecm.getInstance(Role.class, "second"));
+    }
+
     private ComponentManager createParentComponentManager() throws Exception
     {
         return createParentComponentManager(null);
@@ -523,4 +840,238 @@ public void testRegisterComponentNotificationOnSecondRegistration() throws Excep
 
         ecm.registerComponent(cd2);
     }
+
+    @Test
+    public void testRegisterComponents() throws Exception
+    {
+        final EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        final DefaultComponentDescriptor<Role> cd1 = new DefaultComponentDescriptor<Role>();
+        cd1.setRole(Role.class);
+        cd1.setImplementation(RoleImpl.class);
+        ecm.registerComponent(cd1);
+
+        final DefaultComponentDescriptor<Role> cd2 = new DefaultComponentDescriptor<Role>();
+        cd2.setRole(Role.class);
+        cd2.setImplementation(OtherRoleImpl.class);
+
+        final DefaultComponentDescriptor<Role> cd3 = new DefaultComponentDescriptor<Role>();
+        cd3.setRole(Role.class);
+        cd3.setRoleHint("other");
+        cd3.setImplementation(RoleImpl.class);
+
+        final ComponentEventManager cem = getMockery().mock(ComponentEventManager.class);
+        ecm.setComponentEventManager(cem);
+
+        // The replaced component and the new components are each notified in a single call
+        getMockery().checking(new Expectations()
+        {
+            {
+                oneOf(cem).notifyComponentsUnregistered(Arrays.<ComponentDescriptor< ? >>asList(cd1), ecm);
+                oneOf(cem).notifyComponentsRegistered(Arrays.<ComponentDescriptor< ? >>asList(cd2, cd3), ecm);
+            }
+        });
+
+        ecm.registerComponents(Arrays.<ComponentDescriptor< ? >>asList(cd2, cd3));
+
+        Assert.assertSame(OtherRoleImpl.class, ecm.getInstance(Role.class).getClass());
+        Assert.assertSame(RoleImpl.class, ecm.getInstance(Role.class, "other").getClass());
+        Assert.assertEquals(2, ecm.getInstanceList(Role.class).size());
+    }
+
+    @Test
+    public void testUnregisterComponents() throws Exception
+    {
+        final EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        final DefaultComponentDescriptor<Role> cd1 = new DefaultComponentDescriptor<Role>();
+        cd1.setRole(Role.class);
+        cd1.setImplementation(RoleImpl.class);
+
+        final DefaultComponentDescriptor<Role> cd2 = new DefaultComponentDescriptor<Role>();
+        cd2.setRole(Role.class);
+        cd2.setRoleHint("other");
+        cd2.setImplementation(RoleImpl.class);
+
+        ecm.registerComponents(Arrays.<ComponentDescriptor< ? >>asList(cd1, cd2));
+        Assert.assertEquals(2, ecm.getInstanceList(Role.class).size());
+
+        // Not the registered component so it should be left untouched
+        final DefaultComponentDescriptor<Role> cd3 = new DefaultComponentDescriptor<Role>();
+        cd3.setRole(Role.class);
+        cd3.setRoleHint("other");
+        cd3.setImplementation(OtherRoleImpl.class);
+
+        final ComponentEventManager cem = getMockery().mock(ComponentEventManager.class);
+        ecm.setComponentEventManager(cem);
+
+        getMockery().checking(new Expectations()
+        {
+            {
+                oneOf(cem).notifyComponentsUnregistered(Arrays.<ComponentDescriptor< ? >>asList(cd1), ecm);
+            }
+        });
+
+        ecm.unregisterComponents(Arrays.<ComponentDescriptor< ? >>asList(cd1, cd3));
+
+        Assert.assertFalse(ecm.hasComponent(Role.class));
+        Assert.assertSame(RoleImpl.class, ecm.getInstance(Role.class, "other").getClass());
+    }
+
+    @Test
+    public void testTryGetInstance() throws Exception
+    {
+        EmbeddableComponentManager parent = new EmbeddableComponentManager();
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ecm.setParent(parent);
+
+        ComponentKey<Role> key = ComponentKey.get(Role.class, "hint");
+
+        // Missing component
+        Assert.assertNull(ecm.tryGetInstance(key));
+
+        // Component registered in the parent
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<Role>();
+        cd.setRole(Role.class);
+        cd.setRoleHint("hint");
+        cd.setImplementation(RoleImpl.class);
+        parent.registerComponent(cd);
+
+        Role instance = ecm.tryGetInstance(key);
+        Assert.assertTrue(instance instanceof RoleImpl);
+        Assert.assertSame(instance, ecm.getInstance(key));
+
+        // Key which is not canonical
+        ComponentKey<Role> otherKey = ComponentKey.create(Role.class, "hint");
+        Assert.assertNotSame(key, otherKey);
+        Assert.assertSame(instance, ecm.tryGetInstance(otherKey));
+
+        // Component which exists but can't be created
+        DefaultComponentDescriptor<Role> failingCd = new DefaultComponentDescriptor<Role>();
+        failingCd.setRole(Role.class);
+        failingCd.setRoleHint("failing");
+        failingCd.setImplementation(FailingRoleImpl.class);
+        ecm.registerComponent(failingCd);
+
+        try {
+            ecm.tryGetInstance(ComponentKey.get(Role.class, "failing"));
+            Assert.fail("Should have thrown an exception");
+        } catch (ComponentLookupException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMissingComponentsAreCached() throws Exception
+    {
+        final int[] parentLookups = new int[1];
+        EmbeddableComponentManager grandParent = new EmbeddableComponentManager();
+        EmbeddableComponentManager parent = new EmbeddableComponentManager()
+        {
+            @Override
+            public boolean hasComponent(Type role, String hint)
+            {
+                ++parentLookups[0];
+
+                return super.hasComponent(role, hint);
+            }
+
+            @Override
+            public <T> T tryGetInstance(ComponentKey<T> key) throws ComponentLookupException
+            {
+                ++parentLookups[0];
+
+                return super.tryGetInstance(key);
+            }
+        };
+        parent.setParent(grandParent);
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ecm.setParent(parent);
+
+        ComponentKey<Role> key = ComponentKey.get(Role.class, "hint");
+
+        Assert.assertFalse(ecm.hasComponent(Role.class, "hint"));
+        Assert.assertFalse(ecm.hasComponent(Role.class, "hint"));
+        Assert.assertNull(ecm.tryGetInstance(key));
+        Assert.assertNull(ecm.tryGetInstance(key));
+        try {
+            ecm.getInstance(Role.class, "hint");
+            Assert.fail("Should have thrown an exception");
+        } catch (ComponentLookupException expected) {
+            // expected
+        }
+        // The parent is only asked once, whatever the lookup method
+        Assert.assertEquals(1, parentLookups[0]);
+
+        // Registering the component in an ancestor invalidates the cache
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<Role>();
+        cd.setRole(Role.class);
+        cd.setRoleHint("hint");
+        cd.setImplementation(RoleImpl.class);
+        grandParent.registerComponent(cd);
+
+        Assert.assertTrue(ecm.hasComponent(Role.class, "hint"));
+        Assert.assertTrue(ecm.tryGetInstance(key) instanceof RoleImpl);
+    }
+
+    @Test
+    public void testGetInstanceWithKey() throws Exception
+    {
+        EmbeddableComponentManager parent = new EmbeddableComponentManager();
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ecm.setParent(parent);
+
+        ComponentKey<Role> key = ComponentKey.get(Role.class, "hint");
+        Assert.assertSame(key, ComponentKey.get(Role.class, "hint"));
+
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<Role>();
+        cd.setRole(Role.class);
+        cd.setRoleHint("hint");
+        cd.setImplementation(RoleImpl.class);
+        parent.registerComponent(cd);
+
+        // Singleton resolved in the parent
+        Role parentInstance = ecm.getInstance(key);
+        Assert.assertTrue(parentInstance instanceof RoleImpl);
+        Assert.assertSame(parentInstance, ecm.getInstance(key));
+        Assert.assertSame(parentInstance, ecm.getInstance(Role.class, "hint"));
+
+        // Registering a component in the child hides the one of the parent
+        DefaultComponentDescriptor<Role> childCd = new DefaultComponentDescriptor<Role>();
+        childCd.setRole(Role.class);
+        childCd.setRoleHint("hint");
+        childCd.setImplementation(OtherRoleImpl.class);
+        ecm.registerComponent(childCd);
+
+        Role childInstance = ecm.getInstance(key);
+        Assert.assertTrue(childInstance instanceof OtherRoleImpl);
+        Assert.assertSame(childInstance, ecm.getInstance(key));
+
+        // Changes in the parent are taken into account
+        ecm.unregisterComponent(Role.class, "hint");
+        Assert.assertSame(parentInstance, ecm.getInstance(key));
+        parent.unregisterComponent(Role.class, "hint");
+
+        try {
+            ecm.getInstance(key);
+            Assert.fail("Should have thrown a ComponentLookupException");
+        } catch (ComponentLookupException expected) {
+            // The component has been unregistered
+        }
+    }
+
+    @Test
+    public void testGetInstanceWithKeyWhenPerLookup() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<Role>();
+        cd.setRole(Role.class);
+        cd.setImplementation(RoleImpl.class);
+        cd.setInstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP);
+        ecm.registerComponent(cd);
+
+        ComponentKey<Role> key = ComponentKey.get(Role.class);
+        Assert.assertNotSame(ecm.getInstance(key), ecm.getInstance(key));
+    }
 }
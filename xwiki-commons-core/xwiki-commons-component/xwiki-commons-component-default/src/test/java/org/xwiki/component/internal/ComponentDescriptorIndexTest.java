@@ -0,0 +1,196 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.internal;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.component.annotation.ComponentAnnotationLoader;
+import org.xwiki.component.annotation.ComponentDeclaration;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+
+/**
+ * Unit tests for {@link ComponentDescriptorIndex}.
+ * 
+ * @version $Id$
+ */
+public class ComponentDescriptorIndexTest
+{
+    private File indexFile = new File("target/ComponentDescriptorIndexTest/index");
+
+    private File jarFile = new File("target/ComponentDescriptorIndexTest/components.jar");
+
+    private URL componentList;
+
+    private List<ComponentDeclaration> declarations = Arrays.asList(new ComponentDeclaration(
+        ContextComponentManagerProvider.class.getName()));
+
+    private ClassLoader classLoader = getClass().getClassLoader();
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.indexFile.delete();
+        this.jarFile.getParentFile().mkdirs();
+
+        JarOutputStream jar = new JarOutputStream(new FileOutputStream(this.jarFile));
+        try {
+            jar.putNextEntry(new ZipEntry(ComponentAnnotationLoader.COMPONENT_LIST));
+            jar.write(ContextComponentManagerProvider.class.getName().getBytes("UTF-8"));
+            jar.closeEntry();
+        } finally {
+            jar.close();
+        }
+
+        this.componentList =
+            new URL("jar:" + this.jarFile.toURI().toURL() + "!/" + ComponentAnnotationLoader.COMPONENT_LIST);
+    }
+
+    private ComponentDescriptorIndex loadIndex()
+    {
+        ComponentDescriptorIndex index = new ComponentDescriptorIndex(this.indexFile);
+        index.load(this.classLoader);
+        index.addDeclarations(this.componentList, this.declarations);
+
+        return index;
+    }
+
+    @Test
+    public void testStoreAndReuseDescriptors() throws Exception
+    {
+        List<ComponentDescriptor> descriptors =
+            new ComponentAnnotationLoader().getComponentsDescriptors(ContextComponentManagerProvider.class);
+
+        ComponentDescriptorIndex index = loadIndex();
+        Assert.assertNull(index.getDescriptors(ContextComponentManagerProvider.class));
+        index.putDescriptors(ContextComponentManagerProvider.class, descriptors, 1000000L);
+        index.save();
+
+        Assert.assertTrue(this.indexFile.exists());
+        Assert.assertFalse(new File(this.indexFile.getPath() + ".tmp").exists());
+
+        index = loadIndex();
+        Assert.assertEquals(descriptors, index.getDescriptors(ContextComponentManagerProvider.class));
+        Assert.assertEquals(1, index.getIndexedCount());
+        Assert.assertEquals(1, index.getSavedTime());
+    }
+
+    @Test
+    public void testDescriptorsAreDroppedWhenJarChanges() throws Exception
+    {
+        ComponentDescriptorIndex index = loadIndex();
+        index.putDescriptors(ContextComponentManagerProvider.class,
+            new ComponentAnnotationLoader().getComponentsDescriptors(ContextComponentManagerProvider.class), 0);
+        index.save();
+
+        this.jarFile.setLastModified(this.jarFile.lastModified() - 10000L);
+
+        index = loadIndex();
+        Assert.assertNull(index.getDescriptors(ContextComponentManagerProvider.class));
+    }
+
+    @Test
+    public void testDescriptorsAreDroppedWhenClassHierarchyChanges() throws Exception
+    {
+        ComponentDescriptorIndex index = loadIndex();
+        index.putDescriptors(ContextComponentManagerProvider.class,
+            new ComponentAnnotationLoader().getComponentsDescriptors(ContextComponentManagerProvider.class), 0);
+        index.save();
+
+        // The implementation class is located outside of the jar declaring it
+        File classFile =
+            new File(ContextComponentManagerProvider.class.getResource(
+                ContextComponentManagerProvider.class.getSimpleName() + ".class").toURI());
+        long lastModified = classFile.lastModified();
+        classFile.setLastModified(lastModified - 10000L);
+        try {
+            index = loadIndex();
+            Assert.assertNull(index.getDescriptors(ContextComponentManagerProvider.class));
+        } finally {
+            classFile.setLastModified(lastModified);
+        }
+    }
+
+    @Test
+    public void testComponentsOutsideOfJarsAreNotIndexed() throws Exception
+    {
+        ComponentDescriptorIndex index = new ComponentDescriptorIndex(this.indexFile);
+        index.load(this.classLoader);
+        index.addDeclarations(this.jarFile.getParentFile().toURI().toURL(), this.declarations);
+        index.putDescriptors(ContextComponentManagerProvider.class,
+            new ComponentAnnotationLoader().getComponentsDescriptors(ContextComponentManagerProvider.class), 0);
+        index.save();
+
+        index = loadIndex();
+        Assert.assertNull(index.getDescriptors(ContextComponentManagerProvider.class));
+    }
+
+    @Test
+    public void testCorruptedIndexIsDropped() throws Exception
+    {
+        ComponentDescriptorIndex index = loadIndex();
+        index.putDescriptors(ContextComponentManagerProvider.class,
+            new ComponentAnnotationLoader().getComponentsDescriptors(ContextComponentManagerProvider.class), 0);
+        index.save();
+
+        // Replace the length of the descriptors by a huge value
+        byte[] content = new byte[(int) this.indexFile.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(this.indexFile));
+        try {
+            in.readFully(content);
+        } finally {
+            in.close();
+        }
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(this.indexFile));
+        try {
+            out.write(content, 0, content.length - ComponentDescriptorCodec.encode(
+                new ComponentAnnotationLoader().getComponentsDescriptors(ContextComponentManagerProvider.class)).length
+                - 4);
+            out.writeInt(Integer.MAX_VALUE);
+        } finally {
+            out.close();
+        }
+
+        index = loadIndex();
+        Assert.assertNull(index.getDescriptors(ContextComponentManagerProvider.class));
+
+        // Garbage
+        out = new DataOutputStream(new FileOutputStream(this.indexFile));
+        try {
+            out.writeUTF("garbage");
+        } finally {
+            out.close();
+        }
+
+        index = loadIndex();
+        Assert.assertNull(index.getDescriptors(ContextComponentManagerProvider.class));
+    }
+}
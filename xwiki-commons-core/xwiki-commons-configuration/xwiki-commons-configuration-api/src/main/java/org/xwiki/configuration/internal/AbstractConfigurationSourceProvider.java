@@ -24,6 +24,7 @@
 import javax.inject.Singleton;
 
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentKey;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.configuration.ConfigurationSource;
@@ -38,6 +39,18 @@
 @Singleton
 public abstract class AbstractConfigurationSourceProvider implements Provider<ConfigurationSource>
 {
+    /**
+     * The identifier of the memory Configuration Source.
+     */
+    private static final ComponentKey<ConfigurationSource> MEMORY_KEY = ComponentKey.get(ConfigurationSource.class,
+        "memory");
+
+    /**
+     * The identifier of the void Configuration Source.
+     */
+    private static final ComponentKey<ConfigurationSource> VOID_KEY = ComponentKey.get(ConfigurationSource.class,
+        "void");
+
     /**
      * Used to lookup existing {@link org.xwiki.configuration.ConfigurationSource} components.
      */
@@ -51,18 +64,12 @@ public abstract class AbstractConfigurationSourceProvider implements Provider<Co
      */
     protected ConfigurationSource get(String hint)
     {
-        ConfigurationSource configurationSource;
+        ConfigurationSource configurationSource =
+            tryGetInstance(ComponentKey.<ConfigurationSource>create(ConfigurationSource.class, hint));
 
-        try {
-            if (hint == null) {
-                configurationSource = this.componentManager.getInstance(ConfigurationSource.class);
-            } else {
-                configurationSource = this.componentManager.getInstance(ConfigurationSource.class, hint);
-            }
-        } catch (ComponentLookupException e) {
-            try {
-                configurationSource = this.componentManager.getInstance(ConfigurationSource.class, "memory");
-            } catch (ComponentLookupException e1) {
+        if (configurationSource == null) {
+            configurationSource = tryGetInstance(MEMORY_KEY);
+            if (configurationSource == null) {
                 configurationSource = getVoidConfigurationSource();
             }
         }
@@ -75,14 +82,25 @@ protected ConfigurationSource get(String hint)
      */
     private ConfigurationSource getVoidConfigurationSource()
     {
-        ConfigurationSource configurationSource;
+        ConfigurationSource configurationSource = tryGetInstance(VOID_KEY);
 
-        try {
-            configurationSource = this.componentManager.getInstance(ConfigurationSource.class, "void");
-        } catch (ComponentLookupException e) {
+        if (configurationSource == null) {
             configurationSource = new VoidConfigurationSource();
         }
 
         return configurationSource;
     }
+
+    /**
+     * @param key the identifier of the Configuration Source to lookup
+     * @return the Configuration Source or null if it does not exist or could not be created
+     */
+    private ConfigurationSource tryGetInstance(ComponentKey<ConfigurationSource> key)
+    {
+        try {
+            return this.componentManager.tryGetInstance(key);
+        } catch (ComponentLookupException e) {
+            return null;
+        }
+    }
 }
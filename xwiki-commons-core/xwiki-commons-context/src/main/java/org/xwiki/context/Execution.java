@@ -41,6 +41,10 @@
     void setContext(ExecutionContext context);
 
     /**
+     * The provided context inherits the properties of the current context (see
+     * {@link ExecutionContext#inheritFrom(ExecutionContext)}): they are only copied when modified, in the provided
+     * context or in the current one, so the provided context keeps seeing them as they were when it was pushed.
+     * 
      * @param context create a new context level for the current thread and set the provided context
      */
     void pushContext(ExecutionContext context);
@@ -19,8 +19,13 @@
  */
 package org.xwiki.context;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,7 +36,7 @@
  * Contains all state data related to the current user action. Note that the execution context is independent of the
  * environment and all environment-dependent data are stored in the Container component instead.
  *
- * @version $Id$ 
+ * @version $Id$
  * @since 1.5M2
  */
 public class ExecutionContext
@@ -40,9 +45,35 @@
     private static final Logger LOGGER = LoggerFactory.getLogger(ExecutionContext.class);
 
     /**
+     * The properties of this context. It's replaced by a copy before being modified once it has been inherited by
+     * another context, so that the inheriting contexts keep seeing the properties as they were when the inheritance was
+     * performed without this context having to know about them.
+     *
      * @see #getProperty(String)
+     * @see #inheritFrom(ExecutionContext)
+     */
+    private State state = new State(this);
+
+    /**
+     * The initializers which have not been executed yet, indexed by the keys of the properties they provide. Lazily
+     * created.
+     *
+     * @see #addLazyInitializer(LazyExecutionContextInitializer)
      */
-    private Map<String, ExecutionContextProperty> properties = new HashMap<String, ExecutionContextProperty>();
+    private Map<String, LazyExecutionContextInitializer> lazyInitializers;
+
+    /**
+     * Indicate if this context is a snapshot, which can't be modified.
+     *
+     * @see #snapshot()
+     */
+    private boolean snapshot;
+
+    /**
+     * Indicate that a lazy initializer is being executed on this context, in which case the contexts inheriting from
+     * this context see the declared properties as if they were declared before the inheritance.
+     */
+    private boolean initializing;
 
     /**
      * @param key the key under which is stored the property to retrieve
@@ -50,11 +81,22 @@
      */
     public Object getProperty(String key)
     {
-        ExecutionContextProperty property = properties.get(key);
+        initializeLazily(key);
+
+        ExecutionContextProperty property = this.state.properties.get(key);
 
         if (property == null) {
-            LOGGER.debug("Getting undefined property {} from execution context.", key);
-            return null;
+            property = this.state.getInheritedProperty(key);
+
+            if (property == null) {
+                LOGGER.debug("Getting undefined property {} from execution context.", key);
+                return null;
+            }
+
+            if (property.isCloneValue()) {
+                // The value may be modified by the caller so it has to be this context's own copy
+                property = copyProperty(property);
+            }
         }
 
         return property.getValue();
@@ -76,7 +118,9 @@ public DeclarationBuilder newProperty(String key)
      */
     public boolean hasProperty(String key)
     {
-        return properties.containsKey(key);
+        initializeLazily(key);
+
+        return this.state.properties.containsKey(key) || this.state.getInheritedProperty(key) != null;
     }
 
     /**
@@ -84,32 +128,57 @@ public boolean hasProperty(String key)
      */
     public Map<String, Object> getProperties()
     {
+        // All the properties are needed
+        initializeAll();
+
         Map<String, Object> map = new HashMap<String, Object>();
 
-        for (Map.Entry<String, ExecutionContextProperty> entry : properties.entrySet()) {
-            map.put(entry.getKey(), entry.getValue().getValue());
+        for (Map.Entry<String, ExecutionContextProperty> entry : getVisibleProperties().entrySet()) {
+            ExecutionContextProperty property = entry.getValue();
+            if (property.isCloneValue() && this.state.properties.get(entry.getKey()) != property) {
+                property = copyProperty(property);
+            }
+            map.put(entry.getKey(), property.getValue());
         }
 
         return map;
     }
-    
+
     /**
      * @param key remove the property whose key matches the passed key
      */
     public void removeProperty(String key)
     {
-        ExecutionContextProperty property = properties.get(key);
+        checkModifiable();
+
+        initializeLazily(key);
+
+        ExecutionContextProperty property = this.state.properties.get(key);
 
         if (property == null) {
-            LOGGER.warn("Tried to remove non-existing property [{}] from execution context.", key);
-            return;
+            property = this.state.getInheritedProperty(key);
+
+            if (property == null) {
+                LOGGER.warn("Tried to remove non-existing property [{}] from execution context.", key);
+                return;
+            }
         }
 
         if (property.isFinal()) {
             throw new PropertyIsFinalException(key);
         }
 
-        this.properties.remove(key);
+        beforeModification();
+
+        this.state.properties.remove(key);
+
+        // Make sure the property is not inherited again
+        if (this.state.inheritedState != null) {
+            if (this.state.removedInheritedKeys == null) {
+                this.state.removedInheritedKeys = new HashSet<String>();
+            }
+            this.state.removedInheritedKeys.add(key);
+        }
     }
 
     /**
@@ -118,14 +187,30 @@ public void removeProperty(String key)
      */
     public void setProperty(String key, Object value)
     {
-        ExecutionContextProperty property = properties.get(key);
+        checkModifiable();
+
+        initializeLazily(key);
+
+        ExecutionContextProperty property = this.state.properties.get(key);
 
         if (property == null) {
-            LOGGER.debug("Implicit declaration of property {}.", key);
-            newProperty(key).declare();
-            property = properties.get(key);
+            property = this.state.getInheritedProperty(key);
+
+            if (property == null) {
+                LOGGER.debug("Implicit declaration of property {}.", key);
+                newProperty(key).declare();
+                property = this.state.properties.get(key);
+            } else if (property.isFinal()) {
+                throw new PropertyIsFinalException(key);
+            } else {
+                // Copy on write: the inherited context must not be affected
+                property = copyProperty(property);
+            }
         } else if (property.isFinal()) {
             throw new PropertyIsFinalException(key);
+        } else if (isShared()) {
+            // Copy on write: the contexts inheriting from this context must not be affected
+            property = copyProperty(property);
         }
 
         property.setValue(value);
@@ -147,16 +232,24 @@ public void setProperties(Map<String, Object> properties)
      * @param property The property with configured metadata attributes.
      *
      * @throws PropertyAlreadyExistsException if the property alread exists in this execution context.
-     * 
+     *
      * @since 4.3M1
      */
     private void declareProperty(ExecutionContextProperty property)
     {
-        if (properties.containsKey(property.getKey())) {
+        checkModifiable();
+
+        if (hasProperty(property.getKey())) {
             throw new PropertyAlreadyExistsException(property.getKey());
         }
 
-        properties.put(property.getKey(), property);
+        beforeModification();
+
+        this.state.properties.put(property.getKey(), property);
+
+        if (this.initializing) {
+            this.state.addLazilyDeclaredKey(property.getKey());
+        }
     }
 
     /**
@@ -165,27 +258,308 @@ private void declareProperty(ExecutionContextProperty property)
      * Inheritance is performed both in {@link Execution#setContext()} and in {@link Execution.pushContext()}, if there
      * is a current execution context.
      *
-     * All properties marked as 'inherited' will be copied into this context, unless the property already is declared in
-     * this context.
+     * All properties marked as 'inherited' will be visible in this context, unless the property already is declared in
+     * this context. They are not copied right away but only when they are modified in this context (or when their value
+     * is accessed, for the properties whose value has to be cloned). The given execution context does not keep track of
+     * this context: it copies its own properties the first time it's modified after the inheritance, so this context
+     * keeps seeing the properties as they were when the inheritance was performed (the values themselves are not
+     * copied, unless they have to be cloned). Use {@link #copyInheritedProperties()} to stop depending on the given
+     * execution context.
      *
      * It is an error if this context contain a value that was declared as 'inherited' and 'final' in the inherited
      * execution context and an exception will be thrown.
-     * 
+     *
      * @param executionContext The execution to inherit.
      * @throws IllegalStateException if the execution context cannot be inherited.
      * @since 4.3M1
      */
     public void inheritFrom(ExecutionContext executionContext)
     {
-        for (ExecutionContextProperty property : executionContext.properties.values()) {
+        checkModifiable();
+
+        // Keep what has been inherited so far
+        copyInheritedProperties();
+
+        for (ExecutionContextProperty property : this.state.properties.values()) {
+            ExecutionContextProperty inheritedProperty = executionContext.state.getVisibleProperty(property.getKey());
+            if (inheritedProperty != null && inheritedProperty.isInherited()) {
+                checkIfInheritedPropertyMayBeIgnored(inheritedProperty);
+            }
+        }
+
+        if (isInheritedBy(executionContext)) {
+            // Linking the contexts would create a cycle so the inherited properties are copied right away
+            for (ExecutionContextProperty property : executionContext.getVisibleProperties().values()) {
+                if (property.isInherited() && !this.state.properties.containsKey(property.getKey())) {
+                    copyProperty(property);
+                }
+            }
+            adoptPendingInitializers(executionContext.state);
+        } else {
+            beforeModification();
+
+            this.state.inheritedState = executionContext.state;
+
+            if (executionContext.snapshot) {
+                // A snapshot can't execute its pending initializers
+                adoptPendingInitializers(executionContext.state);
+            } else {
+                // The inherited context has to copy its properties before modifying them
+                executionContext.state.shared = true;
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if the properties of this context have to be copied before being modified, because they are
+     *         seen by contexts inheriting from this context
+     */
+    private boolean isShared()
+    {
+        // The properties declared by a lazy initializer are seen as if they were declared before the inheritance
+        return this.state.shared && !this.initializing;
+    }
+
+    /**
+     * Called before the properties of this context are modified (set, declared or removed), to make sure the contexts
+     * inheriting from this context keep the version they have inherited.
+     */
+    private void beforeModification()
+    {
+        if (isShared()) {
+            this.state = new State(this.state);
+        }
+    }
+
+    /**
+     * @param executionContext an execution context
+     * @return {@code true} if the passed context is this context or inherits from it, directly or not
+     */
+    private boolean isInheritedBy(ExecutionContext executionContext)
+    {
+        State inheritedState = executionContext.state;
+        while (inheritedState != null) {
+            if (inheritedState.owner == this) {
+                return true;
+            }
+            inheritedState = inheritedState.inheritedState;
+        }
+
+        return false;
+    }
+
+    /**
+     * Copy in this context the properties it inherits, so that it does not depend anymore on the execution context it
+     * has inherited from. This is needed when this context is going to be used after the inherited context has been
+     * modified, for example when it's used by another thread.
+     *
+     * @since 4.3M2
+     */
+    public void copyInheritedProperties()
+    {
+        State inheritedState = this.state.inheritedState;
+
+        if (inheritedState != null) {
+            beforeModification();
+
+            for (ExecutionContextProperty property : getVisibleProperties().values()) {
+                if (!this.state.properties.containsKey(property.getKey())) {
+                    copyProperty(property);
+                }
+            }
+
+            // The properties which have not been initialized yet will be initialized in this context if needed
+            adoptPendingInitializers(inheritedState);
+
+            this.state.inheritedState = null;
+            this.state.removedInheritedKeys = null;
+        }
+    }
+
+    /**
+     * Register an initializer to execute the first time one of the properties it provides is needed.
+     *
+     * @param initializer the initializer
+     * @since 4.3M2
+     */
+    public void addLazyInitializer(LazyExecutionContextInitializer initializer)
+    {
+        checkModifiable();
+
+        if (this.lazyInitializers == null) {
+            this.lazyInitializers = new HashMap<String, LazyExecutionContextInitializer>();
+        }
+
+        for (String key : initializer.getProvidedProperties()) {
+            this.lazyInitializers.put(key, initializer);
+        }
+    }
+
+    /**
+     * Execute the lazy initializer providing the passed property, if it has not been executed yet.
+     *
+     * @param key the key of the property
+     */
+    private void initializeLazily(String key)
+    {
+        // A snapshot can't be modified, its pending initializers are executed by the contexts inheriting from it
+        if (this.lazyInitializers != null && !this.snapshot) {
+            LazyExecutionContextInitializer initializer = this.lazyInitializers.get(key);
+
+            if (initializer != null) {
+                initializeLazily(initializer);
+            }
+        }
+    }
+
+    /**
+     * Execute all the lazy initializers which have not been executed yet, in this context and in the contexts it
+     * inherits from.
+     */
+    private void initializeAll()
+    {
+        State inheritedState = this.state;
+        while (inheritedState != null) {
+            ExecutionContext executionContext = inheritedState.owner;
+            while (!executionContext.snapshot && executionContext.lazyInitializers != null
+                && !executionContext.lazyInitializers.isEmpty()) {
+                executionContext.initializeLazily(executionContext.lazyInitializers.values().iterator().next());
+            }
+            inheritedState = inheritedState.inheritedState;
+        }
+    }
+
+    /**
+     * Register in this context the lazy initializers which have not been executed yet in the passed state, instead of
+     * executing them, for the properties which are not declared in this context.
+     *
+     * @param inheritedState the state from which to take the pending initializers
+     */
+    private void adoptPendingInitializers(State inheritedState)
+    {
+        for (Map.Entry<String, LazyExecutionContextInitializer> entry : inheritedState.getPendingInitializers()
+            .entrySet()) {
+            if (!this.state.properties.containsKey(entry.getKey())
+                && (this.lazyInitializers == null || !this.lazyInitializers.containsKey(entry.getKey()))) {
+                if (this.lazyInitializers == null) {
+                    this.lazyInitializers = new HashMap<String, LazyExecutionContextInitializer>();
+                }
+                this.lazyInitializers.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * @param initializer the lazy initializer to execute
+     */
+    private void initializeLazily(LazyExecutionContextInitializer initializer)
+    {
+        // Unregister the initializer first since it's going to access the properties it provides
+        this.lazyInitializers.values().removeAll(Collections.singleton(initializer));
+
+        boolean wasInitializing = this.initializing;
+        this.initializing = true;
+        try {
+            initializer.initialize(this);
+        } catch (ExecutionContextException e) {
+            throw new ExecutionContextInitializationException("Failed to lazily initialize the properties "
+                + initializer.getProvidedProperties() + " of the execution context", e);
+        } finally {
+            this.initializing = wasInitializing;
+        }
+    }
+
+    /**
+     * Create an immutable copy of the properties of this context which are inherited by other contexts.
+     * <p>
+     * A snapshot is meant to transfer the inheritable state of the current context to other threads: it can be
+     * inherited (see {@link #inheritFrom(ExecutionContext)}) by any number of contexts, from any thread, since it can't
+     * be modified and the contexts inheriting from it only copy the properties they modify. Unlike
+     * {@link ExecutionContextManager#clone(ExecutionContext)} no {@link ExecutionContextInitializer} is executed: the
+     * lazy initializers which have not been executed yet are executed by the contexts inheriting from the snapshot, if
+     * they need one of the properties these initializers provide.
+     *
+     * @return the snapshot of the inherited properties of this context
+     * @since 4.3M2
+     */
+    public ExecutionContext snapshot()
+    {
+        ExecutionContext snapshotContext = new ExecutionContext();
+
+        // The properties are copied since they can be modified in this context
+        for (ExecutionContextProperty property : getVisibleProperties().values()) {
             if (property.isInherited()) {
-                if (this.properties.containsKey(property.getKey())) {
-                    checkIfInheritedPropertyMayBeIgnored(property);
-                } else {
-                    declareProperty(property.clone());
+                snapshotContext.state.properties.put(property.getKey(), property.clone());
+            }
+        }
+
+        Map<String, LazyExecutionContextInitializer> pendingInitializers = this.state.getPendingInitializers();
+        if (!pendingInitializers.isEmpty()) {
+            snapshotContext.lazyInitializers = pendingInitializers;
+        }
+
+        snapshotContext.snapshot = true;
+
+        return snapshotContext;
+    }
+
+    /**
+     * @throws UnsupportedOperationException if this context is a snapshot
+     */
+    private void checkModifiable()
+    {
+        if (this.snapshot) {
+            throw new UnsupportedOperationException("An execution context snapshot can't be modified");
+        }
+    }
+
+    /**
+     * @return the properties declared in this context or inherited, indexed by key
+     */
+    private Map<String, ExecutionContextProperty> getVisibleProperties()
+    {
+        Map<String, ExecutionContextProperty> map =
+            new HashMap<String, ExecutionContextProperty>(this.state.properties);
+
+        // The keys of the inherited properties which are hidden by a removal or by a property which is not inherited
+        Set<String> hiddenKeys = new HashSet<String>();
+
+        State currentState = this.state;
+        while (currentState.inheritedState != null) {
+            if (currentState.removedInheritedKeys != null) {
+                hiddenKeys.addAll(currentState.removedInheritedKeys);
+            }
+
+            for (ExecutionContextProperty property : currentState.inheritedState.getProperties()) {
+                String key = property.getKey();
+                if (!map.containsKey(key) && !hiddenKeys.contains(key)) {
+                    if (property.isInherited()) {
+                        map.put(key, property);
+                    } else {
+                        hiddenKeys.add(key);
+                    }
                 }
             }
+
+            currentState = currentState.inheritedState;
         }
+
+        return map;
+    }
+
+    /**
+     * @param property an inherited property, or a property of this context which is seen by inheriting contexts
+     * @return the copy of the property, now declared in this context
+     */
+    private ExecutionContextProperty copyProperty(ExecutionContextProperty property)
+    {
+        beforeModification();
+
+        ExecutionContextProperty copy = property.clone();
+
+        this.state.properties.put(copy.getKey(), copy);
+
+        return copy;
     }
 
     /**
@@ -195,7 +569,7 @@ public void inheritFrom(ExecutionContext executionContext)
     private void checkIfInheritedPropertyMayBeIgnored(ExecutionContextProperty property)
     {
         if (property.isFinal()) {
-            ExecutionContextProperty shadowingProperty = this.properties.get(property.getKey());
+            ExecutionContextProperty shadowingProperty = this.state.properties.get(property.getKey());
             if (!shadowingProperty.isClonedFrom(property)) {
                 throw new IllegalStateException(
                      String.format("Execution context cannot be inherited because it already contains"
@@ -320,4 +694,165 @@ public DeclarationBuilder nonNull()
             return this;
         }
     }
+
+    /**
+     * The properties of an execution context, as seen by the contexts inheriting from it. A state is not modified
+     * anymore once it has been inherited, except by the lazy initializers of its context.
+     */
+    private static final class State
+    {
+        /** The execution context owning this state. */
+        private final ExecutionContext owner;
+
+        /** The properties declared in the context, indexed by key. */
+        private final Map<String, ExecutionContextProperty> properties;
+
+        /**
+         * The state of the execution context the context inherits from. Inherited properties are not copied when the
+         * inheritance is performed but looked up in this state until they are modified.
+         */
+        private State inheritedState;
+
+        /**
+         * The keys of the inherited properties which have been removed from the context while still stored in
+         * {@link #inheritedState}. Lazily created.
+         */
+        private Set<String> removedInheritedKeys;
+
+        /** The keys of the properties declared by lazy initializers. Lazily created. */
+        private Set<String> lazilyDeclaredKeys;
+
+        /** Indicate that this state is seen by inheriting contexts, and has to be copied before being modified. */
+        private boolean shared;
+
+        /**
+         * @param owner the execution context owning the new state
+         */
+        State(ExecutionContext owner)
+        {
+            this.owner = owner;
+            this.properties = new HashMap<String, ExecutionContextProperty>();
+        }
+
+        /**
+         * @param state the state to copy
+         */
+        State(State state)
+        {
+            this.owner = state.owner;
+            this.properties = new HashMap<String, ExecutionContextProperty>(state.properties);
+            this.inheritedState = state.inheritedState;
+            if (state.removedInheritedKeys != null) {
+                this.removedInheritedKeys = new HashSet<String>(state.removedInheritedKeys);
+            }
+            if (state.lazilyDeclaredKeys != null) {
+                this.lazilyDeclaredKeys = new HashSet<String>(state.lazilyDeclaredKeys);
+            }
+        }
+
+        /**
+         * @param key the key of a property declared by a lazy initializer
+         */
+        void addLazilyDeclaredKey(String key)
+        {
+            if (this.lazilyDeclaredKeys == null) {
+                this.lazilyDeclaredKeys = new HashSet<String>();
+            }
+            this.lazilyDeclaredKeys.add(key);
+        }
+
+        /**
+         * @return the properties declared in this state, including the ones declared by lazy initializers after the
+         *         context has replaced this state
+         */
+        Collection<ExecutionContextProperty> getProperties()
+        {
+            State currentState = this.owner.state;
+
+            if (currentState == this || currentState.lazilyDeclaredKeys == null) {
+                return this.properties.values();
+            }
+
+            Collection<ExecutionContextProperty> values =
+                new ArrayList<ExecutionContextProperty>(this.properties.values());
+            for (String key : currentState.lazilyDeclaredKeys) {
+                if (!this.properties.containsKey(key) && currentState.properties.containsKey(key)) {
+                    values.add(currentState.properties.get(key));
+                }
+            }
+
+            return values;
+        }
+
+        /**
+         * @param key the key of the property
+         * @return the property declared in this state for the passed key
+         */
+        ExecutionContextProperty getProperty(String key)
+        {
+            ExecutionContextProperty property = this.properties.get(key);
+
+            State currentState = this.owner.state;
+            if (property == null && currentState != this && currentState.lazilyDeclaredKeys != null
+                && currentState.lazilyDeclaredKeys.contains(key)) {
+                // Declared after the context has replaced this state, but seen as if declared before the inheritance
+                property = currentState.properties.get(key);
+            }
+
+            return property;
+        }
+
+        /**
+         * @param key the key of the property
+         * @return the property declared in this state or inherited for the passed key
+         */
+        ExecutionContextProperty getVisibleProperty(String key)
+        {
+            this.owner.initializeLazily(key);
+
+            ExecutionContextProperty property = getProperty(key);
+
+            return property != null ? property : getInheritedProperty(key);
+        }
+
+        /**
+         * @param key the key of the property
+         * @return the property inherited for the passed key, or {@code null} if there's none
+         */
+        ExecutionContextProperty getInheritedProperty(String key)
+        {
+            if (this.inheritedState == null
+                || (this.removedInheritedKeys != null && this.removedInheritedKeys.contains(key))) {
+                return null;
+            }
+
+            ExecutionContextProperty property = this.inheritedState.getVisibleProperty(key);
+
+            return property != null && property.isInherited() ? property : null;
+        }
+
+        /**
+         * @return the lazy initializers which have not been executed yet for the properties of this state, indexed by
+         *         the keys of the properties they provide
+         */
+        Map<String, LazyExecutionContextInitializer> getPendingInitializers()
+        {
+            Map<String, LazyExecutionContextInitializer> map = new HashMap<String, LazyExecutionContextInitializer>();
+
+            if (this.inheritedState != null) {
+                map.putAll(this.inheritedState.getPendingInitializers());
+                if (this.removedInheritedKeys != null) {
+                    map.keySet().removeAll(this.removedInheritedKeys);
+                }
+            }
+
+            if (this.owner.lazyInitializers != null) {
+                map.putAll(this.owner.lazyInitializers);
+            }
+
+            map.keySet().removeAll(this.properties.keySet());
+
+            return map;
+        }
+    }
 }
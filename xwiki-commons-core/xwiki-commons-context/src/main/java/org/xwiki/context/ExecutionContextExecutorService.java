@@ -0,0 +1,159 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.context;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps an {@link ExecutorService} so that the tasks are executed with the inherited properties of the execution
+ * context which was current when they were submitted.
+ * <p>
+ * A {@link ExecutionContext#snapshot() snapshot} of the current context is taken when a task is submitted. Before the
+ * task runs, a new execution context inheriting from this snapshot is installed in the thread executing it. The
+ * context is removed once the task is done so that no context leaks in pooled threads. Unlike
+ * {@link ExecutionContextManager#clone(ExecutionContext)} no {@link ExecutionContextInitializer} is executed so it's
+ * cheap to fan work out to several threads.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+public class ExecutionContextExecutorService extends AbstractExecutorService
+{
+    /**
+     * The wrapped executor.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Used to get the current context and install the snapshots.
+     */
+    private final Execution execution;
+
+    /**
+     * @param executor the executor actually running the tasks
+     * @param execution used to get the current context and install the snapshots
+     */
+    public ExecutionContextExecutorService(ExecutorService executor, Execution execution)
+    {
+        this.executor = executor;
+        this.execution = execution;
+    }
+
+    @Override
+    public void execute(Runnable command)
+    {
+        ExecutionContext context = this.execution.getContext();
+
+        this.executor.execute(new ExecutionContextRunnable(command, context != null ? context.snapshot() : null));
+    }
+
+    @Override
+    public void shutdown()
+    {
+        this.executor.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow()
+    {
+        return this.executor.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown()
+    {
+        return this.executor.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated()
+    {
+        return this.executor.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return this.executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Run a task with an execution context inheriting from a snapshot.
+     * 
+     * @version $Id$
+     */
+    private class ExecutionContextRunnable implements Runnable
+    {
+        /**
+         * The task to run.
+         */
+        private final Runnable command;
+
+        /**
+         * The snapshot of the context which was current when the task was submitted.
+         */
+        private final ExecutionContext snapshot;
+
+        /**
+         * @param command the task to run
+         * @param snapshot the snapshot of the context which was current when the task was submitted
+         */
+        ExecutionContextRunnable(Runnable command, ExecutionContext snapshot)
+        {
+            this.command = command;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public void run()
+        {
+            if (this.snapshot == null) {
+                this.command.run();
+
+                return;
+            }
+
+            ExecutionContext context = new ExecutionContext();
+            context.inheritFrom(this.snapshot);
+
+            // The task may be executed by the thread which submitted it (depending on the wrapped executor) in
+            // which case the current context has to be restored afterwards
+            boolean hasContext = execution.getContext() != null;
+            if (hasContext) {
+                execution.pushContext(context);
+            } else {
+                execution.setContext(context);
+            }
+
+            try {
+                this.command.run();
+            } finally {
+                if (hasContext) {
+                    execution.popContext();
+                } else {
+                    execution.removeContext();
+                }
+            }
+        }
+    }
+}
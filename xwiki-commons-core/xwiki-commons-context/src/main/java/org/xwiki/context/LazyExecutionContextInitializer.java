@@ -0,0 +1,47 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.context;
+
+import java.util.Collection;
+
+/**
+ * An {@link ExecutionContextInitializer} whose work is deferred until one of the properties it provides is needed.
+ * <p>
+ * Instead of being called when the execution context is initialized, {@link #initialize(ExecutionContext)} is called
+ * the first time one of the properties returned by {@link #getProvidedProperties()} is accessed in the context (or when
+ * all the properties of the context are needed, see {@link ExecutionContext#getProperties()}), with the initialized
+ * context as current execution context. It's thus only called for the executions actually using these properties.
+ * <p>
+ * A context copying the properties it inherits (see {@link ExecutionContext#copyInheritedProperties()}) or a snapshot
+ * (see {@link ExecutionContext#snapshot()}) takes over the initializers which have not been executed yet instead of
+ * executing them: they are executed on the copying context (or on the contexts inheriting from the snapshot) if it
+ * needs one of their properties. An error during the deferred initialization is thrown as an
+ * {@link ExecutionContextInitializationException}.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+public interface LazyExecutionContextInitializer extends ExecutionContextInitializer
+{
+    /**
+     * @return the keys of the properties declared by {@link #initialize(ExecutionContext)}
+     */
+    Collection<String> getProvidedProperties();
+}
@@ -0,0 +1,83 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.context.internal;
+
+import java.util.Collection;
+
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.LazyExecutionContextInitializer;
+
+/**
+ * Execute a {@link LazyExecutionContextInitializer} with the initialized context as current execution context.
+ * <p>
+ * A lazy initializer is executed when one of its properties is accessed, which can happen while another context is the
+ * current one (for example when a context looks for a property it inherits). The initializers usually get the context
+ * to initialize from {@link Execution#getContext()} so the initialized context has to be the current one.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+public class CurrentContextLazyInitializer implements LazyExecutionContextInitializer
+{
+    /**
+     * The initializer to execute.
+     */
+    private final LazyExecutionContextInitializer initializer;
+
+    /**
+     * Used to make the initialized context the current one.
+     */
+    private final Execution execution;
+
+    /**
+     * @param initializer the initializer to execute
+     * @param execution used to make the initialized context the current one
+     */
+    public CurrentContextLazyInitializer(LazyExecutionContextInitializer initializer, Execution execution)
+    {
+        this.initializer = initializer;
+        this.execution = execution;
+    }
+
+    @Override
+    public Collection<String> getProvidedProperties()
+    {
+        return this.initializer.getProvidedProperties();
+    }
+
+    @Override
+    public void initialize(ExecutionContext context) throws ExecutionContextException
+    {
+        if (this.execution.getContext() == context || !(this.execution instanceof DefaultExecution)) {
+            this.initializer.initialize(context);
+        } else {
+            // Don't inherit from the current context, the initialized context may be the one it inherits from
+            ((DefaultExecution) this.execution).pushContextWithoutInheritance(context);
+
+            try {
+                this.initializer.initialize(context);
+            } finally {
+                this.execution.popContext();
+            }
+        }
+    }
+}
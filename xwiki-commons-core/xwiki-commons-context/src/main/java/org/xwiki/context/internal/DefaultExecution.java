@@ -19,7 +19,9 @@
  */
 package org.xwiki.context.internal;
 
-import java.util.Stack;
+import java.util.ArrayList;
+import java.util.EmptyStackException;
+import java.util.List;
 
 import javax.inject.Singleton;
 
@@ -40,50 +42,77 @@
 public class DefaultExecution implements Execution
 {
     /**
-     * Isolate the execution context by thread.
+     * Isolate the execution context by thread. The stack is only accessed by its thread so it does not need to be
+     * synchronized. The last element is the current context.
      */
-    private ThreadLocal<Stack<ExecutionContext>> context = new ThreadLocal<Stack<ExecutionContext>>();
+    private ThreadLocal<List<ExecutionContext>> context = new ThreadLocal<List<ExecutionContext>>();
 
     @Override
     public void pushContext(ExecutionContext context)
     {
-        Stack<ExecutionContext> stack = this.context.get();
+        List<ExecutionContext> stack = this.context.get();
         if (stack == null) {
-            stack = new Stack<ExecutionContext>();
+            stack = new ArrayList<ExecutionContext>();
             this.context.set(stack);
         } else if (!stack.isEmpty()) {
-            context.inheritFrom(stack.peek());
+            // The inherited properties are only copied when modified, in the pushed context or in the current one
+            context.inheritFrom(stack.get(stack.size() - 1));
         }
 
-        stack.push(context);
+        stack.add(context);
+    }
+
+    /**
+     * Make the passed context the current one, until {@link #popContext()} is called, without inheriting the
+     * properties of the previous current context.
+     * 
+     * @param context the context to make current
+     * @since 4.3M2
+     */
+    void pushContextWithoutInheritance(ExecutionContext context)
+    {
+        List<ExecutionContext> stack = this.context.get();
+        if (stack == null) {
+            stack = new ArrayList<ExecutionContext>();
+            this.context.set(stack);
+        }
+
+        stack.add(context);
     }
 
     @Override
     public void popContext()
     {
-        this.context.get().pop();
+        List<ExecutionContext> stack = this.context.get();
+        if (stack == null || stack.isEmpty()) {
+            throw new EmptyStackException();
+        }
+
+        stack.remove(stack.size() - 1);
     }
 
     @Override
     public ExecutionContext getContext()
     {
-        Stack<ExecutionContext> stack = this.context.get();
-        return stack == null || stack.isEmpty() ? null : stack.peek();
+        List<ExecutionContext> stack = this.context.get();
+        return stack == null || stack.isEmpty() ? null : stack.get(stack.size() - 1);
     }
 
     @Override
     public void setContext(ExecutionContext context)
     {
-        Stack<ExecutionContext> stack = this.context.get();
+        List<ExecutionContext> stack = this.context.get();
         if (stack == null) {
-            stack = new Stack<ExecutionContext>();
+            stack = new ArrayList<ExecutionContext>();
             this.context.set(stack);
-            stack.push(context);
+            stack.add(context);
         } else if (stack.isEmpty()) {
-            stack.push(context);
+            stack.add(context);
         } else {
             if (context != null) {
-                context.inheritFrom(stack.peek());
+                context.inheritFrom(stack.get(stack.size() - 1));
+                // The replaced context is not on the stack anymore so nothing prevents it from being modified
+                context.copyInheritedProperties();
             }
             stack.set(stack.size() - 1, context);
         }
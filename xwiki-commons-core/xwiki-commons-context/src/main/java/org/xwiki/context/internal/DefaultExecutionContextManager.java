@@ -31,6 +31,7 @@
 import org.xwiki.context.ExecutionContextException;
 import org.xwiki.context.ExecutionContextInitializer;
 import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.context.LazyExecutionContextInitializer;
 
 /**
  * Default implementation of {@link ExecutionContextManager}.
@@ -102,6 +103,9 @@ public ExecutionContext clone(ExecutionContext context) throws ExecutionContextE
         }
         try {
             runInitializers(clonedContext);
+
+            // The cloned context is usually used in another thread, while the current one keeps being modified
+            clonedContext.copyInheritedProperties();
         } finally {
             // #initialize set the context but we just want to clone it so we need to restore it
             this.execution.popContext();
@@ -140,7 +144,13 @@ public void initialize(ExecutionContext context) throws ExecutionContextExceptio
     private void runInitializers(ExecutionContext context) throws ExecutionContextException
     {
         for (ExecutionContextInitializer initializer : this.initializers) {
-            initializer.initialize(context);
+            if (initializer instanceof LazyExecutionContextInitializer) {
+                // Executed only if one of the properties it provides is needed
+                context.addLazyInitializer(new CurrentContextLazyInitializer(
+                    (LazyExecutionContextInitializer) initializer, this.execution));
+            } else {
+                initializer.initialize(context);
+            }
         }
     }
 
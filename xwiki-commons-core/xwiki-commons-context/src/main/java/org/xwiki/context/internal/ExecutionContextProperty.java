@@ -132,6 +132,15 @@ public boolean isFinal()
         return this.isFinal;
     }
 
+    /**
+     * @return wether the value of this property is cloned when the property is cloned or not
+     * @since 4.3M2
+     */
+    public boolean isCloneValue()
+    {
+        return this.cloneValue;
+    }
+
     /** @return wether this property should be inherited across execution contexts or not. */
     public boolean isInherited()
     {
@@ -0,0 +1,111 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.context;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.context.internal.DefaultExecution;
+
+/**
+ * Unit tests for {@link ExecutionContextExecutorService}.
+ * 
+ * @version $Id$
+ */
+public class ExecutionContextExecutorServiceTest
+{
+    private Execution execution = new DefaultExecution();
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp()
+    {
+        this.executor = new ExecutionContextExecutorService(Executors.newSingleThreadExecutor(), this.execution);
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.executor.shutdownNow();
+        this.execution.removeContext();
+    }
+
+    @Test
+    public void testTaskInheritsCurrentContext() throws Exception
+    {
+        ExecutionContext context = new ExecutionContext();
+        context.newProperty("inherited").inherited().initial("value").declare();
+        context.newProperty("notinherited").initial("value").declare();
+        this.execution.setContext(context);
+
+        ExecutionContext taskContext = this.executor.submit(new Callable<ExecutionContext>()
+        {
+            @Override
+            public ExecutionContext call() throws Exception
+            {
+                ExecutionContext taskContext = execution.getContext();
+                taskContext.setProperty("inherited", "modified");
+
+                return taskContext;
+            }
+        }).get();
+
+        Assert.assertNotSame(context, taskContext);
+        Assert.assertEquals("modified", taskContext.getProperty("inherited"));
+        Assert.assertFalse(taskContext.hasProperty("notinherited"));
+
+        // The task can't modify the submitting context
+        Assert.assertEquals("value", context.getProperty("inherited"));
+    }
+
+    @Test
+    public void testContextIsRemovedAfterTask() throws Exception
+    {
+        this.execution.setContext(new ExecutionContext());
+
+        this.executor.submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                Assert.assertNotNull(execution.getContext());
+            }
+        }).get();
+
+        this.execution.removeContext();
+
+        ExecutionContext taskContext = this.executor.submit(new Callable<ExecutionContext>()
+        {
+            @Override
+            public ExecutionContext call() throws Exception
+            {
+                return execution.getContext();
+            }
+        }).get();
+
+        Assert.assertNull(taskContext);
+    }
+}
@@ -44,12 +44,18 @@
     @SuppressWarnings("unchecked")
     private ExecutionContextProperty fetch(ExecutionContext context, String key) throws Exception
     {
-        Field propertiesField = ExecutionContext.class.getDeclaredField("properties");
+        Field stateField = ExecutionContext.class.getDeclaredField("state");
+
+        stateField.setAccessible(true);
+
+        Object state = stateField.get(context);
+
+        Field propertiesField = state.getClass().getDeclaredField("properties");
 
         propertiesField.setAccessible(true);
 
         Map<String, ExecutionContextProperty> properties
-            = (Map<String, ExecutionContextProperty>) propertiesField.get(context);
+            = (Map<String, ExecutionContextProperty>) propertiesField.get(state);
 
         return properties.get(key);
     }
@@ -19,6 +19,8 @@
  */
 package org.xwiki.context;
 
+import java.util.ArrayList;
+
 import org.junit.Test;
 import org.junit.Assert;
 
@@ -59,4 +61,159 @@ public void illegalInheritance()
 
         context.inheritFrom(parent);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void inheritedPropertiesAreCopiedOnWrite()
+    {
+        ExecutionContext context = new ExecutionContext();
+        ExecutionContext parent = new ExecutionContext();
+
+        parent.newProperty("modified").inherited().initial("original").declare();
+        parent.newProperty("removed").inherited().initial("original").declare();
+        parent.newProperty("notinherited").initial("original").declare();
+
+        context.inheritFrom(parent);
+
+        Assert.assertTrue(context.hasProperty("modified"));
+        Assert.assertFalse(context.hasProperty("notinherited"));
+        Assert.assertEquals(2, context.getProperties().size());
+
+        context.setProperty("modified", "modified");
+        context.removeProperty("removed");
+
+        Assert.assertEquals("modified", context.getProperty("modified"));
+        Assert.assertFalse(context.hasProperty("removed"));
+        Assert.assertEquals(1, context.getProperties().size());
+
+        Assert.assertEquals("original", parent.getProperty("modified"));
+        Assert.assertEquals("original", parent.getProperty("removed"));
+    }
+
+    @Test
+    public void inheritedValueIsCloned()
+    {
+        ExecutionContext context = new ExecutionContext();
+        ExecutionContext parent = new ExecutionContext();
+
+        ArrayList<String> value = new ArrayList<String>();
+        parent.newProperty("cloned").inherited().cloneValue().initial(value).declare();
+
+        context.inheritFrom(parent);
+
+        Object inheritedValue = context.getProperty("cloned");
+        Assert.assertNotSame(value, inheritedValue);
+        Assert.assertSame(inheritedValue, context.getProperty("cloned"));
+        Assert.assertSame(inheritedValue, context.getProperties().get("cloned"));
+    }
+
+    @Test
+    public void inheritanceThroughSeveralContexts()
+    {
+        ExecutionContext grandParent = new ExecutionContext();
+        ExecutionContext parent = new ExecutionContext();
+        ExecutionContext context = new ExecutionContext();
+
+        grandParent.newProperty("inherited").inherited().initial("test").makeFinal().declare();
+
+        parent.inheritFrom(grandParent);
+        context.inheritFrom(parent);
+
+        Assert.assertEquals("test", context.getProperty("inherited"));
+
+        context.copyInheritedProperties();
+        grandParent.newProperty("other").inherited().declare();
+
+        Assert.assertEquals("test", context.getProperty("inherited"));
+        Assert.assertFalse(context.hasProperty("other"));
+
+        // Inheriting again the same property is allowed
+        context.inheritFrom(parent);
+        // The property was declared after the parent inherited from the grand parent
+        Assert.assertFalse(context.hasProperty("other"));
+    }
+
+    @Test(expected = PropertyIsFinalException.class)
+    public void setInheritedFinalProperty()
+    {
+        ExecutionContext context = new ExecutionContext();
+        ExecutionContext parent = new ExecutionContext();
+
+        parent.newProperty("inherited").inherited().initial("test").makeFinal().declare();
+
+        context.inheritFrom(parent);
+
+        context.setProperty("inherited", "other");
+    }
+
+    @Test(expected = PropertyAlreadyExistsException.class)
+    public void declareInheritedProperty()
+    {
+        ExecutionContext context = new ExecutionContext();
+        ExecutionContext parent = new ExecutionContext();
+
+        parent.newProperty("inherited").inherited().initial("test").declare();
+
+        context.inheritFrom(parent);
+
+        context.newProperty("inherited").declare();
+    }
+
+    @Test
+    public void snapshot()
+    {
+        ExecutionContext context = new ExecutionContext();
+
+        context.newProperty("inherited").inherited().initial("test").declare();
+        context.newProperty("notinherited").initial("test").declare();
+
+        ExecutionContext snapshot = context.snapshot();
+
+        context.setProperty("inherited", "modified");
+
+        Assert.assertEquals("test", snapshot.getProperty("inherited"));
+        Assert.assertFalse(snapshot.hasProperty("notinherited"));
+
+        ExecutionContext inheritingContext = new ExecutionContext();
+        inheritingContext.inheritFrom(snapshot);
+        inheritingContext.setProperty("inherited", "other");
+
+        Assert.assertEquals("other", inheritingContext.getProperty("inherited"));
+        Assert.assertEquals("test", snapshot.getProperty("inherited"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void modifySnapshot()
+    {
+        new ExecutionContext().snapshot().setProperty("property", "value");
+    }
+
+    @Test
+    public void modificationsOfInheritedContextAreNotVisible()
+    {
+        ExecutionContext grandParent = new ExecutionContext();
+        ExecutionContext parent = new ExecutionContext();
+        ExecutionContext context = new ExecutionContext();
+
+        grandParent.newProperty("modified").inherited().initial("grand parent").declare();
+        grandParent.newProperty("removed").inherited().initial("value").declare();
+        grandParent.newProperty("hidden").inherited().initial("value").declare();
+        parent.newProperty("local").initial("value").declare();
+
+        parent.inheritFrom(grandParent);
+        context.inheritFrom(parent);
+
+        grandParent.setProperty("modified", "modified");
+        grandParent.removeProperty("removed");
+        grandParent.newProperty("declared").inherited().declare();
+        parent.removeProperty("hidden");
+        parent.newProperty("hidden").initial("not inherited").declare();
+
+        Assert.assertEquals("grand parent", parent.getProperty("modified"));
+        Assert.assertEquals("grand parent", context.getProperty("modified"));
+        Assert.assertEquals("value", context.getProperty("removed"));
+        Assert.assertFalse(context.hasProperty("declared"));
+        Assert.assertFalse(context.hasProperty("local"));
+        Assert.assertEquals("value", context.getProperty("hidden"));
+        Assert.assertEquals(3, context.getProperties().size());
+    }
+}
@@ -20,6 +20,7 @@
 package org.xwiki.context.internal;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +31,8 @@
 import org.xwiki.context.ExecutionContext;
 import org.xwiki.context.ExecutionContextException;
 import org.xwiki.context.ExecutionContextInitializer;
+import org.xwiki.context.ExecutionContextInitializationException;
+import org.xwiki.context.LazyExecutionContextInitializer;
 
 /**
  * Unit tests for {@link ExecutionContext}.
@@ -72,4 +75,167 @@ public void initialize(ExecutionContext context) throws ExecutionContextExceptio
         assertSame(xwikicontext, clonedContext.getProperty("xwikicontext"));
         assertNotSame(xwikicontext, clonedContext.getProperty("velocitycontext"));
     }
+
+    /**
+     * Verify lazy initializers are only executed when one of their properties is needed.
+     */
+    public void testLazyInitializer() throws Exception
+    {
+        Execution execution = new DefaultExecution();
+        DefaultExecutionContextManager contextManager = new DefaultExecutionContextManager(execution);
+
+        final int[] calls = new int[1];
+        contextManager.addExecutionContextInitializer(new LazyExecutionContextInitializer()
+        {
+            @Override
+            public Collection<String> getProvidedProperties()
+            {
+                return Arrays.asList("key1", "key2");
+            }
+
+            @Override
+            public void initialize(ExecutionContext context) throws ExecutionContextException
+            {
+                calls[0]++;
+                context.setProperty("key1", "value1");
+                context.setProperty("key2", "value2");
+            }
+        });
+
+        ExecutionContext context = new ExecutionContext();
+        contextManager.initialize(context);
+
+        context.setProperty("other", "value");
+        assertNull(context.getProperty("unknown"));
+        assertEquals(0, calls[0]);
+
+        assertEquals("value1", context.getProperty("key1"));
+        assertEquals("value2", context.getProperty("key2"));
+        assertEquals(1, calls[0]);
+
+        // The pending initializers are taken over by the snapshot, and executed by the contexts inheriting from it
+        ExecutionContext otherContext = new ExecutionContext();
+        contextManager.initialize(otherContext);
+        ExecutionContext snapshot = otherContext.snapshot();
+        assertEquals(1, calls[0]);
+
+        ExecutionContext childContext = new ExecutionContext();
+        childContext.inheritFrom(snapshot);
+        assertEquals(1, calls[0]);
+        assertEquals("value1", childContext.getProperty("key1"));
+        assertEquals(2, calls[0]);
+        assertTrue(childContext.hasProperty("key2"));
+        assertEquals(2, calls[0]);
+    }
+
+    /**
+     * Verify a lazy initializer is executed with the initialized context as current context.
+     */
+    public void testLazyInitializerIsExecutedWithItsContext() throws Exception
+    {
+        final Execution execution = new DefaultExecution();
+        DefaultExecutionContextManager contextManager = new DefaultExecutionContextManager(execution);
+
+        contextManager.addExecutionContextInitializer(new LazyExecutionContextInitializer()
+        {
+            @Override
+            public Collection<String> getProvidedProperties()
+            {
+                return Arrays.asList("key");
+            }
+
+            @Override
+            public void initialize(ExecutionContext context) throws ExecutionContextException
+            {
+                assertSame(context, execution.getContext());
+                execution.getContext().newProperty("key").initial("value").inherited().declare();
+            }
+        });
+
+        ExecutionContext parentContext = new ExecutionContext();
+        contextManager.initialize(parentContext);
+
+        ExecutionContext childContext = new ExecutionContext();
+        execution.pushContext(childContext);
+
+        // The property is provided by the parent context
+        assertEquals("value", childContext.getProperty("key"));
+        assertEquals("value", parentContext.getProperty("key"));
+        assertSame(childContext, execution.getContext());
+    }
+
+    /**
+     * Verify that a property lazily declared by a context which has been modified since it was inherited is seen by the
+     * inheriting context.
+     */
+    public void testLazyInitializerIsExecutedAfterModification() throws Exception
+    {
+        final Execution execution = new DefaultExecution();
+        DefaultExecutionContextManager contextManager = new DefaultExecutionContextManager(execution);
+
+        contextManager.addExecutionContextInitializer(new LazyExecutionContextInitializer()
+        {
+            @Override
+            public Collection<String> getProvidedProperties()
+            {
+                return Arrays.asList("key");
+            }
+
+            @Override
+            public void initialize(ExecutionContext context) throws ExecutionContextException
+            {
+                context.newProperty("key").initial("value").inherited().declare();
+            }
+        });
+
+        ExecutionContext parentContext = new ExecutionContext();
+        contextManager.initialize(parentContext);
+        parentContext.newProperty("modified").initial("parent").inherited().declare();
+
+        ExecutionContext childContext = new ExecutionContext();
+        childContext.inheritFrom(parentContext);
+
+        parentContext.setProperty("modified", "modified");
+        parentContext.newProperty("declared").inherited().declare();
+
+        assertEquals("value", parentContext.getProperty("key"));
+        assertEquals("value", childContext.getProperty("key"));
+        assertEquals("parent", childContext.getProperty("modified"));
+        assertFalse(childContext.hasProperty("declared"));
+        assertEquals(2, childContext.getProperties().size());
+    }
+
+    /**
+     * Verify the errors of the lazy initializers.
+     */
+    public void testLazyInitializerFailure() throws Exception
+    {
+        Execution execution = new DefaultExecution();
+        DefaultExecutionContextManager contextManager = new DefaultExecutionContextManager(execution);
+
+        contextManager.addExecutionContextInitializer(new LazyExecutionContextInitializer()
+        {
+            @Override
+            public Collection<String> getProvidedProperties()
+            {
+                return Arrays.asList("key");
+            }
+
+            @Override
+            public void initialize(ExecutionContext context) throws ExecutionContextException
+            {
+                throw new ExecutionContextException("error");
+            }
+        });
+
+        ExecutionContext context = new ExecutionContext();
+        contextManager.initialize(context);
+
+        try {
+            context.getProperty("key");
+            fail();
+        } catch (ExecutionContextInitializationException e) {
+            assertEquals("error", e.getCause().getMessage());
+        }
+    }
 }
@@ -28,6 +28,7 @@
 import javax.inject.Singleton;
 
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentKey;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.component.util.DefaultParameterizedType;
@@ -99,25 +100,27 @@ private Object get(Object unsafe, List<Type> types)
      */
     private Object get(Object unsafe, Type type)
     {
-        try {
-            ScriptSafeProvider<Object> provider =
-                this.component.getInstance(new DefaultParameterizedType(null, ScriptSafeProvider.class, type));
+        ScriptSafeProvider<Object> provider =
+            tryGetInstance(new DefaultParameterizedType(null, ScriptSafeProvider.class, type));
 
-            return provider.get(unsafe);
-        } catch (ComponentLookupException e) {
-            // Try with raw type
-            if (type instanceof ParameterizedType) {
-                try {
-                    ScriptSafeProvider<Object> provider =
-                        this.component.getInstance(((ParameterizedType) type).getRawType());
-
-                    return provider.get(unsafe);
-                } catch (ComponentLookupException e1) {
-                    // Could really not find any provider
-                }
-            }
+        // Try with raw type
+        if (provider == null && type instanceof ParameterizedType) {
+            provider = tryGetInstance(((ParameterizedType) type).getRawType());
         }
 
-        return null;
+        return provider != null ? provider.get(unsafe) : null;
+    }
+
+    /**
+     * @param role the role of the provider
+     * @return the provider or null if none could be found
+     */
+    private ScriptSafeProvider<Object> tryGetInstance(Type role)
+    {
+        try {
+            return this.component.tryGetInstance(ComponentKey.<ScriptSafeProvider<Object>>get(role));
+        } catch (ComponentLookupException e) {
+            return null;
+        }
     }
 }
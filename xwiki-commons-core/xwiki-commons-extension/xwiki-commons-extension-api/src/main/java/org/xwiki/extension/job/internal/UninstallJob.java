@@ -93,8 +93,13 @@ protected void start() throws Exception
 
             ExtensionPlan plan = (ExtensionPlan) this.uninstallPlanJob.getStatus();
 
-            List<LogEvent> log = plan.getLog().getLogs(LogLevel.ERROR);
-            if (!log.isEmpty()) {
+            // Counting the errors is cheap, unlike filtering them
+            if (plan.getLog().getLogCount(LogLevel.ERROR) > 0) {
+                List<LogEvent> log = plan.getLog().getLogs(LogLevel.ERROR);
+                if (log.isEmpty()) {
+                    // The errors are not in memory anymore
+                    throw new UninstallException("Failed to create install plan");
+                }
                 throw new UninstallException("Failed to create install plan: " + log.get(0).getFormattedMessage(), log
                     .get(0).getThrowable());
             }
@@ -36,10 +36,7 @@
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.ComponentAnnotationLoader;
 import org.xwiki.component.annotation.ComponentDeclaration;
-import org.xwiki.component.internal.StackingComponentEventManager;
 import org.xwiki.component.internal.multi.ComponentManagerManager;
-import org.xwiki.component.manager.ComponentEventManager;
-import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.extension.ExtensionException;
@@ -49,7 +46,6 @@
 import org.xwiki.extension.UninstallException;
 import org.xwiki.extension.handler.internal.AbstractExtensionHandler;
 import org.xwiki.job.Request;
-import org.xwiki.observation.ObservationManager;
 
 /**
  * Add support for JAR extensions.
@@ -127,34 +123,9 @@ private void loadComponents(LocalExtensionFile jarFile, NamespaceURLClassLoader
                 return;
             }
 
-            ComponentManager componentManager = this.componentManagerManager.getComponentManager(namespace, true);
-
-            ComponentEventManager componentEventManager = componentManager.getComponentEventManager();
-
-            // Make sure to send events only when the extension is fully ready
-            StackingComponentEventManager stackingComponentEventManager = null;
-            try {
-                if (componentEventManager instanceof StackingComponentEventManager) {
-                    stackingComponentEventManager = (StackingComponentEventManager) componentEventManager;
-                } else {
-                    stackingComponentEventManager = new StackingComponentEventManager();
-                    componentManager.setComponentEventManager(stackingComponentEventManager);
-                }
-                stackingComponentEventManager.shouldStack(true);
-
-                this.jarLoader.initialize(componentManager, classLoader, componentDeclarations);
-            } finally {
-                if (stackingComponentEventManager != null) {
-                    if (componentEventManager != stackingComponentEventManager) {
-                        componentManager.setComponentEventManager(componentEventManager);
-                    }
-
-                    stackingComponentEventManager.setObservationManager(componentManager
-                        .<ObservationManager>getInstance(ObservationManager.class));
-                    stackingComponentEventManager.shouldStack(false);
-                    stackingComponentEventManager.flushEvents();
-                }
-            }
+            // The components are registered as a whole so that the events are sent only once they are all ready
+            this.jarLoader.initialize(this.componentManagerManager.getComponentManager(namespace, true), classLoader,
+                componentDeclarations);
         } catch (Exception e) {
             throw new InstallException("Failed to load jar file components", e);
         }
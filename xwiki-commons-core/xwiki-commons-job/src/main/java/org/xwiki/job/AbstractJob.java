@@ -32,11 +32,9 @@
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.job.event.JobFinishedEvent;
 import org.xwiki.job.event.JobStartedEvent;
+import org.xwiki.job.event.status.JobProgressManager;
 import org.xwiki.job.event.status.JobStatus;
 import org.xwiki.job.event.status.JobStatus.State;
-import org.xwiki.job.event.status.PopLevelProgressEvent;
-import org.xwiki.job.event.status.PushLevelProgressEvent;
-import org.xwiki.job.event.status.StepProgressEvent;
 import org.xwiki.job.internal.AbstractJobStatus;
 import org.xwiki.job.internal.DefaultJobStatus;
 import org.xwiki.job.internal.JobStatusStorage;
@@ -89,6 +87,12 @@
     @Inject
     protected JobContext jobContext;
 
+    /**
+     * Used to update the progress of the job.
+     */
+    @Inject
+    protected JobProgressManager progressManager;
+
     /**
      * The job request.
      */
@@ -126,6 +130,9 @@ public void start(Request request)
     {
         this.request = castRequest(request);
         this.status = createNewStatus(this.request);
+        if (this.request.getId() != null) {
+            this.status.setLog(this.storage.createLogQueue(this.request.getId()));
+        }
 
         jobStarting();
 
@@ -170,12 +177,8 @@ protected void jobFinished(Throwable exception)
             this.status.setState(JobStatus.State.FINISHED);
             this.status.setEndDate(new Date());
 
-            this.finishedCondition.signalAll();
-
-            this.observationManager.notify(new JobFinishedEvent(getRequest().getId(), getType(), this.request), this,
-                exception);
-            this.jobContext.popCurrentJob();
-
+            // Make sure the status can be found in the storage as soon as the threads waiting for the job to finish are
+            // released (the status is serialized asynchronously so this doesn't block them)
             try {
                 if (this.request.getId() != null) {
                     this.storage.store(this.status);
@@ -183,6 +186,12 @@ protected void jobFinished(Throwable exception)
             } catch (Throwable t) {
                 this.logger.warn("Failed to store job status [{}]", this.status, t);
             }
+
+            this.finishedCondition.signalAll();
+
+            this.observationManager.notify(new JobFinishedEvent(getRequest().getId(), getType(), this.request), this,
+                exception);
+            this.jobContext.popCurrentJob();
         } finally {
             this.lock.unlock();
         }
@@ -217,7 +226,7 @@ protected AbstractJobStatus<R> createNewStatus(R request)
      */
     protected void notifyPushLevelProgress(int steps)
     {
-        this.observationManager.notify(new PushLevelProgressEvent(steps), this);
+        this.progressManager.pushLevelProgress(steps, this);
     }
 
     /**
@@ -225,7 +234,7 @@ protected void notifyPushLevelProgress(int steps)
      */
     protected void notifyStepPropress()
     {
-        this.observationManager.notify(new StepProgressEvent(), this);
+        this.progressManager.stepProgress(this);
     }
 
     /**
@@ -233,7 +242,7 @@ protected void notifyStepPropress()
      */
     protected void notifyPopLevelProgress()
     {
-        this.observationManager.notify(new PopLevelProgressEvent(), this);
+        this.progressManager.popLevelProgress(this);
     }
 
     /**
@@ -34,7 +34,11 @@
 public interface JobManager
 {
     /**
-     * @return the job currently running or the latest job, null if there is no job
+     * Jobs can be executed in parallel (see {@link Request#PROPERTY_GROUP}) so there may be several jobs running at the
+     * same time.
+     * 
+     * @return the job executed by the calling thread if any, otherwise the most recently started job still running,
+     *         null if no job is running
      */
     Job getCurrentJob();
 
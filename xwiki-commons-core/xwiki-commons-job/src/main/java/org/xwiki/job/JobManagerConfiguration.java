@@ -36,4 +36,70 @@
      * @return the folder containing job executing status
      */
     File getStorage();
+
+    /**
+     * @param group the name of a group of jobs
+     * @return the maximum number of jobs of the group executed at the same time
+     * @since 4.3M2
+     */
+    int getGroupThreads(String group);
+
+    /**
+     * @param group the name of a group of jobs
+     * @return the maximum number of jobs of the group waiting to be executed, 0 if unbounded
+     * @since 4.3M2
+     */
+    int getGroupQueueSize(String group);
+
+    /**
+     * @param jobType the role hint of the job component
+     * @return the group of the jobs of the passed type when the request does not indicate any (see
+     *         {@link Request#PROPERTY_GROUP}), {@code null} for the default group
+     * @since 4.3M2
+     */
+    String getJobTypeGroup(String jobType);
+
+    /**
+     * @return the maximum number of job statuses kept in memory, the others being loaded from the storage when needed
+     * @since 4.3M2
+     */
+    int getStatusCacheSize();
+
+    /**
+     * @return the number of days after which a stored job status is deleted, 0 to keep the job statuses forever
+     * @since 4.3M2
+     */
+    int getStatusRetention();
+
+    /**
+     * @return the minimum time between two notifications of the progress of a job, in milliseconds
+     * @since 4.3M2
+     */
+    long getProgressNotificationInterval();
+
+    /**
+     * @return true if {@link org.xwiki.job.event.status.JobProgressManager} also sends a
+     *         {@link org.xwiki.job.event.status.PushLevelProgressEvent},
+     *         {@link org.xwiki.job.event.status.StepProgressEvent} or
+     *         {@link org.xwiki.job.event.status.PopLevelProgressEvent} for each progress update, for the listeners
+     *         which still rely on them, false (the default) to only send the throttled
+     *         {@link org.xwiki.job.event.status.JobProgressEvent}
+     * @since 4.3M2
+     */
+    boolean isProgressEventsEnabled();
+
+    /**
+     * @return the maximum number of logs of a job kept in memory, the older ones being only kept in the storage, 0 (the
+     *         default) to keep all the logs in memory in a standard {@link org.xwiki.logging.LogQueue}
+     * @since 4.3M2
+     */
+    int getLogCapacity();
+
+    /**
+     * @return true if the arguments of the logs of a job are replaced by their {@link String} representation when
+     *         logged so that the job status does not keep a reference to the objects passed to the logger, false (the
+     *         default) to keep the arguments as they are
+     * @since 4.3M2
+     */
+    boolean isLogArgumentsSnapshot();
 }
@@ -41,6 +41,15 @@ public interface Request extends Serializable
      */
     String PROPERTY_INTERACTIVE = "interactive";
 
+    /**
+     * The name of the group of jobs in which to execute the job. The jobs of a group are executed independently from
+     * the jobs of the other groups.
+     * 
+     * @see JobManagerConfiguration#getJobTypeGroup(String)
+     * @since 4.3M2
+     */
+    String PROPERTY_GROUP = "group";
+
     /**
      * @return list based identifier used to access the job. If none is provided the job will not be accessible by id
      *         and the status of the job will not be stored.
@@ -0,0 +1,59 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.event.status;
+
+import org.xwiki.component.annotation.Role;
+
+/**
+ * Update the progress of the jobs executed by the current thread.
+ * <p>
+ * Unlike with {@link PushLevelProgressEvent}, {@link StepProgressEvent} and {@link PopLevelProgressEvent}, the progress
+ * is updated directly, without going through the observation manager. The observers are regularly notified of the
+ * progress with a {@link JobProgressEvent}. The corresponding progress events are still sent for the existing
+ * listeners.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+@Role
+public interface JobProgressManager
+{
+    /**
+     * Push a new progress level.
+     * 
+     * @param steps the number of steps of the new level
+     * @param source the source of the progress, usually the job
+     */
+    void pushLevelProgress(int steps, Object source);
+
+    /**
+     * Move to the next step of the current level.
+     * 
+     * @param source the source of the progress, usually the job
+     */
+    void stepProgress(Object source);
+
+    /**
+     * Pop the current progress level.
+     * 
+     * @param source the source of the progress, usually the job
+     */
+    void popLevelProgress(Object source);
+}
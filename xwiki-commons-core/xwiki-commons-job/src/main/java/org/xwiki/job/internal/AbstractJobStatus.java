@@ -19,13 +19,18 @@
  */
 package org.xwiki.job.internal;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.xwiki.job.Request;
 import org.xwiki.job.event.status.JobProgress;
+import org.xwiki.job.event.status.JobProgressEvent;
 import org.xwiki.job.event.status.JobStatus;
 import org.xwiki.logging.LogLevel;
 import org.xwiki.logging.LogQueue;
@@ -44,7 +49,12 @@
 public abstract class AbstractJobStatus<R extends Request> implements JobStatus
 {
     /**
-     * Used register itself to receive logging and progress related events.
+     * The logger to log.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractJobStatus.class);
+
+    /**
+     * Used register itself to receive logging related events.
      */
     private transient ObservationManager observationManager;
 
@@ -94,7 +104,7 @@
     private transient volatile Object question;
 
     /**
-     * Take care of progress related events to produce a progression information usually used in a progress bar.
+     * Compute the progress of the job, usually displayed in a progress bar.
      */
     private transient DefaultJobProgress progress;
 
@@ -128,9 +138,9 @@ public AbstractJobStatus(R request, ObservationManager observationManager, Logge
      */
     public void startListening()
     {
-        // Register progress listener
+        // Track the progress of the job in the current thread
         this.progress = new DefaultJobProgress(Thread.currentThread());
-        this.observationManager.addListener(this.progress);
+        this.progress.startTracking();
 
         // Isolate log for the job status
         this.logListener = new LogQueueListener(LogQueueListener.class.getName() + '_' + hashCode(), this.logs);
@@ -151,7 +161,21 @@ public void stopListening()
         } else {
             this.loggerManager.popLogListener();
         }
-        this.observationManager.removeListener(this.progress.getName());
+        this.progress.stopTracking();
+
+        // Make sure the observers know the final progress of the job
+        if (this.progress.isNotificationPending()) {
+            this.observationManager.notify(new JobProgressEvent(), this, this.progress);
+        }
+
+        // Release the resources used to store the log, if any
+        if (this.logs instanceof Closeable) {
+            try {
+                ((Closeable) this.logs).close();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to close the log of job [{}]", this.request.getId(), e);
+            }
+        }
     }
 
     // JobStatus
@@ -182,6 +206,16 @@ public LogQueue getLog()
         return this.logs;
     }
 
+    /**
+     * @param logs the queue where to store the log sent during job execution, should be set before
+     *            {@link #startListening()}
+     * @since 4.3M2
+     */
+    public void setLog(LogQueue logs)
+    {
+        this.logs = logs;
+    }
+
     @Override
     public JobProgress getProgress()
     {
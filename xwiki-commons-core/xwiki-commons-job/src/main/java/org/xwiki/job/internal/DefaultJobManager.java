@@ -20,9 +20,9 @@
 package org.xwiki.job.internal;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -31,8 +31,8 @@
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
-import org.xwiki.component.phase.Initializable;
-import org.xwiki.component.phase.InitializationException;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.context.Execution;
 import org.xwiki.context.ExecutionContext;
 import org.xwiki.context.ExecutionContextException;
@@ -40,46 +40,28 @@
 import org.xwiki.job.Job;
 import org.xwiki.job.JobException;
 import org.xwiki.job.JobManager;
+import org.xwiki.job.JobManagerConfiguration;
 import org.xwiki.job.Request;
 import org.xwiki.job.event.status.JobStatus;
 
 /**
  * Default implementation of {@link JobManager}.
+ * <p>
+ * The jobs are executed in groups (see {@link Request#PROPERTY_GROUP}): each group has its own queue and its own
+ * threads, configured with {@link JobManagerConfiguration}. By default all the jobs are executed one after the other in
+ * the default group.
  * 
  * @version $Id$
  * @since 4.0M1
  */
 @Component
 @Singleton
-public class DefaultJobManager implements JobManager, Runnable, Initializable
+public class DefaultJobManager implements JobManager, Disposable
 {
     /**
-     * A job to execute.
-     * 
-     * @version $Id$
+     * The name of the group of the jobs which don't indicate any.
      */
-    private static class JobElement
-    {
-        /**
-         * The job to execute.
-         */
-        public Job job;
-
-        /**
-         * The request to use to control the job.
-         */
-        public Request request;
-
-        /**
-         * @param job the job to execute
-         * @param request the request to use to control the job
-         */
-        public JobElement(Job job, Request request)
-        {
-            this.job = job;
-            this.request = request;
-        }
-    }
+    public static final String DEFAULT_GROUP = "default";
 
     /**
      * Used to lookup {@link Job} implementations.
@@ -106,60 +88,136 @@ public JobElement(Job job, Request request)
     private ExecutionContextManager executionContextManager;
 
     /**
-     * @see #getCurrentJob()
+     * Used to configure the groups of jobs.
      */
-    private volatile Job currentJob;
+    @Inject
+    private JobManagerConfiguration configuration;
 
     /**
-     * The queue of jobs to execute.
+     * The jobs being executed.
      */
-    private BlockingQueue<JobElement> jobQueue = new LinkedBlockingQueue<JobElement>();
+    private final RunningJobs runningJobs = new RunningJobs();
 
     /**
-     * The thread on which the job manager is running.
+     * The groups of jobs, indexed by name. Created when the first job of the group is added.
      */
-    private Thread thread;
+    private final ConcurrentHashMap<String, JobGroup> groups = new ConcurrentHashMap<String, JobGroup>();
 
-    @Override
-    public void initialize() throws InitializationException
+    /**
+     * A job to execute.
+     * 
+     * @version $Id$
+     */
+    private class JobElement implements Runnable
     {
-        this.thread = new Thread(this);
-        this.thread.setDaemon(true);
-        this.thread.start();
-    }
+        /**
+         * The job to execute.
+         */
+        private final Job job;
 
-    // Runnable
+        /**
+         * The request to use to control the job.
+         */
+        private final Request request;
 
-    @Override
-    public void run()
+        /**
+         * @param job the job to execute
+         * @param request the request to use to control the job
+         */
+        JobElement(Job job, Request request)
+        {
+            this.job = job;
+            this.request = request;
+        }
+
+        @Override
+        public void run()
+        {
+            // The threads of the groups keep the same Execution Context for all the jobs they execute
+            if (execution.getContext() == null) {
+                initializeExecutionContext();
+            }
+
+            runningJobs.started(this.job, this.request);
+
+            try {
+                this.job.start(this.request);
+            } finally {
+                runningJobs.finished(this.job, this.request);
+            }
+        }
+    }
+
+    /**
+     * Create a clean Execution Context for the current thread.
+     */
+    private void initializeExecutionContext()
     {
-        // Create a clean Execution Context
         ExecutionContext context = new ExecutionContext();
 
         try {
             this.executionContextManager.initialize(context);
         } catch (ExecutionContextException e) {
-            throw new RuntimeException("Failed to initialize IRC Bot's execution context", e);
+            throw new RuntimeException("Failed to initialize job manager's execution context", e);
         }
+    }
 
-        try {
-            while (!this.thread.isInterrupted()) {
-                try {
-                    JobElement element = this.jobQueue.take();
-
-                    this.currentJob = element.job;
-
-                    // Wait in case synchronous job is running
-                    synchronized (this) {
-                        this.currentJob.start(element.request);
-                    }
-                } catch (InterruptedException e) {
-                    // Thread has been stopped
-                }
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        for (JobGroup group : this.groups.values()) {
+            group.dispose();
+        }
+    }
+
+    /**
+     * @return a live view of the groups of jobs which have been used so far, with their statistics; it should not be
+     *         modified
+     * @since 4.3M2
+     */
+    public Collection<JobGroup> getGroups()
+    {
+        return this.groups.values();
+    }
+
+    /**
+     * @param name the name of the group
+     * @return the group, created if needed
+     */
+    private JobGroup getGroup(String name)
+    {
+        JobGroup group = this.groups.get(name);
+
+        if (group == null) {
+            JobGroup newGroup =
+                new JobGroup(name, Math.max(1, this.configuration.getGroupThreads(name)),
+                    this.configuration.getGroupQueueSize(name));
+
+            group = this.groups.putIfAbsent(name, newGroup);
+            if (group == null) {
+                group = newGroup;
+            } else {
+                newGroup.dispose();
             }
-        } finally {
-            this.execution.removeContext();
         }
+
+        return group;
+    }
+
+    /**
+     * @param jobType the type of the job
+     * @param request the request of the job
+     * @return the name of the group in which to execute the job
+     */
+    private String getGroupName(String jobType, Request request)
+    {
+        String group = request.getProperty(Request.PROPERTY_GROUP);
+
+        if (group == null) {
+            group = this.configuration.getJobTypeGroup(jobType);
+        }
+
+        return group != null ? group : DEFAULT_GROUP;
     }
 
     // JobManager
@@ -167,7 +225,7 @@ public void run()
     @Override
     public Job getCurrentJob()
     {
-        return this.currentJob;
+        return this.runningJobs.getCurrent();
     }
 
     /**
@@ -206,7 +264,8 @@ public Job addJob(String jobType, Request request) throws JobException
     {
         Job job = createJob(jobType);
 
-        this.jobQueue.add(new JobElement(job, request));
+        JobGroup group = getGroup(getGroupName(jobType, request));
+        group.execute(new JobElement(job, request));
 
         return job;
     }
@@ -220,8 +279,14 @@ public JobStatus getJobStatus(String id)
     @Override
     public JobStatus getJobStatus(List<String> id)
     {
-        if (this.currentJob != null && ObjectUtils.equals(id, this.currentJob.getRequest().getId())) {
-            return this.currentJob.getStatus();
+        Job job = this.runningJobs.get(id);
+        if (job == null) {
+            job = getCurrentJob();
+        }
+
+        // The request of the job is only known once it's started
+        if (job != null && job.getRequest() != null && ObjectUtils.equals(id, job.getRequest().getId())) {
+            return job.getStatus();
         }
 
         return this.storage.getJobStatus(id);
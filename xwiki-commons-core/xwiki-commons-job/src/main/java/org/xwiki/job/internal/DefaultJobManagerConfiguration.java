@@ -40,6 +40,26 @@
 @Singleton
 public class DefaultJobManagerConfiguration implements JobManagerConfiguration
 {
+    /**
+     * The prefix of the configuration properties of the groups of jobs.
+     */
+    private static final String PREFIX_GROUP = "job.groups.";
+
+    /**
+     * The prefix of the configuration properties of the types of jobs.
+     */
+    private static final String PREFIX_TYPE = "job.types.";
+
+    /**
+     * The default maximum number of job statuses kept in memory.
+     */
+    private static final int DEFAULT_STATUS_CACHE_SIZE = 50;
+
+    /**
+     * The default minimum time between two notifications of the progress of a job, in milliseconds.
+     */
+    private static final long DEFAULT_PROGRESS_NOTIFICATION_INTERVAL = 500;
+
     /**
      * Used to get permanent directory.
      */
@@ -82,4 +102,59 @@ public File getStorage()
 
         return this.store;
     }
+
+    @Override
+    public int getGroupThreads(String group)
+    {
+        return this.configuration.get().getProperty(PREFIX_GROUP + group + ".threads", 1);
+    }
+
+    @Override
+    public int getGroupQueueSize(String group)
+    {
+        return this.configuration.get().getProperty(PREFIX_GROUP + group + ".queueSize", 0);
+    }
+
+    @Override
+    public String getJobTypeGroup(String jobType)
+    {
+        return this.configuration.get().getProperty(PREFIX_TYPE + jobType + ".group", String.class);
+    }
+
+    @Override
+    public int getStatusCacheSize()
+    {
+        return this.configuration.get().getProperty("job.statusCacheSize", DEFAULT_STATUS_CACHE_SIZE);
+    }
+
+    @Override
+    public int getStatusRetention()
+    {
+        return this.configuration.get().getProperty("job.statusRetention", 0);
+    }
+
+    @Override
+    public long getProgressNotificationInterval()
+    {
+        return this.configuration.get().getProperty("job.progressNotificationInterval",
+            DEFAULT_PROGRESS_NOTIFICATION_INTERVAL);
+    }
+
+    @Override
+    public boolean isProgressEventsEnabled()
+    {
+        return this.configuration.get().getProperty("job.progressEvents", false);
+    }
+
+    @Override
+    public int getLogCapacity()
+    {
+        return this.configuration.get().getProperty("job.logCapacity", 0);
+    }
+
+    @Override
+    public boolean isLogArgumentsSnapshot()
+    {
+        return this.configuration.get().getProperty("job.logArgumentsSnapshot", false);
+    }
 }
@@ -19,9 +19,12 @@
  */
 package org.xwiki.job.internal;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
-import java.util.Stack;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,6 +36,11 @@
 import org.xwiki.observation.event.Event;
 
 /**
+ * Compute the progress of a job.
+ * <p>
+ * The progress is updated only by the thread executing the job, either directly (see
+ * {@link org.xwiki.job.event.status.JobProgressManager}) or through progress events, and can be read from any thread.
+ * 
  * @version $Id$
  * @since 4.0M1
  */
@@ -49,6 +57,11 @@ public class DefaultJobProgress implements EventListener, JobProgress
     private static final List<Event> EVENTS = Arrays.asList(new PushLevelProgressEvent(), new PopLevelProgressEvent(),
         new StepProgressEvent());
 
+    /**
+     * The progresses tracked by the current thread, from the outermost job to the innermost one.
+     */
+    private static final ThreadLocal<List<DefaultJobProgress>> TRACKED = new ThreadLocal<List<DefaultJobProgress>>();
+
     /**
      * The unique name of the current job progress.
      */
@@ -60,9 +73,29 @@ public class DefaultJobProgress implements EventListener, JobProgress
     private Thread thread;
 
     /**
-     * The progress stack.
+     * The progress stack, only accessed by the thread executing the job.
+     */
+    private Deque<Level> progress = new ArrayDeque<Level>();
+
+    /**
+     * @see #getOffset()
+     */
+    private volatile double offset;
+
+    /**
+     * @see #getCurrentLevelOffset()
+     */
+    private volatile double currentLevelOffset;
+
+    /**
+     * The last time the progress has been notified, in milliseconds.
      */
-    private Stack<Level> progress = new Stack<Level>();
+    private long lastNotificationTime;
+
+    /**
+     * Indicate if the progress changed since the last notification.
+     */
+    private boolean notificationPending;
 
     /**
      * Flag indicating that the next {@link StepProgressEvent} should be ignored (probably because its progress was
@@ -154,26 +187,162 @@ public List<Event> getEvents()
     public void onEvent(Event event, Object arg1, Object arg2)
     {
         if (this.thread == null || this.thread == Thread.currentThread()) {
-            boolean ignoreNextStep = this.ignoreNextStepProgressEvent;
-            this.ignoreNextStepProgressEvent = false;
             if (event instanceof PushLevelProgressEvent) {
-                onPushLevelProgress((PushLevelProgressEvent) event);
+                pushLevelProgress(((PushLevelProgressEvent) event).getSteps());
             } else if (event instanceof PopLevelProgressEvent) {
-                onPopLevelProgress();
-            } else if (event instanceof StepProgressEvent && !ignoreNextStep) {
-                onStepProgress();
+                popLevelProgress();
+            } else if (event instanceof StepProgressEvent) {
+                stepProgress();
             }
         }
     }
 
+    // Tracking
+
+    /**
+     * Start tracking the progress in the current thread.
+     * 
+     * @since 4.3M2
+     */
+    public void startTracking()
+    {
+        List<DefaultJobProgress> progresses = TRACKED.get();
+        if (progresses == null) {
+            progresses = new ArrayList<DefaultJobProgress>();
+            TRACKED.set(progresses);
+        }
+
+        progresses.add(this);
+    }
+
+    /**
+     * Stop tracking the progress in the current thread.
+     * 
+     * @since 4.3M2
+     */
+    public void stopTracking()
+    {
+        List<DefaultJobProgress> progresses = TRACKED.get();
+        if (progresses != null) {
+            progresses.remove(this);
+
+            if (progresses.isEmpty()) {
+                TRACKED.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the progresses tracked by the current thread, from the outermost job to the innermost one
+     * @since 4.3M2
+     */
+    public static List<DefaultJobProgress> getTrackedProgresses()
+    {
+        List<DefaultJobProgress> progresses = TRACKED.get();
+
+        return progresses != null ? progresses : Collections.<DefaultJobProgress> emptyList();
+    }
+
+    /**
+     * Indicate if the progress should be notified, to avoid notifying observers for each step.
+     * 
+     * @param interval the minimum time between two notifications, in milliseconds
+     * @return true if the last notification is older than the passed interval
+     * @since 4.3M2
+     */
+    public boolean isNotificationNeeded(long interval)
+    {
+        long now = System.currentTimeMillis();
+
+        if (now - this.lastNotificationTime >= interval) {
+            this.lastNotificationTime = now;
+            this.notificationPending = false;
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return true if the progress changed since the last time {@link #isNotificationNeeded(long)} returned true
+     * @since 4.3M2
+     */
+    public boolean isNotificationPending()
+    {
+        return this.notificationPending;
+    }
+
+    /**
+     * @return true if all the pushed levels have been popped
+     * @since 4.3M2
+     */
+    public boolean isRootLevel()
+    {
+        return this.progress.size() == 1;
+    }
+
+    // Progress
+
     /**
      * Adds a new level to the progress stack.
      * 
-     * @param event the event that was fired
+     * @param steps the number of steps of the new level
+     * @since 4.3M2
+     */
+    public void pushLevelProgress(int steps)
+    {
+        this.ignoreNextStepProgressEvent = false;
+
+        Level level = this.progress.peek();
+        this.progress.push(new Level(steps, level.globalOffset, level.globalStepSize));
+
+        updateOffsets();
+    }
+
+    /**
+     * Move progress to next step, unless the progress of the step has already been taken into account when popping
+     * the previous level.
+     * 
+     * @since 4.3M2
+     */
+    public void stepProgress()
+    {
+        boolean ignoreNextStep = this.ignoreNextStepProgressEvent;
+        this.ignoreNextStepProgressEvent = false;
+
+        if (!ignoreNextStep) {
+            onStepProgress();
+
+            updateOffsets();
+        }
+    }
+
+    /**
+     * Remove the current level from the progress stack and move the progress to the next step.
+     * 
+     * @since 4.3M2
      */
-    private void onPushLevelProgress(PushLevelProgressEvent event)
+    public void popLevelProgress()
     {
-        this.progress.push(new Level(event.getSteps(), getOffset(), this.progress.peek().globalStepSize));
+        this.ignoreNextStepProgressEvent = false;
+
+        onPopLevelProgress();
+
+        updateOffsets();
+    }
+
+    /**
+     * Publish the offsets of the current level to the other threads.
+     */
+    private void updateOffsets()
+    {
+        Level level = this.progress.peek();
+
+        this.offset = level.globalOffset;
+        this.currentLevelOffset = level.levelOffset;
+
+        this.notificationPending = true;
     }
 
     /**
@@ -193,7 +362,7 @@ private void onStepProgress()
     }
 
     /**
-     * Called when a {@link PopLevelProgressEvent} is fired.
+     * Remove the current level.
      */
     private void onPopLevelProgress()
     {
@@ -214,12 +383,12 @@ private void onPopLevelProgress()
     @Override
     public double getOffset()
     {
-        return this.progress.peek().globalOffset;
+        return this.offset;
     }
 
     @Override
     public double getCurrentLevelOffset()
     {
-        return this.progress.peek().levelOffset;
+        return this.currentLevelOffset;
     }
 }
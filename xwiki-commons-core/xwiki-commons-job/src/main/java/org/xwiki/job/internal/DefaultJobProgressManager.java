@@ -0,0 +1,212 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.job.JobManagerConfiguration;
+import org.xwiki.job.event.status.JobProgressEvent;
+import org.xwiki.job.event.status.JobProgressManager;
+import org.xwiki.job.event.status.PopLevelProgressEvent;
+import org.xwiki.job.event.status.PushLevelProgressEvent;
+import org.xwiki.job.event.status.StepProgressEvent;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Default implementation of {@link JobProgressManager}.
+ * <p>
+ * Update the progresses tracked by the current thread (see {@link DefaultJobProgress#getTrackedProgresses()}) and
+ * notify the progress of the innermost job at most every
+ * {@link JobManagerConfiguration#getProgressNotificationInterval()}, and when its outermost level is popped. The
+ * corresponding {@link PushLevelProgressEvent}, {@link StepProgressEvent} and {@link PopLevelProgressEvent} are only
+ * sent for the listeners which don't know about {@link JobProgressManager} if
+ * {@link JobManagerConfiguration#isProgressEventsEnabled()} is true.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+@Component
+@Singleton
+public class DefaultJobProgressManager implements JobProgressManager, Initializable
+{
+    /**
+     * Indicate that the current thread is sending a progress event.
+     */
+    private static final ThreadLocal<Boolean> SENDING = new ThreadLocal<Boolean>();
+
+    /**
+     * Used to notify the progress.
+     */
+    @Inject
+    private ObservationManager observationManager;
+
+    /**
+     * Used to get the minimum time between two notifications.
+     */
+    @Inject
+    private JobManagerConfiguration configuration;
+
+    /**
+     * The minimum time between two notifications, in milliseconds.
+     */
+    private long notificationInterval;
+
+    /**
+     * Indicate if a progress event is sent for each progress update.
+     */
+    private boolean progressEvents;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.notificationInterval = this.configuration.getProgressNotificationInterval();
+        this.progressEvents = this.configuration.isProgressEventsEnabled();
+    }
+
+    @Override
+    public void pushLevelProgress(int steps, Object source)
+    {
+        onPushLevelProgress(steps, source);
+
+        if (this.progressEvents) {
+            sendProgressEvent(new PushLevelProgressEvent(steps), source);
+        }
+    }
+
+    @Override
+    public void stepProgress(Object source)
+    {
+        onStepProgress(source);
+
+        if (this.progressEvents) {
+            sendProgressEvent(new StepProgressEvent(), source);
+        }
+    }
+
+    @Override
+    public void popLevelProgress(Object source)
+    {
+        onPopLevelProgress(source);
+
+        if (this.progressEvents) {
+            sendProgressEvent(new PopLevelProgressEvent(), source);
+        }
+    }
+
+    /**
+     * Push a new progress level without sending any {@link PushLevelProgressEvent}.
+     * 
+     * @param steps the number of steps of the new level
+     * @param source the source of the progress, usually the job
+     */
+    void onPushLevelProgress(int steps, Object source)
+    {
+        List<DefaultJobProgress> progresses = DefaultJobProgress.getTrackedProgresses();
+
+        for (DefaultJobProgress progress : progresses) {
+            progress.pushLevelProgress(steps);
+        }
+
+        notifyProgress(progresses, source);
+    }
+
+    /**
+     * Move to the next step of the current level without sending any {@link StepProgressEvent}.
+     * 
+     * @param source the source of the progress, usually the job
+     */
+    void onStepProgress(Object source)
+    {
+        List<DefaultJobProgress> progresses = DefaultJobProgress.getTrackedProgresses();
+
+        for (DefaultJobProgress progress : progresses) {
+            progress.stepProgress();
+        }
+
+        notifyProgress(progresses, source);
+    }
+
+    /**
+     * Pop the current progress level without sending any {@link PopLevelProgressEvent}.
+     * 
+     * @param source the source of the progress, usually the job
+     */
+    void onPopLevelProgress(Object source)
+    {
+        List<DefaultJobProgress> progresses = DefaultJobProgress.getTrackedProgresses();
+
+        for (DefaultJobProgress progress : progresses) {
+            progress.popLevelProgress();
+        }
+
+        notifyProgress(progresses, source);
+    }
+
+    /**
+     * @return true if the current thread is sending a progress event from this manager, in which case the progress is
+     *         already up to date
+     */
+    boolean isSendingProgressEvent()
+    {
+        return SENDING.get() != null;
+    }
+
+    /**
+     * Send the progress event for the listeners which are not aware of {@link JobProgressManager}.
+     * 
+     * @param event the progress event
+     * @param source the source of the progress
+     */
+    private void sendProgressEvent(Event event, Object source)
+    {
+        SENDING.set(Boolean.TRUE);
+
+        try {
+            this.observationManager.notify(event, source);
+        } finally {
+            SENDING.remove();
+        }
+    }
+
+    /**
+     * @param progresses the progresses tracked by the current thread
+     * @param source the source of the progress
+     */
+    private void notifyProgress(List<DefaultJobProgress> progresses, Object source)
+    {
+        if (!progresses.isEmpty()) {
+            DefaultJobProgress progress = progresses.get(progresses.size() - 1);
+
+            // Always notify the end of the progress, whatever the time since the previous notification
+            long interval = progress.isRootLevel() ? 0 : this.notificationInterval;
+
+            if (progress.isNotificationNeeded(interval)) {
+                this.observationManager.notify(new JobProgressEvent(), source, progress);
+            }
+        }
+    }
+}
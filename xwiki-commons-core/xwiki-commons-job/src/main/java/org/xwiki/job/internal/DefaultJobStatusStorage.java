@@ -20,49 +20,69 @@
 package org.xwiki.job.internal;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.job.JobManagerConfiguration;
 import org.xwiki.job.event.status.JobStatus;
-
-import com.thoughtworks.xstream.XStream;
+import org.xwiki.logging.BoundedLogQueue;
+import org.xwiki.logging.LogQueue;
 
 /**
  * Default implementation of {@link JobStatusStorage}.
+ * <p>
+ * The location of a job status is deduced from its id so the job statuses are only loaded when asked for and only the
+ * most recently used ones are kept in memory (see {@link JobManagerConfiguration#getStatusCacheSize()}), as well as the
+ * most recently asked ids for which no job status could be found. The job
+ * statuses older than {@link JobManagerConfiguration#getStatusRetention()} are regularly deleted.
+ * <p>
+ * The job statuses are written to disk asynchronously by a dedicated thread, several stores of the same job status
+ * before it's written resulting in a single write of the last one.
  * 
  * @version $Id$
  * @since 4.0M1
  */
 @Component
 @Singleton
-public class DefaultJobStatusStorage implements JobStatusStorage, Initializable
+public class DefaultJobStatusStorage implements JobStatusStorage, Initializable, Disposable
 {
     /**
      * The name of the file where the job status is stored.
      */
-    private static final String FILENAME_STATUS = "status.xml";
+    private static final String FILENAME_STATUS = "status.bin";
+
+    /**
+     * The name of the file where the job status was stored by previous versions.
+     */
+    private static final String FILENAME_STATUS_XML = "status.xml";
 
     /**
-     * Encoding used for file content and names.
+     * The name of the file where the logs of the job which are not kept in memory are stored.
+     */
+    private static final String FILENAME_LOG = "log.txt";
+
+    /**
+     * Encoding used for file names.
      */
     private static final String DEFAULT_ENCODING = "UTF-8";
 
@@ -76,6 +96,11 @@ public class DefaultJobStatusStorage implements JobStatusStorage, Initializable
      */
     private static final String FOLDER_STATUS = "&status";
 
+    /**
+     * The maximum time to wait for the pending job statuses to be written when the storage is disposed, in seconds.
+     */
+    private static final long DISPOSE_TIMEOUT = 60;
+
     /**
      * Used to get the storage directory.
      */
@@ -89,24 +114,101 @@ public class DefaultJobStatusStorage implements JobStatusStorage, Initializable
     private Logger logger;
 
     /**
-     * Used to serialize and unserialize status.
+     * Used to unserialize status.
+     */
+    private JobStatusSerializer serializer;
+
+    /**
+     * Used to write the job statuses and regularly delete the ones older than the retention.
+     */
+    private JobStatusWriter writer;
+
+    /**
+     * The folder where the job statuses are stored.
      */
-    private XStream xstream;
+    private File storage;
 
     /**
-     * A cache of stored job statuses.
+     * A cache of the most recently used job statuses.
      */
-    private Map<List<String>, JobStatus> jobs = new ConcurrentHashMap<List<String>, JobStatus>();
+    private Map<List<String>, JobStatus> jobs;
+
+    /**
+     * A cache of the most recently asked ids for which no job status could be found.
+     */
+    private Map<List<String>, Boolean> unknownJobs;
+
+    /**
+     * The maximum number of logs of a job kept in memory.
+     */
+    private int logCapacity;
+
+    /**
+     * @see JobManagerConfiguration#isLogArgumentsSnapshot()
+     */
+    private boolean logArgumentsSnapshot;
 
     @Override
     public void initialize() throws InitializationException
     {
-        this.xstream = new XStream();
+        this.serializer = new JobStatusSerializer();
+        this.writer = new JobStatusWriter(this.serializer);
+
+        this.storage = this.configuration.getStorage();
+
+        int cacheSize = this.configuration.getStatusCacheSize();
+        this.jobs = createCache(cacheSize);
+        this.unknownJobs = createCache(cacheSize);
+
+        this.logCapacity = this.configuration.getLogCapacity();
+        this.logArgumentsSnapshot = this.configuration.isLogArgumentsSnapshot();
+
+        int retention = this.configuration.getStatusRetention();
+        if (retention > 0) {
+            final long retentionMillis = TimeUnit.DAYS.toMillis(retention);
+
+            this.writer.schedule(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try {
+                        prune(storage, new ArrayList<String>(), System.currentTimeMillis() - retentionMillis);
+                    } catch (Exception e) {
+                        logger.error("Failed to delete old job statuses", e);
+                    }
+                }
+            }, 1, TimeUnit.DAYS);
+        }
+    }
+
+    /**
+     * @param <V> the type of the cached values
+     * @param cacheSize the maximum number of entries
+     * @return a thread safe map keeping only the most recently used entries
+     */
+    private <V> Map<List<String>, V> createCache(final int cacheSize)
+    {
+        return Collections.synchronizedMap(new LinkedHashMap<List<String>, V>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<String>, V> eldest)
+            {
+                return size() > cacheSize;
+            }
+        });
+    }
 
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        // Cancel the retention and write the pending job statuses
         try {
-            load();
-        } catch (Exception e) {
-            this.logger.error("Failed to load jobs", e);
+            if (!this.writer.dispose(DISPOSE_TIMEOUT, TimeUnit.SECONDS)) {
+                this.logger.warn("Some job statuses could not be written before the storage was disposed");
+            }
+        } catch (InterruptedException e) {
+            this.logger.warn("Interrupted while waiting for the job statuses to be written");
         }
     }
 
@@ -134,99 +236,154 @@ private String encode(String name)
     }
 
     /**
-     * Load jobs from directory.
+     * @param name the file or directory name to decode
+     * @return the decoded name
      */
-    private void load()
+    private String decode(String name)
     {
-        File folder = this.configuration.getStorage();
+        String decoded;
+
+        if (!name.equals(FOLDER_NULL)) {
+            try {
+                decoded = URLDecoder.decode(name, DEFAULT_ENCODING);
+            } catch (UnsupportedEncodingException e) {
+                // Should never happen
 
-        if (folder.exists()) {
-            loadFolder(folder);
+                decoded = name;
+            }
+        } else {
+            decoded = null;
         }
+
+        return decoded;
     }
 
     /**
-     * @param folder the folder from where to load the jobs
+     * Delete the job statuses which have not been modified since the passed date.
+     * 
+     * @param folder the folder of the job
+     * @param id the id of the job
+     * @param date the date before which the job statuses are deleted
      */
-    private void loadFolder(File folder)
+    private void prune(File folder, List<String> id, long date)
     {
-        for (File file : folder.listFiles()) {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
             if (file.isDirectory()) {
                 if (file.getName().equals(FOLDER_STATUS)) {
-                    loadStatus(file);
+                    prune(file, id, date);
                 } else {
-                    loadFolder(file);
+                    List<String> childId = new ArrayList<String>(id);
+                    childId.add(decode(file.getName()));
+                    prune(file, childId, date);
                 }
-            } else if (file.getName().equals(FILENAME_STATUS)) {
-                loadStatus(folder);
+            } else if (isStatusFile(file) && file.lastModified() < date) {
+                this.jobs.remove(id);
+
+                if (!file.delete()) {
+                    this.logger.warn("Failed to delete job status file [{}]", file);
+                }
+                new File(file.getParentFile(), FILENAME_LOG).delete();
             }
         }
+
+        // Don't leave empty folders behind
+        if (folder != this.storage) {
+            deleteIfEmpty(folder);
+        }
     }
 
     /**
-     * @param folder the folder from where to load the job status
+     * @param folder the folder to delete if it does not contain any file
      */
-    private void loadStatus(File folder)
+    private void deleteIfEmpty(File folder)
     {
-        File statusFile = new File(folder, FILENAME_STATUS);
-        if (statusFile.exists()) {
-            try {
-                JobStatus status = loadJobStatus(statusFile);
-
-                List<String> id = status.getRequest().getId();
-                this.jobs.put(id != null ? id : Collections.<String> emptyList(), status);
-            } catch (Exception e) {
-                this.logger.error("Failed to load job status from file [{}]", statusFile, e);
-            }
+        String[] children = folder.list();
+        if (children != null && children.length == 0) {
+            folder.delete();
         }
     }
 
     /**
-     * @param statusFile the file containing job status to load
-     * @return the job status
-     * @throws Exception when failing to load the job status from the file
+     * @param file a file of the storage
+     * @return true if the file contains a job status
      */
-    private JobStatus loadJobStatus(File statusFile) throws Exception
+    private boolean isStatusFile(File file)
     {
-        return (JobStatus) this.xstream.fromXML(statusFile);
+        return file.getName().equals(FILENAME_STATUS) || file.getName().equals(FILENAME_STATUS_XML);
     }
 
-    // JobStatusStorage
+    /**
+     * @param folder the folder of the job
+     * @return the file containing the job status, null if none could be found
+     */
+    private File getStatusFile(File folder)
+    {
+        // The status file may be being replaced
+        File statusFile = this.serializer.getFile(new File(folder, FILENAME_STATUS));
+
+        if (statusFile == null) {
+            // Previous format
+            statusFile = new File(folder, FILENAME_STATUS_XML);
+
+            if (!statusFile.exists()) {
+                // Previous format and location
+                statusFile = new File(new File(folder, FOLDER_STATUS), FILENAME_STATUS_XML);
+            }
+        }
+
+        return statusFile.exists() ? statusFile : null;
+    }
 
     /**
      * @param id the id of the job
-     * @return the folder where to store the job related informations
+     * @return the job status, null if none could be found
      */
-    private File getJobFolder(List<String> id)
+    private JobStatus loadStatus(List<String> id)
     {
-        File folder = this.configuration.getStorage();
+        File statusFile = getStatusFile(getJobFolder(id));
 
-        for (String idElement : id) {
-            folder = new File(folder, encode(idElement));
+        if (statusFile != null) {
+            try {
+                return this.serializer.read(statusFile);
+            } catch (Exception e) {
+                this.logger.error("Failed to load job status from file [{}]", statusFile, e);
+            }
         }
 
-        return folder;
+        return null;
     }
 
+    // JobStatusStorage
+
     /**
-     * @param status the job status to save
-     * @throws IOException when falling to store the provided status
+     * @param id the id of the job
+     * @return the key of the job status in the cache
      */
-    private void saveJobStatus(JobStatus status) throws IOException
+    private List<String> getKey(List<String> id)
     {
-        File statusFile = getJobFolder(status.getRequest().getId());
-        statusFile = new File(statusFile, FILENAME_STATUS);
+        return id != null ? id : Collections.<String> emptyList();
+    }
 
-        FileOutputStream stream = FileUtils.openOutputStream(statusFile);
+    /**
+     * @param id the id of the job
+     * @return the folder where to store the job related informations
+     */
+    private File getJobFolder(List<String> id)
+    {
+        File folder = this.storage;
 
-        try {
-            OutputStreamWriter writer = new OutputStreamWriter(stream, DEFAULT_ENCODING);
-            writer.write("<?xml version=\"1.0\" encoding=\"" + DEFAULT_ENCODING + "\"?>\n");
-            this.xstream.toXML(status, writer);
-            writer.flush();
-        } finally {
-            IOUtils.closeQuietly(stream);
+        if (id != null) {
+            for (String idElement : id) {
+                folder = new File(folder, encode(idElement));
+            }
         }
+
+        return folder;
     }
 
     @Override
@@ -238,21 +395,62 @@ public JobStatus getJobStatus(String id)
     @Override
     public JobStatus getJobStatus(List<String> id)
     {
-        return this.jobs.get(id != null ? id : Collections.EMPTY_LIST);
+        List<String> key = getKey(id);
+
+        JobStatus status = this.jobs.get(key);
+
+        if (status == null && !this.unknownJobs.containsKey(key)) {
+            status = this.writer.getPendingStatus(new File(getJobFolder(id), FILENAME_STATUS));
+
+            if (status == null) {
+                status = cacheStatus(key, loadStatus(id));
+            }
+        }
+
+        return status;
+    }
+
+    /**
+     * Cache a loaded job status unless it has been stored in the meantime.
+     * 
+     * @param key the key of the job status in the cache
+     * @param loadedStatus the loaded job status, null if none could be found
+     * @return the cached job status
+     */
+    private JobStatus cacheStatus(List<String> key, JobStatus loadedStatus)
+    {
+        synchronized (this.jobs) {
+            JobStatus status = this.jobs.get(key);
+
+            if (status == null) {
+                if (loadedStatus != null) {
+                    this.jobs.put(key, loadedStatus);
+                } else {
+                    this.unknownJobs.put(key, Boolean.TRUE);
+                }
+
+                status = loadedStatus;
+            }
+
+            return status;
+        }
     }
 
     @Override
     public void store(JobStatus status)
     {
-        this.jobs.put(status.getRequest().getId(), status);
+        List<String> id = status.getRequest().getId();
+
+        List<String> key = getKey(id);
+
+        synchronized (this.jobs) {
+            this.jobs.put(key, status);
+            this.unknownJobs.remove(key);
+        }
 
         // On store Serializable job status on file system
         if (status instanceof Serializable) {
-            try {
-                saveJobStatus(status);
-            } catch (Exception e) {
-                this.logger.warn("Failed to save job status [{}]", status, e);
-            }
+            this.writer.write(status, new File(getJobFolder(id), FILENAME_STATUS));
         }
     }
 
@@ -265,17 +463,46 @@ public JobStatus remove(String id)
     @Override
     public JobStatus remove(List<String> id)
     {
-        JobStatus status = this.jobs.remove(id);
-
-        File jobFolder = getJobFolder(id);
-        if (jobFolder.exists()) {
-            try {
-                FileUtils.deleteDirectory(jobFolder);
-            } catch (IOException e) {
-                this.logger.warn("Failed to delete job folder [{}]", jobFolder, e);
+        final List<String> key = getKey(id);
+        final File jobFolder = getJobFolder(id);
+
+        JobStatus status = this.jobs.remove(key);
+
+        JobStatus pendingStatus = this.writer.cancel(new File(jobFolder, FILENAME_STATUS), new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (key.isEmpty()) {
+                    // Don't delete the whole storage
+                    new File(jobFolder, FILENAME_STATUS).delete();
+                    new File(jobFolder, FILENAME_STATUS_XML).delete();
+                    new File(jobFolder, FILENAME_LOG).delete();
+                } else if (jobFolder.exists()) {
+                    try {
+                        FileUtils.deleteDirectory(jobFolder);
+                    } catch (IOException e) {
+                        logger.warn("Failed to delete job folder [{}]", jobFolder, e);
+                    }
+                }
             }
+        });
+
+        return status != null ? status : pendingStatus;
+    }
+
+    @Override
+    public LogQueue createLogQueue(List<String> id)
+    {
+        LogQueue queue;
+        if (this.logCapacity > 0) {
+            queue = new BoundedLogQueue(this.logCapacity, new File(getJobFolder(id), FILENAME_LOG));
+        } else {
+            queue = new LogQueue();
         }
 
-        return status;
+        queue.setSnapshotArguments(this.logArgumentsSnapshot);
+
+        return queue;
     }
 }
@@ -0,0 +1,246 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.job.JobException;
+
+/**
+ * A group of jobs sharing the same queue and executed by the same pool of threads. Jobs from different groups are
+ * independent: a long job only delays the jobs of its own group.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+public class JobGroup
+{
+    /**
+     * The prefix of the name of the threads executing the jobs.
+     */
+    private static final String THREAD_NAME = "XWiki job group ";
+
+    /**
+     * The logger to log.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobGroup.class);
+
+    /**
+     * The name of the group.
+     */
+    private final String name;
+
+    /**
+     * The maximum number of jobs waiting to be executed, 0 if unbounded.
+     */
+    private final int queueSize;
+
+    /**
+     * Execute the jobs.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * The number of jobs executed.
+     */
+    private final AtomicLong executedJobs = new AtomicLong();
+
+    /**
+     * The cumulative time the executed jobs have waited in the queue, in nanoseconds.
+     */
+    private final AtomicLong waitTime = new AtomicLong();
+
+    /**
+     * The cumulative execution time of the executed jobs, in nanoseconds.
+     */
+    private final AtomicLong runTime = new AtomicLong();
+
+    /**
+     * @param name the name of the group
+     * @param threads the maximum number of jobs executed at the same time
+     * @param queueSize the maximum number of jobs waiting to be executed, 0 if unbounded
+     */
+    public JobGroup(final String name, int threads, int queueSize)
+    {
+        this.name = name;
+        this.queueSize = queueSize;
+
+        BlockingQueue<Runnable> queue =
+            queueSize > 0 ? new ArrayBlockingQueue<Runnable>(queueSize) : new LinkedBlockingQueue<Runnable>();
+
+        final AtomicInteger threadNumber = new AtomicInteger();
+        this.executor =
+            new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, queue, new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, THREAD_NAME + name + ' ' + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+
+                    return thread;
+                }
+            });
+    }
+
+    /**
+     * @return the name of the group
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * @return the maximum number of jobs executed at the same time
+     */
+    public int getThreads()
+    {
+        return this.executor.getMaximumPoolSize();
+    }
+
+    /**
+     * @return the maximum number of jobs waiting to be executed, 0 if unbounded
+     */
+    public int getQueueSize()
+    {
+        return this.queueSize;
+    }
+
+    /**
+     * @return the number of jobs waiting to be executed
+     */
+    public int getQueuedJobs()
+    {
+        return this.executor.getQueue().size();
+    }
+
+    /**
+     * @return the number of jobs being executed
+     */
+    public int getRunningJobs()
+    {
+        return this.executor.getActiveCount();
+    }
+
+    /**
+     * @return the number of jobs executed
+     */
+    public long getExecutedJobs()
+    {
+        return this.executedJobs.get();
+    }
+
+    /**
+     * @return the cumulative time the executed jobs have waited in the queue, in nanoseconds
+     */
+    public long getWaitTime()
+    {
+        return this.waitTime.get();
+    }
+
+    /**
+     * @return the cumulative execution time of the executed jobs, in nanoseconds
+     */
+    public long getRunTime()
+    {
+        return this.runTime.get();
+    }
+
+    /**
+     * @return the average time the executed jobs have waited in the queue, in nanoseconds
+     */
+    public long getAverageWaitTime()
+    {
+        long executed = getExecutedJobs();
+
+        return executed > 0 ? getWaitTime() / executed : 0;
+    }
+
+    /**
+     * @return the average execution time of the executed jobs, in nanoseconds
+     */
+    public long getAverageRunTime()
+    {
+        long executed = getExecutedJobs();
+
+        return executed > 0 ? getRunTime() / executed : 0;
+    }
+
+    /**
+     * @param job the job to add in the queue
+     * @throws JobException if the queue is full or the group has been disposed
+     */
+    public void execute(final Runnable job) throws JobException
+    {
+        final long queuedTime = System.nanoTime();
+
+        try {
+            this.executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    long startTime = System.nanoTime();
+
+                    try {
+                        job.run();
+                    } finally {
+                        addExecutedJob(startTime - queuedTime, System.nanoTime() - startTime);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new JobException("Failed to add job to the queue of group [" + this.name + "]", e);
+        }
+    }
+
+    /**
+     * @param jobWaitTime the time the job waited in the queue, in nanoseconds
+     * @param jobRunTime the execution time of the job, in nanoseconds
+     */
+    void addExecutedJob(long jobWaitTime, long jobRunTime)
+    {
+        this.executedJobs.incrementAndGet();
+        this.waitTime.addAndGet(jobWaitTime);
+        this.runTime.addAndGet(jobRunTime);
+
+        LOGGER.debug("Job of group [{}] waited [{}] ms and ran in [{}] ms", new Object[] {this.name,
+            TimeUnit.NANOSECONDS.toMillis(jobWaitTime), TimeUnit.NANOSECONDS.toMillis(jobRunTime)});
+    }
+
+    /**
+     * Stop the threads executing the jobs.
+     */
+    public void dispose()
+    {
+        this.executor.shutdownNow();
+    }
+}
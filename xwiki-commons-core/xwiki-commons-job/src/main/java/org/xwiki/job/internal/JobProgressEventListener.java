@@ -0,0 +1,114 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.job.event.status.JobProgressManager;
+import org.xwiki.job.event.status.PopLevelProgressEvent;
+import org.xwiki.job.event.status.PushLevelProgressEvent;
+import org.xwiki.job.event.status.StepProgressEvent;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Forward the progress events to {@link JobProgressManager} so that the code sending them keeps updating the progress
+ * of the jobs executed by the current thread.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+@Component
+@Singleton
+@Named(JobProgressEventListener.NAME)
+public class JobProgressEventListener implements EventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "JobProgressEventListener";
+
+    /**
+     * The listened events.
+     */
+    private static final List<Event> EVENTS = Arrays.<Event> asList(new PushLevelProgressEvent(),
+        new PopLevelProgressEvent(), new StepProgressEvent());
+
+    /**
+     * Used to update the progress. Lazily loaded to not depend on the configuration when the listener is registered.
+     */
+    @Inject
+    private Provider<JobProgressManager> progressManagerProvider;
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    public List<Event> getEvents()
+    {
+        return EVENTS;
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        // No job is executed by the current thread
+        if (DefaultJobProgress.getTrackedProgresses().isEmpty()) {
+            return;
+        }
+
+        JobProgressManager progressManager = this.progressManagerProvider.get();
+
+        if (progressManager instanceof DefaultJobProgressManager) {
+            DefaultJobProgressManager defaultProgressManager = (DefaultJobProgressManager) progressManager;
+
+            // The event is sent by the progress manager itself, the progress is already up to date
+            if (!defaultProgressManager.isSendingProgressEvent()) {
+                onProgressEvent(event, source, defaultProgressManager);
+            }
+        }
+    }
+
+    /**
+     * @param event the progress event
+     * @param source the source of the progress
+     * @param progressManager used to update the progress without sending the event again
+     */
+    private void onProgressEvent(Event event, Object source, DefaultJobProgressManager progressManager)
+    {
+        if (event instanceof PushLevelProgressEvent) {
+            progressManager.onPushLevelProgress(((PushLevelProgressEvent) event).getSteps(), source);
+        } else if (event instanceof PopLevelProgressEvent) {
+            progressManager.onPopLevelProgress(source);
+        } else if (event instanceof StepProgressEvent) {
+            progressManager.onStepProgress(source);
+        }
+    }
+}
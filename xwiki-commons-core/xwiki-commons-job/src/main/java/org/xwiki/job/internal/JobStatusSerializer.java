@@ -0,0 +1,207 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.xwiki.job.event.status.JobStatus;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.binary.BinaryStreamReader;
+import com.thoughtworks.xstream.io.binary.BinaryStreamWriter;
+
+/**
+ * Serialize and unserialize job statuses.
+ * <p>
+ * The job statuses are written in a compact binary format streamed by XStream and prefixed with a header indicating
+ * the version of the format. The XML format used by previous versions can still be read.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+public class JobStatusSerializer
+{
+    /**
+     * The extension of the files containing a job status in the XML format used by previous versions.
+     */
+    private static final String EXTENSION_XML = ".xml";
+
+    /**
+     * The extension of the temporary file used while writing a job status.
+     */
+    private static final String EXTENSION_TMP = ".tmp";
+
+    /**
+     * The extension of the previous version of a job status file while it's being replaced.
+     */
+    private static final String EXTENSION_OLD = ".old";
+
+    /**
+     * Identify a file containing a binary job status ("XJS" followed by 0).
+     */
+    private static final int MAGIC = 0x584A5300;
+
+    /**
+     * The current version of the binary format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Used to serialize and unserialize the job statuses.
+     */
+    private final XStream xstream = new XStream();
+
+    /**
+     * Write the job status in the binary format.
+     * <p>
+     * The job status is first written in a temporary file so that the file is never seen partially written. The
+     * previous version of the file is moved aside while the temporary file is renamed (see {@link #getFile(File)}).
+     * Once written, the job status file in the XML format used by previous versions, if any, is deleted.
+     * 
+     * @param status the job status to write
+     * @param file the file where to write the job status
+     * @throws IOException when failing to write the job status
+     */
+    public void write(JobStatus status, File file) throws IOException
+    {
+        File tmpFile = new File(file.getParentFile(), file.getName() + EXTENSION_TMP);
+
+        DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(FileUtils.openOutputStream(tmpFile)));
+
+        try {
+            stream.writeInt(MAGIC);
+            stream.writeInt(VERSION);
+
+            BinaryStreamWriter writer = new BinaryStreamWriter(stream);
+            this.xstream.marshal(status, writer);
+            writer.flush();
+        } finally {
+            IOUtils.closeQuietly(stream);
+        }
+
+        File oldFile = getOldFile(file);
+        if (file.exists()) {
+            oldFile.delete();
+            move(file, oldFile);
+        }
+        try {
+            move(tmpFile, file);
+        } catch (IOException e) {
+            // Restore the previous version
+            oldFile.renameTo(file);
+
+            throw e;
+        }
+        oldFile.delete();
+
+        // The job status has been migrated to the binary format
+        new File(file.getParentFile(), getXMLFileName(file)).delete();
+    }
+
+    /**
+     * @param source the file to move
+     * @param target the new location of the file
+     * @throws IOException when failing to move the file
+     */
+    private void move(File source, File target) throws IOException
+    {
+        if (!source.renameTo(target)) {
+            throw new IOException("Failed to move job status file [" + source + "] to [" + target + "]");
+        }
+    }
+
+    /**
+     * @param file the file where a job status is written
+     * @return the file containing the last written version of the job status: the passed file or, while it's being
+     *         replaced, its previous version; {@code null} if none exists
+     */
+    public File getFile(File file)
+    {
+        if (file.exists()) {
+            return file;
+        }
+
+        File oldFile = getOldFile(file);
+
+        return oldFile.exists() ? oldFile : null;
+    }
+
+    /**
+     * @param file the file where a job status is written
+     * @return the file containing the previous version of the job status while it's being replaced
+     */
+    private File getOldFile(File file)
+    {
+        return new File(file.getParentFile(), file.getName() + EXTENSION_OLD);
+    }
+
+    /**
+     * @param file the file where a job status is written
+     * @return the name of the file containing the same job status in the XML format used by previous versions
+     */
+    private String getXMLFileName(File file)
+    {
+        String name = file.getName();
+        int index = name.lastIndexOf('.');
+
+        return (index > 0 ? name.substring(0, index) : name) + EXTENSION_XML;
+    }
+
+    /**
+     * @param file the file containing the job status, in the binary format or in the XML format if its extension is
+     *            {@code .xml}
+     * @return the job status
+     * @throws IOException when failing to read the job status
+     */
+    public JobStatus read(File file) throws IOException
+    {
+        if (file.getName().endsWith(EXTENSION_XML)) {
+            return (JobStatus) this.xstream.fromXML(file);
+        }
+
+        InputStream stream = new BufferedInputStream(new FileInputStream(file));
+
+        try {
+            DataInputStream dataStream = new DataInputStream(stream);
+
+            if (dataStream.readInt() != MAGIC) {
+                throw new IOException("File [" + file + "] does not contain a job status");
+            }
+            int version = dataStream.readInt();
+            if (version > VERSION) {
+                throw new IOException("Unsupported job status format version [" + version + "] in file [" + file
+                    + "]");
+            }
+
+            return (JobStatus) this.xstream.unmarshal(new BinaryStreamReader(dataStream));
+        } finally {
+            IOUtils.closeQuietly(stream);
+        }
+    }
+}
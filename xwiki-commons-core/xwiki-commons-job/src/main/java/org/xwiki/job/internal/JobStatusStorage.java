@@ -23,6 +23,7 @@
 
 import org.xwiki.component.annotation.Role;
 import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.logging.LogQueue;
 
 /**
  * Store and retrieve {@link JobStatus} instances.
@@ -63,4 +64,11 @@
      * @since 4.1M2
      */
     JobStatus remove(List<String> id);
+
+    /**
+     * @param id the id of the job
+     * @return the queue where to store the log of the job
+     * @since 4.3M2
+     */
+    LogQueue createLogQueue(List<String> id);
 }
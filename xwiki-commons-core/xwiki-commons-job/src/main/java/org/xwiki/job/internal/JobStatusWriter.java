@@ -0,0 +1,193 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.job.event.status.JobStatus;
+
+/**
+ * Write job statuses asynchronously with a dedicated thread.
+ * <p>
+ * A job status written several times before the thread gets to it is only written once, in its last version.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+public class JobStatusWriter
+{
+    /**
+     * The name of the thread writing the job statuses.
+     */
+    private static final String THREAD_NAME = "XWiki job status writer";
+
+    /**
+     * The logger to log.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobStatusWriter.class);
+
+    /**
+     * Used to serialize the job statuses.
+     */
+    private final JobStatusSerializer serializer;
+
+    /**
+     * The job statuses waiting to be written, indexed by file.
+     */
+    private final ConcurrentMap<File, JobStatus> pendingWrites = new ConcurrentHashMap<File, JobStatus>();
+
+    /**
+     * Prevent a job status from being written while the storage is being modified.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Write the job statuses.
+     */
+    private final ScheduledExecutorService executor;
+
+    /**
+     * @param serializer used to serialize the job statuses
+     */
+    public JobStatusWriter(JobStatusSerializer serializer)
+    {
+        this.serializer = serializer;
+
+        this.executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, THREAD_NAME);
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Ask for the job status to be written.
+     * 
+     * @param status the job status to write
+     * @param file the file where to write the job status
+     */
+    public void write(JobStatus status, final File file)
+    {
+        // If the job status is already waiting to be written only its last version will be
+        if (this.pendingWrites.put(file, status) == null) {
+            try {
+                this.executor.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        writePending(file);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // The writer is being disposed
+                writePending(file);
+            }
+        }
+    }
+
+    /**
+     * @param file the file where to write the job status
+     */
+    private void writePending(File file)
+    {
+        synchronized (this.lock) {
+            JobStatus status = this.pendingWrites.remove(file);
+
+            // The job status might have been removed in the meantime
+            if (status != null) {
+                try {
+                    this.serializer.write(status, file);
+                } catch (Exception e) {
+                    LOGGER.warn("Failed to save job status [{}]", status, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param file the file where the job status is written
+     * @return the job status waiting to be written in the passed file, null if there is none
+     */
+    public JobStatus getPendingStatus(File file)
+    {
+        return this.pendingWrites.get(file);
+    }
+
+    /**
+     * Cancel the writing of a job status and execute the passed task without any job status being written meanwhile.
+     * 
+     * @param file the file where the job status is written
+     * @param task the task to execute, typically modifying the storage
+     * @return the job status which was waiting to be written, null if there was none
+     */
+    public JobStatus cancel(File file, Runnable task)
+    {
+        synchronized (this.lock) {
+            JobStatus status = this.pendingWrites.remove(file);
+
+            task.run();
+
+            return status;
+        }
+    }
+
+    /**
+     * Regularly execute a task with the thread writing the job statuses.
+     * 
+     * @param task the task to execute
+     * @param delay the time between the end of an execution and the start of the next one
+     * @param unit the unit of the delay
+     */
+    public void schedule(Runnable task, long delay, TimeUnit unit)
+    {
+        this.executor.scheduleWithFixedDelay(task, 0, delay, unit);
+    }
+
+    /**
+     * Cancel the scheduled tasks and wait for the pending job statuses to be written.
+     * 
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if all the pending job statuses have been written
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean dispose(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        this.executor.shutdown();
+
+        return this.executor.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.xwiki.job.Job;
+import org.xwiki.job.Request;
+
+/**
+ * The jobs being executed by the {@link DefaultJobManager}.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+class RunningJobs
+{
+    /**
+     * The jobs being executed, indexed by id.
+     */
+    private final ConcurrentMap<List<String>, Job> jobsById = new ConcurrentHashMap<List<String>, Job>();
+
+    /**
+     * The jobs being executed, in the order they have been started.
+     */
+    private final List<Job> jobs = new ArrayList<Job>();
+
+    /**
+     * The job executed by the current thread.
+     */
+    private final ThreadLocal<Job> threadJob = new ThreadLocal<Job>();
+
+    /**
+     * Indicate that the passed job is about to be executed by the current thread.
+     * 
+     * @param job the job
+     * @param request the request the job is executed with
+     */
+    void started(Job job, Request request)
+    {
+        List<String> id = request.getId();
+        if (id != null) {
+            this.jobsById.put(id, job);
+        }
+        this.threadJob.set(job);
+        synchronized (this.jobs) {
+            this.jobs.add(job);
+        }
+    }
+
+    /**
+     * Indicate that the passed job, executed by the current thread, is finished.
+     * 
+     * @param job the job
+     * @param request the request the job has been executed with
+     */
+    void finished(Job job, Request request)
+    {
+        synchronized (this.jobs) {
+            this.jobs.remove(job);
+        }
+        this.threadJob.remove();
+        List<String> id = request.getId();
+        if (id != null) {
+            this.jobsById.remove(id, job);
+        }
+    }
+
+    /**
+     * @param id the id of the job
+     * @return the job with the passed id being executed, null if none
+     */
+    Job get(List<String> id)
+    {
+        return id != null ? this.jobsById.get(id) : null;
+    }
+
+    /**
+     * @return the job executed by the current thread if any, otherwise the most recently started job still running,
+     *         null if no job is running
+     */
+    Job getCurrent()
+    {
+        Job job = this.threadJob.get();
+
+        if (job == null) {
+            synchronized (this.jobs) {
+                if (!this.jobs.isEmpty()) {
+                    job = this.jobs.get(this.jobs.size() - 1);
+                }
+            }
+        }
+
+        return job;
+    }
+}
@@ -21,16 +21,25 @@
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.Assert;
 
 import org.jmock.Expectations;
 import org.junit.Test;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.context.Execution;
 import org.xwiki.context.ExecutionContextManager;
 import org.xwiki.context.internal.DefaultExecution;
 import org.xwiki.context.internal.DefaultExecutionContextManager;
+import org.xwiki.job.DefaultRequest;
+import org.xwiki.job.Job;
 import org.xwiki.job.JobManager;
+import org.xwiki.job.JobManagerConfiguration;
+import org.xwiki.job.Request;
+import org.xwiki.job.event.status.JobStatus;
 import org.xwiki.test.AbstractMockingComponentTestCase;
 import org.xwiki.test.annotation.ComponentList;
 import org.xwiki.test.annotation.MockingRequirement;
@@ -47,6 +56,64 @@
 })
 public class DefaultJobManagerTest extends AbstractMockingComponentTestCase<JobManager>
 {
+    private static class TestJob implements Job
+    {
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        private Request request;
+
+        private Job currentJob;
+
+        @Override
+        public String getType()
+        {
+            return "test";
+        }
+
+        @Override
+        public JobStatus getStatus()
+        {
+            return null;
+        }
+
+        @Override
+        public Request getRequest()
+        {
+            return this.request;
+        }
+
+        @Override
+        public void start(Request request)
+        {
+            this.request = request;
+            this.started.countDown();
+
+            try {
+                this.release.await();
+            } catch (InterruptedException e) {
+                // Stop
+            }
+
+            this.finished.countDown();
+        }
+
+        @Override
+        public void join() throws InterruptedException
+        {
+            this.finished.await();
+        }
+
+        @Override
+        public boolean join(long time, TimeUnit unit) throws InterruptedException
+        {
+            return this.finished.await(time, unit);
+        }
+    }
+
     @Test
     public void testGetJobStatusForUnexistingJob() throws Exception
     {
@@ -63,4 +130,51 @@ public void testGetJobStatusForUnexistingJob() throws Exception
 
         Assert.assertNull(getMockedComponent().getJobStatus(jobId));
     }
+
+    @Test
+    public void testGetCurrentJob() throws Exception
+    {
+        final ComponentManager componentManager = getComponentManager().getInstance(ComponentManager.class);
+        final JobManagerConfiguration configuration = getComponentManager().getInstance(JobManagerConfiguration.class);
+        final TestJob job = new TestJob();
+
+        getMockery().checking(new Expectations()
+        {
+            {
+                oneOf(componentManager).getInstance(Job.class, "test");
+                will(returnValue(job));
+                oneOf(configuration).getJobTypeGroup("test");
+                will(returnValue(null));
+                oneOf(configuration).getGroupThreads("default");
+                will(returnValue(1));
+                oneOf(configuration).getGroupQueueSize("default");
+                will(returnValue(0));
+            }
+        });
+
+        Assert.assertNull(getMockedComponent().getCurrentJob());
+
+        getMockedComponent().addJob("test", new DefaultRequest());
+        Assert.assertTrue(job.started.await(10, TimeUnit.SECONDS));
+
+        Assert.assertSame(job, getMockedComponent().getCurrentJob());
+
+        // Wait for the thread of the group to be done with the job
+        final CountDownLatch done = new CountDownLatch(1);
+        ((DefaultJobManager) getMockedComponent()).getGroups().iterator().next().execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                done.countDown();
+            }
+        });
+        job.release.countDown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        // The job is not current anymore once it's finished
+        Assert.assertNull(getMockedComponent().getCurrentJob());
+
+        ((Disposable) getMockedComponent()).dispose();
+    }
 }
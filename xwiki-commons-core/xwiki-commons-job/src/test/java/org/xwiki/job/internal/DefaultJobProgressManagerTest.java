@@ -0,0 +1,184 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import junit.framework.Assert;
+
+import org.jmock.Expectations;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.job.JobManagerConfiguration;
+import org.xwiki.job.event.status.JobProgressEvent;
+import org.xwiki.job.event.status.JobProgressManager;
+import org.xwiki.job.event.status.PopLevelProgressEvent;
+import org.xwiki.job.event.status.PushLevelProgressEvent;
+import org.xwiki.job.event.status.StepProgressEvent;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.test.AbstractMockingComponentTestCase;
+import org.xwiki.test.annotation.MockingRequirement;
+
+/**
+ * Unit tests for {@link DefaultJobProgressManager}.
+ * 
+ * @version $Id$
+ */
+@MockingRequirement(DefaultJobProgressManager.class)
+public class DefaultJobProgressManagerTest extends AbstractMockingComponentTestCase<JobProgressManager>
+{
+    private DefaultJobProgress progress;
+
+    private ObservationManager observationManager;
+
+    @Before
+    public void configure() throws Exception
+    {
+        final JobManagerConfiguration configuration = getComponentManager().getInstance(JobManagerConfiguration.class);
+        this.observationManager = getComponentManager().getInstance(ObservationManager.class);
+
+        getMockery().checking(new Expectations()
+        {
+            {
+                oneOf(configuration).getProgressNotificationInterval();
+                will(returnValue(3600000L));
+                oneOf(configuration).isProgressEventsEnabled();
+                will(returnValue(false));
+            }
+        });
+
+        this.progress = new DefaultJobProgress(Thread.currentThread());
+        this.progress.startTracking();
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.progress.stopTracking();
+    }
+
+    @Test
+    public void testProgress() throws Exception
+    {
+        final Object source = new Object();
+
+        // Only the first update is notified, the following ones happen before the end of the interval
+        getMockery().checking(new Expectations()
+        {
+            {
+                oneOf(observationManager).notify(with(any(JobProgressEvent.class)), with(same(source)),
+                    with(same(progress)));
+            }
+        });
+
+        getMockedComponent().pushLevelProgress(4, source);
+
+        Assert.assertEquals(0D, this.progress.getOffset());
+
+        getMockedComponent().stepProgress(source);
+
+        Assert.assertEquals(0.25D, this.progress.getOffset());
+        Assert.assertEquals(0.25D, this.progress.getCurrentLevelOffset());
+
+        getMockedComponent().pushLevelProgress(2, source);
+        getMockedComponent().stepProgress(source);
+
+        Assert.assertEquals(0.375D, this.progress.getOffset());
+        Assert.assertEquals(0.5D, this.progress.getCurrentLevelOffset());
+
+        getMockedComponent().popLevelProgress(source);
+
+        Assert.assertEquals(0.5D, this.progress.getOffset());
+        Assert.assertEquals(0.5D, this.progress.getCurrentLevelOffset());
+    }
+
+    @Test
+    public void testEndOfProgressIsAlwaysNotified() throws Exception
+    {
+        final Object source = new Object();
+
+        getMockery().checking(new Expectations()
+        {
+            {
+                // The first update and the end of the progress
+                exactly(2).of(observationManager).notify(with(any(JobProgressEvent.class)), with(same(source)),
+                    with(same(progress)));
+            }
+        });
+
+        getMockedComponent().pushLevelProgress(2, source);
+        getMockedComponent().stepProgress(source);
+        getMockedComponent().stepProgress(source);
+        getMockedComponent().popLevelProgress(source);
+
+        Assert.assertEquals(1D, this.progress.getOffset());
+        Assert.assertFalse(this.progress.isNotificationPending());
+    }
+
+    @Test
+    public void testProgressOfOtherThreadIsNotUpdated() throws Exception
+    {
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    getMockedComponent().pushLevelProgress(1, null);
+                    getMockedComponent().stepProgress(null);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+
+        Assert.assertEquals(0D, this.progress.getOffset());
+    }
+
+    @Test
+    public void testProgressEventsAreSentWhenEnabled() throws Exception
+    {
+        final Object source = new Object();
+
+        ReflectionUtils.setFieldValue(getMockedComponent(), "progressEvents", true);
+
+        getMockery().checking(new Expectations()
+        {
+            {
+                // The first update and the end of the progress
+                exactly(2).of(observationManager).notify(with(any(JobProgressEvent.class)), with(same(source)),
+                    with(same(progress)));
+
+                // Sent for the listeners which don't know the progress manager
+                oneOf(observationManager).notify(with(any(PushLevelProgressEvent.class)), with(same(source)));
+                oneOf(observationManager).notify(with(any(StepProgressEvent.class)), with(same(source)));
+                oneOf(observationManager).notify(with(any(PopLevelProgressEvent.class)), with(same(source)));
+            }
+        });
+
+        getMockedComponent().pushLevelProgress(2, source);
+        getMockedComponent().stepProgress(source);
+        getMockedComponent().popLevelProgress(source);
+
+        Assert.assertEquals(1D, this.progress.getOffset());
+    }
+}
@@ -22,14 +22,18 @@
 import java.io.File;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.Assert;
 
+import org.apache.commons.io.FileUtils;
 import org.jmock.Expectations;
-import org.junit.Before;
 import org.junit.Test;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.job.JobManagerConfiguration;
 import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.logging.BoundedLogQueue;
+import org.xwiki.logging.LogQueue;
 import org.xwiki.test.AbstractMockingComponentTestCase;
 import org.xwiki.test.annotation.MockingRequirement;
 
@@ -41,8 +45,9 @@
 @MockingRequirement(DefaultJobStatusStorage.class)
 public class DefaultJobStatusStorageTest extends AbstractMockingComponentTestCase<JobStatusStorage>
 {
-    @Before
-    public void configure() throws Exception
+    private static final File STORAGE = new File("src/test/resources/jobs/status");
+
+    private void configure(final File storage, final int cacheSize, final int retention) throws Exception
     {
         final JobManagerConfiguration jobManagerConfiguration =
             getComponentManager().getInstance(JobManagerConfiguration.class);
@@ -51,14 +56,41 @@ public void configure() throws Exception
         {
             {
                 oneOf(jobManagerConfiguration).getStorage();
-                will(returnValue(new File("src/test/resources/jobs")));
+                will(returnValue(storage));
+                oneOf(jobManagerConfiguration).getStatusCacheSize();
+                will(returnValue(cacheSize));
+                oneOf(jobManagerConfiguration).getStatusRetention();
+                will(returnValue(retention));
+                oneOf(jobManagerConfiguration).getLogCapacity();
+                will(returnValue(2));
+                oneOf(jobManagerConfiguration).isLogArgumentsSnapshot();
+                will(returnValue(true));
             }
         });
     }
 
+    private File createTemporaryStorage() throws Exception
+    {
+        File storage = new File("target/test-" + getClass().getSimpleName());
+        FileUtils.deleteDirectory(storage);
+        storage.mkdirs();
+
+        return storage;
+    }
+
+    private JobStatus createStatus(String id)
+    {
+        SimpleJobStatus status = new SimpleJobStatus();
+        status.getRequest().setId(id);
+
+        return status;
+    }
+
     @Test
     public void testGetJobStatusForUnexistingJob() throws Exception
     {
+        configure(STORAGE, 1, 0);
+
         JobStatus jobStatus = getMockedComponent().getJobStatus((List<String>) null);
 
         Assert.assertNotNull(jobStatus);
@@ -77,4 +109,86 @@ public void testGetJobStatusForUnexistingJob() throws Exception
         Assert.assertEquals(Arrays.asList("id1", "id2", "id3"), jobStatus.getRequest().getId());
         Assert.assertEquals(JobStatus.State.FINISHED, jobStatus.getState());
     }
+
+    @Test
+    public void testCacheKeepsMostRecentlyUsed() throws Exception
+    {
+        configure(STORAGE, 2, 0);
+
+        JobStatus status1 = createStatus("status1");
+        JobStatus status2 = createStatus("status2");
+        JobStatus status3 = createStatus("status3");
+
+        getMockedComponent().store(status1);
+        getMockedComponent().store(status2);
+
+        // Make status2 the least recently used
+        Assert.assertSame(status1, getMockedComponent().getJobStatus("status1"));
+
+        getMockedComponent().store(status3);
+
+        // The job statuses are not serializable so status2 only existed in memory
+        Assert.assertNull(getMockedComponent().getJobStatus("status2"));
+        Assert.assertSame(status1, getMockedComponent().getJobStatus("status1"));
+        Assert.assertSame(status3, getMockedComponent().getJobStatus("status3"));
+    }
+
+    @Test
+    public void testGetJobStatusCachesUnknownJobs() throws Exception
+    {
+        File storage = createTemporaryStorage();
+        configure(storage, 10, 0);
+
+        Assert.assertNull(getMockedComponent().getJobStatus("id"));
+
+        // Not looked for again on disk
+        new JobStatusSerializer().write(createStatus("id"), new File(new File(storage, "id"), "status.bin"));
+        Assert.assertNull(getMockedComponent().getJobStatus("id"));
+
+        JobStatus status = createStatus("id");
+        getMockedComponent().store(status);
+
+        Assert.assertSame(status, getMockedComponent().getJobStatus("id"));
+    }
+
+    @Test
+    public void testPruneOldJobStatuses() throws Exception
+    {
+        File storage = createTemporaryStorage();
+
+        File oldFolder = new File(new File(storage, "old"), "id");
+        File oldStatusFile = new File(oldFolder, "status.bin");
+        FileUtils.writeStringToFile(oldStatusFile, "status");
+        FileUtils.writeStringToFile(new File(oldFolder, "log.txt"), "log");
+        oldStatusFile.setLastModified(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(3));
+
+        File recentStatusFile = new File(new File(storage, "recent"), "status.bin");
+        FileUtils.writeStringToFile(recentStatusFile, "status");
+
+        configure(storage, 10, 2);
+
+        // The old job statuses are deleted when the storage is initialized
+        getMockedComponent();
+
+        long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (new File(storage, "old").exists() && System.currentTimeMillis() < timeout) {
+            Thread.yield();
+        }
+        ((Disposable) getMockedComponent()).dispose();
+
+        Assert.assertFalse(new File(storage, "old").exists());
+        Assert.assertTrue(recentStatusFile.exists());
+    }
+
+    @Test
+    public void testCreateLogQueue() throws Exception
+    {
+        configure(STORAGE, 1, 0);
+
+        LogQueue queue = getMockedComponent().createLogQueue(Arrays.asList("id"));
+
+        Assert.assertTrue(queue instanceof BoundedLogQueue);
+        Assert.assertEquals(2, ((BoundedLogQueue) queue).getCapacity());
+        Assert.assertTrue(queue.isSnapshotArguments());
+    }
 }
@@ -0,0 +1,109 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.job.JobException;
+
+/**
+ * Unit tests for {@link JobGroup}.
+ * 
+ * @version $Id$
+ */
+public class JobGroupTest
+{
+    private JobGroup group;
+
+    private CountDownLatch release;
+
+    private CountDownLatch started;
+
+    @Before
+    public void setUp()
+    {
+        this.group = new JobGroup("test", 1, 1);
+        this.release = new CountDownLatch(1);
+        this.started = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.release.countDown();
+        this.group.dispose();
+    }
+
+    private Runnable blockingJob()
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // Stop
+                }
+            }
+        };
+    }
+
+    @Test
+    public void testBoundedQueue() throws Exception
+    {
+        this.group.execute(blockingJob());
+        Assert.assertTrue(this.started.await(10, TimeUnit.SECONDS));
+
+        this.group.execute(blockingJob());
+        Assert.assertEquals(1, this.group.getQueuedJobs());
+        Assert.assertEquals(1, this.group.getRunningJobs());
+
+        try {
+            this.group.execute(blockingJob());
+            Assert.fail("Should have failed because the queue is full");
+        } catch (JobException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testStatistics()
+    {
+        Assert.assertEquals(0, this.group.getAverageWaitTime());
+        Assert.assertEquals(0, this.group.getAverageRunTime());
+
+        this.group.addExecutedJob(10, 100);
+        this.group.addExecutedJob(30, 300);
+
+        Assert.assertEquals(2, this.group.getExecutedJobs());
+        Assert.assertEquals(40, this.group.getWaitTime());
+        Assert.assertEquals(400, this.group.getRunTime());
+        Assert.assertEquals(20, this.group.getAverageWaitTime());
+        Assert.assertEquals(200, this.group.getAverageRunTime());
+    }
+}
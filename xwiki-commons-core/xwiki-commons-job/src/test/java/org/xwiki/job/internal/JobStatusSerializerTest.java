@@ -0,0 +1,122 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.job.event.status.JobStatus.State;
+
+import com.thoughtworks.xstream.XStream;
+
+/**
+ * Unit tests for {@link JobStatusSerializer}.
+ * 
+ * @version $Id$
+ */
+public class JobStatusSerializerTest
+{
+    private JobStatusSerializer serializer;
+
+    private File folder;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.folder = new File("target/test-" + getClass().getSimpleName());
+        FileUtils.deleteDirectory(this.folder);
+        this.folder.mkdirs();
+
+        this.serializer = new JobStatusSerializer();
+    }
+
+    private JobStatus createStatus(String id)
+    {
+        SimpleJobStatus status = new SimpleJobStatus();
+        status.getRequest().setId(Arrays.asList("test", id));
+        status.setState(State.FINISHED);
+
+        return status;
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception
+    {
+        File file = new File(this.folder, "status.bin");
+
+        this.serializer.write(createStatus("first"), file);
+        this.serializer.write(createStatus("second"), file);
+
+        Assert.assertTrue(file.exists());
+        Assert.assertFalse(new File(this.folder, "status.bin.tmp").exists());
+        Assert.assertFalse(new File(this.folder, "status.bin.old").exists());
+        Assert.assertSame(file, this.serializer.getFile(file));
+
+        JobStatus status = this.serializer.read(file);
+
+        Assert.assertEquals(Arrays.asList("test", "second"), status.getRequest().getId());
+        Assert.assertEquals(State.FINISHED, status.getState());
+    }
+
+    @Test
+    public void testReadLegacyXML() throws Exception
+    {
+        File file = new File(this.folder, "status.xml");
+        FileUtils.writeStringToFile(file, new XStream().toXML(createStatus("legacy")), "UTF-8");
+
+        JobStatus status = this.serializer.read(file);
+
+        Assert.assertEquals(Arrays.asList("test", "legacy"), status.getRequest().getId());
+        Assert.assertEquals(State.FINISHED, status.getState());
+    }
+
+    @Test
+    public void testWriteDeletesLegacyXML() throws Exception
+    {
+        File xmlFile = new File(this.folder, "status.xml");
+        FileUtils.writeStringToFile(xmlFile, new XStream().toXML(createStatus("legacy")), "UTF-8");
+
+        File file = new File(this.folder, "status.bin");
+        this.serializer.write(this.serializer.read(xmlFile), file);
+
+        Assert.assertFalse(xmlFile.exists());
+        Assert.assertEquals(Arrays.asList("test", "legacy"), this.serializer.read(file).getRequest().getId());
+    }
+
+    @Test
+    public void testGetFileWhileReplaced() throws Exception
+    {
+        File file = new File(this.folder, "status.bin");
+
+        Assert.assertNull(this.serializer.getFile(file));
+
+        File oldFile = new File(this.folder, "status.bin.old");
+        this.serializer.write(createStatus("old"), oldFile);
+
+        Assert.assertEquals(oldFile, this.serializer.getFile(file));
+        Assert.assertEquals(Arrays.asList("test", "old"), this.serializer.read(this.serializer.getFile(file))
+            .getRequest().getId());
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.job.event.status.JobStatus;
+
+/**
+ * Unit tests for {@link JobStatusWriter}.
+ * 
+ * @version $Id$
+ */
+public class JobStatusWriterTest
+{
+    private JobStatusSerializer serializer;
+
+    private JobStatusWriter writer;
+
+    private File folder;
+
+    private CountDownLatch release;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.folder = new File("target/test-" + getClass().getSimpleName());
+        FileUtils.deleteDirectory(this.folder);
+
+        this.serializer = new JobStatusSerializer();
+        this.writer = new JobStatusWriter(this.serializer);
+
+        // Block the writer thread until the test is ready
+        this.release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        this.writer.schedule(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // Stop
+                }
+            }
+        }, 1, TimeUnit.DAYS);
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        this.release.countDown();
+        this.writer.dispose(10, TimeUnit.SECONDS);
+    }
+
+    private JobStatus createStatus(String id)
+    {
+        SimpleJobStatus status = new SimpleJobStatus();
+        status.getRequest().setId(id);
+
+        return status;
+    }
+
+    @Test
+    public void testWriteLastVersion() throws Exception
+    {
+        File file = new File(this.folder, "status.bin");
+
+        JobStatus status1 = createStatus("status1");
+        JobStatus status2 = createStatus("status2");
+
+        this.writer.write(status1, file);
+        Assert.assertSame(status1, this.writer.getPendingStatus(file));
+
+        this.writer.write(status2, file);
+        Assert.assertSame(status2, this.writer.getPendingStatus(file));
+
+        this.release.countDown();
+        Assert.assertTrue(this.writer.dispose(10, TimeUnit.SECONDS));
+
+        Assert.assertNull(this.writer.getPendingStatus(file));
+        Assert.assertEquals(Arrays.asList("status2"), this.serializer.read(file).getRequest().getId());
+    }
+
+    @Test
+    public void testCancel() throws Exception
+    {
+        File file = new File(this.folder, "status.bin");
+
+        JobStatus status = createStatus("status");
+
+        this.writer.write(status, file);
+
+        final boolean[] executed = new boolean[1];
+        Assert.assertSame(status, this.writer.cancel(file, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                executed[0] = true;
+            }
+        }));
+        Assert.assertTrue(executed[0]);
+
+        this.release.countDown();
+        Assert.assertTrue(this.writer.dispose(10, TimeUnit.SECONDS));
+
+        Assert.assertFalse(file.exists());
+    }
+}
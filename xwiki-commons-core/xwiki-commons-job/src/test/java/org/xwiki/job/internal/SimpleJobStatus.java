@@ -0,0 +1,38 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import org.xwiki.job.DefaultRequest;
+
+/**
+ * Job status with a default constructor so that XStream can create it whatever the JVM.
+ * 
+ * @version $Id$
+ */
+public class SimpleJobStatus extends AbstractJobStatus<DefaultRequest>
+{
+    /**
+     * Create a job status with an empty request.
+     */
+    public SimpleJobStatus()
+    {
+        super(new DefaultRequest(), null, null, false);
+    }
+}
@@ -0,0 +1,559 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.xwiki.logging.event.LogEvent;
+
+/**
+ * A {@link LogQueue} keeping only the most recent logs in memory.
+ * <p>
+ * The queue is append only: it can only be emptied with {@link #clear()}, {@link #poll()}, {@link #remove(Object)} and
+ * {@link Iterator#remove()} are not supported. When it contains more logs than its capacity the oldest log is removed
+ * from memory and written in a spill file, from where {@link #getLogs(int, int)} can still read it (only its formatted
+ * message and stack trace are kept). The position of every {@value #INDEX_INTERVAL}th log in the spill file is kept in
+ * memory so that a page of logs is read without reading the file from the start. The number of logs of each level,
+ * including the ones which are not in memory anymore, is available in constant time with
+ * {@link #getLogCount(LogLevel)}, while {@link #getLogs(LogLevel)} only returns the logs in memory.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+public class BoundedLogQueue extends LogQueue implements Closeable
+{
+    /**
+     * Serialization identifier.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The encoding of the spill file.
+     */
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * Separate the level from the message in the spill file.
+     */
+    private static final char SEPARATOR = ' ';
+
+    /**
+     * The error message of the unsupported remove operations.
+     */
+    private static final String APPEND_ONLY = "The queue is append only";
+
+    /**
+     * The number of logs between two indexed positions of the spill file.
+     */
+    private static final int INDEX_INTERVAL = 64;
+
+    /**
+     * The maximum number of logs kept in memory.
+     */
+    private final int capacity;
+
+    /**
+     * The file where to write the logs removed from memory, null to forget them.
+     */
+    private final File spillFile;
+
+    /**
+     * The number of logs of each level, indexed by level ordinal.
+     */
+    private final int[] levelCounts = new int[LogLevel.values().length];
+
+    /**
+     * The number of logs in memory.
+     */
+    private int memoryCount;
+
+    /**
+     * The number of logs removed from memory.
+     */
+    private int spilledCount;
+
+    /**
+     * The number of logs written in the spill file.
+     */
+    private int writtenCount;
+
+    /**
+     * True if writing in the spill file failed, in which case the following logs removed from memory are lost.
+     */
+    private boolean spillFailed;
+
+    /**
+     * The logs in memory, starting at {@link #windowStart}, to access them by index.
+     */
+    private transient List<LogEvent> window;
+
+    /**
+     * The index of the oldest log in memory in {@link #window}.
+     */
+    private transient int windowStart;
+
+    /**
+     * The logs in memory indexed by level.
+     */
+    private transient Map<LogLevel, Deque<LogEvent>> levelLogs;
+
+    /**
+     * Used to write the logs removed from memory.
+     */
+    private transient OutputStream spillStream;
+
+    /**
+     * The number of bytes written in the spill file.
+     */
+    private transient long spillLength;
+
+    /**
+     * The position in the spill file of every {@link #INDEX_INTERVAL}th log, null when it has not been built yet (it's
+     * not serialized).
+     */
+    private transient List<Long> spillIndex;
+
+    /**
+     * @param capacity the maximum number of logs kept in memory
+     * @param spillFile the file where to write the logs removed from memory, null to forget them
+     */
+    public BoundedLogQueue(int capacity, File spillFile)
+    {
+        this.capacity = capacity;
+        this.spillFile = spillFile;
+    }
+
+    /**
+     * @return the maximum number of logs kept in memory
+     */
+    public int getCapacity()
+    {
+        return this.capacity;
+    }
+
+    /**
+     * @return the total number of logs added to the queue, including the ones which are not in memory anymore
+     */
+    public synchronized int getLogCount()
+    {
+        return this.spilledCount + this.memoryCount;
+    }
+
+    /**
+     * Create the indexes if needed (they are not serialized).
+     */
+    private void initIndexes()
+    {
+        if (this.window == null) {
+            this.window = new ArrayList<LogEvent>();
+            this.windowStart = 0;
+            this.levelLogs = new EnumMap<LogLevel, Deque<LogEvent>>(LogLevel.class);
+            for (LogLevel level : LogLevel.values()) {
+                this.levelLogs.put(level, new ArrayDeque<LogEvent>());
+            }
+
+            for (LogEvent log : this) {
+                this.window.add(log);
+                this.levelLogs.get(log.getLevel()).add(log);
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean offer(LogEvent event)
+    {
+        initIndexes();
+
+        // The prepared log is left untouched when passed again to LogQueue#offer()
+        LogEvent log = prepare(event);
+
+        super.offer(log);
+
+        this.window.add(log);
+        this.levelLogs.get(log.getLevel()).add(log);
+        ++this.levelCounts[log.getLevel().ordinal()];
+        ++this.memoryCount;
+
+        if (this.memoryCount > this.capacity) {
+            removeOldest();
+        }
+
+        return true;
+    }
+
+    /**
+     * Remove the oldest log from memory and write it in the spill file.
+     */
+    private void removeOldest()
+    {
+        LogEvent log = super.poll();
+
+        this.window.set(this.windowStart++, null);
+        if (this.windowStart >= this.capacity) {
+            this.window.subList(0, this.windowStart).clear();
+            this.windowStart = 0;
+        }
+        this.levelLogs.get(log.getLevel()).poll();
+
+        --this.memoryCount;
+        ++this.spilledCount;
+
+        if (this.spillFile != null && !this.spillFailed) {
+            try {
+                spill(log);
+                ++this.writtenCount;
+            } catch (IOException e) {
+                // Can't log anything here since the log would probably end up in this queue. Stop spilling so that
+                // the logs in the file keep their index.
+                onSpillFailure();
+            }
+        }
+    }
+
+    /**
+     * @param log the log to write in the spill file
+     * @throws IOException when failing to write the log
+     */
+    private void spill(LogEvent log) throws IOException
+    {
+        if (this.spillStream == null) {
+            this.spillFile.getParentFile().mkdirs();
+
+            if (this.writtenCount > 0) {
+                if (this.spillIndex == null) {
+                    indexSpillFile();
+                }
+            } else {
+                this.spillIndex = new ArrayList<Long>();
+                this.spillLength = 0;
+            }
+
+            // Overwrite any previous content when spilling the first log
+            this.spillStream =
+                new BufferedOutputStream(new FileOutputStream(this.spillFile, this.writtenCount > 0));
+        }
+
+        String message = log.getFormattedMessage();
+        if (log.getThrowable() != null) {
+            message += '\n' + ExceptionUtils.getStackTrace(log.getThrowable());
+        }
+
+        // The escaped message does not contain any line break
+        byte[] line = (log.getLevel().name() + SEPARATOR + StringEscapeUtils.escapeJava(message) + '\n')
+            .getBytes(ENCODING);
+
+        if (this.writtenCount % INDEX_INTERVAL == 0) {
+            this.spillIndex.add(this.spillLength);
+        }
+
+        this.spillStream.write(line);
+        this.spillLength += line.length;
+
+        // The stream is only flushed when reading the spilled logs and when closing the queue
+    }
+
+    /**
+     * Build the index of the spill file from its content, for example after the queue has been deserialized.
+     * 
+     * @throws IOException when failing to read the spill file
+     */
+    private void indexSpillFile() throws IOException
+    {
+        List<Long> index = new ArrayList<Long>();
+        long position = 0;
+
+        BufferedReader reader =
+            new BufferedReader(new InputStreamReader(new FileInputStream(this.spillFile), ENCODING));
+
+        try {
+            int count = 0;
+            String line = reader.readLine();
+            while (line != null && count < this.writtenCount) {
+                if (count++ % INDEX_INTERVAL == 0) {
+                    index.add(position);
+                }
+                position += line.getBytes(ENCODING).length + 1;
+                line = reader.readLine();
+            }
+        } finally {
+            reader.close();
+        }
+
+        this.spillIndex = index;
+        this.spillLength = this.spillFile.length();
+    }
+
+    /**
+     * Stop writing in the spill file.
+     */
+    private void onSpillFailure()
+    {
+        this.spillFailed = true;
+
+        try {
+            close();
+        } catch (IOException e) {
+            // Nothing more to do
+        }
+    }
+
+    /**
+     * @param line a line of the spill file
+     * @return the log, null if the line is not a valid log (e.g. partially written)
+     */
+    private LogEvent parseSpilledLog(String line)
+    {
+        int separatorIndex = line.indexOf(SEPARATOR);
+        if (separatorIndex > 0) {
+            try {
+                LogLevel level = LogLevel.valueOf(line.substring(0, separatorIndex));
+                String message = StringEscapeUtils.unescapeJava(line.substring(separatorIndex + 1));
+
+                return new LogEvent(level, message, null, null);
+            } catch (IllegalArgumentException e) {
+                // Invalid line
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param from the index of the first log to read in the spill file
+     * @param max the maximum number of logs to read
+     * @param logs the list where to add the read logs
+     * @throws IOException when failing to read the spill file
+     */
+    private void readSpilledLogs(int from, int max, List<LogEvent> logs) throws IOException
+    {
+        if (this.spillIndex == null) {
+            indexSpillFile();
+        }
+
+        // Start reading from the closest indexed log
+        int index = from - from % INDEX_INTERVAL;
+
+        FileInputStream stream = new FileInputStream(this.spillFile);
+
+        try {
+            stream.getChannel().position(this.spillIndex.get(index / INDEX_INTERVAL));
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(stream, ENCODING));
+
+            int count = 0;
+            String line = reader.readLine();
+            while (line != null && count < max) {
+                if (index++ >= from) {
+                    LogEvent log = parseSpilledLog(line);
+                    if (log == null) {
+                        // The end of the file is corrupted
+                        break;
+                    }
+                    logs.add(log);
+                    ++count;
+                }
+                line = reader.readLine();
+            }
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Unsupported, the queue is append only.
+     * 
+     * @return never
+     */
+    @Override
+    public LogEvent poll()
+    {
+        throw new UnsupportedOperationException(APPEND_ONLY);
+    }
+
+    /**
+     * Unsupported, the queue is append only.
+     * 
+     * @param o the element to remove
+     * @return never
+     */
+    @Override
+    public boolean remove(Object o)
+    {
+        throw new UnsupportedOperationException(APPEND_ONLY);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned iterator does not support {@link Iterator#remove()} since the queue is append only.
+     * 
+     * @see java.util.concurrent.ConcurrentLinkedQueue#iterator()
+     */
+    @Override
+    public Iterator<LogEvent> iterator()
+    {
+        final Iterator<LogEvent> iterator = super.iterator();
+
+        return new Iterator<LogEvent>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public LogEvent next()
+            {
+                return iterator.next();
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException(APPEND_ONLY);
+            }
+        };
+    }
+
+    /**
+     * Remove all the logs, including the ones in the spill file.
+     */
+    @Override
+    public synchronized void clear()
+    {
+        while (super.poll() != null) {
+            // Remove the logs in memory one by one
+        }
+
+        this.window = null;
+        this.memoryCount = 0;
+        this.spilledCount = 0;
+        this.writtenCount = 0;
+        this.spillFailed = false;
+        this.spillIndex = null;
+        Arrays.fill(this.levelCounts, 0);
+
+        // The spill file will be overwritten by the next spilled log
+        try {
+            close();
+        } catch (IOException e) {
+            // Nothing more to do
+        }
+    }
+
+    @Override
+    public synchronized int size()
+    {
+        return this.memoryCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only return the logs which are still in memory.
+     * 
+     * @see org.xwiki.logging.LogQueue#getLogs(org.xwiki.logging.LogLevel)
+     */
+    @Override
+    public synchronized List<LogEvent> getLogs(LogLevel level)
+    {
+        initIndexes();
+
+        return new ArrayList<LogEvent>(this.levelLogs.get(level));
+    }
+
+    @Override
+    public synchronized int getLogCount(LogLevel level)
+    {
+        return this.levelCounts[level.ordinal()];
+    }
+
+    @Override
+    public synchronized List<LogEvent> getLogs(int from, int max)
+    {
+        initIndexes();
+
+        List<LogEvent> logs = new ArrayList<LogEvent>();
+
+        int index = from;
+
+        // Logs which are not in memory anymore
+        if (index < this.writtenCount && this.spillFile.exists()) {
+            flushSpillStream();
+
+            try {
+                readSpilledLogs(index, Math.min(max, this.writtenCount - index), logs);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read logs from file [" + this.spillFile + "]", e);
+            }
+        }
+
+        // Logs in memory (the ones which could not be written in the spill file are lost)
+        index = Math.max(index, this.spilledCount);
+        for (; logs.size() < max && index < this.spilledCount + this.memoryCount; ++index) {
+            logs.add(this.window.get(this.windowStart + index - this.spilledCount));
+        }
+
+        return logs;
+    }
+
+    /**
+     * Make sure all the logs written in the spill file can be read.
+     */
+    private void flushSpillStream()
+    {
+        if (this.spillStream != null) {
+            try {
+                this.spillStream.flush();
+            } catch (IOException e) {
+                onSpillFailure();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (this.spillStream != null) {
+            OutputStream stream = this.spillStream;
+            this.spillStream = null;
+            stream.close();
+        }
+    }
+}
@@ -20,6 +20,7 @@
 package org.xwiki.logging;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -42,6 +43,62 @@ public class LogQueue extends ConcurrentLinkedQueue<LogEvent> implements Logger
      */
     private static final long serialVersionUID = 1L;
 
+    /**
+     * @see #isSnapshotArguments()
+     */
+    private boolean snapshotArguments;
+
+    /**
+     * @return true if the arguments of the added logs are replaced by their {@link String} representation (see
+     *         {@link LogEvent#snapshot()})
+     * @since 4.3M2
+     */
+    public boolean isSnapshotArguments()
+    {
+        return this.snapshotArguments;
+    }
+
+    /**
+     * @param snapshotArguments true if the arguments of the added logs should be replaced by their {@link String}
+     *            representation so that the queue does not keep a reference to the objects passed to the logger
+     * @since 4.3M2
+     */
+    public void setSnapshotArguments(boolean snapshotArguments)
+    {
+        this.snapshotArguments = snapshotArguments;
+    }
+
+    /**
+     * @param log the log to add to the queue
+     * @return the log to actually store in the queue
+     * @since 4.3M2
+     */
+    protected LogEvent prepare(LogEvent log)
+    {
+        return this.snapshotArguments ? log.snapshot() : log;
+    }
+
+    @Override
+    public boolean offer(LogEvent log)
+    {
+        return super.offer(prepare(log));
+    }
+
+    @Override
+    public boolean addAll(Collection< ? extends LogEvent> logs)
+    {
+        if (logs == this) {
+            throw new IllegalArgumentException("Can't add a queue to itself");
+        }
+
+        // Make sure each log goes through #offer(LogEvent)
+        for (LogEvent log : logs) {
+            offer(log);
+        }
+
+        return !logs.isEmpty();
+    }
+
     /**
      * @param level the log level
      * @param format the log message
@@ -109,6 +166,10 @@ public LogEvent addLogEvent(Marker marker, LogLevel level, String format, Object
 
     /**
      * Filter logs of a specific level.
+     * <p>
+     * Only the logs in memory are returned: a {@link BoundedLogQueue} does not return the logs it has removed from
+     * memory. Use {@link #getLogCount(LogLevel)} to only know if there's any log of a specific level, it counts all the
+     * logs and does not build a list.
      * 
      * @param level the level of the logs to return
      * @return the filtered logs
@@ -129,6 +190,8 @@ public List<LogEvent> getLogs(LogLevel level)
 
     /**
      * Filter logs of a specific level.
+     * <p>
+     * Like {@link #getLogs(LogLevel)}, only the logs in memory are returned.
      * 
      * @param level the level of the logs to return
      * @return the filtered logs
@@ -147,6 +210,49 @@ public List<LogEvent> getLogsFrom(LogLevel level)
         return levelLogs;
     }
 
+    /**
+     * @param level the level of the log
+     * @return the number of logs of the passed level
+     * @since 4.3M2
+     */
+    public int getLogCount(LogLevel level)
+    {
+        int count = 0;
+
+        for (LogEvent log : this) {
+            if (log.getLevel() == level) {
+                ++count;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Allow to read the logs page by page, for example to only get the logs added since the last call.
+     * 
+     * @param from the index of the first log to return, starting at 0 for the first log added to the queue
+     * @param max the maximum number of logs to return
+     * @return the logs
+     * @since 4.3M2
+     */
+    public List<LogEvent> getLogs(int from, int max)
+    {
+        List<LogEvent> logs = new LinkedList<LogEvent>();
+
+        int index = 0;
+        for (LogEvent log : this) {
+            if (logs.size() == max) {
+                break;
+            }
+            if (index++ >= from) {
+                logs.add(log);
+            }
+        }
+
+        return logs;
+    }
+
     // Logger
 
     @Override
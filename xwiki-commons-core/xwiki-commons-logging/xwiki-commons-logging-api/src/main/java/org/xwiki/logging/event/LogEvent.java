@@ -19,7 +19,10 @@
  */
 package org.xwiki.logging.event;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.inject.Singleton;
 
@@ -40,6 +43,13 @@
 @Singleton
 public class LogEvent implements Event
 {
+    /**
+     * The types of arguments which don't need to be converted to keep a snapshot of them.
+     */
+    private static final Set<Class< ? >> IMMUTABLE_TYPES = new HashSet<Class< ? >>(Arrays.<Class< ? >> asList(
+        String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class, Float.class,
+        Double.class));
+
     /**
      * @see #getMarker()
      */
@@ -70,6 +80,11 @@ public class LogEvent implements Event
      */
     private transient String formattedMessage;
 
+    /**
+     * The message cut in pieces.
+     */
+    private transient List<String> messageElements;
+
     /**
      * Matches any {@link LogEvent}.
      */
@@ -176,7 +191,64 @@ public String getFormattedMessage()
      */
     public List<String> getMessageElements()
     {
-        return ExtendedMessageFormatter.parseMessage(getMessage(), getArgumentArray());
+        if (this.messageElements == null) {
+            this.messageElements = ExtendedMessageFormatter.parseMessage(getMessage(), getArgumentArray());
+        }
+
+        return this.messageElements;
+    }
+
+    /**
+     * Create a version of this event where each argument is replaced by its immutable {@link String} representation so
+     * that the event does not keep a reference to the (possibly big and mutable) objects passed to the logger.
+     * <p>
+     * Only the arguments are converted: the message is formatted and parsed only when asked, from the converted
+     * arguments, which gives the same result as with the original arguments.
+     * 
+     * @return an event with only immutable arguments, this event if its arguments are already immutable
+     * @since 4.3M2
+     */
+    public LogEvent snapshot()
+    {
+        if (isImmutable(this.argumentArray)) {
+            return this;
+        }
+
+        Object[] snapshotArguments = new Object[this.argumentArray.length];
+        for (int i = 0; i < this.argumentArray.length; ++i) {
+            Object argument = this.argumentArray[i];
+            // Convert the argument exactly like it's done when formatting the message
+            snapshotArguments[i] =
+                isImmutable(argument) ? argument : MessageFormatter.format("{}", argument).getMessage();
+        }
+
+        return new LogEvent(this.marker, this.level, this.message, snapshotArguments, this.throwable);
+    }
+
+    /**
+     * @param arguments the event arguments
+     * @return true if none of the arguments need to be converted to keep a snapshot of them
+     */
+    private static boolean isImmutable(Object[] arguments)
+    {
+        if (arguments != null) {
+            for (Object argument : arguments) {
+                if (!isImmutable(argument)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @param argument an event argument
+     * @return true if the argument does not need to be converted to keep a snapshot of it
+     */
+    private static boolean isImmutable(Object argument)
+    {
+        return argument == null || IMMUTABLE_TYPES.contains(argument.getClass()) || argument instanceof Enum;
     }
 
     @Override
@@ -0,0 +1,202 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.xwiki.logging.event.LogEvent;
+
+/**
+ * Test {@link BoundedLogQueue}.
+ * 
+ * @version $Id$
+ */
+public class BoundedLogQueueTest
+{
+    @Test
+    public void testCapacity() throws Exception
+    {
+        File spillFile = new File("target/test-" + System.currentTimeMillis() + "/log.txt");
+        BoundedLogQueue queue = new BoundedLogQueue(2, spillFile);
+
+        queue.error("error {}", "param");
+        queue.warn("warning", new Exception("cause"));
+        queue.info("info 1");
+        queue.info("info 2");
+
+        Assert.assertEquals(2, queue.size());
+        Assert.assertEquals(4, queue.getLogCount());
+        Assert.assertEquals(1, queue.getLogCount(LogLevel.ERROR));
+        Assert.assertEquals(1, queue.getLogCount(LogLevel.WARN));
+        Assert.assertEquals(2, queue.getLogCount(LogLevel.INFO));
+        Assert.assertTrue(queue.getLogs(LogLevel.ERROR).isEmpty());
+        Assert.assertEquals(2, queue.getLogs(LogLevel.INFO).size());
+
+        List<LogEvent> logs = queue.getLogs(0, 10);
+        Assert.assertEquals(4, logs.size());
+        Assert.assertEquals(LogLevel.ERROR, logs.get(0).getLevel());
+        Assert.assertEquals("error param", logs.get(0).getFormattedMessage());
+        Assert.assertEquals(LogLevel.WARN, logs.get(1).getLevel());
+        Assert.assertTrue(logs.get(1).getFormattedMessage().startsWith("warning\njava.lang.Exception: cause"));
+        Assert.assertEquals("info 1", logs.get(2).getFormattedMessage());
+        Assert.assertEquals("info 2", logs.get(3).getFormattedMessage());
+
+        logs = queue.getLogs(1, 2);
+        Assert.assertEquals(2, logs.size());
+        Assert.assertEquals(LogLevel.WARN, logs.get(0).getLevel());
+        Assert.assertEquals("info 1", logs.get(1).getFormattedMessage());
+
+        Assert.assertTrue(queue.getLogs(4, 10).isEmpty());
+
+        queue.close();
+
+        Assert.assertTrue(spillFile.exists());
+    }
+
+    @Test
+    public void testPages() throws Exception
+    {
+        File spillFile = new File("target/test-" + System.currentTimeMillis() + "/log.txt");
+        BoundedLogQueue queue = new BoundedLogQueue(10, spillFile);
+
+        for (int i = 0; i < 200; ++i) {
+            queue.info("info \u00e9 {}", i);
+        }
+
+        // Pages starting before, on and after an indexed log of the spill file
+        assertPage(queue, 63, 3);
+        assertPage(queue, 128, 1);
+        assertPage(queue, 185, 10);
+
+        // The index of the spill file is rebuilt when it's lost, for example when the queue is deserialized
+        queue.close();
+        Field spillIndexField = BoundedLogQueue.class.getDeclaredField("spillIndex");
+        spillIndexField.setAccessible(true);
+        spillIndexField.set(queue, null);
+
+        for (int i = 200; i < 300; ++i) {
+            queue.info("info \u00e9 {}", i);
+        }
+
+        assertPage(queue, 0, 2);
+        assertPage(queue, 150, 100);
+        assertPage(queue, 270, 50);
+
+        queue.close();
+    }
+
+    private void assertPage(BoundedLogQueue queue, int from, int max)
+    {
+        List<LogEvent> logs = queue.getLogs(from, max);
+
+        Assert.assertEquals(Math.min(max, queue.getLogCount() - from), logs.size());
+        for (int i = 0; i < logs.size(); ++i) {
+            Assert.assertEquals("info \u00e9 " + (from + i), logs.get(i).getFormattedMessage());
+        }
+    }
+
+    @Test
+    public void testWithoutSpillFile()
+    {
+        BoundedLogQueue queue = new BoundedLogQueue(1, null);
+
+        for (int i = 0; i < 10; ++i) {
+            queue.error("error {}", i);
+        }
+
+        Assert.assertEquals(1, queue.size());
+        Assert.assertEquals(10, queue.getLogCount(LogLevel.ERROR));
+
+        List<LogEvent> logs = queue.getLogs(0, 10);
+        Assert.assertEquals(1, logs.size());
+        Assert.assertEquals("error 9", logs.get(0).getFormattedMessage());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testPoll()
+    {
+        new BoundedLogQueue(1, null).poll();
+    }
+
+    @Test
+    public void testSpillFailure() throws Exception
+    {
+        // A folder can't be written as a file
+        File spillFile = new File("target/test-" + System.currentTimeMillis() + "/log");
+        spillFile.mkdirs();
+        BoundedLogQueue queue = new BoundedLogQueue(1, spillFile);
+
+        queue.error("error 1");
+        queue.error("error 2");
+        queue.error("error 3");
+
+        Assert.assertEquals(3, queue.getLogCount());
+
+        // The logs which could not be spilled are lost but the others keep their index
+        List<LogEvent> logs = queue.getLogs(0, 10);
+        Assert.assertEquals(1, logs.size());
+        Assert.assertEquals("error 3", logs.get(0).getFormattedMessage());
+        Assert.assertEquals("error 3", queue.getLogs(2, 1).get(0).getFormattedMessage());
+    }
+
+    @Test
+    public void testClear() throws Exception
+    {
+        File spillFile = new File("target/test-" + System.currentTimeMillis() + "/log.txt");
+        BoundedLogQueue queue = new BoundedLogQueue(1, spillFile);
+
+        queue.error("error 1");
+        queue.error("error 2");
+
+        queue.clear();
+
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertEquals(0, queue.getLogCount());
+        Assert.assertEquals(0, queue.getLogCount(LogLevel.ERROR));
+        Assert.assertTrue(queue.getLogs(0, 10).isEmpty());
+
+        queue.warn("warning 1");
+        queue.warn("warning 2");
+
+        List<LogEvent> logs = queue.getLogs(0, 10);
+        Assert.assertEquals(2, logs.size());
+        Assert.assertEquals("warning 1", logs.get(0).getFormattedMessage());
+        Assert.assertEquals("warning 2", logs.get(1).getFormattedMessage());
+
+        queue.close();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testIteratorRemove()
+    {
+        BoundedLogQueue queue = new BoundedLogQueue(1, null);
+        queue.error("error");
+
+        Iterator<LogEvent> iterator = queue.iterator();
+        iterator.next();
+        iterator.remove();
+    }
+}
@@ -53,4 +53,25 @@ public void testGetMessageElements()
 
         Assert.assertEquals(logEvent.getMessageElements(), Arrays.asList("message ", ""));
     }
+
+    @Test
+    public void testSnapshot()
+    {
+        StringBuilder argument = new StringBuilder("value");
+        LogEvent logEvent =
+            new LogEvent(null, LogLevel.ERROR, "message {} {} {}", new Object[] {argument, 42, new int[] {1, 2}}, null);
+
+        LogEvent snapshot = logEvent.snapshot();
+
+        argument.append(" modified");
+
+        Assert.assertNotSame(logEvent, snapshot);
+        Assert.assertEquals("message value 42 [1, 2]", snapshot.getFormattedMessage());
+        Assert.assertEquals(logEvent.getMessageElements(), snapshot.getMessageElements());
+        Assert.assertEquals("value", snapshot.getArgumentArray()[0]);
+        Assert.assertEquals(42, snapshot.getArgumentArray()[1]);
+        Assert.assertEquals("[1, 2]", snapshot.getArgumentArray()[2]);
+
+        Assert.assertSame(snapshot, snapshot.snapshot());
+    }
 }
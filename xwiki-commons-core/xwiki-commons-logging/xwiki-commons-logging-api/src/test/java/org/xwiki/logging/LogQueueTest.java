@@ -56,4 +56,26 @@ public void testError()
         Assert.assertEquals(logEvent.getFormattedMessage(), "message param1");
         Assert.assertNotNull(logEvent.getThrowable());
     }
+
+    @Test
+    public void testSnapshotArguments()
+    {
+        LogQueue queue = new LogQueue();
+        queue.setSnapshotArguments(true);
+
+        queue.error("message {}", new StringBuilder("param"));
+
+        LogEvent logEvent = queue.poll();
+        Assert.assertEquals("param", logEvent.getArgumentArray()[0]);
+        Assert.assertEquals("message param", logEvent.getFormattedMessage());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddAllToItself()
+    {
+        LogQueue queue = new LogQueue();
+        queue.error("message");
+
+        queue.addAll(queue);
+    }
 }
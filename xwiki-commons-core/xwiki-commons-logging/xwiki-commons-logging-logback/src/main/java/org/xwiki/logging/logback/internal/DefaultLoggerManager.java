@@ -33,13 +33,15 @@
 import org.xwiki.logging.LoggerManager;
 import org.xwiki.observation.EventListener;
 import org.xwiki.observation.ObservationManager;
-import org.xwiki.observation.WrappedThreadEventListener;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.Appender;
 
 /**
  * Default implementation of {@link LoggerManager}.
+ * <p>
+ * The log listeners are indexed by thread: {@link LogbackEventGenerator} sends the logs of a thread directly to its
+ * current listener instead of broadcasting them to a listener per thread registered in the observation manager.
  * 
  * @version $Id$
  * @since 3.2M3
@@ -48,7 +50,8 @@
 public class DefaultLoggerManager implements LoggerManager, Initializable
 {
     /**
-     * Used to register/unregister {@link org.xwiki.logging.event.LogEvent} listeners.
+     * Not used directly but make sure the observation manager, and thus {@link LogbackEventGenerator}, is initialized
+     * before any log listener is pushed.
      */
     @Inject
     private ObservationManager observation;
@@ -90,13 +93,6 @@ public void pushLogListener(EventListener listener)
             this.listeners.set(listenerStack);
         }
 
-        if (!listenerStack.isEmpty()) {
-            this.observation.removeListener(listenerStack.peek().getName());
-        }
-
-        if (listener != null) {
-            this.observation.addListener(new WrappedThreadEventListener(listener, Thread.currentThread()));
-        }
         if (listenerStack.isEmpty()) {
             grabLog(Thread.currentThread());
         }
@@ -111,16 +107,9 @@ public EventListener popLogListener()
         EventListener listener;
         if (listenerStack != null && !listenerStack.isEmpty()) {
             listener = listenerStack.pop();
-            if (listener != null) {
-                this.observation.removeListener(listener.getName());
-            }
             if (listenerStack.isEmpty()) {
                 ungrabLog(Thread.currentThread());
-            } else {
-                EventListener topListener = listenerStack.peek();
-                if (topListener != null) {
-                    this.observation.addListener(new WrappedThreadEventListener(topListener, Thread.currentThread()));
-                }
+                this.listeners.remove();
             }
         } else {
             listener = null;
@@ -129,6 +118,17 @@ public EventListener popLogListener()
         return listener;
     }
 
+    /**
+     * @return the listener receiving the logs of the current thread, null if the logs are not captured or discarded
+     * @since 4.3M2
+     */
+    public EventListener getCurrentLogListener()
+    {
+        Stack<EventListener> listenerStack = this.listeners.get();
+
+        return listenerStack != null && !listenerStack.isEmpty() ? listenerStack.peek() : null;
+    }
+
     /**
      * Isolate all appender from provided thread except the event generator one.
      * 
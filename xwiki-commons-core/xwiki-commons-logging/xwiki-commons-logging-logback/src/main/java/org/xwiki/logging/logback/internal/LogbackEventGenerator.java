@@ -33,6 +33,7 @@
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.LoggerManager;
 import org.xwiki.logging.event.LogEvent;
 import org.xwiki.observation.EventListener;
 import org.xwiki.observation.ObservationManager;
@@ -75,6 +76,16 @@ public class LogbackEventGenerator extends AppenderBase<ILoggingEvent> implement
     @Inject
     private ComponentManager componentManager;
 
+    /**
+     * Used to broadcast the logs, lazily loaded since this component is initialized by the observation manager.
+     */
+    private volatile ObservationManager observationManager;
+
+    /**
+     * Used to find the listener capturing the logs of the current thread, lazily loaded.
+     */
+    private volatile DefaultLoggerManager loggerManager;
+
     @Override
     public String getName()
     {
@@ -112,7 +123,33 @@ public void onEvent(Event event, Object source, Object data)
      */
     private ObservationManager getObservationManager() throws ComponentLookupException
     {
-        return this.componentManager.getInstance(ObservationManager.class);
+        if (this.observationManager == null) {
+            this.observationManager = this.componentManager.getInstance(ObservationManager.class);
+        }
+
+        return this.observationManager;
+    }
+
+    /**
+     * @return the listener capturing the logs of the current thread, null if there is none
+     */
+    private EventListener getCurrentLogListener()
+    {
+        if (this.loggerManager == null) {
+            try {
+                LoggerManager manager = this.componentManager.getInstance(LoggerManager.class);
+
+                if (!(manager instanceof DefaultLoggerManager)) {
+                    return null;
+                }
+
+                this.loggerManager = (DefaultLoggerManager) manager;
+            } catch (ComponentLookupException e) {
+                return null;
+            }
+        }
+
+        return this.loggerManager.getCurrentLogListener();
     }
 
     @Override
@@ -130,6 +167,12 @@ protected void append(ILoggingEvent event)
             LogEvent logevent =
                 new LogEvent(event.getMarker(), logLevel, event.getMessage(), event.getArgumentArray(), throwable);
 
+            // Send the log directly to the listener capturing the logs of the current thread, if any
+            EventListener logListener = getCurrentLogListener();
+            if (logListener != null) {
+                logListener.onEvent(logevent, event.getLoggerName(), null);
+            }
+
             getObservationManager().notify(logevent, event.getLoggerName(), null);
         } catch (IllegalArgumentException e) {
             this.logger.debug("Unsupported log level [{}]", event.getLevel());
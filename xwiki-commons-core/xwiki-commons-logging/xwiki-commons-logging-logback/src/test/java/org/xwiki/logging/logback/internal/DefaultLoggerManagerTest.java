@@ -168,6 +168,25 @@ public void testStackedListeners()
         this.loggerManager.popLogListener();
     }
 
+    @Test
+    public void testListenerNotRegisteredInObservationManager() throws Exception
+    {
+        LogQueue queue = new LogQueue();
+
+        this.loggerManager.pushLogListener(new LogQueueListener("loglistenerid", queue));
+
+        // The logs are sent directly to the listener of the current thread
+        Assert.assertNull(getComponentManager().<ObservationManager> getInstance(ObservationManager.class)
+            .getListener("loglistenerid"));
+
+        this.logger.error("[test] log");
+
+        Assert.assertEquals("[test] log", queue.poll().getMessage());
+        Assert.assertTrue(queue.isEmpty());
+
+        this.loggerManager.popLogListener();
+    }
+
     @Test
     public void testNullListeners()
     {
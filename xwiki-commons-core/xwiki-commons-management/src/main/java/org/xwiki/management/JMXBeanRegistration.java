@@ -36,4 +36,10 @@
      *        that the domain is registered by default and shouldn't be passed
      */
     void registerMBean(Object mbean, String name);
+
+    /**
+     * @param name the name under which the mbean has been registered with {@link #registerMBean(Object, String)}
+     * @since 4.3M2
+     */
+    void unregisterMBean(String name);
 }
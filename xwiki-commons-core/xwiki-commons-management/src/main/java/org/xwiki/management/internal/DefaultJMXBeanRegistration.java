@@ -40,6 +40,11 @@
 @Singleton
 public class DefaultJMXBeanRegistration implements JMXBeanRegistration
 {
+    /**
+     * The domain of the registered MBeans.
+     */
+    private static final String DOMAIN = "org.xwiki:";
+
     /**
      * The logger to use for logging.
      */
@@ -52,7 +57,7 @@ public void registerMBean(Object mbean, String name)
         // Make sure we never fail since XWiki should execute correctly even if there's no MBean Server running.
         try {
             MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
-            ObjectName oname = new ObjectName("org.xwiki:" + name);
+            ObjectName oname = new ObjectName(DOMAIN + name);
             mbs.registerMBean(mbean, oname);
             this.logger.debug("Registered resource with name [{}]", name);
         } catch (Exception e) {
@@ -61,4 +66,17 @@ public void registerMBean(Object mbean, String name)
                 ExceptionUtils.getMessage(e));
         }
     }
+
+    @Override
+    public void unregisterMBean(String name)
+    {
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            mbs.unregisterMBean(new ObjectName(DOMAIN + name));
+            this.logger.debug("Unregistered resource with name [{}]", name);
+        } catch (Exception e) {
+            this.logger.warn("Failed to unregister resource with name [{}]. Reason = [{}]", name,
+                ExceptionUtils.getMessage(e));
+        }
+    }
 }
@@ -0,0 +1,64 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation;
+
+/**
+ * Event listeners implementing this interface receive events asynchronously: the {@link ObservationManager} queues
+ * the events in a bounded queue dedicated to the listener and {@link #onEvent} is called from a shared pool of
+ * threads instead of the thread which sent the event. The events are always delivered in the order they have been
+ * queued.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+public interface AsynchronousEventListener extends EventListener
+{
+    /**
+     * What to do when an event is sent and the queue of the listener is full.
+     */
+    enum FullQueuePolicy
+    {
+        /**
+         * Wait until the listener has consumed enough events to queue the new event.
+         */
+        BLOCK,
+
+        /**
+         * Don't deliver the event to the listener.
+         */
+        DROP,
+
+        /**
+         * Deliver the event synchronously in the thread which sent it, after the events already queued. The thread
+         * which sent the event waits for the listener to be done with the events it's currently receiving.
+         */
+        CALLER_RUNS
+    }
+
+    /**
+     * @return the maximum number of events waiting to be delivered to this listener
+     */
+    int getQueueCapacity();
+
+    /**
+     * @return what to do when an event is sent and the queue of the listener is full
+     */
+    FullQueuePolicy getFullQueuePolicy();
+}
@@ -0,0 +1,42 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation;
+
+import java.util.List;
+
+/**
+ * Event listeners implementing this interface receive the matching events of a batch sent with
+ * {@link ObservationManager#notify(List)} in a single call to {@link #onEvents(List)} instead of one call to
+ * {@link #onEvent(org.xwiki.observation.event.Event, Object, Object)} per event. Events sent one by one are still
+ * received through {@link #onEvent(org.xwiki.observation.event.Event, Object, Object)}.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+public interface BatchEventListener extends EventListener
+{
+    /**
+     * The {@link ObservationManager} calls this method when a batch of events contains events matching the events for
+     * which this listener is registered (see {@link #getEvents()}.
+     * 
+     * @param events the matching events of the batch, in the order they have been sent
+     */
+    void onEvents(List<EventEnvelope> events);
+}
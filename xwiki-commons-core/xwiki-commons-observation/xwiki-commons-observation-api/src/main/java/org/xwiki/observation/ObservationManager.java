@@ -19,6 +19,8 @@
  */
 package org.xwiki.observation;
 
+import java.util.List;
+
 import org.xwiki.component.annotation.Role;
 import org.xwiki.observation.event.Event;
 
@@ -96,4 +98,14 @@
      * @see #notify(org.xwiki.observation.event.Event, Object, Object)
      */
     void notify(Event event, Object source);
+
+    /**
+     * Call the registered listeners matching the passed Events. This is the same as calling
+     * {@link #notify(Event, Object, Object)} for each passed event except that the listeners are resolved once per
+     * event type and that {@link BatchEventListener}s receive all their matching events in one call.
+     * 
+     * @param events the events to pass to the registered listeners, along with their source and data
+     * @since 4.3M2
+     */
+    void notify(List<EventEnvelope> events);
 }
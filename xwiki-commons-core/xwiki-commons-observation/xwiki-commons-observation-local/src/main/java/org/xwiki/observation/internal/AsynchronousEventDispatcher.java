@@ -0,0 +1,483 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.management.JMXBeanRegistration;
+import org.xwiki.observation.AsynchronousEventListener;
+import org.xwiki.observation.AsynchronousEventListener.FullQueuePolicy;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.internal.jmx.JMXObservationManager;
+
+/**
+ * Deliver events to {@link AsynchronousEventListener}s. Each listener has its own bounded queue and the queues are
+ * drained by a shared pool of threads. A queue is never drained by more than one thread at the same time so that the
+ * listener receive the events in the order they have been queued. When a full queue makes the notifying thread deliver
+ * the event itself, it first takes the ownership of the queue and delivers the events already queued.
+ * <p>
+ * Once the dispatcher is disposed, the events are not queued anymore and are counted as dropped.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+@Component(roles = {AsynchronousEventDispatcher.class })
+@Singleton
+public class AsynchronousEventDispatcher implements Initializable, Disposable
+{
+    /**
+     * The maximum number of events delivered in a row to the same listener before giving the thread back to the pool
+     * so that a very active listener does not starve the others.
+     */
+    private static final int MAX_DRAIN = 100;
+
+    /**
+     * The name of the threads delivering the events.
+     */
+    private static final String THREAD_NAME = "XWiki asynchronous event delivery ";
+
+    /**
+     * The name of the MBean providing information about the queues.
+     */
+    private static final String MBEAN_NAME = "type=Observation,name=AsynchronousListeners";
+
+    /**
+     * How often, in milliseconds, a thread blocked on a full queue checks if the dispatcher has been disposed.
+     */
+    private static final long DISPOSED_CHECK_INTERVAL = 1000;
+
+    /**
+     * The event to deliver along with its source and data.
+     * 
+     * @version $Id$
+     */
+    private static class QueuedEvent
+    {
+        /**
+         * The event to deliver.
+         */
+        private final Event event;
+
+        /**
+         * The source of the event.
+         */
+        private final Object source;
+
+        /**
+         * The additional data related to the event.
+         */
+        private final Object data;
+
+        /**
+         * @param event the event to deliver
+         * @param source the source of the event
+         * @param data the additional data related to the event
+         */
+        QueuedEvent(Event event, Object source, Object data)
+        {
+            this.event = event;
+            this.source = source;
+            this.data = data;
+        }
+    }
+
+    /**
+     * The queue of events waiting to be delivered to a listener. Events sent to the queue through
+     * {@link #onEvent(Event, Object, Object)} are queued and delivered later to the listener.
+     * 
+     * @version $Id$
+     */
+    public class ListenerQueue implements EventListener, Runnable
+    {
+        /**
+         * The listener receiving the events.
+         */
+        private final AsynchronousEventListener listener;
+
+        /**
+         * The events waiting to be delivered.
+         */
+        private final BlockingQueue<QueuedEvent> queue;
+
+        /**
+         * What to do when the queue is full.
+         */
+        private final FullQueuePolicy policy;
+
+        /**
+         * True when the queue is waiting to be drained or is being drained by one of the threads of the pool.
+         */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /**
+         * Held by the thread delivering events to the listener so that the listener is never called concurrently.
+         */
+        private final Object deliveryLock = new Object();
+
+        /**
+         * The number of events which have not been delivered because the queue was full.
+         */
+        private final AtomicLong droppedEvents = new AtomicLong();
+
+        /**
+         * @param listener the listener receiving the events
+         */
+        ListenerQueue(AsynchronousEventListener listener)
+        {
+            this.listener = listener;
+            this.queue = new ArrayBlockingQueue<QueuedEvent>(Math.max(1, listener.getQueueCapacity()));
+            this.policy = listener.getFullQueuePolicy();
+        }
+
+        @Override
+        public String getName()
+        {
+            return this.listener.getName();
+        }
+
+        @Override
+        public List<Event> getEvents()
+        {
+            return this.listener.getEvents();
+        }
+
+        /**
+         * @return the number of events waiting to be delivered
+         */
+        public int getSize()
+        {
+            return this.queue.size();
+        }
+
+        /**
+         * @return the maximum number of events waiting to be delivered
+         */
+        public int getCapacity()
+        {
+            return this.queue.size() + this.queue.remainingCapacity();
+        }
+
+        /**
+         * @return the number of events which have not been delivered because the queue was full
+         */
+        public long getDroppedEvents()
+        {
+            return this.droppedEvents.get();
+        }
+
+        /**
+         * Queue an event to deliver to the listener.
+         * 
+         * @param event the event to deliver
+         * @param source the source of the event
+         * @param data the additional data related to the event
+         */
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            if (disposed) {
+                this.droppedEvents.incrementAndGet();
+
+                return;
+            }
+
+            QueuedEvent queuedEvent = new QueuedEvent(event, source, data);
+
+            if (this.queue.offer(queuedEvent) || onFullQueue(queuedEvent)) {
+                schedule();
+            }
+        }
+
+        /**
+         * Apply the policy of the listener when its queue is full.
+         * 
+         * @param queuedEvent the event to deliver
+         * @return true if the event has been queued
+         */
+        private boolean onFullQueue(QueuedEvent queuedEvent)
+        {
+            // Blocking one of the threads of the pool could prevent the queue from ever being drained
+            if (this.policy == FullQueuePolicy.CALLER_RUNS
+                || (this.policy == FullQueuePolicy.BLOCK && delivering.get() != null)) {
+                callerRuns(queuedEvent);
+            } else if (this.policy == FullQueuePolicy.BLOCK) {
+                try {
+                    if (put(queuedEvent)) {
+                        return true;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                this.droppedEvents.incrementAndGet();
+            } else {
+                this.droppedEvents.incrementAndGet();
+            }
+
+            return false;
+        }
+
+        /**
+         * Wait for the queue to have room for the passed event.
+         * 
+         * @param queuedEvent the event to queue
+         * @return true if the event has been queued, false if the dispatcher has been disposed in the meantime
+         * @throws InterruptedException when interrupted while waiting
+         */
+        private boolean put(QueuedEvent queuedEvent) throws InterruptedException
+        {
+            while (!this.queue.offer(queuedEvent, DISPOSED_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+                if (disposed) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Deliver the event in the current thread once the events queued before it have been delivered.
+         * 
+         * @param queuedEvent the event to deliver
+         */
+        private void callerRuns(QueuedEvent queuedEvent)
+        {
+            // Wait for the thread currently draining the queue, if any, and drain it to keep the events order
+            synchronized (this.deliveryLock) {
+                QueuedEvent previousEvent = this.queue.poll();
+                while (previousEvent != null) {
+                    deliver(previousEvent);
+                    previousEvent = this.queue.poll();
+                }
+
+                deliver(queuedEvent);
+            }
+        }
+
+        /**
+         * Make sure the queue is going to be drained by the pool.
+         */
+        private void schedule()
+        {
+            if (this.scheduled.compareAndSet(false, true)) {
+                ExecutorService pool = getExecutor();
+
+                try {
+                    if (pool != null) {
+                        pool.execute(this);
+
+                        return;
+                    }
+                } catch (RejectedExecutionException e) {
+                    // The dispatcher has been disposed in the meantime
+                }
+
+                this.scheduled.set(false);
+            }
+        }
+
+        /**
+         * @param queuedEvent the event to deliver to the listener
+         */
+        private void deliver(QueuedEvent queuedEvent)
+        {
+            try {
+                this.listener.onEvent(queuedEvent.event, queuedEvent.source, queuedEvent.data);
+            } catch (Exception e) {
+                // protect from bad listeners
+                logger.error("Failed to send event [{}] to listener [{}]", new Object[] {queuedEvent.event,
+                    this.listener, e});
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            delivering.set(Boolean.TRUE);
+            try {
+                synchronized (this.deliveryLock) {
+                    for (int i = 0; i < MAX_DRAIN; ++i) {
+                        QueuedEvent queuedEvent = this.queue.poll();
+                        if (queuedEvent == null) {
+                            break;
+                        }
+
+                        deliver(queuedEvent);
+                    }
+                }
+            } finally {
+                delivering.remove();
+            }
+
+            this.scheduled.set(false);
+
+            // An event might have been queued after the last poll but before the scheduled flag was reset
+            if (!this.queue.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * In order to register the Observation MBean for management.
+     */
+    @Inject
+    private JMXBeanRegistration jmxRegistration;
+
+    /**
+     * The logger to log.
+     */
+    @Inject
+    private Logger logger;
+
+    /**
+     * The queues indexed by listener name.
+     */
+    private final Map<String, ListenerQueue> queues = new ConcurrentHashMap<String, ListenerQueue>();
+
+    /**
+     * The threads draining the queues. Created when the first event is queued.
+     */
+    private ExecutorService executor;
+
+    /**
+     * True once the dispatcher has been disposed.
+     */
+    private volatile boolean disposed;
+
+    /**
+     * Set while the current thread is delivering events as one of the threads of the pool.
+     */
+    private final ThreadLocal<Boolean> delivering = new ThreadLocal<Boolean>();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        // Register a JMX MBean for providing information about the asynchronous listeners queues
+        this.jmxRegistration.registerMBean(new JMXObservationManager(this), MBEAN_NAME);
+    }
+
+    /**
+     * @return the threads draining the queues, null if the dispatcher has been disposed
+     */
+    private synchronized ExecutorService getExecutor()
+    {
+        if (this.executor == null && !this.disposed) {
+            final AtomicInteger threadNumber = new AtomicInteger();
+            this.executor =
+                Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory()
+                {
+                    @Override
+                    public Thread newThread(Runnable runnable)
+                    {
+                        Thread thread = new Thread(runnable, THREAD_NAME + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+
+                        return thread;
+                    }
+                });
+        }
+
+        return this.executor;
+    }
+
+    /**
+     * Create a new queue for the passed listener if it's an {@link AsynchronousEventListener}. If a queue already
+     * exist for a listener with the same name, the events it contains are still delivered to the previous listener.
+     * 
+     * @param listener the listener receiving the events
+     * @return the queue to send events to, or the listener itself when it's not asynchronous
+     */
+    public EventListener addListener(EventListener listener)
+    {
+        if (!(listener instanceof AsynchronousEventListener)) {
+            // Make sure a previous asynchronous listener with the same name does not receive events anymore
+            this.queues.remove(listener.getName());
+
+            return listener;
+        }
+
+        ListenerQueue queue = new ListenerQueue((AsynchronousEventListener) listener);
+
+        this.queues.put(listener.getName(), queue);
+
+        return queue;
+    }
+
+    /**
+     * Stop sending events to a listener. The events already queued are still delivered.
+     * 
+     * @param listenerName the name of the listener
+     */
+    public void removeListener(String listenerName)
+    {
+        this.queues.remove(listenerName);
+    }
+
+    /**
+     * @return the queues of the registered listeners
+     */
+    public Collection<ListenerQueue> getQueues()
+    {
+        return new ArrayList<ListenerQueue>(this.queues.values());
+    }
+
+    /**
+     * Stop the threads draining the queues. The events not yet delivered are lost.
+     */
+    @Override
+    public synchronized void dispose()
+    {
+        if (this.disposed) {
+            return;
+        }
+
+        this.disposed = true;
+
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+
+        this.jmxRegistration.unregisterMBean(MBEAN_NAME);
+    }
+}
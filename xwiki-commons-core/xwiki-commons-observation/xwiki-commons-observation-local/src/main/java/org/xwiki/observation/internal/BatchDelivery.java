@@ -0,0 +1,90 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.xwiki.observation.BatchEventListener;
+import org.xwiki.observation.EventEnvelope;
+import org.xwiki.observation.EventListener;
+
+/**
+ * Accumulate the events of a batch matching {@link BatchEventListener}s so that they can be sent at once at the end of
+ * the batch.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+class BatchDelivery
+{
+    /**
+     * The matching events indexed by listener.
+     */
+    private Map<BatchEventListener, List<EventEnvelope>> batches;
+
+    /**
+     * @param listener the listener matching the event
+     * @param envelope the event
+     * @return true if the listener accepts batches and the event has been added to its batch, false if the event
+     *         should be sent directly to the listener
+     */
+    boolean add(EventListener listener, EventEnvelope envelope)
+    {
+        if (!(listener instanceof BatchEventListener)) {
+            return false;
+        }
+
+        if (this.batches == null) {
+            this.batches = new LinkedHashMap<BatchEventListener, List<EventEnvelope>>();
+        }
+        List<EventEnvelope> batch = this.batches.get(listener);
+        if (batch == null) {
+            batch = new ArrayList<EventEnvelope>();
+            this.batches.put((BatchEventListener) listener, batch);
+        }
+        batch.add(envelope);
+
+        return true;
+    }
+
+    /**
+     * Send the accumulated events to the listeners.
+     * 
+     * @param logger the logger to log
+     */
+    void send(Logger logger)
+    {
+        if (this.batches != null) {
+            for (Map.Entry<BatchEventListener, List<EventEnvelope>> entry : this.batches.entrySet()) {
+                try {
+                    entry.getKey().onEvents(entry.getValue());
+                } catch (Exception e) {
+                    // protect from bad listeners
+                    logger.error("Failed to send events [{}] to listener [{}]", new Object[] {entry.getValue(),
+                        entry.getKey(), e});
+                }
+            }
+        }
+    }
+}
@@ -19,11 +19,7 @@
  */
 package org.xwiki.observation.internal;
 
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -38,9 +34,9 @@
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
+import org.xwiki.observation.EventEnvelope;
 import org.xwiki.observation.EventListener;
 import org.xwiki.observation.ObservationManager;
-import org.xwiki.observation.event.AllEvent;
 import org.xwiki.observation.event.Event;
 
 /**
@@ -57,19 +53,9 @@
 public class DefaultObservationManager implements ObservationManager, Initializable
 {
     /**
-     * Registered listeners indexed on Event classes so that it's fast to find all the listeners registered for a given
-     * event, so that {@link #notify} calls execute fast and in a fixed amount a time.
-     * 
-     * @todo Should we allow event inheritance?
-     */
-    private Map<Class< ? extends Event>, Map<String, RegisteredListener>> listenersByEvent =
-        new ConcurrentHashMap<Class< ? extends Event>, Map<String, RegisteredListener>>();
-
-    /**
-     * Registered listeners index by listener name. It makes it fast to perform operations on already registered
-     * listeners.
+     * The registered listeners and the dispatch tables built from them.
      */
-    private Map<String, EventListener> listenersByName = new ConcurrentHashMap<String, EventListener>();
+    private final ListenerRegistry listeners = new ListenerRegistry();
 
     /**
      * Used to find all components implementing {@link EventListener} to register them automatically.
@@ -84,67 +70,78 @@ public class DefaultObservationManager implements ObservationManager, Initializa
     private Logger logger;
 
     /**
-     * Helper class to store the list of events of a given type associated with a given listener. We need this for
-     * performance reasons and also in order to be able to add events after a listener has been registered.
+     * Deliver the events to the {@link org.xwiki.observation.AsynchronousEventListener}s. Null when the component
+     * can't be found, in which case the events are delivered synchronously.
+     */
+    private AsynchronousEventDispatcher asynchronousDispatcher;
+
+    /**
+     * Gather the statistics of the listeners when enabled. Null when the component can't be found.
      */
-    private static class RegisteredListener
+    private ListenerStatistics statistics;
+
+    @Override
+    public void initialize() throws InitializationException
     {
-        /**
-         * Events of a given type associated with a given listener.
-         */
-        private List<Event> events = new ArrayList<Event>();
-
-        /**
-         * Listener associated with the events.
-         */
-        private EventListener listener;
-
-        /**
-         * @param listener the listener associated with the events.
-         * @param event the first event to associate with the passed listener. More events are added by calling
-         *            {@link #addEvent(Event)}
-         */
-        RegisteredListener(EventListener listener, Event event)
-        {
-            addEvent(event);
-
-            this.listener = listener;
+        try {
+            this.asynchronousDispatcher = this.componentManager.getInstance(AsynchronousEventDispatcher.class);
+        } catch (ComponentLookupException e) {
+            this.logger.debug("No asynchronous event dispatcher available, events will be delivered "
+                + "synchronously to the asynchronous listeners", e);
         }
 
-        /**
-         * @param event the event to add
-         */
-        void addEvent(Event event)
-        {
-            this.events.add(event);
+        try {
+            this.statistics = this.componentManager.getInstance(ListenerStatistics.class);
+        } catch (ComponentLookupException e) {
+            this.logger.debug("No listener statistics available", e);
         }
 
-        /**
-         * @param event the event to remove
-         */
-        void removeEvent(Event event)
-        {
-            this.events.remove(event);
+        try {
+            addListeners(this.componentManager.<EventListener>getInstanceList(EventListener.class));
+        } catch (ComponentLookupException e) {
+            throw new InitializationException("Failed to lookup Event Listeners", e);
         }
     }
 
-    @Override
-    public void initialize() throws InitializationException
+    /**
+     * Register several listeners and rebuild the dispatch tables only once all of them are registered.
+     * 
+     * @param eventListeners the listeners to register
+     */
+    private synchronized void addListeners(List<EventListener> eventListeners)
     {
-        try {
-            for (EventListener listener : this.componentManager.<EventListener>getInstanceList(EventListener.class)) {
-                addListener(listener);
-            }
-        } catch (ComponentLookupException e) {
-            throw new InitializationException("Failed to lookup Event Listeners", e);
+        ModifiedEvents modifiedEvents = new ModifiedEvents();
+        for (EventListener listener : eventListeners) {
+            addListener(listener, modifiedEvents);
         }
+        updateDispatchTables(modifiedEvents);
     }
 
     @Override
-    public void addListener(EventListener eventListener)
+    public synchronized void addListener(EventListener eventListener)
     {
+        ModifiedEvents modifiedEvents = new ModifiedEvents();
+        addListener(eventListener, modifiedEvents);
+        updateDispatchTables(modifiedEvents);
+    }
+
+    /**
+     * Register the listener without updating the dispatch tables. Must be called while holding the lock of this
+     * manager.
+     * 
+     * @param eventListener the listener to register
+     * @param modifiedEvents the types of events whose listeners changed, updated by this method
+     */
+    private void addListener(EventListener eventListener, ModifiedEvents modifiedEvents)
+    {
+        // Asynchronous listeners receive the events through a dedicated queue
+        EventListener target = eventListener;
+        if (this.asynchronousDispatcher != null) {
+            target = this.asynchronousDispatcher.addListener(eventListener);
+        }
+
         // Register the listener by name. If already registered, override it.
-        EventListener previousListener = this.listenersByName.put(eventListener.getName(), eventListener);
+        EventListener previousListener = this.listeners.addListener(eventListener, target, modifiedEvents);
 
         // If the passed event listener name is already registered, log a warning
         if (previousListener != null) {
@@ -155,90 +152,83 @@ public void addListener(EventListener eventListener)
                 new Object[] {eventListener.getClass().getName(), previousListener.getClass().getName(),
                         eventListener.getName()});
         }
-
-        // For each event defined for this listener, add it to the Event Map.
-        for (Event event : eventListener.getEvents()) {
-            // Check if this is a new Event type not already registered
-            Map<String, RegisteredListener> eventListeners = this.listenersByEvent.get(event.getClass());
-            if (eventListeners == null) {
-                // No listener registered for this event yet. Create a map to store listeners for this event.
-                eventListeners = new ConcurrentHashMap<String, RegisteredListener>();
-                this.listenersByEvent.put(event.getClass(), eventListeners);
-                // There is no RegisteredListener yet, create one
-                eventListeners.put(eventListener.getName(), new RegisteredListener(eventListener, event));
-            } else {
-                // Add an event to existing RegisteredListener object
-                RegisteredListener registeredListener = eventListeners.get(eventListener.getName());
-                if (registeredListener == null) {
-                    eventListeners.put(eventListener.getName(), new RegisteredListener(eventListener, event));
-                } else {
-                    registeredListener.addEvent(event);
-                }
-            }
-        }
     }
 
     @Override
-    public void removeListener(String listenerName)
+    public synchronized void removeListener(String listenerName)
     {
-        this.listenersByName.remove(listenerName);
-        for (Map.Entry<Class< ? extends Event>, Map<String, RegisteredListener>> entry : this.listenersByEvent
-            .entrySet()) {
-            entry.getValue().remove(listenerName);
-            if (entry.getValue().isEmpty()) {
-                this.listenersByEvent.remove(entry.getKey());
-            }
+        ModifiedEvents modifiedEvents = new ModifiedEvents();
+        removeListener(listenerName, modifiedEvents);
+        updateDispatchTables(modifiedEvents);
+    }
+
+    /**
+     * Unregister the listener without updating the dispatch tables. Must be called while holding the lock of this
+     * manager.
+     * 
+     * @param listenerName the name of the listener to unregister
+     * @param modifiedEvents the types of events whose listeners changed, updated by this method
+     */
+    private void removeListener(String listenerName, ModifiedEvents modifiedEvents)
+    {
+        this.listeners.removeListener(listenerName, modifiedEvents);
+        if (this.asynchronousDispatcher != null) {
+            this.asynchronousDispatcher.removeListener(listenerName);
         }
     }
 
     @Override
-    public void addEvent(String listenerName, Event event)
+    public synchronized void addEvent(String listenerName, Event event)
     {
-        Map<String, RegisteredListener> listeners = this.listenersByEvent.get(event.getClass());
-        RegisteredListener listener = listeners.get(listenerName);
-        if (listener != null) {
-            listener.addEvent(event);
-        }
+        ModifiedEvents modifiedEvents = new ModifiedEvents();
+        this.listeners.addEvent(listenerName, event, modifiedEvents);
+
+        // The listeners are indexed on their events
+        updateDispatchTables(modifiedEvents);
     }
 
     @Override
-    public void removeEvent(String listenerName, Event event)
+    public synchronized void removeEvent(String listenerName, Event event)
     {
-        Map<String, RegisteredListener> listeners = this.listenersByEvent.get(event.getClass());
-        RegisteredListener listener = listeners.get(listenerName);
-        if (listener != null) {
-            listener.removeEvent(event);
-        }
+        ModifiedEvents modifiedEvents = new ModifiedEvents();
+        this.listeners.removeEvent(listenerName, event, modifiedEvents);
+
+        // The listeners are indexed on their events
+        updateDispatchTables(modifiedEvents);
+    }
+
+    /**
+     * Rebuild the dispatch tables of the passed Event classes from the registered listeners. Must be called each time
+     * the registered listeners change.
+     * 
+     * @param modifiedEvents the types of events whose listeners changed
+     */
+    private synchronized void updateDispatchTables(ModifiedEvents modifiedEvents)
+    {
+        this.listeners.updateDispatchTables(modifiedEvents);
     }
 
     @Override
     public EventListener getListener(String listenerName)
     {
-        return this.listenersByName.get(listenerName);
+        return this.listeners.getListener(listenerName);
     }
 
     @Override
     public void notify(Event event, Object source, Object data)
     {
-        // Find all listeners for this event
-        Map<String, RegisteredListener> regListeners = this.listenersByEvent.get(event.getClass());
-        if (regListeners != null) {
-            notify(regListeners.values(), event, source, data);
-        }
-
-        // Find listener listening all events
-        Map<String, RegisteredListener> allEventRegListeners = this.listenersByEvent.get(AllEvent.class);
-        if (allEventRegListeners != null) {
-            notify(allEventRegListeners.values(), event, source, data);
-        }
+        // Find all listeners for this event (including the ones listening to all events)
+        notify(this.listeners.getDispatchTable(event.getClass()), event, source, data, null, null);
 
         // We want this Observation Manager to be able to handle new Event Listener components being added or removed
         // at runtime. Thus ideally we should make this Manager an Event Listener itself. However in order to avoid
         // circular dependencies issues and in order to be more performant we simply handle ComponentDescriptorEvents
         // here to add/remove Event Listeners.
         if (event instanceof ComponentDescriptorEvent) {
+            ModifiedEvents modifiedEvents = new ModifiedEvents();
             onComponentEvent((ComponentDescriptorEvent) event, (ComponentManager) source,
-                (ComponentDescriptor<EventListener>) data);
+                (ComponentDescriptor<EventListener>) data, modifiedEvents);
+            updateDispatchTables(modifiedEvents);
         }
     }
 
@@ -246,30 +236,133 @@ public void notify(Event event, Object source, Object data)
      * Call the provided listeners matching the passed Event. The definition of <em>source</em> and <em>data</em> is
      * purely up to the communicating classes.
      * 
-     * @param listeners the listeners to notify
+     * @param table the listeners to notify
      * @param event the event to pass to the registered listeners
      * @param source the source of the event (or <code>null</code>)
      * @param data the additional data related to the event (or <code>null</code>)
+     * @param batchDelivery the batches of events to send to the {@link org.xwiki.observation.BatchEventListener}s or
+     *            null if the event is not part of a batch
+     * @param envelope the envelope of the event when it's part of a batch
+     */
+    private void notify(DispatchTable table, Event event, Object source, Object data, BatchDelivery batchDelivery,
+        EventEnvelope envelope)
+    {
+        for (RegisteredListener listener : table.getListeners(event)) {
+            if (listener.matches(event)) {
+                sendEvent(listener, event, source, data, batchDelivery, envelope);
+            }
+        }
+
+        // Each regular expression is evaluated only once whatever the number of listeners using it
+        for (int i = 0; i < table.getRegexCount(); ++i) {
+            if (table.matchesRegex(i, event)) {
+                for (RegisteredListener listener : table.getRegexListeners(i)) {
+                    sendEvent(listener, event, source, data, batchDelivery, envelope);
+                }
+            }
+        }
+
+        // The listeners registered for all events are notified last
+        for (RegisteredListener listener : table.getAllEventListeners()) {
+            if (listener.matches(event)) {
+                sendEvent(listener, event, source, data, batchDelivery, envelope);
+            }
+        }
+    }
+
+    /**
+     * Send the event to the listener, either directly or through its queue when the listener is asynchronous.
+     * 
+     * @param listener the listener to notify
+     * @param event the event to pass to the listener
+     * @param source the source of the event (or <code>null</code>)
+     * @param data the additional data related to the event (or <code>null</code>)
+     * @param batchDelivery the batches of events to send to the {@link org.xwiki.observation.BatchEventListener}s or
+     *            null if the event is not part of a batch
+     * @param envelope the envelope of the event when it's part of a batch
+     */
+    private void sendEvent(RegisteredListener listener, Event event, Object source, Object data,
+        BatchDelivery batchDelivery, EventEnvelope envelope)
+    {
+        // Asynchronous listeners always receive the events through their queue
+        if (batchDelivery != null && batchDelivery.add(listener.getTarget(), envelope)) {
+            return;
+        }
+
+        ListenerStatistics currentStatistics = this.statistics;
+        if (currentStatistics != null && currentStatistics.isEnabled()) {
+            String listenerName = listener.getListener().getName();
+            long start = currentStatistics.start(listenerName, event.getClass());
+            boolean sent = sendEvent(listener, event, source, data);
+            currentStatistics.stop(listenerName, event.getClass(), start, !sent);
+        } else {
+            sendEvent(listener, event, source, data);
+        }
+    }
+
+    /**
+     * Call the listener and protect from its failures.
+     * 
+     * @param listener the listener to notify
+     * @param event the event to pass to the listener
+     * @param source the source of the event (or <code>null</code>)
+     * @param data the additional data related to the event (or <code>null</code>)
+     * @return false if the listener failed with an exception
      */
-    private void notify(Collection<RegisteredListener> listeners, Event event, Object source, Object data)
+    private boolean sendEvent(RegisteredListener listener, Event event, Object source, Object data)
+    {
+        try {
+            listener.getTarget().onEvent(event, source, data);
+        } catch (Exception e) {
+            // protect from bad listeners
+            this.logger.error("Failed to send event [{}] to listener [{}]", new Object[] {event,
+                listener.getListener(), e});
+
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public void notify(List<EventEnvelope> events)
     {
-        for (RegisteredListener listener : listeners) {
-            // Verify that one of the events matches and send the first matching event
-            for (Event listenerEvent : listener.events) {
-                if (listenerEvent.matches(event)) {
-                    try {
-                        listener.listener.onEvent(event, source, data);
-                    } catch (Exception e) {
-                        // protect from bad listeners
-                        this.logger.error("Failed to send event [{}] to listener [{}]", new Object[] {event,
-                            listener.listener, e});
-                    }
-
-                    // Only send the first matching event since the listener should only be called once per event.
-                    break;
+        BatchDelivery batchDelivery = new BatchDelivery();
+
+        // The listeners registered by the component events of the batch (generally the components of a whole
+        // extension) are indexed at once, as late as possible
+        ModifiedEvents modifiedEvents = new ModifiedEvents();
+
+        Class< ? extends Event> previousEventClass = null;
+        DispatchTable table = null;
+        try {
+            for (EventEnvelope envelope : events) {
+                Event event = envelope.getEvent();
+
+                if (modifiedEvents.isOutdated(event.getClass())) {
+                    updateDispatchTables(modifiedEvents);
+                    modifiedEvents.clear();
+                    previousEventClass = null;
+                }
+
+                // Batches generally contain a lot of events of the same type
+                if (event.getClass() != previousEventClass) {
+                    previousEventClass = event.getClass();
+                    table = this.listeners.getDispatchTable(previousEventClass);
+                }
+
+                notify(table, event, envelope.getSource(), envelope.getData(), batchDelivery, envelope);
+
+                if (event instanceof ComponentDescriptorEvent) {
+                    onComponentEvent((ComponentDescriptorEvent) event, (ComponentManager) envelope.getSource(),
+                        (ComponentDescriptor<EventListener>) envelope.getData(), modifiedEvents);
                 }
             }
+        } finally {
+            updateDispatchTables(modifiedEvents);
         }
+
+        batchDelivery.send(this.logger);
     }
 
     @Override
@@ -285,17 +378,18 @@ public void notify(Event event, Object source)
      * @param componentEvent the event about the Component being added or removed
      * @param componentManager the {@link ComponentManager} where the descriptor is registered
      * @param descriptor the descriptor of the modified component
+     * @param modifiedEvents the types of events whose listeners changed, updated by this method
      */
     private void onComponentEvent(ComponentDescriptorEvent componentEvent, ComponentManager componentManager,
-        ComponentDescriptor<EventListener> descriptor)
+        ComponentDescriptor<EventListener> descriptor, ModifiedEvents modifiedEvents)
     {
         if (componentEvent.getRole() == EventListener.class) {
             if (componentEvent instanceof ComponentDescriptorAddedEvent) {
                 onEventListenerComponentAdded((ComponentDescriptorAddedEvent) componentEvent, componentManager,
-                    descriptor);
+                    descriptor, modifiedEvents);
             } else if (componentEvent instanceof ComponentDescriptorRemovedEvent) {
                 onEventListenerComponentRemoved((ComponentDescriptorRemovedEvent) componentEvent, componentManager,
-                    descriptor);
+                    descriptor, modifiedEvents);
             } else {
                 this.logger.warn("Ignoring unknown Component event [{}]", componentEvent.getClass().getName());
             }
@@ -308,18 +402,21 @@ private void onComponentEvent(ComponentDescriptorEvent componentEvent, Component
      * @param event event object containing the new component descriptor
      * @param componentManager the {@link ComponentManager} where the descriptor is registered
      * @param descriptor the component descriptor removed from component manager
+     * @param modifiedEvents the types of events whose listeners changed, updated by this method
      */
     private void onEventListenerComponentAdded(ComponentDescriptorAddedEvent event, ComponentManager componentManager,
-        ComponentDescriptor<EventListener> descriptor)
+        ComponentDescriptor<EventListener> descriptor, ModifiedEvents modifiedEvents)
     {
         try {
             EventListener eventListener = componentManager.getInstance(EventListener.class, event.getRoleHint());
 
-            if (getListener(eventListener.getName()) != eventListener) {
-                addListener(eventListener);
-            } else {
-                this.logger.warn("An Event Listener named [{}] already exists, ignoring the [{}] component",
-                    eventListener.getName(), descriptor.getImplementation().getName());
+            synchronized (this) {
+                if (getListener(eventListener.getName()) != eventListener) {
+                    addListener(eventListener, modifiedEvents);
+                } else {
+                    this.logger.warn("An Event Listener named [{}] already exists, ignoring the [{}] component",
+                        eventListener.getName(), descriptor.getImplementation().getName());
+                }
             }
         } catch (ComponentLookupException e) {
             this.logger.error("Failed to lookup the Event Listener [{}] corresponding to the Component registration "
@@ -334,19 +431,21 @@ private void onEventListenerComponentAdded(ComponentDescriptorAddedEvent event,
      * @param event the event object containing the removed component descriptor
      * @param componentManager the {@link ComponentManager} where the descriptor is registered
      * @param descriptor the component descriptor removed from the component manager
+     * @param modifiedEvents the types of events whose listeners changed, updated by this method
      */
-    private void onEventListenerComponentRemoved(ComponentDescriptorRemovedEvent event,
-        ComponentManager componentManager, ComponentDescriptor< ? > descriptor)
+    private synchronized void onEventListenerComponentRemoved(ComponentDescriptorRemovedEvent event,
+        ComponentManager componentManager, ComponentDescriptor< ? > descriptor,
+        ModifiedEvents modifiedEvents)
     {
         EventListener removedEventListener = null;
-        for (EventListener eventListener : this.listenersByName.values()) {
+        for (EventListener eventListener : this.listeners.getListeners()) {
             if (eventListener.getClass() == descriptor.getImplementation()) {
                 removedEventListener = eventListener;
             }
         }
 
         if (removedEventListener != null) {
-            removeListener(removedEventListener.getName());
+            removeListener(removedEventListener.getName(), modifiedEvents);
         }
     }
 }
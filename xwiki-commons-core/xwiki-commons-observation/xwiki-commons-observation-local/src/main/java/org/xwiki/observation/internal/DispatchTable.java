@@ -0,0 +1,421 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.xwiki.observation.event.AbstractFilterableEvent;
+import org.xwiki.observation.event.AllEvent;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.event.FilterableEvent;
+import org.xwiki.observation.event.filter.EventFilter;
+import org.xwiki.observation.event.filter.FixedNameEventFilter;
+import org.xwiki.observation.event.filter.RegexEventFilter;
+
+/**
+ * The immutable list of listeners to notify for a given type of event.
+ * <p>
+ * When the event type uses the standard {@link AbstractFilterableEvent} matching, the listeners are indexed on their
+ * {@link EventFilter}s so that a notification only reaches the listeners whose filter can match:
+ * <ul>
+ * <li>listeners only using {@link FixedNameEventFilter}s are indexed on the filter name,</li>
+ * <li>listeners using a single {@link RegexEventFilter} are grouped by regular expression so that each distinct regular
+ * expression is evaluated only once per notification,</li>
+ * <li>all other listeners are always checked with {@link Event#matches(Object)}.</li>
+ * </ul>
+ * The listeners registered for all events are kept apart so that they are always notified after the listeners
+ * specific to the type of event, including the ones using a regular expression.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+class DispatchTable
+{
+    /**
+     * The listeners sharing the same regular expression filter.
+     * 
+     * @version $Id$
+     */
+    private static class RegexGroup
+    {
+        /**
+         * The regular expression of the filter.
+         */
+        private final Pattern pattern;
+
+        /**
+         * The listeners using the regular expression.
+         */
+        private final RegisteredListener[] listeners;
+
+        /**
+         * @param pattern the regular expression of the filter
+         * @param listeners the listeners using the regular expression
+         */
+        RegexGroup(Pattern pattern, List<RegisteredListener> listeners)
+        {
+            this.pattern = pattern;
+            this.listeners = listeners.toArray(new RegisteredListener[listeners.size()]);
+        }
+
+        /**
+         * @param event the event sent
+         * @return true if the filter of the event matches the regular expression
+         */
+        boolean matches(Event event)
+        {
+            String filter = getFilter(event);
+
+            return filter != null && this.pattern.matcher(filter).matches();
+        }
+
+        /**
+         * @return the listeners using the regular expression
+         */
+        RegisteredListener[] getListeners()
+        {
+            return this.listeners;
+        }
+    }
+
+    /**
+     * Used when there is no regular expression to evaluate.
+     */
+    private static final RegexGroup[] NO_REGEX = new RegexGroup[0];
+
+    /**
+     * The listeners registered for all events.
+     */
+    private final RegisteredListener[] allEventListeners;
+
+    /**
+     * The listeners to check for events whose filter name is not indexed.
+     */
+    private final RegisteredListener[] defaultListeners;
+
+    /**
+     * The listeners to check for events with an indexed filter name. Each entry also contains the listeners to check
+     * for events whose filter name is not indexed.
+     */
+    private final Map<String, RegisteredListener[]> listenersByName;
+
+    /**
+     * The listeners using a regular expression filter.
+     */
+    private final RegexGroup[] regexGroups;
+
+    /**
+     * @param eventClass the type of event, null when there is no listener specific to this type of event
+     * @param listeners the listeners registered for this type of event
+     * @param allEventListeners the listeners registered for all events, always notified after the other listeners
+     * @param previous the table previously used for this type of event, its compiled regular expressions are reused,
+     *            null if none
+     */
+    DispatchTable(Class< ? extends Event> eventClass, Collection<RegisteredListener> listeners,
+        RegisteredListener[] allEventListeners, DispatchTable previous)
+    {
+        List<RegisteredListener> genericListeners = new ArrayList<RegisteredListener>();
+        Map<String, Set<RegisteredListener>> fixedNameListeners =
+            new LinkedHashMap<String, Set<RegisteredListener>>();
+        Map<String, List<RegisteredListener>> regexListeners = new LinkedHashMap<String, List<RegisteredListener>>();
+
+        boolean indexable = isIndexable(eventClass);
+        for (RegisteredListener listener : listeners) {
+            if (!indexable
+                || !(indexFixedNames(listener, fixedNameListeners) || indexRegex(listener, regexListeners))) {
+                genericListeners.add(listener);
+            }
+        }
+
+        this.allEventListeners = allEventListeners;
+        this.defaultListeners = genericListeners.toArray(new RegisteredListener[genericListeners.size()]);
+
+        if (fixedNameListeners.isEmpty()) {
+            this.listenersByName = Collections.emptyMap();
+        } else {
+            this.listenersByName = new HashMap<String, RegisteredListener[]>(fixedNameListeners.size() * 2);
+            for (Map.Entry<String, Set<RegisteredListener>> entry : fixedNameListeners.entrySet()) {
+                this.listenersByName.put(entry.getKey(),
+                    concat(genericListeners, entry.getValue()));
+            }
+        }
+
+        if (regexListeners.isEmpty()) {
+            this.regexGroups = NO_REGEX;
+        } else {
+            this.regexGroups = new RegexGroup[regexListeners.size()];
+            int index = 0;
+            for (Map.Entry<String, List<RegisteredListener>> entry : regexListeners.entrySet()) {
+                this.regexGroups[index++] = new RegexGroup(getPattern(entry.getKey(), previous), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Create a table sharing the index of the passed table but with different listeners registered for all events.
+     * 
+     * @param table the table to copy
+     * @param allEventListeners the listeners registered for all events
+     */
+    private DispatchTable(DispatchTable table, RegisteredListener[] allEventListeners)
+    {
+        this.allEventListeners = allEventListeners;
+        this.defaultListeners = table.defaultListeners;
+        this.listenersByName = table.listenersByName;
+        this.regexGroups = table.regexGroups;
+    }
+
+    /**
+     * @param regex the regular expression
+     * @param previous the table previously used for the same type of event, null if none
+     * @return the regular expression compiled by the previous table if any, a newly compiled one otherwise
+     */
+    private static Pattern getPattern(String regex, DispatchTable previous)
+    {
+        if (previous != null) {
+            for (RegexGroup group : previous.regexGroups) {
+                if (group.pattern.pattern().equals(regex)) {
+                    return group.pattern;
+                }
+            }
+        }
+
+        return Pattern.compile(regex);
+    }
+
+    /**
+     * @param listenersByEvent the registered listeners indexed on Event classes
+     * @return the dispatch tables indexed on Event classes, the table associated with {@link AllEvent} only contains
+     *         the listeners registered for all events and is used for the Event classes without specific listeners
+     */
+    static Map<Class< ? extends Event>, DispatchTable> createTables(
+        Map<Class< ? extends Event>, Map<String, RegisteredListener>> listenersByEvent)
+    {
+        return updateTables(Collections.<Class< ? extends Event>, DispatchTable>emptyMap(), listenersByEvent,
+            listenersByEvent.keySet());
+    }
+
+    /**
+     * Only the tables of the modified types of events are rebuilt, the other ones are reused (with the new listeners
+     * registered for all events when they changed).
+     * 
+     * @param tables the current dispatch tables
+     * @param listenersByEvent the registered listeners indexed on Event classes
+     * @param modifiedEvents the types of events whose listeners changed since the current tables were created
+     * @return the new dispatch tables indexed on Event classes (see {@link #createTables(Map)})
+     */
+    static Map<Class< ? extends Event>, DispatchTable> updateTables(Map<Class< ? extends Event>, DispatchTable> tables,
+        Map<Class< ? extends Event>, Map<String, RegisteredListener>> listenersByEvent,
+        Collection<Class< ? extends Event>> modifiedEvents)
+    {
+        Map<Class< ? extends Event>, DispatchTable> newTables =
+            new HashMap<Class< ? extends Event>, DispatchTable>(tables);
+
+        DispatchTable allEventTable = tables.get(AllEvent.class);
+        if (allEventTable == null || modifiedEvents.contains(AllEvent.class)) {
+            Map<String, RegisteredListener> allEventListeners = listenersByEvent.get(AllEvent.class);
+            allEventTable = new DispatchTable(null, Collections.<RegisteredListener>emptyList(),
+                allEventListeners != null ? allEventListeners.values().toArray(new RegisteredListener[0])
+                    : new RegisteredListener[0], null);
+
+            // The listeners registered for all events are shared by all the tables
+            for (Map.Entry<Class< ? extends Event>, DispatchTable> entry : newTables.entrySet()) {
+                entry.setValue(new DispatchTable(entry.getValue(), allEventTable.allEventListeners));
+            }
+        }
+        newTables.put(AllEvent.class, allEventTable);
+
+        for (Class< ? extends Event> eventClass : modifiedEvents) {
+            if (eventClass != AllEvent.class) {
+                Map<String, RegisteredListener> listeners = listenersByEvent.get(eventClass);
+                if (listeners != null) {
+                    newTables.put(eventClass, new DispatchTable(eventClass, listeners.values(),
+                        allEventTable.allEventListeners, tables.get(eventClass)));
+                } else {
+                    newTables.remove(eventClass);
+                }
+            }
+        }
+
+        return newTables;
+    }
+
+    /**
+     * @param eventClass the type of event
+     * @return true if the events of this type are matched using the standard {@link AbstractFilterableEvent} algorithm
+     */
+    private static boolean isIndexable(Class< ? extends Event> eventClass)
+    {
+        if (eventClass == null || !AbstractFilterableEvent.class.isAssignableFrom(eventClass)) {
+            return false;
+        }
+
+        try {
+            return eventClass.getMethod("matches", Object.class).getDeclaringClass() == AbstractFilterableEvent.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param listener the listener to index
+     * @param index the listeners indexed by filter name
+     * @return true if the listener only uses {@link FixedNameEventFilter}s and has been indexed
+     */
+    private static boolean indexFixedNames(RegisteredListener listener, Map<String, Set<RegisteredListener>> index)
+    {
+        Event[] events = listener.getEvents();
+        if (events.length == 0) {
+            return false;
+        }
+        for (Event event : events) {
+            EventFilter filter = ((FilterableEvent) event).getEventFilter();
+            if (filter == null || filter.getClass() != FixedNameEventFilter.class || filter.getFilter() == null) {
+                return false;
+            }
+        }
+
+        for (Event event : events) {
+            String name = ((FilterableEvent) event).getEventFilter().getFilter();
+            Set<RegisteredListener> nameListeners = index.get(name);
+            if (nameListeners == null) {
+                nameListeners = new LinkedHashSet<RegisteredListener>();
+                index.put(name, nameListeners);
+            }
+            nameListeners.add(listener);
+        }
+
+        return true;
+    }
+
+    /**
+     * @param listener the listener to index
+     * @param index the listeners indexed by regular expression
+     * @return true if the listener uses a single {@link RegexEventFilter} and has been indexed
+     */
+    private static boolean indexRegex(RegisteredListener listener, Map<String, List<RegisteredListener>> index)
+    {
+        Event[] events = listener.getEvents();
+        if (events.length != 1) {
+            return false;
+        }
+        EventFilter filter = ((FilterableEvent) events[0]).getEventFilter();
+        if (filter == null || filter.getClass() != RegexEventFilter.class) {
+            return false;
+        }
+
+        List<RegisteredListener> regexListeners = index.get(filter.getFilter());
+        if (regexListeners == null) {
+            regexListeners = new ArrayList<RegisteredListener>();
+            index.put(filter.getFilter(), regexListeners);
+        }
+        regexListeners.add(listener);
+
+        return true;
+    }
+
+    /**
+     * @param first the first listeners
+     * @param second the second listeners
+     * @return an array containing all the listeners in order
+     */
+    private static RegisteredListener[] concat(Collection<RegisteredListener> first,
+        Collection<RegisteredListener> second)
+    {
+        List<RegisteredListener> result = new ArrayList<RegisteredListener>(first.size() + second.size());
+        result.addAll(first);
+        result.addAll(second);
+
+        return result.toArray(new RegisteredListener[result.size()]);
+    }
+
+    /**
+     * @param event the event sent
+     * @return the name used to filter the event, null if the event has no filter
+     */
+    private static String getFilter(Event event)
+    {
+        EventFilter filter = ((FilterableEvent) event).getEventFilter();
+
+        return filter != null ? filter.getFilter() : null;
+    }
+
+    /**
+     * @param event the event sent
+     * @return the listeners specific to the type of event, other than the ones using a regular expression, which might
+     *         match the event; {@link RegisteredListener#matches(Event)} still need to be checked
+     */
+    RegisteredListener[] getListeners(Event event)
+    {
+        if (!this.listenersByName.isEmpty()) {
+            RegisteredListener[] listeners = this.listenersByName.get(getFilter(event));
+            if (listeners != null) {
+                return listeners;
+            }
+        }
+
+        return this.defaultListeners;
+    }
+
+    /**
+     * @return the listeners registered for all events, {@link RegisteredListener#matches(Event)} still need to be
+     *         checked
+     */
+    RegisteredListener[] getAllEventListeners()
+    {
+        return this.allEventListeners;
+    }
+
+    /**
+     * @return the number of distinct regular expressions used by the listeners
+     */
+    int getRegexCount()
+    {
+        return this.regexGroups.length;
+    }
+
+    /**
+     * @param index the index of the regular expression
+     * @param event the event sent
+     * @return true if the filter of the event matches the regular expression
+     */
+    boolean matchesRegex(int index, Event event)
+    {
+        return this.regexGroups[index].matches(event);
+    }
+
+    /**
+     * @param index the index of the regular expression
+     * @return the listeners using the regular expression
+     */
+    RegisteredListener[] getRegexListeners(int index)
+    {
+        return this.regexGroups[index].getListeners();
+    }
+}
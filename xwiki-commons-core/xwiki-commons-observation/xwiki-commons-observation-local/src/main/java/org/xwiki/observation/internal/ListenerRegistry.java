@@ -0,0 +1,202 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.AllEvent;
+import org.xwiki.observation.event.Event;
+
+/**
+ * The listeners registered in the {@link DefaultObservationManager} and the dispatch tables built from them.
+ * <p>
+ * The registered listeners can be read at any time but must only be modified while holding the lock of the
+ * {@link DefaultObservationManager}. The modifications are not visible to {@link #getDispatchTable(Class)} until
+ * {@link #updateDispatchTables(ModifiedEvents)} is called so that several modifications can be indexed at once.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+class ListenerRegistry
+{
+    /**
+     * Registered listeners indexed on Event classes so that it's fast to find all the listeners registered for a given
+     * event, so that {@link DefaultObservationManager#notify} calls execute fast and in a fixed amount a time.
+     * 
+     * @todo Should we allow event inheritance?
+     */
+    private final Map<Class< ? extends Event>, Map<String, RegisteredListener>> listenersByEvent =
+        new ConcurrentHashMap<Class< ? extends Event>, Map<String, RegisteredListener>>();
+
+    /**
+     * Registered listeners index by listener name. It makes it fast to perform operations on already registered
+     * listeners.
+     */
+    private final Map<String, EventListener> listenersByName = new ConcurrentHashMap<String, EventListener>();
+
+    /**
+     * Immutable dispatch tables indexed on concrete Event classes. Each table indexes the listeners of filterable
+     * events on their filter so that {@link DefaultObservationManager#notify} only has to walk the listeners which can
+     * match. The map is copied (copy-on-write) each time the registered listeners change, which is rare compared to
+     * notifications, and only the tables of the Event classes whose listeners changed are rebuilt. The table
+     * associated with {@link AllEvent} is used for Event classes having no specific listener.
+     */
+    private volatile Map<Class< ? extends Event>, DispatchTable> dispatchTables =
+        DispatchTable.createTables(this.listenersByEvent);
+
+    /**
+     * @param listenerName the name of the listener
+     * @return the registered listener with the passed name, null if none
+     */
+    EventListener getListener(String listenerName)
+    {
+        return this.listenersByName.get(listenerName);
+    }
+
+    /**
+     * @return the registered listeners
+     */
+    Collection<EventListener> getListeners()
+    {
+        return this.listenersByName.values();
+    }
+
+    /**
+     * @param eventListener the listener to register
+     * @param target the listener actually receiving the events, generally the registered listener itself
+     * @param modifiedEvents the types of events whose listeners changed, updated by this method
+     * @return the listener previously registered with the same name, null if none
+     */
+    EventListener addListener(EventListener eventListener, EventListener target, ModifiedEvents modifiedEvents)
+    {
+        // Register the listener by name. If already registered, override it.
+        EventListener previousListener = this.listenersByName.put(eventListener.getName(), eventListener);
+
+        // For each event defined for this listener, add it to the Event Map.
+        for (Event event : eventListener.getEvents()) {
+            modifiedEvents.add(event.getClass());
+
+            // Check if this is a new Event type not already registered
+            Map<String, RegisteredListener> eventListeners = this.listenersByEvent.get(event.getClass());
+            if (eventListeners == null) {
+                // No listener registered for this event yet. Create a map to store listeners for this event.
+                eventListeners = new ConcurrentHashMap<String, RegisteredListener>();
+                this.listenersByEvent.put(event.getClass(), eventListeners);
+                // There is no RegisteredListener yet, create one
+                eventListeners.put(eventListener.getName(), new RegisteredListener(eventListener, target, event));
+            } else {
+                // Add an event to existing RegisteredListener object
+                RegisteredListener registeredListener = eventListeners.get(eventListener.getName());
+                if (registeredListener == null) {
+                    eventListeners.put(eventListener.getName(), new RegisteredListener(eventListener, target, event));
+                } else {
+                    registeredListener.addEvent(event);
+                }
+            }
+        }
+
+        return previousListener;
+    }
+
+    /**
+     * @param listenerName the name of the listener to unregister
+     * @param modifiedEvents the types of events whose listeners changed, updated by this method
+     */
+    void removeListener(String listenerName, ModifiedEvents modifiedEvents)
+    {
+        this.listenersByName.remove(listenerName);
+
+        for (Class< ? extends Event> eventClass : this.listenersByEvent.keySet()) {
+            Map<String, RegisteredListener> eventListeners = this.listenersByEvent.get(eventClass);
+            if (eventListeners.remove(listenerName) != null) {
+                modifiedEvents.add(eventClass);
+                if (eventListeners.isEmpty()) {
+                    this.listenersByEvent.remove(eventClass);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param listenerName the name of the listener
+     * @param event the event to add to the events listened by the listener
+     * @param modifiedEvents the types of events whose listeners changed, updated by this method
+     */
+    void addEvent(String listenerName, Event event, ModifiedEvents modifiedEvents)
+    {
+        RegisteredListener listener = getRegisteredListener(listenerName, event);
+        if (listener != null) {
+            listener.addEvent(event);
+            modifiedEvents.add(event.getClass());
+        }
+    }
+
+    /**
+     * @param listenerName the name of the listener
+     * @param event the event to remove from the events listened by the listener
+     * @param modifiedEvents the types of events whose listeners changed, updated by this method
+     */
+    void removeEvent(String listenerName, Event event, ModifiedEvents modifiedEvents)
+    {
+        RegisteredListener listener = getRegisteredListener(listenerName, event);
+        if (listener != null) {
+            listener.removeEvent(event);
+            modifiedEvents.add(event.getClass());
+        }
+    }
+
+    /**
+     * @param listenerName the name of the listener
+     * @param event an event of the type listened by the listener
+     * @return the registered listener, null if it does not listen to this type of events
+     */
+    private RegisteredListener getRegisteredListener(String listenerName, Event event)
+    {
+        return this.listenersByEvent.get(event.getClass()).get(listenerName);
+    }
+
+    /**
+     * Rebuild the dispatch tables of the modified Event classes from the registered listeners.
+     * 
+     * @param modifiedEvents the types of events whose listeners changed
+     */
+    void updateDispatchTables(ModifiedEvents modifiedEvents)
+    {
+        if (!modifiedEvents.isEmpty()) {
+            this.dispatchTables = DispatchTable.updateTables(this.dispatchTables, this.listenersByEvent,
+                modifiedEvents.getEventClasses());
+        }
+    }
+
+    /**
+     * @param eventClass the class of the event
+     * @return the listeners to notify for this type of event (including the ones listening to all events)
+     */
+    DispatchTable getDispatchTable(Class< ? extends Event> eventClass)
+    {
+        Map<Class< ? extends Event>, DispatchTable> tables = this.dispatchTables;
+        DispatchTable table = tables.get(eventClass);
+
+        return table != null ? table : tables.get(AllEvent.class);
+    }
+}
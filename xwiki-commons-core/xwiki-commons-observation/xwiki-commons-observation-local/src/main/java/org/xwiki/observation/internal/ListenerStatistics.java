@@ -0,0 +1,310 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.management.JMXBeanRegistration;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.internal.jmx.JMXListenerStatistics;
+
+/**
+ * Gather the number of invocations, the failures and the time spent in each event listener and for each type of event.
+ * <p>
+ * The statistics are disabled by default, in which case {@link DefaultObservationManager} does not call this component
+ * at all. When enabled, the invocations and failures are always counted but only one invocation every
+ * {@link #getSamplingInterval()} is timed.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+@Component(roles = {ListenerStatistics.class })
+@Singleton
+public class ListenerStatistics implements Initializable
+{
+    /**
+     * Returned by {@link #start(String, Class)} when the invocation is not timed.
+     */
+    public static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    /**
+     * The default number of invocations between two timed invocations.
+     */
+    private static final int DEFAULT_SAMPLING_INTERVAL = 10;
+
+    /**
+     * The statistics of a listener or a type of event.
+     * 
+     * @version $Id$
+     */
+    public static class InvocationStatistics
+    {
+        /**
+         * The number of invocations.
+         */
+        private final AtomicLong invocations = new AtomicLong();
+
+        /**
+         * The number of invocations which failed with an exception.
+         */
+        private final AtomicLong failures = new AtomicLong();
+
+        /**
+         * The number of timed invocations.
+         */
+        private final AtomicLong sampledInvocations = new AtomicLong();
+
+        /**
+         * The cumulative time spent in the timed invocations, in nanoseconds.
+         */
+        private final AtomicLong sampledTime = new AtomicLong();
+
+        /**
+         * The longest timed invocation, in nanoseconds.
+         */
+        private final AtomicLong maxTime = new AtomicLong();
+
+        /**
+         * @param time the time spent in a timed invocation, in nanoseconds
+         */
+        private void addTime(long time)
+        {
+            this.sampledInvocations.incrementAndGet();
+            this.sampledTime.addAndGet(time);
+
+            long max = this.maxTime.get();
+            while (time > max && !this.maxTime.compareAndSet(max, time)) {
+                max = this.maxTime.get();
+            }
+        }
+
+        /**
+         * @return the number of invocations
+         */
+        public long getInvocations()
+        {
+            return this.invocations.get();
+        }
+
+        /**
+         * @return the number of invocations which failed with an exception
+         */
+        public long getFailures()
+        {
+            return this.failures.get();
+        }
+
+        /**
+         * @return the number of timed invocations
+         */
+        public long getSampledInvocations()
+        {
+            return this.sampledInvocations.get();
+        }
+
+        /**
+         * @return the cumulative time spent in the timed invocations, in nanoseconds
+         */
+        public long getSampledTime()
+        {
+            return this.sampledTime.get();
+        }
+
+        /**
+         * @return the average time of the timed invocations, in nanoseconds
+         */
+        public long getAverageTime()
+        {
+            long sampled = getSampledInvocations();
+
+            return sampled > 0 ? getSampledTime() / sampled : 0;
+        }
+
+        /**
+         * @return the longest timed invocation, in nanoseconds
+         */
+        public long getMaxTime()
+        {
+            return this.maxTime.get();
+        }
+    }
+
+    /**
+     * In order to register the statistics MBean for management.
+     */
+    @Inject
+    private JMXBeanRegistration jmxRegistration;
+
+    /**
+     * True if the statistics are gathered.
+     */
+    private volatile boolean enabled;
+
+    /**
+     * The number of invocations between two timed invocations.
+     */
+    private volatile int samplingInterval = DEFAULT_SAMPLING_INTERVAL;
+
+    /**
+     * The statistics indexed by listener name.
+     */
+    private final ConcurrentMap<String, InvocationStatistics> listeners =
+        new ConcurrentHashMap<String, InvocationStatistics>();
+
+    /**
+     * The statistics indexed by event type.
+     */
+    private final ConcurrentMap<Class< ? extends Event>, InvocationStatistics> events =
+        new ConcurrentHashMap<Class< ? extends Event>, InvocationStatistics>();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        // Register a JMX MBean for providing the statistics and enabling/disabling them
+        this.jmxRegistration.registerMBean(new JMXListenerStatistics(this), "type=Observation,name=ListenerStatistics");
+    }
+
+    /**
+     * @return true if the statistics are gathered
+     */
+    public boolean isEnabled()
+    {
+        return this.enabled;
+    }
+
+    /**
+     * @param enabled true if the statistics should be gathered
+     */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return the number of invocations between two timed invocations
+     */
+    public int getSamplingInterval()
+    {
+        return this.samplingInterval;
+    }
+
+    /**
+     * @param samplingInterval the number of invocations between two timed invocations, 1 to time all the invocations
+     */
+    public void setSamplingInterval(int samplingInterval)
+    {
+        this.samplingInterval = Math.max(1, samplingInterval);
+    }
+
+    /**
+     * @return the statistics indexed by listener name
+     */
+    public Map<String, InvocationStatistics> getListeners()
+    {
+        return this.listeners;
+    }
+
+    /**
+     * @return the statistics indexed by event type
+     */
+    public Map<Class< ? extends Event>, InvocationStatistics> getEvents()
+    {
+        return this.events;
+    }
+
+    /**
+     * Forget all the gathered statistics.
+     */
+    public void reset()
+    {
+        this.listeners.clear();
+        this.events.clear();
+    }
+
+    /**
+     * @param <K> the type of the key
+     * @param map the statistics
+     * @param key the key of the statistics
+     * @return the statistics associated with the key, created if needed
+     */
+    private static <K> InvocationStatistics getStatistics(ConcurrentMap<K, InvocationStatistics> map, K key)
+    {
+        InvocationStatistics statistics = map.get(key);
+        if (statistics == null) {
+            statistics = new InvocationStatistics();
+            InvocationStatistics previous = map.putIfAbsent(key, statistics);
+            if (previous != null) {
+                statistics = previous;
+            }
+        }
+
+        return statistics;
+    }
+
+    /**
+     * Called before the listener is invoked.
+     * 
+     * @param listenerName the name of the invoked listener
+     * @param eventClass the type of the sent event
+     * @return the time at which the invocation started, in nanoseconds, or {@link #NOT_SAMPLED} if the invocation is
+     *         not timed
+     */
+    public long start(String listenerName, Class< ? extends Event> eventClass)
+    {
+        getStatistics(this.events, eventClass).invocations.incrementAndGet();
+        long invocation = getStatistics(this.listeners, listenerName).invocations.incrementAndGet();
+
+        return invocation % this.samplingInterval == 0 ? System.nanoTime() : NOT_SAMPLED;
+    }
+
+    /**
+     * Called after the listener has been invoked.
+     * 
+     * @param listenerName the name of the invoked listener
+     * @param eventClass the type of the sent event
+     * @param start the value returned by {@link #start(String, Class)}
+     * @param failed true if the listener failed with an exception
+     */
+    public void stop(String listenerName, Class< ? extends Event> eventClass, long start, boolean failed)
+    {
+        InvocationStatistics listenerStatistics = getStatistics(this.listeners, listenerName);
+        InvocationStatistics eventStatistics = getStatistics(this.events, eventClass);
+
+        if (start != NOT_SAMPLED) {
+            long time = System.nanoTime() - start;
+            listenerStatistics.addTime(time);
+            eventStatistics.addTime(time);
+        }
+
+        if (failed) {
+            listenerStatistics.failures.incrementAndGet();
+            eventStatistics.failures.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.xwiki.observation.event.AllEvent;
+import org.xwiki.observation.event.Event;
+
+/**
+ * The types of events whose registered listeners changed since the dispatch tables were last updated. Used to rebuild
+ * only the outdated dispatch tables, once for a whole set of changes.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+class ModifiedEvents
+{
+    /**
+     * The types of events whose registered listeners changed.
+     */
+    private final Set<Class< ? extends Event>> eventClasses = new HashSet<Class< ? extends Event>>();
+
+    /**
+     * @param eventClass a type of event whose registered listeners changed
+     */
+    void add(Class< ? extends Event> eventClass)
+    {
+        this.eventClasses.add(eventClass);
+    }
+
+    /**
+     * @return true if no registered listener changed
+     */
+    boolean isEmpty()
+    {
+        return this.eventClasses.isEmpty();
+    }
+
+    /**
+     * @param eventClass the type of event to notify
+     * @return true if the dispatch table used for the passed type of event is outdated
+     */
+    boolean isOutdated(Class< ? extends Event> eventClass)
+    {
+        return !this.eventClasses.isEmpty()
+            && (this.eventClasses.contains(eventClass) || this.eventClasses.contains(AllEvent.class));
+    }
+
+    /**
+     * @return the types of events whose registered listeners changed
+     */
+    Set<Class< ? extends Event>> getEventClasses()
+    {
+        return this.eventClasses;
+    }
+
+    /**
+     * Forget the changes, once the dispatch tables have been updated.
+     */
+    void clear()
+    {
+        this.eventClasses.clear();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Helper class to store the list of events of a given type associated with a given listener. We need this for
+ * performance reasons and also in order to be able to add events after a listener has been registered.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+class RegisteredListener
+{
+    /**
+     * Events of a given type associated with a given listener. The array is never modified, it's replaced when an
+     * event is added or removed so that it can be safely walked without any lock or iterator.
+     */
+    private volatile Event[] events = new Event[0];
+
+    /**
+     * Listener associated with the events.
+     */
+    private EventListener listener;
+
+    /**
+     * The listener to call: the listener itself or its queue when the listener is asynchronous.
+     */
+    private EventListener target;
+
+    /**
+     * @param listener the listener associated with the events.
+     * @param target the listener to call: the listener itself or its queue when the listener is asynchronous
+     * @param event the first event to associate with the passed listener. More events are added by calling
+     *            {@link #addEvent(Event)}
+     */
+    RegisteredListener(EventListener listener, EventListener target, Event event)
+    {
+        addEvent(event);
+
+        this.listener = listener;
+        this.target = target;
+    }
+
+    /**
+     * @return the listener associated with the events
+     */
+    EventListener getListener()
+    {
+        return this.listener;
+    }
+
+    /**
+     * @return the listener to call: the listener itself or its queue when the listener is asynchronous
+     */
+    EventListener getTarget()
+    {
+        return this.target;
+    }
+
+    /**
+     * @return the events associated with the listener
+     */
+    Event[] getEvents()
+    {
+        return this.events;
+    }
+
+    /**
+     * @param event the event to add
+     */
+    void addEvent(Event event)
+    {
+        Event[] newEvents = new Event[this.events.length + 1];
+        System.arraycopy(this.events, 0, newEvents, 0, this.events.length);
+        newEvents[this.events.length] = event;
+        this.events = newEvents;
+    }
+
+    /**
+     * @param event the event to remove
+     */
+    void removeEvent(Event event)
+    {
+        Event[] currentEvents = this.events;
+        for (int i = 0; i < currentEvents.length; ++i) {
+            if (currentEvents[i].equals(event)) {
+                Event[] newEvents = new Event[currentEvents.length - 1];
+                System.arraycopy(currentEvents, 0, newEvents, 0, i);
+                System.arraycopy(currentEvents, i + 1, newEvents, i, newEvents.length - i);
+                this.events = newEvents;
+                break;
+            }
+        }
+    }
+
+    /**
+     * @param event the event sent
+     * @return true if one of the events of the listener matches the passed event
+     */
+    boolean matches(Event event)
+    {
+        for (Event listenerEvent : this.events) {
+            if (listenerEvent.matches(event)) {
+                // The listener should only be called once per event even when several of its events match.
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
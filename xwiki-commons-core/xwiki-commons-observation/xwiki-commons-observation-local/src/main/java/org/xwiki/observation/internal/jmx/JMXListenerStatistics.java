@@ -0,0 +1,147 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal.jmx;
+
+import java.util.Map;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.xwiki.observation.internal.ListenerStatistics;
+import org.xwiki.observation.internal.ListenerStatistics.InvocationStatistics;
+
+/**
+ * Implementation of {@link JMXListenerStatisticsMBean} for exposing the statistics of the event listeners.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+public class JMXListenerStatistics implements JMXListenerStatisticsMBean
+{
+    /**
+     * The names of the columns of {@link #getListeners()} and {@link #getEvents()}.
+     */
+    private static final String[] COLUMNS = new String[] {"name", "invocations", "failures", "sampledInvocations",
+        "sampledTime", "averageTime", "maxTime"};
+
+    /**
+     * The statistics to expose.
+     */
+    private ListenerStatistics statistics;
+
+    /**
+     * @param statistics the statistics to expose
+     */
+    public JMXListenerStatistics(ListenerStatistics statistics)
+    {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public boolean isEnabled()
+    {
+        return this.statistics.isEnabled();
+    }
+
+    @Override
+    public void setEnabled(boolean enabled)
+    {
+        this.statistics.setEnabled(enabled);
+    }
+
+    @Override
+    public int getSamplingInterval()
+    {
+        return this.statistics.getSamplingInterval();
+    }
+
+    @Override
+    public void setSamplingInterval(int samplingInterval)
+    {
+        this.statistics.setSamplingInterval(samplingInterval);
+    }
+
+    @Override
+    public TabularData getListeners()
+    {
+        return toTabularData("listeners", "Event listeners statistics", this.statistics.getListeners());
+    }
+
+    @Override
+    public TabularData getEvents()
+    {
+        return toTabularData("events", "Event types statistics", this.statistics.getEvents());
+    }
+
+    @Override
+    public void reset()
+    {
+        this.statistics.reset();
+    }
+
+    /**
+     * @param name the name of the table
+     * @param description the description of the table
+     * @param statisticsMap the statistics to put in the table
+     * @return the table
+     */
+    private TabularData toTabularData(String name, String description, Map< ? , InvocationStatistics> statisticsMap)
+    {
+        TabularData data;
+
+        try {
+            String[] descriptions =
+                new String[] {"The name of the listener or event type", "The number of invocations",
+                    "The number of invocations which failed with an exception", "The number of timed invocations",
+                    "The cumulative time of the timed invocations", "The average time of the timed invocations",
+                    "The longest timed invocation"};
+            CompositeType rowType =
+                new CompositeType("statistics", "Invocation statistics", COLUMNS, descriptions, new OpenType< ? >[] {
+                    SimpleType.STRING, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG,
+                    SimpleType.LONG, SimpleType.LONG});
+
+            TabularType type = new TabularType(name, description, rowType, new String[] {COLUMNS[0]});
+            data = new TabularDataSupport(type);
+
+            for (Map.Entry< ? , InvocationStatistics> entry : statisticsMap.entrySet()) {
+                Object key = entry.getKey();
+                InvocationStatistics invocationStatistics = entry.getValue();
+                CompositeData rowData =
+                    new CompositeDataSupport(rowType, COLUMNS, new Object[] {
+                        key instanceof Class ? ((Class< ? >) key).getName() : key.toString(),
+                        invocationStatistics.getInvocations(), invocationStatistics.getFailures(),
+                        invocationStatistics.getSampledInvocations(), invocationStatistics.getSampledTime(),
+                        invocationStatistics.getAverageTime(), invocationStatistics.getMaxTime()});
+                data.put(rowData);
+            }
+        } catch (OpenDataException e) {
+            throw new RuntimeException("Failed to gather event listeners statistics", e);
+        }
+
+        return data;
+    }
+}
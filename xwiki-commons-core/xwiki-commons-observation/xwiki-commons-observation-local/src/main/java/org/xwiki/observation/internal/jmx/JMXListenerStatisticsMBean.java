@@ -0,0 +1,66 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal.jmx;
+
+import javax.management.openmbean.TabularData;
+
+/**
+ * MBean API related to the statistics of the event listeners.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+public interface JMXListenerStatisticsMBean
+{
+    /**
+     * @return true if the statistics are gathered
+     */
+    boolean isEnabled();
+
+    /**
+     * @param enabled true to start gathering the statistics, false to stop
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return the number of invocations between two timed invocations
+     */
+    int getSamplingInterval();
+
+    /**
+     * @param samplingInterval the number of invocations between two timed invocations, 1 to time all the invocations
+     */
+    void setSamplingInterval(int samplingInterval);
+
+    /**
+     * @return the number of invocations, the failures and the time spent (in nanoseconds) in each listener
+     */
+    TabularData getListeners();
+
+    /**
+     * @return the number of invocations, the failures and the time spent (in nanoseconds) for each type of event
+     */
+    TabularData getEvents();
+
+    /**
+     * Forget all the gathered statistics.
+     */
+    void reset();
+}
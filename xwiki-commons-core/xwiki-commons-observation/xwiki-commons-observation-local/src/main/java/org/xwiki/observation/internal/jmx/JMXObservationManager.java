@@ -0,0 +1,92 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal.jmx;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.xwiki.observation.internal.AsynchronousEventDispatcher;
+import org.xwiki.observation.internal.AsynchronousEventDispatcher.ListenerQueue;
+
+/**
+ * Implementation of {@link JMXObservationManagerMBean} for exposing Observation Manager management data.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+public class JMXObservationManager implements JMXObservationManagerMBean
+{
+    /**
+     * The names of the columns of {@link #getAsynchronousListeners()}.
+     */
+    private static final String[] QUEUE_COLUMNS = new String[] {"listenerName", "size", "capacity", "droppedEvents"};
+
+    /**
+     * The dispatcher for which to return management data.
+     */
+    private AsynchronousEventDispatcher dispatcher;
+
+    /**
+     * @param dispatcher the dispatcher for which to return management data
+     */
+    public JMXObservationManager(AsynchronousEventDispatcher dispatcher)
+    {
+        this.dispatcher = dispatcher;
+    }
+
+    @Override
+    public TabularData getAsynchronousListeners()
+    {
+        TabularData data;
+
+        try {
+            String[] descriptions =
+                new String[] {"The name of the listener", "The number of events waiting to be delivered",
+                    "The maximum number of events waiting to be delivered",
+                    "The number of events not delivered because the queue was full"};
+            CompositeType rowType =
+                new CompositeType("queue", "Asynchronous listener queue", QUEUE_COLUMNS, descriptions,
+                    new OpenType< ? >[] {SimpleType.STRING, SimpleType.INTEGER, SimpleType.INTEGER,
+                        SimpleType.LONG});
+
+            TabularType type =
+                new TabularType("queues", "Asynchronous listeners queues", rowType, new String[] {QUEUE_COLUMNS[0]});
+            data = new TabularDataSupport(type);
+
+            for (ListenerQueue queue : this.dispatcher.getQueues()) {
+                CompositeData rowData =
+                    new CompositeDataSupport(rowType, QUEUE_COLUMNS, new Object[] {queue.getName(),
+                        queue.getSize(), queue.getCapacity(), queue.getDroppedEvents()});
+                data.put(rowData);
+            }
+        } catch (OpenDataException e) {
+            throw new RuntimeException("Failed to gather information on asynchronous listeners", e);
+        }
+
+        return data;
+    }
+}
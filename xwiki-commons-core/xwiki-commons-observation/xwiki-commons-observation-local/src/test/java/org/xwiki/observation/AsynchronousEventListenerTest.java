@@ -0,0 +1,273 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.observation.event.ActionExecutionEvent;
+import org.xwiki.observation.event.AllEvent;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.internal.AsynchronousEventDispatcher;
+import org.xwiki.test.AbstractComponentTestCase;
+
+/**
+ * Unit tests for {@link AsynchronousEventListener} support in {@link ObservationManager}.
+ * 
+ * @version $Id$
+ */
+public class AsynchronousEventListenerTest extends AbstractComponentTestCase
+{
+    private ObservationManager manager;
+
+    private static class TestListener implements AsynchronousEventListener
+    {
+        private final List<Event> received = new ArrayList<Event>();
+
+        private final FullQueuePolicy policy;
+
+        private final CountDownLatch release;
+
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private final CountDownLatch done;
+
+        private volatile Thread thread;
+
+        private final AtomicInteger active = new AtomicInteger();
+
+        private volatile boolean concurrent;
+
+        public TestListener(FullQueuePolicy policy, CountDownLatch release, int expected)
+        {
+            this.policy = policy;
+            this.release = release;
+            this.done = new CountDownLatch(expected);
+        }
+
+        @Override
+        public String getName()
+        {
+            return "asynclistener";
+        }
+
+        @Override
+        public List<Event> getEvents()
+        {
+            return Arrays.<Event>asList(AllEvent.ALLEVENT);
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            if (this.active.incrementAndGet() > 1) {
+                this.concurrent = true;
+            }
+
+            this.started.countDown();
+
+            try {
+                this.release.await();
+            } catch (InterruptedException e) {
+                // Stop waiting
+            }
+
+            this.thread = Thread.currentThread();
+            synchronized (this.received) {
+                this.received.add(event);
+            }
+
+            this.active.decrementAndGet();
+            this.done.countDown();
+        }
+
+        @Override
+        public int getQueueCapacity()
+        {
+            return 2;
+        }
+
+        @Override
+        public FullQueuePolicy getFullQueuePolicy()
+        {
+            return this.policy;
+        }
+    }
+
+    @Override
+    @Before
+    public void setUp() throws Exception
+    {
+        super.setUp();
+
+        this.manager = getComponentManager().getInstance(ObservationManager.class);
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception
+    {
+        getComponentManager().<AsynchronousEventDispatcher>getInstance(AsynchronousEventDispatcher.class).dispose();
+
+        super.tearDown();
+    }
+
+    @Test
+    public void testEventsDeliveredInOrderInAnotherThread() throws Exception
+    {
+        TestListener listener =
+            new TestListener(AsynchronousEventListener.FullQueuePolicy.BLOCK, new CountDownLatch(0), 10);
+        this.manager.addListener(listener);
+
+        List<Event> sent = new ArrayList<Event>();
+        for (int i = 0; i < 10; ++i) {
+            Event event = new ActionExecutionEvent("action" + i);
+            sent.add(event);
+            this.manager.notify(event, null);
+        }
+
+        Assert.assertTrue(listener.done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(sent, listener.received);
+        Assert.assertNotSame(Thread.currentThread(), listener.thread);
+    }
+
+    @Test
+    public void testDropWhenQueueIsFull() throws Exception
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        TestListener listener = new TestListener(AsynchronousEventListener.FullQueuePolicy.DROP, release, 1);
+        this.manager.addListener(listener);
+
+        // The first event blocks the listener, two are queued and the remaining ones are dropped
+        this.manager.notify(new ActionExecutionEvent("first"), null);
+        Assert.assertTrue(listener.started.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; ++i) {
+            this.manager.notify(new ActionExecutionEvent("action" + i), null);
+        }
+
+        release.countDown();
+
+        Assert.assertTrue(listener.done.await(10, TimeUnit.SECONDS));
+
+        synchronized (listener.received) {
+            Assert.assertTrue(listener.received.size() <= 3);
+        }
+    }
+
+    @Test
+    public void testBlockInDeliveryThreadFallsBackToCallerRuns() throws Exception
+    {
+        final List<Event> sent = new ArrayList<Event>();
+        for (int i = 0; i < 5; ++i) {
+            sent.add(new ActionExecutionEvent("action" + i));
+        }
+
+        // The listener fills its own queue while it's the one draining it
+        TestListener listener =
+            new TestListener(AsynchronousEventListener.FullQueuePolicy.BLOCK, new CountDownLatch(0), 6)
+            {
+                @Override
+                public void onEvent(Event event, Object source, Object data)
+                {
+                    if (event instanceof ActionExecutionEvent
+                        && ((ActionExecutionEvent) event).getActionName().equals("first")) {
+                        for (Event sentEvent : sent) {
+                            manager.notify(sentEvent, null);
+                        }
+                    }
+
+                    super.onEvent(event, source, data);
+                }
+            };
+        this.manager.addListener(listener);
+
+        this.manager.notify(new ActionExecutionEvent("first"), null);
+
+        Assert.assertTrue(listener.done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCallerRunsKeepsOrder() throws Exception
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        TestListener listener = new TestListener(AsynchronousEventListener.FullQueuePolicy.CALLER_RUNS, release, 6);
+        this.manager.addListener(listener);
+
+        final List<Event> sent = new ArrayList<Event>();
+        sent.add(new ActionExecutionEvent("first"));
+        for (int i = 0; i < 5; ++i) {
+            sent.add(new ActionExecutionEvent("action" + i));
+        }
+
+        // The first event blocks the listener in a thread of the pool, the queue is then filled by another thread
+        this.manager.notify(sent.get(0), null);
+        Assert.assertTrue(listener.started.await(10, TimeUnit.SECONDS));
+        Thread sender = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                for (Event event : sent.subList(1, sent.size())) {
+                    manager.notify(event, null);
+                }
+            }
+        };
+        sender.start();
+
+        // Give the sender the time to overflow the queue before releasing the listener
+        sender.join(200);
+        release.countDown();
+        sender.join();
+
+        Assert.assertTrue(listener.done.await(10, TimeUnit.SECONDS));
+        Assert.assertFalse(listener.concurrent);
+        Assert.assertEquals(sent, listener.received);
+    }
+
+    @Test
+    public void testEventsDroppedOnceDisposed() throws Exception
+    {
+        TestListener listener =
+            new TestListener(AsynchronousEventListener.FullQueuePolicy.BLOCK, new CountDownLatch(0), 1);
+        this.manager.addListener(listener);
+
+        AsynchronousEventDispatcher dispatcher =
+            getComponentManager().<AsynchronousEventDispatcher>getInstance(AsynchronousEventDispatcher.class);
+        dispatcher.dispose();
+
+        this.manager.notify(new ActionExecutionEvent("action"), null);
+
+        Assert.assertEquals(1, dispatcher.getQueues().iterator().next().getDroppedEvents());
+        Assert.assertEquals(1, listener.done.getCount());
+        Assert.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(
+            new ObjectName("org.xwiki:type=Observation,name=AsynchronousListeners")));
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.observation.event.ActionExecutionEvent;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.internal.ListenerStatistics;
+import org.xwiki.observation.internal.ListenerStatistics.InvocationStatistics;
+import org.xwiki.test.AbstractComponentTestCase;
+
+/**
+ * Unit tests for {@link ListenerStatistics}.
+ * 
+ * @version $Id$
+ */
+public class ListenerStatisticsTest extends AbstractComponentTestCase
+{
+    private ObservationManager manager;
+
+    private ListenerStatistics statistics;
+
+    private static class TestListener implements EventListener
+    {
+        @Override
+        public String getName()
+        {
+            return "testlistener";
+        }
+
+        @Override
+        public List<Event> getEvents()
+        {
+            return Arrays.<Event>asList(new ActionExecutionEvent("ok"), new ActionExecutionEvent("fail"));
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            if (((ActionExecutionEvent) event).getActionName().equals("fail")) {
+                throw new RuntimeException("Expected failure");
+            }
+        }
+    }
+
+    @Override
+    @Before
+    public void setUp() throws Exception
+    {
+        super.setUp();
+
+        this.manager = getComponentManager().getInstance(ObservationManager.class);
+        this.statistics = getComponentManager().getInstance(ListenerStatistics.class);
+
+        this.manager.addListener(new TestListener());
+    }
+
+    @Test
+    public void testDisabledByDefault()
+    {
+        this.manager.notify(new ActionExecutionEvent("ok"), null);
+
+        Assert.assertFalse(this.statistics.isEnabled());
+        Assert.assertNull(this.statistics.getListeners().get("testlistener"));
+    }
+
+    @Test
+    public void testInvocationsAndFailures()
+    {
+        this.statistics.setEnabled(true);
+        this.statistics.setSamplingInterval(2);
+
+        this.manager.notify(new ActionExecutionEvent("ok"), null);
+        this.manager.notify(new ActionExecutionEvent("ok"), null);
+        this.manager.notify(new ActionExecutionEvent("fail"), null);
+        this.manager.notify(new ActionExecutionEvent("ok"), null);
+
+        InvocationStatistics listenerStatistics = this.statistics.getListeners().get("testlistener");
+        Assert.assertEquals(4, listenerStatistics.getInvocations());
+        Assert.assertEquals(1, listenerStatistics.getFailures());
+        Assert.assertEquals(2, listenerStatistics.getSampledInvocations());
+        Assert.assertTrue(listenerStatistics.getMaxTime() <= listenerStatistics.getSampledTime());
+
+        // Other listeners might receive the same events
+        InvocationStatistics eventStatistics = this.statistics.getEvents().get(ActionExecutionEvent.class);
+        Assert.assertTrue(eventStatistics.getInvocations() >= 4);
+        Assert.assertEquals(1, eventStatistics.getFailures());
+
+        this.statistics.reset();
+
+        Assert.assertTrue(this.statistics.getListeners().isEmpty());
+        Assert.assertTrue(this.statistics.getEvents().isEmpty());
+    }
+}
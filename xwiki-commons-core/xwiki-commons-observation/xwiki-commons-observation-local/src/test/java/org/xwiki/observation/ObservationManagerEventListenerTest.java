@@ -27,6 +27,7 @@
 import org.junit.Before;
 import org.junit.Test;
 import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.event.ComponentDescriptorAddedEvent;
 import org.xwiki.component.internal.StackingComponentEventManager;
 import org.xwiki.observation.event.Event;
 import org.xwiki.test.AbstractComponentTestCase;
@@ -89,4 +90,22 @@ public void testRemovedListenerComponent() throws Exception
         
         Assert.assertNull(this.manager.getListener("mylistener"));
     }
+
+    @Test
+    public void testListenerComponentRegisteredInBatchReceivesFollowingEvents() throws Exception
+    {
+        ((StackingComponentEventManager) getComponentManager().getComponentEventManager()).shouldStack(true);
+        getComponentManager().registerComponent(this.componentDescriptor, this.eventListenerMock);
+
+        getMockery().checking(new Expectations() {{
+            oneOf(eventListenerMock).onEvent(eventMock, "source", null);
+        }});
+
+        // The listener is indexed before the events it listens to are sent
+        this.manager.notify(Arrays.asList(
+            new EventEnvelope(new ComponentDescriptorAddedEvent(EventListener.class, "mylistener"),
+                getComponentManager(), this.componentDescriptor), new EventEnvelope(this.eventMock, "source", null)));
+
+        Assert.assertSame(this.eventListenerMock, this.manager.getListener("mylistener"));
+    }
 }
@@ -20,18 +20,24 @@
 package org.xwiki.observation;
 
 import java.util.Arrays;
+import java.util.List;
 
 import static org.hamcrest.Matchers.*;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
+import org.jmock.Sequence;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.observation.event.AbstractFilterableEvent;
 import org.xwiki.observation.event.ActionExecutionEvent;
 import org.xwiki.observation.event.AllEvent;
 import org.xwiki.observation.event.Event;
+import org.xwiki.observation.event.filter.EventFilter;
+import org.xwiki.observation.event.filter.FixedNameEventFilter;
+import org.xwiki.observation.event.filter.RegexEventFilter;
 import org.xwiki.observation.internal.DefaultObservationManager;
 
 /**
@@ -41,6 +47,23 @@
  */
 public class ObservationManagerTest
 {
+    public static class TestFilterableEvent extends AbstractFilterableEvent
+    {
+        public TestFilterableEvent()
+        {
+        }
+
+        public TestFilterableEvent(String name)
+        {
+            super(name);
+        }
+
+        public TestFilterableEvent(EventFilter eventFilter)
+        {
+            super(eventFilter);
+        }
+    }
+
     private ObservationManager manager;
 
     private Mockery context = new Mockery();
@@ -235,4 +258,190 @@ public void testRegisterListenerForTwoEventsOfSameType()
         this.manager.notify(eventMatcher1, "some source", "some data");
         this.manager.notify(eventMatcher2, "some source", "some data");
     }
+
+    /**
+     * Verify that listeners registered for a specific event and listeners registered for all events both receive the
+     * event and that the dispatch is updated when a listener is removed.
+     */
+    @Test
+    public void testNotifyEventAndAllEventListeners()
+    {
+        final EventListener listener = this.context.mock(EventListener.class, "listener");
+        final EventListener allEventListener = this.context.mock(EventListener.class, "allEventListener");
+        final Event event = new ActionExecutionEvent("action");
+
+        this.context.checking(new Expectations() {{
+            allowing(listener).getName(); will(returnValue("listener"));
+            allowing(listener).getEvents(); will(returnValue(Arrays.asList(event)));
+            allowing(allEventListener).getName(); will(returnValue("allEventListener"));
+            allowing(allEventListener).getEvents(); will(returnValue(Arrays.asList(AllEvent.ALLEVENT)));
+
+            oneOf(listener).onEvent(with(same(event)), with(any(Object.class)), with(any(Object.class)));
+            exactly(2).of(allEventListener).onEvent(with(same(event)), with(any(Object.class)),
+                with(any(Object.class)));
+        }});
+
+        this.manager.addListener(listener);
+        this.manager.addListener(allEventListener);
+        this.manager.notify(event, "some source", "some data");
+
+        this.manager.removeListener("listener");
+        this.manager.notify(event, "some source", "some data");
+    }
+
+    /**
+     * Verify that batch listeners receive all their matching events at once and other listeners one by one.
+     */
+    @Test
+    public void testNotifyBatch()
+    {
+        final EventListener listener = this.context.mock(EventListener.class, "listener");
+        final BatchEventListener batchListener = this.context.mock(BatchEventListener.class, "batchListener");
+        final Event event1 = new ActionExecutionEvent("action1");
+        final Event event2 = new ActionExecutionEvent("action2");
+        final Event otherEvent = new ActionExecutionEvent("other");
+        final List<EventEnvelope> envelopes =
+            Arrays.asList(new EventEnvelope(event1, "source1", null), new EventEnvelope(otherEvent, "source", null),
+                new EventEnvelope(event2, "source2", "data2"));
+
+        this.context.checking(new Expectations() {{
+            allowing(listener).getName(); will(returnValue("listener"));
+            allowing(listener).getEvents(); will(returnValue(Arrays.asList(event1, event2)));
+            allowing(batchListener).getName(); will(returnValue("batchListener"));
+            allowing(batchListener).getEvents(); will(returnValue(Arrays.asList(event1, event2)));
+
+            oneOf(listener).onEvent(event1, "source1", null);
+            oneOf(listener).onEvent(event2, "source2", "data2");
+            oneOf(batchListener).onEvents(Arrays.asList(envelopes.get(0), envelopes.get(2)));
+        }});
+
+        this.manager.addListener(listener);
+        this.manager.addListener(batchListener);
+        this.manager.notify(envelopes);
+    }
+
+    /**
+     * Verify that listeners of filterable events are only notified of the events matching their filters.
+     */
+    @Test
+    public void testNotifyFilterableEvent()
+    {
+        final EventListener fixedListener = this.context.mock(EventListener.class, "fixedListener");
+        final EventListener regexListener1 = this.context.mock(EventListener.class, "regexListener1");
+        final EventListener regexListener2 = this.context.mock(EventListener.class, "regexListener2");
+        final EventListener genericListener = this.context.mock(EventListener.class, "genericListener");
+        final Event event1 = new TestFilterableEvent("space.page1");
+        final Event event2 = new TestFilterableEvent("space.page2");
+        final Event otherEvent = new TestFilterableEvent("other.page");
+
+        this.context.checking(new Expectations() {{
+            allowing(fixedListener).getName(); will(returnValue("fixedListener"));
+            allowing(fixedListener).getEvents(); will(returnValue(Arrays.asList(
+                new TestFilterableEvent(new FixedNameEventFilter("space.page1")),
+                new TestFilterableEvent("other.page"))));
+            allowing(regexListener1).getName(); will(returnValue("regexListener1"));
+            allowing(regexListener1).getEvents(); will(returnValue(Arrays.asList(
+                new TestFilterableEvent(new RegexEventFilter("space\\..*")))));
+            allowing(regexListener2).getName(); will(returnValue("regexListener2"));
+            allowing(regexListener2).getEvents(); will(returnValue(Arrays.asList(
+                new TestFilterableEvent(new RegexEventFilter("space\\..*")))));
+            allowing(genericListener).getName(); will(returnValue("genericListener"));
+            allowing(genericListener).getEvents(); will(returnValue(Arrays.asList(new TestFilterableEvent())));
+
+            oneOf(fixedListener).onEvent(event1, null, null);
+            oneOf(fixedListener).onEvent(otherEvent, null, null);
+            oneOf(regexListener1).onEvent(event1, null, null);
+            oneOf(regexListener1).onEvent(event2, null, null);
+            oneOf(regexListener2).onEvent(event1, null, null);
+            oneOf(regexListener2).onEvent(event2, null, null);
+            oneOf(genericListener).onEvent(event1, null, null);
+            oneOf(genericListener).onEvent(event2, null, null);
+            oneOf(genericListener).onEvent(otherEvent, null, null);
+        }});
+
+        this.manager.addListener(fixedListener);
+        this.manager.addListener(regexListener1);
+        this.manager.addListener(regexListener2);
+        this.manager.addListener(genericListener);
+        this.manager.notify(event1, null);
+        this.manager.notify(event2, null);
+        this.manager.notify(otherEvent, null);
+
+        // The index is updated when the events of a listener change
+        this.manager.removeEvent("fixedListener", new TestFilterableEvent("other.page"));
+        this.manager.addEvent("fixedListener", new TestFilterableEvent(new FixedNameEventFilter("space.page2")));
+        this.manager.removeListener("regexListener2");
+
+        this.context.checking(new Expectations() {{
+            oneOf(fixedListener).onEvent(event2, null, null);
+            oneOf(regexListener1).onEvent(event2, null, null);
+            oneOf(genericListener).onEvent(event2, null, null);
+            oneOf(genericListener).onEvent(otherEvent, null, null);
+        }});
+
+        this.manager.notify(event2, null);
+        this.manager.notify(otherEvent, null);
+
+        this.context.assertIsSatisfied();
+    }
+
+    /**
+     * Verify that the listeners registered for all events are notified after the listeners using a regular expression.
+     */
+    @Test
+    public void testAllEventListenersNotifiedLast()
+    {
+        final EventListener regexListener = this.context.mock(EventListener.class, "regexListener");
+        final EventListener allEventListener = this.context.mock(EventListener.class, "allEventListener");
+        final Event event = new TestFilterableEvent("space.page");
+        final Sequence sequence = this.context.sequence("notification");
+
+        this.context.checking(new Expectations() {{
+            allowing(regexListener).getName(); will(returnValue("regexListener"));
+            allowing(regexListener).getEvents(); will(returnValue(Arrays.asList(
+                new TestFilterableEvent(new RegexEventFilter("space\\..*")))));
+            allowing(allEventListener).getName(); will(returnValue("allEventListener"));
+            allowing(allEventListener).getEvents(); will(returnValue(Arrays.asList(AllEvent.ALLEVENT)));
+
+            oneOf(regexListener).onEvent(event, null, null); inSequence(sequence);
+            oneOf(allEventListener).onEvent(event, null, null); inSequence(sequence);
+        }});
+
+        this.manager.addListener(allEventListener);
+        this.manager.addListener(regexListener);
+        this.manager.notify(event, null);
+
+        this.context.assertIsSatisfied();
+    }
+
+    /**
+     * Verify that a filterable event without filter does not prevent the notification of the indexed listeners.
+     */
+    @Test
+    public void testNotifyFilterableEventWithoutFilter()
+    {
+        final EventListener fixedListener = this.context.mock(EventListener.class, "fixedListener");
+        final EventListener regexListener = this.context.mock(EventListener.class, "regexListener");
+        final EventListener allEventListener = this.context.mock(EventListener.class, "allEventListener");
+        final Event event = new TestFilterableEvent((EventFilter) null);
+
+        this.context.checking(new Expectations() {{
+            allowing(fixedListener).getName(); will(returnValue("fixedListener"));
+            allowing(fixedListener).getEvents(); will(returnValue(Arrays.asList(new TestFilterableEvent("space.page"))));
+            allowing(regexListener).getName(); will(returnValue("regexListener"));
+            allowing(regexListener).getEvents(); will(returnValue(Arrays.asList(
+                new TestFilterableEvent(new RegexEventFilter("space\\..*")))));
+            allowing(allEventListener).getName(); will(returnValue("allEventListener"));
+            allowing(allEventListener).getEvents(); will(returnValue(Arrays.asList(AllEvent.ALLEVENT)));
+
+            oneOf(allEventListener).onEvent(event, null, null);
+        }});
+
+        this.manager.addListener(fixedListener);
+        this.manager.addListener(regexListener);
+        this.manager.addListener(allEventListener);
+        this.manager.notify(event, null);
+
+        this.context.assertIsSatisfied();
+    }
 }
@@ -0,0 +1,144 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManagerTest.TestFilterableEvent;
+import org.xwiki.observation.event.ActionExecutionEvent;
+import org.xwiki.observation.event.AllEvent;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.event.filter.RegexEventFilter;
+
+/**
+ * Unit tests for {@link DispatchTable}.
+ * 
+ * @version $Id$
+ */
+public class DispatchTableTest
+{
+    private Map<Class< ? extends Event>, Map<String, RegisteredListener>> listenersByEvent =
+        new HashMap<Class< ? extends Event>, Map<String, RegisteredListener>>();
+
+    private static class TestListener implements EventListener
+    {
+        private final String name;
+
+        private final List<Event> events;
+
+        public TestListener(String name, Event... events)
+        {
+            this.name = name;
+            this.events = Arrays.asList(events);
+        }
+
+        @Override
+        public String getName()
+        {
+            return this.name;
+        }
+
+        @Override
+        public List<Event> getEvents()
+        {
+            return this.events;
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+        }
+    }
+
+    private void register(EventListener listener)
+    {
+        for (Event event : listener.getEvents()) {
+            Map<String, RegisteredListener> listeners = this.listenersByEvent.get(event.getClass());
+            if (listeners == null) {
+                listeners = new ConcurrentHashMap<String, RegisteredListener>();
+                this.listenersByEvent.put(event.getClass(), listeners);
+            }
+            listeners.put(listener.getName(), new RegisteredListener(listener, listener, event));
+        }
+    }
+
+    @Before
+    public void setUp()
+    {
+        register(new TestListener("regex", new TestFilterableEvent(new RegexEventFilter("space\\..*"))));
+        register(new TestListener("action", new ActionExecutionEvent("view")));
+    }
+
+    @Test
+    public void testUpdateOnlyModifiedTables()
+    {
+        Map<Class< ? extends Event>, DispatchTable> tables = DispatchTable.createTables(this.listenersByEvent);
+
+        register(new TestListener("action2", new ActionExecutionEvent("edit")));
+        Map<Class< ? extends Event>, DispatchTable> newTables =
+            DispatchTable.updateTables(tables, this.listenersByEvent,
+                Collections.<Class< ? extends Event>>singleton(ActionExecutionEvent.class));
+
+        Assert.assertSame(tables.get(TestFilterableEvent.class), newTables.get(TestFilterableEvent.class));
+        Assert.assertSame(tables.get(AllEvent.class), newTables.get(AllEvent.class));
+        Assert.assertNotSame(tables.get(ActionExecutionEvent.class), newTables.get(ActionExecutionEvent.class));
+        Assert.assertEquals(2, newTables.get(ActionExecutionEvent.class).getListeners(new ActionExecutionEvent("view"))
+            .length);
+
+        // The tables of the event types without listeners are removed
+        this.listenersByEvent.remove(ActionExecutionEvent.class);
+        newTables = DispatchTable.updateTables(newTables, this.listenersByEvent,
+            Collections.<Class< ? extends Event>>singleton(ActionExecutionEvent.class));
+
+        Assert.assertNull(newTables.get(ActionExecutionEvent.class));
+        Assert.assertSame(tables.get(TestFilterableEvent.class), newTables.get(TestFilterableEvent.class));
+    }
+
+    @Test
+    public void testUpdateAllEventListeners()
+    {
+        Map<Class< ? extends Event>, DispatchTable> tables = DispatchTable.createTables(this.listenersByEvent);
+
+        register(new TestListener("all", AllEvent.ALLEVENT));
+        Map<Class< ? extends Event>, DispatchTable> newTables =
+            DispatchTable.updateTables(tables, this.listenersByEvent,
+                Collections.<Class< ? extends Event>>singleton(AllEvent.class));
+
+        for (Class< ? extends Event> eventClass : Arrays.<Class< ? extends Event>>asList(AllEvent.class,
+            TestFilterableEvent.class, ActionExecutionEvent.class)) {
+            Assert.assertEquals(0, tables.get(eventClass).getAllEventListeners().length);
+            Assert.assertEquals(1, newTables.get(eventClass).getAllEventListeners().length);
+        }
+
+        // The index is kept
+        Assert.assertEquals(1, newTables.get(TestFilterableEvent.class).getRegexCount());
+        Assert.assertSame(tables.get(ActionExecutionEvent.class).getListeners(new ActionExecutionEvent("view")),
+            newTables.get(ActionExecutionEvent.class).getListeners(new ActionExecutionEvent("view")));
+    }
+}
@@ -36,7 +36,10 @@
      *         {@link org.xwiki.script.ScriptContextInitializer} will have been executed on the returned Script Context
      *         which will thus contain re-initialized values for the values which are set in
      *         {@link org.xwiki.script.ScriptContextInitializer}. The values that are set before calling this method
-     *         and for which there are no {@link org.xwiki.script.ScriptContextInitializer} will not be modified.  
+     *         and for which there are no {@link org.xwiki.script.ScriptContextInitializer} will not be modified. The
+     *         {@link StaticScriptContextInitializer}s are only executed the first time the Script Context of the
+     *         current execution is requested, and then only when they need a refresh (see
+     *         {@link StaticScriptContextInitializer#isRefreshNeeded(ScriptContext)}).
      */
     ScriptContext getScriptContext();
 }
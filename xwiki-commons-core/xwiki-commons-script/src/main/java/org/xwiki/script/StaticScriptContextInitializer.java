@@ -0,0 +1,44 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.script;
+
+import javax.script.ScriptContext;
+
+/**
+ * A {@link ScriptContextInitializer} whose bindings don't change during an execution, for example because they are
+ * components. Unlike other initializers, which are executed each time {@link ScriptContextManager#getScriptContext()}
+ * is called so that the values modified by scripts are reset, it's only executed the first time the Script Context of
+ * the current execution is requested, and then again only when {@link #isRefreshNeeded(ScriptContext)} says so.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+public interface StaticScriptContextInitializer extends ScriptContextInitializer
+{
+    /**
+     * Called each time the Script Context is requested once this initializer has been executed on it. It should be
+     * much cheaper than {@link #initialize(ScriptContext)}, for example by only checking that the bindings set by this
+     * initializer have not been modified or removed by a script.
+     * 
+     * @param context the Script Context on which this initializer has already been executed
+     * @return {@code true} if {@link #initialize(ScriptContext)} has to be executed again on the passed Script Context
+     */
+    boolean isRefreshNeeded(ScriptContext context);
+}
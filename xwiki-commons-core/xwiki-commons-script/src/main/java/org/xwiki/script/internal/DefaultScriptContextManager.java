@@ -29,6 +29,7 @@
 import org.xwiki.context.Execution;
 import org.xwiki.script.ScriptContextInitializer;
 import org.xwiki.script.ScriptContextManager;
+import org.xwiki.script.StaticScriptContextInitializer;
 
 /**
  * Default implementation of {@link ScriptContextManager}.
@@ -60,13 +61,38 @@ public ScriptContext getScriptContext()
             (ScriptContext) this.execution.getContext()
                 .getProperty(ScriptExecutionContextInitializer.SCRIPT_CONTEXT_ID);
 
+        // The static initializers only need to be executed once per Script Context, unless they need a refresh
+        ExecutionScriptContext executionScriptContext =
+            context instanceof ExecutionScriptContext ? (ExecutionScriptContext) context : null;
+
         // We re-initialize the Script Context with all Script Context Initializers. We do this in order to ensure
         // that the Script Context always contain correct values even if user scripts or XWiki code have modified them.
         // For example the current document in the Script Context could have changed and thus needs to be set back.
         for (ScriptContextInitializer scriptContextInitializer : this.scriptContextInitializerList) {
-            scriptContextInitializer.initialize(context);
+            if (executionScriptContext != null && scriptContextInitializer instanceof StaticScriptContextInitializer) {
+                initialize((StaticScriptContextInitializer) scriptContextInitializer, executionScriptContext);
+            } else {
+                scriptContextInitializer.initialize(context);
+            }
         }
 
         return context;
     }
+
+    /**
+     * Execute the passed static initializer on the passed Script Context if it has not been executed on it yet or if
+     * it needs a refresh.
+     * 
+     * @param initializer the static initializer
+     * @param context the Script Context of the current execution
+     */
+    private void initialize(StaticScriptContextInitializer initializer, ExecutionScriptContext context)
+    {
+        if (!context.isInitialized(initializer)) {
+            initializer.initialize(context);
+            context.setInitialized(initializer);
+        } else if (initializer.isRefreshNeeded(context)) {
+            initializer.initialize(context);
+        }
+    }
 }
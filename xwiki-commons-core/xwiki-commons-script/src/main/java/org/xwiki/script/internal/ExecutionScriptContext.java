@@ -0,0 +1,61 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.script.internal;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.script.SimpleScriptContext;
+
+import org.xwiki.script.StaticScriptContextInitializer;
+
+/**
+ * The Script Context stored in the Execution Context. Remember which {@link StaticScriptContextInitializer}s have
+ * already been executed on it.
+ * 
+ * @version $Id$
+ * @since 4.3M2
+ */
+public class ExecutionScriptContext extends SimpleScriptContext
+{
+    /**
+     * @see #isInitialized(StaticScriptContextInitializer)
+     */
+    private final Set<StaticScriptContextInitializer> initializers = new HashSet<StaticScriptContextInitializer>();
+
+    /**
+     * @param initializer a static initializer
+     * @return {@code true} if the passed initializer has already been executed on this context
+     */
+    public boolean isInitialized(StaticScriptContextInitializer initializer)
+    {
+        return this.initializers.contains(initializer);
+    }
+
+    /**
+     * Indicate that the passed initializer has been executed on this context.
+     * 
+     * @param initializer a static initializer
+     */
+    public void setInitialized(StaticScriptContextInitializer initializer)
+    {
+        this.initializers.add(initializer);
+    }
+}
@@ -19,36 +19,44 @@
  */
 package org.xwiki.script.internal;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import javax.inject.Named;
 import javax.inject.Singleton;
-import javax.script.SimpleScriptContext;
 
 import org.xwiki.component.annotation.Component;
 import org.xwiki.context.ExecutionContext;
 import org.xwiki.context.ExecutionContextException;
-import org.xwiki.context.ExecutionContextInitializer;
+import org.xwiki.context.LazyExecutionContextInitializer;
 
 /**
  * Allow registering the Script Context in the Execution Context object since it's shared during the whole execution of
- * the current request.
+ * the current request. The Script Context is only created if it's used during the execution.
  * 
  * @version $Id$
  */
 @Component
 @Named("scriptContext")
 @Singleton
-public class ScriptExecutionContextInitializer implements ExecutionContextInitializer
+public class ScriptExecutionContextInitializer implements LazyExecutionContextInitializer
 {
     /**
      * The id under which the Script Context is stored in the Execution Context.
      */
     public static final String SCRIPT_CONTEXT_ID = "scriptContext";
 
+    @Override
+    public Collection<String> getProvidedProperties()
+    {
+        return Collections.singleton(SCRIPT_CONTEXT_ID);
+    }
+
     @Override
     public void initialize(ExecutionContext executionContext) throws ExecutionContextException
     {
         // We're storing an instance of the Script Context class in the Execution Context so that it can be
         // shared between different script invocations during the lifetime of the Execution Context.        
-        executionContext.setProperty(SCRIPT_CONTEXT_ID, new SimpleScriptContext());
+        executionContext.setProperty(SCRIPT_CONTEXT_ID, new ExecutionScriptContext());
     }
 }
@@ -26,6 +26,7 @@
 
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentKey;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.script.service.ScriptService;
 import org.xwiki.script.service.ScriptServiceManager;
@@ -61,7 +62,10 @@ public ScriptService get(String serviceName)
         ScriptService scriptService;
 
         try {
-            scriptService = this.componentManager.get().getInstance(ScriptService.class, serviceName);
+            // The service name comes from the scripts so don't make the key canonical
+            scriptService =
+                this.componentManager.get().tryGetInstance(ComponentKey.<ScriptService>create(ScriptService.class,
+                    serviceName));
         } catch (Exception e) {
             this.logger.debug("Failed to lookup script service for role hint [{}]", serviceName, e);
 
@@ -20,7 +20,7 @@
 package org.xwiki.script.internal.service;
 
 import org.xwiki.component.annotation.Component;
-import org.xwiki.script.ScriptContextInitializer;
+import org.xwiki.script.StaticScriptContextInitializer;
 import org.xwiki.script.service.ScriptServiceManager;
 
 import javax.inject.Inject;
@@ -37,8 +37,13 @@
 @Component
 @Named("services")
 @Singleton
-public class ServicesScriptContextInitializer implements ScriptContextInitializer
+public class ServicesScriptContextInitializer implements StaticScriptContextInitializer
 {
+    /**
+     * The name of the binding.
+     */
+    private static final String BINDING_NAME = "services";
+
     /**
      * The Script Service Manager to bind in the Script Context.
      */
@@ -48,6 +53,13 @@ public class ServicesScriptContextInitializer implements ScriptContextInitialize
     @Override
     public void initialize(ScriptContext context)
     {
-        context.setAttribute("services", this.scriptServiceManager, ScriptContext.ENGINE_SCOPE);
+        context.setAttribute(BINDING_NAME, this.scriptServiceManager, ScriptContext.ENGINE_SCOPE);
+    }
+
+    @Override
+    public boolean isRefreshNeeded(ScriptContext context)
+    {
+        // The script service manager doesn't change but scripts can modify or remove the binding
+        return context.getAttribute(BINDING_NAME, ScriptContext.ENGINE_SCOPE) != this.scriptServiceManager;
     }
 }
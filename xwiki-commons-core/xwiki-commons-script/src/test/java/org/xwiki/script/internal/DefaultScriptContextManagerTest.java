@@ -0,0 +1,188 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.script.internal;
+
+import java.util.Arrays;
+
+import javax.script.ScriptContext;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.internal.DefaultExecution;
+import org.xwiki.script.ScriptContextInitializer;
+import org.xwiki.script.StaticScriptContextInitializer;
+
+/**
+ * Unit tests for {@link DefaultScriptContextManager}.
+ * 
+ * @version $Id$
+ */
+public class DefaultScriptContextManagerTest
+{
+    private DefaultScriptContextManager scriptContextManager;
+
+    private Execution execution;
+
+    private int staticCalls;
+
+    private int calls;
+
+    private boolean refreshNeeded;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.execution = new DefaultExecution();
+
+        ScriptContextInitializer staticInitializer = new StaticScriptContextInitializer()
+        {
+            @Override
+            public void initialize(ScriptContext context)
+            {
+                staticCalls++;
+            }
+
+            @Override
+            public boolean isRefreshNeeded(ScriptContext context)
+            {
+                return refreshNeeded;
+            }
+        };
+        ScriptContextInitializer initializer = new ScriptContextInitializer()
+        {
+            @Override
+            public void initialize(ScriptContext context)
+            {
+                calls++;
+            }
+        };
+
+        this.scriptContextManager = new DefaultScriptContextManager();
+        ReflectionUtils.setFieldValue(this.scriptContextManager, "execution", this.execution);
+        ReflectionUtils.setFieldValue(this.scriptContextManager, "scriptContextInitializerList",
+            Arrays.asList(staticInitializer, initializer));
+    }
+
+    private void setExecutionContext()
+    {
+        ExecutionContext context = new ExecutionContext();
+        context.setProperty(ScriptExecutionContextInitializer.SCRIPT_CONTEXT_ID, new ExecutionScriptContext());
+        this.execution.setContext(context);
+    }
+
+    @Test
+    public void testStaticInitializersAreExecutedOncePerScriptContext()
+    {
+        setExecutionContext();
+
+        ScriptContext scriptContext = this.scriptContextManager.getScriptContext();
+        Assert.assertSame(scriptContext, this.scriptContextManager.getScriptContext());
+        this.scriptContextManager.getScriptContext();
+
+        Assert.assertEquals(1, this.staticCalls);
+        Assert.assertEquals(3, this.calls);
+
+        // New Script Context
+        setExecutionContext();
+        this.scriptContextManager.getScriptContext();
+
+        Assert.assertEquals(2, this.staticCalls);
+        Assert.assertEquals(4, this.calls);
+    }
+
+    @Test
+    public void testStaticInitializersAreExecutedAgainWhenRefreshIsNeeded()
+    {
+        setExecutionContext();
+
+        this.scriptContextManager.getScriptContext();
+
+        this.refreshNeeded = true;
+        this.scriptContextManager.getScriptContext();
+        this.refreshNeeded = false;
+        this.scriptContextManager.getScriptContext();
+
+        Assert.assertEquals(2, this.staticCalls);
+        Assert.assertEquals(3, this.calls);
+    }
+
+    /**
+     * Compare the time spent in {@link DefaultScriptContextManager#getScriptContext()} when an expensive initializer is
+     * static and when it's not.
+     */
+    @Test
+    public void testStaticInitializersSaveTime()
+    {
+        ScriptContextInitializer initializer = new ScriptContextInitializer()
+        {
+            @Override
+            public void initialize(ScriptContext context)
+            {
+                bind(context);
+            }
+        };
+        ScriptContextInitializer staticInitializer = new StaticScriptContextInitializer()
+        {
+            @Override
+            public void initialize(ScriptContext context)
+            {
+                bind(context);
+            }
+
+            @Override
+            public boolean isRefreshNeeded(ScriptContext context)
+            {
+                return false;
+            }
+        };
+
+        long time = getScriptContextTime(initializer);
+        long staticTime = getScriptContextTime(staticInitializer);
+
+        Assert.assertTrue("Static initializer took " + staticTime + "ns, other initializer took " + time + "ns",
+            staticTime < time);
+    }
+
+    private void bind(ScriptContext context)
+    {
+        for (int i = 0; i < 1000; i++) {
+            context.setAttribute("binding" + i, i, ScriptContext.ENGINE_SCOPE);
+        }
+    }
+
+    private long getScriptContextTime(ScriptContextInitializer initializer)
+    {
+        ReflectionUtils.setFieldValue(this.scriptContextManager, "scriptContextInitializerList",
+            Arrays.asList(initializer));
+
+        setExecutionContext();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            this.scriptContextManager.getScriptContext();
+        }
+
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.script.internal.service;
+
+import javax.script.ScriptContext;
+import javax.script.SimpleScriptContext;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.script.service.ScriptServiceManager;
+
+/**
+ * Unit tests for {@link ServicesScriptContextInitializer}.
+ * 
+ * @version $Id$
+ */
+public class ServicesScriptContextInitializerTest
+{
+    @Test
+    public void testBindingIsRestored()
+    {
+        ScriptServiceManager scriptServiceManager = new DefaultScriptServiceManager();
+        ServicesScriptContextInitializer initializer = new ServicesScriptContextInitializer();
+        ReflectionUtils.setFieldValue(initializer, "scriptServiceManager", scriptServiceManager);
+
+        ScriptContext context = new SimpleScriptContext();
+
+        initializer.initialize(context);
+        Assert.assertSame(scriptServiceManager, context.getAttribute("services"));
+        Assert.assertFalse(initializer.isRefreshNeeded(context));
+
+        // Modified by a script
+        context.setAttribute("services", "value", ScriptContext.ENGINE_SCOPE);
+        Assert.assertTrue(initializer.isRefreshNeeded(context));
+        initializer.initialize(context);
+        Assert.assertSame(scriptServiceManager, context.getAttribute("services"));
+        Assert.assertFalse(initializer.isRefreshNeeded(context));
+
+        // Removed by a script
+        context.removeAttribute("services", ScriptContext.ENGINE_SCOPE);
+        Assert.assertTrue(initializer.isRefreshNeeded(context));
+    }
+}
@@ -19,6 +19,9 @@
  */
 package org.xwiki.velocity.internal;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -26,14 +29,14 @@
 import org.apache.velocity.VelocityContext;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.context.ExecutionContext;
-import org.xwiki.context.ExecutionContextInitializer;
 import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.LazyExecutionContextInitializer;
 import org.xwiki.velocity.VelocityContextFactory;
 import org.xwiki.velocity.XWikiVelocityException;
 
 /**
  * Allow registering the Velocity Context in the Execution Context object since it's shared during the whole execution
- * of the current request.
+ * of the current request. The Velocity Context is only created if it's used during the execution.
  * 
  * @see org.xwiki.context.ExecutionContextInitializer
  * @since 1.5M1
@@ -42,7 +45,7 @@
 @Component
 @Named("velocity")
 @Singleton
-public class VelocityExecutionContextInitializer implements ExecutionContextInitializer
+public class VelocityExecutionContextInitializer implements LazyExecutionContextInitializer
 {
     /**
      * The id under which the Velocity Context is stored in the Execution Context.
@@ -56,6 +59,12 @@ public class VelocityExecutionContextInitializer implements ExecutionContextInit
     @Inject
     private VelocityContextFactory velocityContextFactory;
 
+    @Override
+    public Collection<String> getProvidedProperties()
+    {
+        return Collections.singleton(VELOCITY_CONTEXT_ID);
+    }
+
     @Override
     public void initialize(ExecutionContext executionContext) throws ExecutionContextException
     {